@@ -0,0 +1,108 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class AggregateRegistry {
+    private final ParticleGrid grid;
+    private final Map<Object, GridAggregate> aggregatesByKey = new LinkedHashMap<>();
+    private GridAggregate[] aggregates = new GridAggregate[0];
+    private int particleCount = 0;
+
+    public AggregateRegistry(ParticleGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Registers an aggregate under the given key and feeds it the particles already on the grid.
+     */
+    public <A extends GridAggregate> A register(Object key, A aggregate) {
+        if (this.aggregatesByKey.containsKey(key)) {
+            throw new RuntimeException("An aggregate is already registered under " + key);
+        }
+
+        // The grid registers its own aggregates before its storage exists, so only go to the storage if we have to.
+        if (this.particleCount > 0) {
+            Iterator<Particle> it = this.grid.getAllParticles().iterator();
+            while (it.hasNext()) {
+                aggregate.onParticleAdded(this.grid, it.next());
+            }
+        }
+
+        this.aggregatesByKey.put(key, aggregate);
+        this.aggregates = Arrays.copyOf(this.aggregates, this.aggregates.length + 1);
+        this.aggregates[this.aggregates.length - 1] = aggregate;
+
+        return aggregate;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A extends GridAggregate> A getOrRegister(Object key, Supplier<A> supplier) {
+        GridAggregate aggregate = this.aggregatesByKey.get(key);
+        if (aggregate != null) {
+            return (A) aggregate;
+        }
+        return this.register(key, supplier.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A extends GridAggregate> A get(Object key) {
+        return (A) this.aggregatesByKey.get(key);
+    }
+
+    public void unregister(Object key) {
+        if (this.aggregatesByKey.remove(key) != null) {
+            this.aggregates = this.aggregatesByKey.values().toArray(new GridAggregate[0]);
+        }
+    }
+
+    public void onParticleAdded(Particle p) {
+        this.particleCount++;
+        for (GridAggregate aggregate : this.aggregates) {
+            aggregate.onParticleAdded(this.grid, p);
+        }
+    }
+
+    public void onParticleRemoved(Particle p) {
+        this.particleCount--;
+        for (GridAggregate aggregate : this.aggregates) {
+            aggregate.onParticleRemoved(this.grid, p);
+        }
+    }
+
+    public void onParticleMoved(Particle p) {
+        for (GridAggregate aggregate : this.aggregates) {
+            aggregate.onParticleMoved(this.grid, p);
+        }
+    }
+
+    public void onParticleChanged(Particle p) {
+        for (GridAggregate aggregate : this.aggregates) {
+            aggregate.onParticleChanged(this.grid, p);
+        }
+    }
+}
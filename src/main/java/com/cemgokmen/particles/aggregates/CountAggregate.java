@@ -0,0 +1,102 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Counts particles by a key computed from each particle, e.g. its class or its algorithm. Particles whose key is
+ * null are not counted. The key is recomputed when the particle's state changes.
+ */
+public class CountAggregate<K> implements GridAggregate {
+    private final Function<Particle, K> classifier;
+    private final Map<K, int[]> counts = new LinkedHashMap<>();
+    private Object[] keys = new Object[0];
+
+    public CountAggregate(Function<Particle, K> classifier) {
+        this.classifier = classifier;
+    }
+
+    private void adjust(K key, int delta) {
+        if (key == null) return;
+
+        int[] count = this.counts.get(key);
+        if (count == null) {
+            count = new int[1];
+            this.counts.put(key, count);
+        }
+
+        count[0] += delta;
+        if (count[0] == 0) {
+            this.counts.remove(key);
+        }
+    }
+
+    @Override
+    public void onParticleAdded(ParticleGrid grid, Particle p) {
+        int id = p.getId();
+        if (id >= this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, Math.max(id + 1, 2 * this.keys.length));
+        }
+
+        K key = this.classifier.apply(p);
+        this.keys[id] = key;
+        this.adjust(key, 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onParticleRemoved(ParticleGrid grid, Particle p) {
+        this.adjust((K) this.keys[p.getId()], -1);
+        this.keys[p.getId()] = null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onParticleChanged(ParticleGrid grid, Particle p) {
+        K oldKey = (K) this.keys[p.getId()];
+        K newKey = this.classifier.apply(p);
+        if (Objects.equals(oldKey, newKey)) return;
+
+        this.adjust(oldKey, -1);
+        this.adjust(newKey, 1);
+        this.keys[p.getId()] = newKey;
+    }
+
+    public int getCount(K key) {
+        int[] count = this.counts.get(key);
+        return count == null ? 0 : count[0];
+    }
+
+    /**
+     * Returns the keys with at least one particle, in the order they were first seen.
+     */
+    public Set<K> getKeys() {
+        return Collections.unmodifiableSet(this.counts.keySet());
+    }
+}
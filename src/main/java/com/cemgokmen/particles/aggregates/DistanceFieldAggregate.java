@@ -0,0 +1,277 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Hop distance from every member particle to the nearest source particle, through chains of adjacent members. The
+ * field is repaired locally whenever an edge or a source comes or goes: a new shortcut is spread outwards for as long
+ * as it improves something, and a lost one only invalidates the particles that depended on it, which are then
+ * re-settled from the unaffected particles around them.
+ *
+ * We keep our own copy of the adjacency between members, indexed by particle id, since by the time we hear about a
+ * move the particle's old neighbors are gone from the grid.
+ */
+public class DistanceFieldAggregate implements GridAggregate {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final Predicate<Particle> source;
+    private final Predicate<Particle> member;
+
+    private int[] distance = new int[0];
+    private boolean[] isMember = new boolean[0];
+    private boolean[] isSource = new boolean[0];
+    private int[][] neighbors = new int[0][];
+    private int[] degree = new int[0];
+
+    // Scratch space for repairs
+    private boolean[] affected = new boolean[0];
+    private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+    private final PriorityQueue<Long> settling = new PriorityQueue<>();
+    private int[] affectedList = new int[16];
+
+    public DistanceFieldAggregate(Predicate<Particle> source, Predicate<Particle> member) {
+        this.source = source;
+        this.member = member;
+    }
+
+    /**
+     * Returns the number of hops from the particle to the nearest source, or {@link #UNREACHABLE}.
+     */
+    public int getDistance(Particle p) {
+        int id = p.getId();
+        return id >= 0 && id < this.distance.length && this.isMember[id] ? this.distance[id] : UNREACHABLE;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < this.distance.length) return;
+
+        int capacity = Math.max(id + 1, 2 * this.distance.length);
+        int oldCapacity = this.distance.length;
+        this.distance = Arrays.copyOf(this.distance, capacity);
+        Arrays.fill(this.distance, oldCapacity, capacity, UNREACHABLE);
+        this.isMember = Arrays.copyOf(this.isMember, capacity);
+        this.isSource = Arrays.copyOf(this.isSource, capacity);
+        this.neighbors = Arrays.copyOf(this.neighbors, capacity);
+        this.degree = Arrays.copyOf(this.degree, capacity);
+        this.affected = Arrays.copyOf(this.affected, capacity);
+    }
+
+    @Override
+    public void onParticleAdded(ParticleGrid grid, Particle p) {
+        if (!this.member.test(p)) return;
+
+        int id = p.getId();
+        this.ensureCapacity(id);
+        this.isMember[id] = true;
+        this.isSource[id] = this.source.test(p);
+        this.distance[id] = this.isSource[id] ? 0 : UNREACHABLE;
+        this.degree[id] = 0;
+        if (this.neighbors[id] == null) this.neighbors[id] = new int[6];
+
+        this.connect(grid, p);
+        if (this.isSource[id]) this.spread(id);
+    }
+
+    @Override
+    public void onParticleRemoved(ParticleGrid grid, Particle p) {
+        int id = p.getId();
+        if (id >= this.isMember.length || !this.isMember[id]) return;
+
+        // Take it out of the graph first, then let its former neighbors find other routes
+        int[] former = Arrays.copyOf(this.neighbors[id], this.degree[id]);
+        for (int other : former) this.unlink(id, other);
+        this.isMember[id] = false;
+        this.isSource[id] = false;
+        this.distance[id] = UNREACHABLE;
+
+        for (int other : former) this.repair(other);
+    }
+
+    @Override
+    public void onParticleMoved(ParticleGrid grid, Particle p) {
+        int id = p.getId();
+        if (id >= this.isMember.length || !this.isMember[id]) return;
+
+        int[] former = Arrays.copyOf(this.neighbors[id], this.degree[id]);
+        for (int other : former) this.unlink(id, other);
+
+        // The particle itself may have lost its route too
+        this.repair(id);
+        for (int other : former) this.repair(other);
+
+        this.connect(grid, p);
+    }
+
+    @Override
+    public void onParticleChanged(ParticleGrid grid, Particle p) {
+        int id = p.getId();
+        if (id >= this.isMember.length || !this.isMember[id]) return;
+
+        boolean isSource = this.source.test(p);
+        if (isSource == this.isSource[id]) return;
+
+        this.isSource[id] = isSource;
+        if (isSource) {
+            this.distance[id] = 0;
+            this.spread(id);
+        } else {
+            this.repair(id);
+        }
+    }
+
+    /**
+     * Links the particle to its member neighbors on the grid and takes whatever shortcuts that opens up.
+     */
+    private void connect(ParticleGrid grid, Particle p) {
+        int id = p.getId();
+        List<Particle> adjacent = grid.getParticleNeighbors(p, false);
+        for (Particle neighbor : adjacent) {
+            int other = neighbor.getId();
+            if (other < 0 || other >= this.isMember.length || !this.isMember[other]) continue;
+
+            this.link(id, other);
+            if (this.relax(other, id)) this.spread(id);
+            if (this.relax(id, other)) this.spread(other);
+        }
+    }
+
+    private void link(int a, int b) {
+        this.append(a, b);
+        this.append(b, a);
+    }
+
+    private void append(int a, int b) {
+        if (this.degree[a] == this.neighbors[a].length) {
+            this.neighbors[a] = Arrays.copyOf(this.neighbors[a], 2 * this.degree[a]);
+        }
+        this.neighbors[a][this.degree[a]++] = b;
+    }
+
+    private void unlink(int a, int b) {
+        this.drop(a, b);
+        this.drop(b, a);
+    }
+
+    private void drop(int a, int b) {
+        int[] list = this.neighbors[a];
+        for (int k = 0; k < this.degree[a]; k++) {
+            if (list[k] == b) {
+                list[k] = list[--this.degree[a]];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lowers the distance of b to go through a if that is shorter, and reports whether it did.
+     */
+    private boolean relax(int a, int b) {
+        if (this.distance[a] == UNREACHABLE || this.distance[a] + 1 >= this.distance[b]) return false;
+
+        this.distance[b] = this.distance[a] + 1;
+        return true;
+    }
+
+    /**
+     * Spreads a lowered distance outwards, breadth first, for as long as it improves something.
+     */
+    private void spread(int start) {
+        this.queue.add(start);
+        while (!this.queue.isEmpty()) {
+            int u = this.queue.poll();
+            for (int k = 0; k < this.degree[u]; k++) {
+                int w = this.neighbors[u][k];
+                if (this.relax(u, w)) this.queue.add(w);
+            }
+        }
+    }
+
+    private boolean isSupported(int u) {
+        if (this.isSource[u]) return true;
+        if (this.distance[u] == UNREACHABLE) return true;
+
+        for (int k = 0; k < this.degree[u]; k++) {
+            int v = this.neighbors[u][k];
+            if (!this.affected[v] && this.distance[v] == this.distance[u] - 1) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fixes up the field after the particle may have lost the neighbor its distance came through.
+     */
+    private void repair(int start) {
+        if (!this.isMember[start] || this.isSupported(start)) return;
+
+        // Find everything whose shortest routes all went through the start. Going breadth first means a particle's
+        // possible parents have all been looked at before we check whether it still has one.
+        int affectedCount = 0;
+        this.affected[start] = true;
+        this.queue.add(start);
+        while (!this.queue.isEmpty()) {
+            int u = this.queue.poll();
+            if (affectedCount == this.affectedList.length) this.affectedList = Arrays.copyOf(this.affectedList, 2 * affectedCount);
+            this.affectedList[affectedCount++] = u;
+
+            for (int k = 0; k < this.degree[u]; k++) {
+                int w = this.neighbors[u][k];
+                if (this.affected[w] || this.distance[w] != this.distance[u] + 1) continue;
+                if (this.isSupported(w)) continue;
+
+                this.affected[w] = true;
+                this.queue.add(w);
+            }
+        }
+
+        // Re-settle them from the unaffected particles around them, nearest first
+        for (int n = 0; n < affectedCount; n++) {
+            int u = this.affectedList[n];
+            int best = UNREACHABLE;
+            for (int k = 0; k < this.degree[u]; k++) {
+                int v = this.neighbors[u][k];
+                if (!this.affected[v] && this.distance[v] != UNREACHABLE) best = Math.min(best, this.distance[v] + 1);
+            }
+            this.distance[u] = best;
+            if (best != UNREACHABLE) this.settling.add(((long) best << 32) | u);
+        }
+
+        while (!this.settling.isEmpty()) {
+            long entry = this.settling.poll();
+            int u = (int) entry;
+            if ((int) (entry >>> 32) != this.distance[u]) continue;
+
+            for (int k = 0; k < this.degree[u]; k++) {
+                int w = this.neighbors[u][k];
+                if (this.affected[w] && this.relax(u, w)) this.settling.add(((long) this.distance[w] << 32) | w);
+            }
+        }
+
+        for (int n = 0; n < affectedCount; n++) this.affected[this.affectedList[n]] = false;
+    }
+}
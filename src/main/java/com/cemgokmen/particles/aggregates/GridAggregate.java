@@ -0,0 +1,42 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+
+/**
+ * A quantity over all the particles on a grid that is kept up to date as the grid changes, so that reading it does
+ * not require a pass over the particles. The hooks are called after the grid has been updated, so the particle's id
+ * and position are already those of the new state (except on removal, where the particle is already off the grid but
+ * still has its id).
+ */
+public interface GridAggregate {
+    default void onParticleAdded(ParticleGrid grid, Particle p) {
+    }
+
+    default void onParticleRemoved(ParticleGrid grid, Particle p) {
+    }
+
+    default void onParticleMoved(ParticleGrid grid, Particle p) {
+    }
+
+    default void onParticleChanged(ParticleGrid grid, Particle p) {
+    }
+}
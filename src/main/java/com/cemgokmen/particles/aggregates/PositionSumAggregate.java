@@ -0,0 +1,92 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import org.la4j.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Running sum of the leveled positions of all particles. We remember each particle's last contribution by id, so a
+ * move only has to swap one contribution for another, whichever way the grid wraps.
+ */
+public class PositionSumAggregate implements GridAggregate {
+    private static final int DIMENSIONS = 2;
+
+    private final double[] sums = new double[DIMENSIONS];
+    private double[] contributions = new double[0];
+    private int count = 0;
+
+    private void ensureCapacity(int id) {
+        int needed = (id + 1) * DIMENSIONS;
+        if (needed > this.contributions.length) {
+            this.contributions = Arrays.copyOf(this.contributions, Math.max(needed, 2 * this.contributions.length));
+        }
+    }
+
+    private void update(ParticleGrid grid, Particle p) {
+        int base = p.getId() * DIMENSIONS;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            double coordinate = grid.getLeveledParticleCoordinate(p, i);
+            this.sums[i] += coordinate - this.contributions[base + i];
+            this.contributions[base + i] = coordinate;
+        }
+    }
+
+    @Override
+    public void onParticleAdded(ParticleGrid grid, Particle p) {
+        this.ensureCapacity(p.getId());
+        Arrays.fill(this.contributions, p.getId() * DIMENSIONS, (p.getId() + 1) * DIMENSIONS, 0);
+        this.update(grid, p);
+        this.count++;
+    }
+
+    @Override
+    public void onParticleRemoved(ParticleGrid grid, Particle p) {
+        int base = p.getId() * DIMENSIONS;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            this.sums[i] -= this.contributions[base + i];
+            this.contributions[base + i] = 0;
+        }
+        this.count--;
+    }
+
+    @Override
+    public void onParticleMoved(ParticleGrid grid, Particle p) {
+        this.update(grid, p);
+    }
+
+    public double getSum(int axis) {
+        return this.sums[axis];
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public double getMean(int axis) {
+        return this.sums[axis] / this.count;
+    }
+
+    public Vector getMean() {
+        return Vector.fromArray(new double[]{this.getMean(0), this.getMean(1)});
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.algorithms;
+
+import com.cemgokmen.particles.models.Particle;
+
+/**
+ * Activates particles on behalf of an algorithm. Handlers are bound once per particle class, so they may assume the
+ * concrete type of the particles they are given.
+ */
+@FunctionalInterface
+public interface ActivationHandler {
+    void activate(Particle p);
+}
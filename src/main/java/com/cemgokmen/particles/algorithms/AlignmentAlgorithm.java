@@ -19,21 +19,30 @@
 package com.cemgokmen.particles.algorithms;
 
 import com.cemgokmen.particles.capabilities.*;
+import com.cemgokmen.particles.util.PowerTable;
 import com.cemgokmen.particles.util.Utils;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotKernels;
+import com.cemgokmen.particles.models.amoebot.soa.ArrayActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.BitsetActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays;
+import com.cemgokmen.particles.models.amoebot.soa.LinearBitsetEngine;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
 import com.google.common.collect.ImmutableList;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 
 import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
 
-public class AlignmentAlgorithm extends ParticleAlgorithm {
+public class AlignmentAlgorithm extends ParticleAlgorithm implements ArrayActivatable, BitsetActivatable {
     public static final double DEFAULT_ROTATION_BIAS = 20.0;
     public static final double DEFAULT_TRANSLATION_BIAS = 1.0;
     public static final double DEFAULT_FORWARD_BIAS = 1.1;
+    public static final double SPIN_PROBABILITY = 0.1;
     public static final double DEFAULT_LAMBDA = 4.0;
 
     public static final List<Class<? extends ParticleCapability>> requiredCapabilities = ImmutableList.of(
@@ -43,6 +52,8 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
     protected final DoubleProperty translationBias = new SimpleDoubleProperty();
     protected final DoubleProperty forwardBias = new SimpleDoubleProperty();
 
+    private volatile Parameters parameters;
+
     public double getRotationBias() {
         return this.rotationBias.get();
     }
@@ -83,6 +94,9 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
         this.setRotationBias(rotationBias);
         this.setTranslationBias(translationBias);
         this.setForwardBias(forwardBias);
+
+        this.watchParameters(this.rotationBias, this.translationBias, this.forwardBias);
+        this.publishParameters();
     }
 
     public AlignmentAlgorithm() {
@@ -91,16 +105,26 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
 
     @Override
     public void onParticleActivation(Particle p) {
-        double spinProbability = 0.1;
+        if (p instanceof DirectedAmoebotParticle) {
+            this.activateDirected((DirectedAmoebotParticle) p);
+        } else {
+            this.activateCapable(p);
+        }
+    }
 
-        // Check if we're about to hit the wall
-        /* ParticleGrid.Direction faceDir = ((SpinCapable) p).getDirection();
-        if (!((NeighborDetectionCapable) p).isDirectionInBounds(faceDir)) {
-            spinProbability = 0.5;
-        } */
+    @Override
+    protected ActivationHandler createActivationHandler(Class<? extends Particle> particleClass) {
+        if (DirectedAmoebotParticle.class.isAssignableFrom(particleClass)) {
+            return p -> this.activateDirected((DirectedAmoebotParticle) p);
+        }
+        return this::activateCapable;
+    }
 
-        if (Utils.randomDouble() <= spinProbability) {
-            // With one half probability, we rotate
+    /**
+     * The activation of any particle with the required capabilities, such as continuous ones.
+     */
+    private void activateCapable(Particle p) {
+        if (Utils.randomDouble() <= SPIN_PROBABILITY) {
             ParticleGrid.Direction randomDirection = ((UniformRandomDirectionCapable) p).getUniformRandomDirection();
 
             double moveProbability = this.getRotateMoveProbability(p, randomDirection);
@@ -110,33 +134,63 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
 
             ((SpinCapable) p).setDirection(randomDirection);
         } else {
-            // With the rest probability, we translate
-
-            // Pick a random direction using the correct weights
             ParticleGrid.Direction currentDirection = ((SpinCapable) p).getDirection();
-            ParticleGrid.Direction randomDirection = ((WrappedNormalRandomDirectionCapable) p).getWrappedNormalRandomDirection(currentDirection, this.getForwardBias());
+            ParticleGrid.Direction randomDirection = ((WrappedNormalRandomDirectionCapable) p).getWrappedNormalRandomDirection(currentDirection, this.parameters.forwardBias);
 
-            // Run move validation
             if (!((MovementCapable) p).isDirectionWithinBounds(randomDirection)) {
                 return;
             }
 
-            /*if (false && !RuleUtils.isMoveValidCompressionMove(particle, randomDirection, false, true)) {
+            double moveProbability = this.getTranslateMoveProbability(p, randomDirection);
+            if (Utils.randomDouble() > moveProbability) {
                 return;
-            }*/
+            }
+
+            ((MovementCapable) p).tryMove(randomDirection);
+        }
+    }
+
+    /**
+     * The same activation for directed amoebot particles, without going through the capability interfaces.
+     */
+    private void activateDirected(DirectedAmoebotParticle p) {
+        if (Utils.randomDouble() <= SPIN_PROBABILITY) {
+            ParticleGrid.Direction randomDirection = p.getUniformRandomDirection();
+
+            double moveProbability = this.getRotateMoveProbability(p, randomDirection);
+            if (Utils.randomDouble() > moveProbability) {
+                return;
+            }
+
+            p.setDirection(randomDirection);
+        } else {
+            ParticleGrid.Direction randomDirection = p.getWrappedNormalRandomDirection(p.getDirection(), this.parameters.forwardBias);
+
+            if (!p.isDirectionWithinBounds(randomDirection)) {
+                return;
+            }
 
             double moveProbability = this.getTranslateMoveProbability(p, randomDirection);
             if (Utils.randomDouble() > moveProbability) {
                 return;
             }
 
-            // Now make the move
-            try {
-                ((MovementCapable) p).move(randomDirection);
-            } catch (Exception ignored){}
+            p.tryMove(randomDirection);
         }
     }
 
+    @Override
+    public void onArrayActivation(AmoebotStateArrays state, int i, Random random) {
+        Parameters parameters = this.parameters;
+        AmoebotKernels.alignment(state, i, parameters.rotationBias, parameters.translationBiasPowers, parameters.forwardBias, random);
+    }
+
+    @Override
+    public void onBitsetActivation(LinearBitsetEngine engine, int i, Random random) {
+        Parameters parameters = this.parameters;
+        AmoebotKernels.alignment(engine, i, parameters.rotationBias, parameters.translationBiasPowers, parameters.forwardBias, random);
+    }
+
     @Override
     public List<Class<? extends ParticleCapability>> getRequiredCapabilities() {
         return requiredCapabilities;
@@ -148,7 +202,7 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
         double sumDotProducts = getDotProductSum(neighbors, ((SpinCapable) p).getDirection());
         double newSumDotProducts = getDotProductSum(neighbors, inDirection);
 
-        return Math.pow(this.getRotationBias(), newSumDotProducts - sumDotProducts);
+        return Math.pow(this.parameters.rotationBias, newSumDotProducts - sumDotProducts);
     }
 
     private static double getDotProductSum(List<Particle> particles, ParticleGrid.Direction withDirection) {
@@ -156,7 +210,7 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
 
         for (Particle nbrAnonymous : particles) {
             SpinCapable nbr = (SpinCapable) nbrAnonymous;
-            sumDotProducts += normalizeDotProduct(Math.cos(nbr.getCompass().getAngleBetweenDirections(withDirection, nbr.getDirection())));
+            sumDotProducts += nbr.getCompass().getNormalizedDotProduct(withDirection, nbr.getDirection());
         }
 
         return sumDotProducts;
@@ -169,20 +223,41 @@ public class AlignmentAlgorithm extends ParticleAlgorithm {
         List<Particle> futureNeighbors = ((NeighborDetectionCapable) p).getAdjacentPositionNeighborParticles(inDirection, false, particle -> particle
                 != p);
 
-        double translationBiasTerm = Math.pow(this.getTranslationBias(), futureNeighbors.size() - currentNeighbors.size());
+        double translationBiasTerm = this.parameters.translationBiasPowers.get(futureNeighbors.size() - currentNeighbors.size());
 
         double rotationBiasExponent = getDotProductSum(futureNeighbors, ((SpinCapable) p).getDirection()) - getDotProductSum(currentNeighbors, ((SpinCapable) p).getDirection());
-        double rotationBiasTerm = Math.pow(this.getRotationBias(), rotationBiasExponent);
+        double rotationBiasTerm = Math.pow(this.parameters.rotationBias, rotationBiasExponent);
 
         return translationBiasTerm * rotationBiasTerm;
     }
 
-    private static double normalizeDotProduct(double dot) {
-        return (dot + 1) / 2.0;
+    @Override
+    public ToDoubleFunction<ParticleGrid> getSteadyStateObservable() {
+        return Observables::polarization;
     }
 
     @Override
     public boolean isGridValid(ParticleGrid grid) {
         return true;
     }
+
+    @Override
+    protected void compileParameters() {
+        this.parameters = new Parameters(this.getRotationBias(), this.getTranslationBias(), this.getForwardBias());
+    }
+
+    /**
+     * The parameters as of the last activation batch boundary.
+     */
+    private static final class Parameters {
+        private final double rotationBias;
+        private final PowerTable translationBiasPowers;
+        private final double forwardBias;
+
+        private Parameters(double rotationBias, double translationBias, double forwardBias) {
+            this.rotationBias = rotationBias;
+            this.translationBiasPowers = new PowerTable(translationBias);
+            this.forwardBias = forwardBias;
+        }
+    }
 }
@@ -22,7 +22,6 @@ import com.cemgokmen.particles.capabilities.*;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
-import com.cemgokmen.particles.util.RandomSelector;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
 
@@ -42,8 +41,9 @@ public class BobBotAlignmentAlgorithm extends ParticleAlgorithm {
                     boolean occupied = particle.getNeighborInDirection(d, 0, null) != null;
                     if (!occupied) return 0;
 
-                    double angle = particle.getCompass().getAngleBetweenDirections(d, ((DirectedAmoebotParticle) p).getDirection());
-                    return -1 * Math.cos(angle);
+                    // cos = 2 * normalized dot - 1
+                    double dot = particle.getCompass().getNormalizedDotProduct(d.getOrdinal(), ((DirectedAmoebotParticle) p).getDirection().getOrdinal());
+                    return -1 * (2 * dot - 1);
                 })
                 .sum();
 
@@ -59,9 +59,8 @@ public class BobBotAlignmentAlgorithm extends ParticleAlgorithm {
             // With the rest probability, we translate
 
             // Pick a random direction using the correct weights
-            RandomSelector<ParticleGrid.Direction> selector = RandomSelector.uniform(particle.getCompass().getDirections());
-
-            ParticleGrid.Direction randomDirection = selector.next(Utils.random);
+            ParticleGrid.Compass compass = particle.getCompass();
+            ParticleGrid.Direction randomDirection = compass.getDirection(Utils.randomInt(compass.getDirectionCount()));
 
             // Run move validation
             if (!particle.isDirectionWithinBounds(randomDirection)) {
@@ -69,13 +68,8 @@ public class BobBotAlignmentAlgorithm extends ParticleAlgorithm {
             }
 
             // Now make the move
-            try {
-                particle.move(randomDirection);
-                //particle.setDirection(particle.compass.shiftDirectionCounterclockwise(particle.getDirection(), 3));
-                //System.out.println("Moved.");
-            } catch (Exception ignored) {
-
-            }
+            particle.tryMove(randomDirection);
+            //particle.setDirection(particle.compass.shiftDirectionCounterclockwise(particle.getDirection(), 3));
         }
     }
 
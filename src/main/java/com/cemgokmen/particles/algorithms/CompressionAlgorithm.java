@@ -25,22 +25,37 @@ import com.cemgokmen.particles.capabilities.UniformRandomDirectionCapable;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotKernels;
+import com.cemgokmen.particles.models.amoebot.soa.ArrayActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays;
+import com.cemgokmen.particles.models.amoebot.soa.MultispinActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.MultispinEngine;
+import com.cemgokmen.particles.models.amoebot.soa.MultispinKernels;
+import com.cemgokmen.particles.util.PowerTable;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 
 import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.ToDoubleFunction;
 
-public class CompressionAlgorithm extends ParticleAlgorithm {
+public class CompressionAlgorithm extends ParticleAlgorithm implements ArrayActivatable, MultispinActivatable {
     public static final List<Class<? extends ParticleCapability>> requiredCapabilities = ImmutableList.of(MovementCapable.class, UniformRandomDirectionCapable.class, NeighborDetectionCapable.class);
 
     public static final double DEFAULT_LAMBDA = 4.0;
 
     protected final DoubleProperty lambda = new SimpleDoubleProperty();
 
+    private volatile Parameters parameters;
+
     public CompressionAlgorithm(double lambda) {
         this.setLambda(lambda);
+
+        this.watchParameters(this.lambda);
+        this.publishParameters();
     }
 
     public double getLambda() {
@@ -61,40 +76,55 @@ public class CompressionAlgorithm extends ParticleAlgorithm {
 
     @Override
     public void onParticleActivation(Particle p) {
-        UniformRandomDirectionCapable particle = (UniformRandomDirectionCapable) p;
+        if (p instanceof AmoebotParticle) {
+            this.activateAmoebot((AmoebotParticle) p);
+            return;
+        }
 
-        // Pick a random direction
-        ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
+        // Off the lattice there are no connectivity rules to check, only the neighbor counts
+        ParticleGrid.Direction randomDirection = ((UniformRandomDirectionCapable) p).getUniformRandomDirection();
+        double moveProbability = this.getMoveProbability((NeighborDetectionCapable) p, randomDirection);
+        if (Utils.randomDouble() > moveProbability) {
+            return;
+        }
 
-        //System.out.println("Time for move validation");
+        ((MovementCapable) p).tryMove(randomDirection);
+    }
 
-        // Run move validation
-        if (p instanceof AmoebotParticle) {
-            if (!RuleUtils.isMoveValidCompressionMove((AmoebotParticle) particle, randomDirection, false, true)) {
-                //System.out.println("Invalid move, returning");
-                return;
-            }
+    @Override
+    protected ActivationHandler createActivationHandler(Class<? extends Particle> particleClass) {
+        if (AmoebotParticle.class.isAssignableFrom(particleClass)) {
+            return p -> this.activateAmoebot((AmoebotParticle) p);
         }
+        return this::onParticleActivation;
+    }
 
-        //System.out.println("Time for probability calculation");
-
-        double moveProbability = this.getMoveProbability((NeighborDetectionCapable) p, randomDirection);
+    /**
+     * The activation of amoebot particles, bound as their handler and used by onParticleActivation for them too.
+     */
+    private void activateAmoebot(AmoebotParticle particle) {
+        ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
 
-        //System.out.printf("Move probability: %.2f%%. Now filtering.", moveProbability * 100);
+        if (!RuleUtils.isMoveValidCompressionMove(particle, randomDirection, false, true)) {
+            return;
+        }
 
+        double moveProbability = this.getMoveProbability(particle, randomDirection);
         if (Utils.randomDouble() > moveProbability) {
             return;
         }
 
-        //System.out.println("Passed filter");
+        particle.tryMove(randomDirection);
+    }
 
-        // Now make the move
-        try {
-            ((MovementCapable) particle).move(randomDirection);
-            //System.out.println("Moved.");
-        } catch (Exception ignored) {
+    @Override
+    public void onArrayActivation(AmoebotStateArrays state, int i, Random random) {
+        AmoebotKernels.compression(state, i, this.parameters.lambdaPowers, random);
+    }
 
-        }
+    @Override
+    public void onMultispinActivation(MultispinEngine engine, int site, SplittableRandom random) {
+        MultispinKernels.compression(engine, site, this.parameters.lambdaPowers, random);
     }
 
     @Override
@@ -102,6 +132,11 @@ public class CompressionAlgorithm extends ParticleAlgorithm {
         return requiredCapabilities;
     }
 
+    @Override
+    public ToDoubleFunction<ParticleGrid> getSteadyStateObservable() {
+        return Observables::perimeter;
+    }
+
     @Override
     public boolean isGridValid(ParticleGrid grid) {
         return RuleUtils.checkParticleConnection(grid, particle -> true) && RuleUtils.checkParticleHoles(grid, particle -> true);
@@ -111,6 +146,22 @@ public class CompressionAlgorithm extends ParticleAlgorithm {
         int currentNeighbors = p.getNeighborParticles(false, null).size();
         int futureNeighbors = p.getAdjacentPositionNeighborParticles(inDirection, false, particle -> particle
                 != p).size();
-        return Math.pow(this.getLambda(), futureNeighbors - currentNeighbors);
+        return this.parameters.lambdaPowers.get(futureNeighbors - currentNeighbors);
+    }
+
+    @Override
+    protected void compileParameters() {
+        this.parameters = new Parameters(this.getLambda());
+    }
+
+    /**
+     * The parameters as of the last activation batch boundary.
+     */
+    private static final class Parameters {
+        private final PowerTable lambdaPowers;
+
+        private Parameters(double lambda) {
+            this.lambdaPowers = new PowerTable(lambda);
+        }
     }
 }
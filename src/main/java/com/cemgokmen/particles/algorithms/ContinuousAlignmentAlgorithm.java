@@ -23,7 +23,7 @@ import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.ContinuousDirectedAmoebotParticle;
-import com.cemgokmen.particles.util.RandomSelector;
+import com.cemgokmen.particles.util.DirectionSamplers;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
 import javafx.beans.property.DoubleProperty;
@@ -48,6 +48,9 @@ public class ContinuousAlignmentAlgorithm extends ParticleAlgorithm {
     protected final DoubleProperty translationBias = new SimpleDoubleProperty();
     protected final DoubleProperty forwardBias = new SimpleDoubleProperty();
 
+    private ParticleGrid.Compass translationSamplerCompass;
+    private DirectionSamplers.HeadingSampler translationSampler;
+
     public double getRotationBias() {
         return this.rotationBias.get();
     }
@@ -115,12 +118,8 @@ public class ContinuousAlignmentAlgorithm extends ParticleAlgorithm {
             // With the rest probability, we translate
 
             // Pick a random direction using the correct weights
-            RandomSelector<ParticleGrid.Direction> selector = RandomSelector.weighted(particle.compass.getDirections(), direction -> {
-                double angle = angleDifference(directionToRadians(direction, particle.compass), particle.getDirection());
-                return Math.pow(this.getForwardBias(), normalizeDotProduct(Math.cos(angle)));
-            });
-
-            ParticleGrid.Direction randomDirection = selector.next(Utils.random);
+            int sampled = this.getTranslationSampler(particle.compass).sample(particle.getDirection(), Utils.getRandom());
+            ParticleGrid.Direction randomDirection = particle.compass.getDirection(sampled);
 
             // Run move validation
             if (!particle.isDirectionWithinBounds(randomDirection)) {
@@ -137,14 +136,27 @@ public class ContinuousAlignmentAlgorithm extends ParticleAlgorithm {
             }
 
             // Now make the move
-            try {
-                particle.move(randomDirection);
-                //particle.setDirection(particle.compass.shiftDirectionCounterclockwise(particle.getDirection(), 3));
-                //System.out.println("Moved.");
-            } catch (Exception ignored) {
+            particle.tryMove(randomDirection);
+            //particle.setDirection(particle.compass.shiftDirectionCounterclockwise(particle.getDirection(), 3));
+        }
+    }
+
+    private DirectionSamplers.HeadingSampler getTranslationSampler(ParticleGrid.Compass compass) {
+        // forwardBias^((cos + 1) / 2) is a von Mises weight with concentration log(forwardBias) / 2.
+        double concentration = Math.log(this.getForwardBias()) / 2;
 
+        DirectionSamplers.HeadingSampler sampler = this.translationSampler;
+        if (sampler == null || this.translationSamplerCompass != compass || sampler.getConcentration() != concentration) {
+            double[] angles = new double[compass.getDirectionCount()];
+            for (int i = 0; i < angles.length; i++) {
+                angles[i] = directionToRadians(compass.getDirection(i), compass);
             }
+
+            sampler = new DirectionSamplers.HeadingSampler(angles, concentration, POSSIBLE_ANGLES.size());
+            this.translationSamplerCompass = compass;
+            this.translationSampler = sampler;
         }
+        return sampler;
     }
 
     @Override
@@ -194,7 +206,7 @@ public class ContinuousAlignmentAlgorithm extends ParticleAlgorithm {
 
         for (Particle nbrAnonymous : particles) {
             ContinuousDirectedAmoebotParticle nbr = (ContinuousDirectedAmoebotParticle) nbrAnonymous;
-            sumDotProducts += normalizeDotProduct(Math.cos(nbr.compass.getAngleBetweenDirections(withDirection, discretize((AmoebotGrid.AmoebotCompass) nbr.compass, nbr.getDirection()))));
+            sumDotProducts += nbr.compass.getNormalizedDotProduct(withDirection.getOrdinal(), discretize((AmoebotGrid.AmoebotCompass) nbr.compass, nbr.getDirection()).getOrdinal());
         }
 
         return sumDotProducts;
@@ -225,15 +237,15 @@ public class ContinuousAlignmentAlgorithm extends ParticleAlgorithm {
     }
 
     public static ParticleGrid.Direction discretize(AmoebotGrid.AmoebotCompass c, double d) {
-        double val = d / (Math.PI * 2) * (c.getDirections().size() - 1);
-        return c.getDirections().get(Math.round((float) val));
+        double val = d / (Math.PI * 2) * (c.getDirectionCount() - 1);
+        return c.getDirection(Math.round((float) val));
     }
 
     private static double directionToRadians(ParticleGrid.Direction d, ParticleGrid.Compass c) {
         // Assumes that the first element in compass is the 0 angle.
         // For now, also assumes uniform angles.
-        double step = 360.0 / c.getDirections().size();
-        return step * c.getDirections().indexOf(d);
+        double step = 360.0 / c.getDirectionCount();
+        return step * d.getOrdinal();
     }
 
     private static double angleDifference(double a, double b) {
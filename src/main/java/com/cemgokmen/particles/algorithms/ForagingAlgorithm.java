@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.algorithms;
 
+import com.cemgokmen.particles.aggregates.DistanceFieldAggregate;
 import com.cemgokmen.particles.capabilities.MovementCapable;
 import com.cemgokmen.particles.capabilities.NeighborDetectionCapable;
 import com.cemgokmen.particles.capabilities.ParticleCapability;
@@ -25,20 +26,27 @@ import com.cemgokmen.particles.capabilities.UniformRandomDirectionCapable;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotKernels;
+import com.cemgokmen.particles.models.amoebot.soa.ArrayActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.FoodAmoebotParticle;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.ForagingAmoebotParticle;
+import com.cemgokmen.particles.util.PowerTable;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 
-import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.Map;
+import java.util.function.ToDoubleFunction;
 
-public class ForagingAlgorithm extends ParticleAlgorithm {
+public class ForagingAlgorithm extends ParticleAlgorithm implements ArrayActivatable {
     public static final List<Class<? extends ParticleCapability>> requiredCapabilities = ImmutableList.of(MovementCapable.class, UniformRandomDirectionCapable.class, NeighborDetectionCapable.class);
 
     public static final double DEFAULT_FED_LAMBDA = 4.0;
@@ -49,6 +57,10 @@ public class ForagingAlgorithm extends ParticleAlgorithm {
     public static final int DEFAULT_PARTICLE_MAXIMUM_FED_ACTIVATIONS = 500;
     public static final double DEFAULT_LAMBDA = 4.0;
 
+    public static final String FOOD_DISTANCE_AGGREGATE = "ForagingAlgorithm.foodDistance";
+
+    private static final PowerTable NO_BIAS = new PowerTable(1);
+
     protected final DoubleProperty fedLambda = new SimpleDoubleProperty();
     protected final DoubleProperty hungryLambda = new SimpleDoubleProperty();
 
@@ -56,7 +68,9 @@ public class ForagingAlgorithm extends ParticleAlgorithm {
     protected final IntegerProperty foodTokenLifetime = new SimpleIntegerProperty();
     protected final IntegerProperty particleMaximumFedActivations = new SimpleIntegerProperty();
     protected final DoubleProperty lambda = new SimpleDoubleProperty();
+    protected final BooleanProperty distanceAware = new SimpleBooleanProperty();
 
+    private volatile Parameters parameters;
 
     public ForagingAlgorithm(double fedLambda, double hungryLambda, int foodLifetime, int foodTokenLifetime, int particleMaximumFedActivations) {
         this.setFedLambda(fedLambda);
@@ -64,6 +78,10 @@ public class ForagingAlgorithm extends ParticleAlgorithm {
         this.setFoodLifetime(foodLifetime);
         this.setFoodTokenLifetime(foodTokenLifetime);
         this.setParticleMaximumFedActivations(particleMaximumFedActivations);
+
+        this.watchParameters(this.fedLambda, this.hungryLambda, this.foodLifetime, this.foodTokenLifetime,
+                this.particleMaximumFedActivations, this.distanceAware);
+        this.publishParameters();
     }
 
     public ForagingAlgorithm() {
@@ -130,76 +148,156 @@ public class ForagingAlgorithm extends ParticleAlgorithm {
         this.particleMaximumFedActivations.set(particleMaximumFedActivations);
     }
 
+    public boolean isDistanceAware() {
+        return this.distanceAware.get();
+    }
+
+    /**
+     * When set, foragers no longer wait for food tokens to find them at random. Instead every forager within token
+     * range of food, going by the hop distances kept in {@link #getFoodDistances}, is fed when it is activated.
+     */
+    public BooleanProperty distanceAwareProperty() {
+        return this.distanceAware;
+    }
+
+    public void setDistanceAware(boolean distanceAware) {
+        this.distanceAware.set(distanceAware);
+    }
+
+    /**
+     * Returns the hop distances from each forager to the nearest food through other foragers, registering them with
+     * the grid the first time they are asked for. From then on they are kept up to date as particles move and food
+     * comes and goes.
+     */
+    public static DistanceFieldAggregate getFoodDistances(ParticleGrid grid) {
+        return grid.getAggregates().getOrRegister(FOOD_DISTANCE_AGGREGATE, () -> new DistanceFieldAggregate(
+                p -> p instanceof FoodAmoebotParticle,
+                p -> p instanceof FoodAmoebotParticle || p instanceof ForagingAmoebotParticle));
+    }
+
     public double getCompressionBias(Particle p) {
+        return this.getCompressionBiasPowers(p).getBase();
+    }
+
+    private PowerTable getCompressionBiasPowers(Particle p) {
         if (p instanceof FoodAmoebotParticle) {
-            return 1;
+            return NO_BIAS;
         }
 
-        return ((ForagingAmoebotParticle) p).isFed() ? this.getFedLambda() : this.getHungryLambda();
+        Parameters parameters = this.parameters;
+        return ((ForagingAmoebotParticle) p).isFed() ? parameters.fedLambdaPowers : parameters.hungryLambdaPowers;
     }
 
     @Override
     public void onParticleActivation(Particle p) {
         if (p instanceof FoodAmoebotParticle) {
-            ((FoodAmoebotParticle) p).getNeighborParticles(false, particle -> particle instanceof ForagingAmoebotParticle).forEach(particle -> ((ForagingAmoebotParticle) particle).giveFoodToken(this.getFoodTokenLifetime(), this.getParticleMaximumFedActivations()));
-            ((FoodAmoebotParticle) p).decrementLifetime(this.getFoodLifetime());
+            this.activateFood((FoodAmoebotParticle) p);
+        } else if (p instanceof ForagingAmoebotParticle) {
+            this.activateForager((ForagingAmoebotParticle) p);
+        }
+    }
 
-            // Does p have neighbors?
-            //boolean pConnected = ((FoodAmoebotParticle) p).getNeighborParticles(false, x -> !(x instanceof FoodAmoebotParticle)).size() > 0;
+    @Override
+    protected ActivationHandler createActivationHandler(Class<? extends Particle> particleClass) {
+        if (FoodAmoebotParticle.class.isAssignableFrom(particleClass)) {
+            return p -> this.activateFood((FoodAmoebotParticle) p);
+        } else if (ForagingAmoebotParticle.class.isAssignableFrom(particleClass)) {
+            return p -> this.activateForager((ForagingAmoebotParticle) p);
+        }
+        return p -> {};
+    }
 
-            // Message passing hack right here. First, clear everyone.
-            /*ParticleGrid g = p.getGrid();
-            if (pConnected)
-                g.getAllParticles().filter(x -> x instanceof ForagingAmoebotParticle).forEach(x -> ((ForagingAmoebotParticle) x).giveFoodToken(this.getFoodTokenLifetime(), this.getParticleMaximumFedActivations()));
-            else
-                g.getAllParticles().filter(x -> x instanceof ForagingAmoebotParticle).forEach(x -> ((ForagingAmoebotParticle) x).giveFoodToken(0, 0));*/
+    private void activateFood(FoodAmoebotParticle p) {
+        Parameters parameters = this.parameters;
+        ParticleGrid grid = p.getGrid();
+        long fedActivations = toGridActivations(parameters.particleMaximumFedActivations, grid);
+        if (!parameters.distanceAware) {
+            p.getNeighborParticles(false, particle -> particle instanceof ForagingAmoebotParticle).forEach(particle -> ((ForagingAmoebotParticle) particle).giveFoodToken(parameters.foodTokenLifetime, fedActivations));
+        }
+        p.startLifetime(toGridActivations(parameters.foodLifetime, grid));
 
-            // Then, force the message onto everyone important.
-            // TODO: Maybe do a search here?
-        } else if (p instanceof ForagingAmoebotParticle) {
-            // Do the feeding first
-            ForagingAmoebotParticle particle = (ForagingAmoebotParticle) p;
-
-            /*if (particle.getNeighborParticles(false, particle1 -> particle1 instanceof FoodAmoebotParticle).size() > 0) particle.feed();
-            else particle.decrementFedActivations();*/
-
-            if (particle.hasFoodToken()) {
-                // Pass it on
-                int token = particle.getFoodToken();
-                --token;
-                if (token > 0) {
-                    ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
-                    ForagingAmoebotParticle nbr = (ForagingAmoebotParticle) particle.getNeighborInDirection(randomDirection, 0, particle1 -> particle1 instanceof ForagingAmoebotParticle);
-                    if (nbr != null) {
-                        nbr.giveFoodToken(token, this.getParticleMaximumFedActivations());
-                    }
-                }
-            }
+        // Does p have neighbors?
+        //boolean pConnected = p.getNeighborParticles(false, x -> !(x instanceof FoodAmoebotParticle)).size() > 0;
+
+        // Message passing hack right here. First, clear everyone.
+        /*ParticleGrid g = p.getGrid();
+        if (pConnected)
+            g.getAllParticles().filter(x -> x instanceof ForagingAmoebotParticle).forEach(x -> ((ForagingAmoebotParticle) x).giveFoodToken(this.getFoodTokenLifetime(), this.getParticleMaximumFedActivations()));
+        else
+            g.getAllParticles().filter(x -> x instanceof ForagingAmoebotParticle).forEach(x -> ((ForagingAmoebotParticle) x).giveFoodToken(0, 0));*/
 
-            particle.incrementLastFedActivationsAgo();
-            particle.decrementFedActivations();
+        // Then, force the message onto everyone important.
+        // TODO: Maybe do a search here?
+    }
 
-            // TODO: CALL COMPRESSION'S METHOD
-            // Pick a random direction
-            ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
+    private void activateForager(ForagingAmoebotParticle particle) {
+        // Do the feeding first
 
-            // Run move validation
-            if (!this.isMoveValid(particle, randomDirection)) {
-                return;
-            }
+        /*if (particle.getNeighborParticles(false, particle1 -> particle1 instanceof FoodAmoebotParticle).size() > 0) particle.feed();
+        else particle.decrementFedActivations();*/
 
-            double moveProbability = this.getMoveProbability(particle, randomDirection);
-            if (Utils.randomDouble() > moveProbability) {
-                return;
+        if (this.parameters.distanceAware) {
+            // A token would have reached us if we are within its number of hops from food
+            // Topping up on every activation would count each activation near food as a feeding, so only feed
+            // foragers that would otherwise go hungry before their next activation, on average
+            ParticleGrid grid = particle.getGrid();
+            if ((!particle.isFed() || particle.getFedActivations() < toGridActivations(1, grid)) &&
+                    getFoodDistances(grid).getDistance(particle) <= this.parameters.foodTokenLifetime) {
+                particle.feed(toGridActivations(this.parameters.particleMaximumFedActivations, grid));
+            }
+        } else if (particle.hasFoodToken()) {
+            // Pass it on
+            int token = particle.getFoodToken();
+            --token;
+            if (token > 0) {
+                ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
+                ForagingAmoebotParticle nbr = (ForagingAmoebotParticle) particle.getNeighborInDirection(randomDirection, 0, particle1 -> particle1 instanceof ForagingAmoebotParticle);
+                if (nbr != null) {
+                    nbr.giveFoodToken(token, toGridActivations(this.parameters.particleMaximumFedActivations, particle.getGrid()));
+                }
             }
+        }
 
-            // Now make the move
-            try {
-                particle.move(randomDirection);
-            } catch (Exception ignored) {
+        // TODO: CALL COMPRESSION'S METHOD
+        // Pick a random direction
+        ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
 
-            }
+        // Run move validation
+        if (!this.isMoveValid(particle, randomDirection)) {
+            return;
         }
+
+        double moveProbability = this.getMoveProbability(particle, randomDirection);
+        if (Utils.randomDouble() > moveProbability) {
+            return;
+        }
+
+        // Now make the move
+        particle.tryMove(randomDirection);
+    }
+
+    /**
+     * Lifetimes are given in activations of the particle itself, which on average is the particle count times as
+     * many activations of the grid.
+     */
+    private static long toGridActivations(int particleActivations, ParticleGrid grid) {
+        return (long) particleActivations * grid.getParticleCount();
+    }
+
+    private static long toParticleActivations(long gridActivations, ParticleGrid grid) {
+        return gridActivations / Math.max(grid.getParticleCount(), 1);
+    }
+
+    @Override
+    public boolean supportsArrayActivation() {
+        return !this.isDistanceAware();
+    }
+
+    @Override
+    public void onArrayActivation(AmoebotStateArrays state, int i, Random random) {
+        Parameters parameters = this.parameters;
+        AmoebotKernels.foraging(state, i, parameters.fedLambdaPowers, parameters.hungryLambdaPowers, parameters.foodLifetime,
+                parameters.foodTokenLifetime, parameters.particleMaximumFedActivations, random);
     }
 
     @Override
@@ -229,17 +327,32 @@ public class ForagingAlgorithm extends ParticleAlgorithm {
     public Map<String, String> getInformation(ParticleGrid g) {
         Map<String, String> info = super.getInformation(g);
 
-        int longestWaiting = g.getAllParticles()
+        // Waits grow without the particles changing, so there is nothing for an aggregate to be told about
+        long longestWaiting = g.getAllParticles()
                 .filter(p -> p instanceof ForagingAmoebotParticle)
-                .map(p -> ((ForagingAmoebotParticle) p).getLongestLastFedActivationsAgo())
-                .max(Comparator.comparing(Integer::valueOf))
-                .get();
-
-        info.put("Longest un-fed wait so far", longestWaiting + "");
+                .mapToLong(p -> ((ForagingAmoebotParticle) p).getLongestWait())
+                .max().orElse(0);
+
+        // Reported in activations of the particle, like the lifetimes
+        info.put("Longest un-fed wait so far", toParticleActivations(longestWaiting, g) + "");
+
+        DistanceFieldAggregate foodDistances = g.getAggregates().get(FOOD_DISTANCE_AGGREGATE);
+        if (foodDistances != null) {
+            int foodTokenLifetime = this.getFoodTokenLifetime();
+            long inReach = g.getAllParticles()
+                    .filter(p -> p instanceof ForagingAmoebotParticle && foodDistances.getDistance(p) <= foodTokenLifetime)
+                    .count();
+            info.put("Foragers within token range of food", inReach + "");
+        }
         return info;
     }
 
 
+    @Override
+    public ToDoubleFunction<ParticleGrid> getSteadyStateObservable() {
+        return Observables::perimeter;
+    }
+
     @Override
     public boolean isGridValid(ParticleGrid grid) {
         return RuleUtils.checkParticleConnection(grid, particle -> true) && RuleUtils.checkParticleHoles(grid, particle -> true);
@@ -249,6 +362,33 @@ public class ForagingAlgorithm extends ParticleAlgorithm {
         int currentNeighbors = p.getNeighborParticles(false, null).size();
         int futureNeighbors = p.getAdjacentPositionNeighborParticles(inDirection, false, particle -> particle
                 != p).size();
-        return Math.pow(this.getCompressionBias(p), futureNeighbors - currentNeighbors);
+        return this.getCompressionBiasPowers(p).get(futureNeighbors - currentNeighbors);
+    }
+
+    @Override
+    protected void compileParameters() {
+        this.parameters = new Parameters(this.getFedLambda(), this.getHungryLambda(), this.getFoodLifetime(),
+                this.getFoodTokenLifetime(), this.getParticleMaximumFedActivations(), this.isDistanceAware());
+    }
+
+    /**
+     * The parameters as of the last activation batch boundary.
+     */
+    private static final class Parameters {
+        private final PowerTable fedLambdaPowers;
+        private final PowerTable hungryLambdaPowers;
+        private final int foodLifetime;
+        private final int foodTokenLifetime;
+        private final int particleMaximumFedActivations;
+        private final boolean distanceAware;
+
+        private Parameters(double fedLambda, double hungryLambda, int foodLifetime, int foodTokenLifetime, int particleMaximumFedActivations, boolean distanceAware) {
+            this.fedLambdaPowers = new PowerTable(fedLambda);
+            this.hungryLambdaPowers = new PowerTable(hungryLambda);
+            this.foodLifetime = foodLifetime;
+            this.foodTokenLifetime = foodTokenLifetime;
+            this.particleMaximumFedActivations = particleMaximumFedActivations;
+            this.distanceAware = distanceAware;
+        }
     }
 }
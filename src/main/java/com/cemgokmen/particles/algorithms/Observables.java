@@ -0,0 +1,111 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.algorithms;
+
+import com.cemgokmen.particles.capabilities.SpinCapable;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotBitboard;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+
+import java.util.Iterator;
+
+/**
+ * Whole-system quantities that the algorithms drive towards an equilibrium, used to tell when a run has settled.
+ * Each is a single pass over the particles, and on amoebot lattices the edge counts come from bitboards.
+ */
+public class Observables {
+    private static boolean supportsBitboards(ParticleGrid grid) {
+        return grid instanceof AmoebotGrid && AmoebotBitboard.supports((AmoebotGrid) grid);
+    }
+
+    /**
+     * Counts the lattice edges between neighboring amoebot particles.
+     */
+    public static double edges(ParticleGrid grid) {
+        if (supportsBitboards(grid)) return AmoebotBitboard.fromGrid((AmoebotGrid) grid).countEdges();
+
+        int degrees = 0;
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            if (p instanceof AmoebotParticle) {
+                degrees += ((AmoebotParticle) p).getNeighborParticles(false, null).size();
+            }
+        }
+        return degrees / 2.0;
+    }
+
+    /**
+     * The perimeter of a connected, hole-free system on the triangular lattice, which is 3n - e - 3 for n particles
+     * and e edges.
+     */
+    public static double perimeter(ParticleGrid grid) {
+        return 3 * grid.getParticleCount() - edges(grid) - 3;
+    }
+
+    /**
+     * Counts the edges between separable particles of different classes.
+     */
+    public static double heterogeneousEdges(ParticleGrid grid) {
+        if (supportsBitboards(grid)) return AmoebotBitboard.fromGrid((AmoebotGrid) grid).countHeterogeneousEdges();
+
+        int count = 0;
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            if (!(p instanceof SeparableAmoebotParticle)) continue;
+
+            int classNumber = ((SeparableAmoebotParticle) p).getClassNumber();
+            count += ((SeparableAmoebotParticle) p).getNeighborParticles(false, n ->
+                    n instanceof SeparableAmoebotParticle && ((SeparableAmoebotParticle) n).getClassNumber() != classNumber).size();
+        }
+        return count / 2.0;
+    }
+
+    /**
+     * The length of the mean heading of the directed particles, from 0 for no net heading to 1 when they all agree.
+     * Continuous particles are counted by their angle.
+     */
+    public static double polarization(ParticleGrid grid) {
+        ParticleGrid.Compass compass = grid.getCompass();
+        double step = compass.hasDiscreteDirections() ? 2 * Math.PI / compass.getDirectionCount() : 0;
+
+        double x = 0, y = 0;
+        int n = 0;
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            if (!(p instanceof SpinCapable)) continue;
+
+            ParticleGrid.Direction direction = ((SpinCapable) p).getDirection();
+            double angle = direction instanceof ContinuousParticleGrid.ContinuousDirection
+                    ? ((ContinuousParticleGrid.ContinuousDirection) direction).getCCWAngleFromXAxis()
+                    : direction.getOrdinal() * step;
+            x += Math.cos(angle);
+            y += Math.sin(angle);
+            n++;
+        }
+        return n == 0 ? 0 : Math.hypot(x, y) / n;
+    }
+}
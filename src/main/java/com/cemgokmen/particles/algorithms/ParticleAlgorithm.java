@@ -18,17 +18,24 @@
 
 package com.cemgokmen.particles.algorithms;
 
+import com.cemgokmen.particles.capabilities.Capabilities;
 import com.cemgokmen.particles.capabilities.ParticleCapability;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import javafx.beans.value.ObservableValue;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
 
 public abstract class ParticleAlgorithm {
     public static final List<Class<? extends ParticleAlgorithm>> IMPLEMENTATIONS = ImmutableList.of(
@@ -40,10 +47,100 @@ public abstract class ParticleAlgorithm {
             //BobBotAlignmentAlgorithm.class
             );
 
+    private static final ClassValue<Optional<ParticleAlgorithm>> PROTOTYPES = new ClassValue<Optional<ParticleAlgorithm>>() {
+        @Override
+        protected Optional<ParticleAlgorithm> computeValue(Class<?> type) {
+            try {
+                return Optional.of((ParticleAlgorithm) Utils.getZeroParameterPublicConstructor(type).newInstance());
+            } catch (Exception e) {
+                return Optional.empty();
+            }
+        }
+    };
+
+    private volatile Long requiredCapabilityMask;
+    private volatile boolean parametersChanged = true;
+    private final Map<Class<? extends Particle>, ActivationHandler> activationHandlers = new ConcurrentHashMap<>();
+
     public abstract void onParticleActivation(Particle p);
 
+    /**
+     * Marks the parameter snapshot as stale whenever one of the given properties changes. Algorithms call this from
+     * their constructors with every property their activations read.
+     */
+    protected void watchParameters(ObservableValue<?>... properties) {
+        for (ObservableValue<?> property : properties) {
+            property.addListener((observable, oldValue, newValue) -> this.parametersChanged = true);
+        }
+    }
+
+    /**
+     * Publishes a new parameter snapshot if a watched property changed since the last one. Grids call this at
+     * activation batch boundaries, so edits made from the UI or a sweep while a simulation runs take effect at the
+     * next batch and never halfway through an activation.
+     */
+    public void publishParameters() {
+        if (this.parametersChanged) {
+            // Clear first, so that an edit racing with compilation is picked up at the next boundary.
+            this.parametersChanged = false;
+            this.compileParameters();
+        }
+    }
+
+    /**
+     * Reads the properties into the immutable snapshot that activations use, rebuilding any derived tables, and
+     * publishes it through a volatile field. Algorithms without parameters need not override this.
+     */
+    protected void compileParameters() {
+    }
+
     public boolean isParticleAllowed(Particle p) {
-        return this.getRequiredCapabilities().stream().allMatch(req -> req.isInstance(p));
+        return this.isParticleClassAllowed(p.getClass());
+    }
+
+    public boolean isParticleClassAllowed(Class<? extends Particle> particleClass) {
+        long required = this.getRequiredCapabilityMask();
+        if ((required & Capabilities.UNKNOWN) != 0) {
+            return this.getRequiredCapabilities().stream().allMatch(req -> req.isAssignableFrom(particleClass));
+        }
+        return Capabilities.hasAll(particleClass, required);
+    }
+
+    /**
+     * The required capabilities as a {@link Capabilities} mask. Required capability lists are constants, so this is
+     * only computed once.
+     */
+    public long getRequiredCapabilityMask() {
+        Long mask = this.requiredCapabilityMask;
+        if (mask == null) {
+            mask = Capabilities.getMask(this.getRequiredCapabilities());
+            this.requiredCapabilityMask = mask;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the handler that activates particles of the given class, binding it on first use.
+     */
+    public ActivationHandler getActivationHandler(Class<? extends Particle> particleClass) {
+        return this.activationHandlers.computeIfAbsent(particleClass, this::createActivationHandler);
+    }
+
+    /**
+     * Builds the handler for particles of the given class. Algorithms override this to hand out code written against
+     * the concrete particle type, which keeps type tests and megamorphic interface calls off the activation path.
+     */
+    protected ActivationHandler createActivationHandler(Class<? extends Particle> particleClass) {
+        return this::onParticleActivation;
+    }
+
+    /**
+     * Whether every one of the given particle classes can run the given algorithm. The check runs against a
+     * prototype instance that is created once per algorithm class.
+     */
+    public static boolean isCompatible(Class<? extends ParticleAlgorithm> algorithmClass, Collection<Class<? extends Particle>> particleClasses) {
+        Optional<ParticleAlgorithm> prototype = PROTOTYPES.get(algorithmClass);
+        return prototype.isPresent() && particleClasses.stream().allMatch(prototype.get()::isParticleClassAllowed);
     }
 
     public abstract List<Class<? extends ParticleCapability>> getRequiredCapabilities();
@@ -53,4 +150,12 @@ public abstract class ParticleAlgorithm {
     public Map<String, String> getInformation(ParticleGrid g) {
         return new HashMap<>();
     }
+
+    /**
+     * Returns the quantity this algorithm drives towards equilibrium, for telling when a run has settled, or null if
+     * there is none.
+     */
+    public ToDoubleFunction<ParticleGrid> getSteadyStateObservable() {
+        return null;
+    }
 }
@@ -20,7 +20,9 @@ package com.cemgokmen.particles.algorithms;
 
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotBitboard;
 import com.google.common.collect.Sets;
 import org.la4j.Vector;
 
@@ -109,7 +111,21 @@ public class RuleUtils {
         return false;
     }
 
+    /**
+     * Returns bitboards for the grid if its lattice supports them, so that whole-grid checks need not go through the
+     * positions one by one.
+     */
+    private static AmoebotBitboard getBitboard(ParticleGrid grid) {
+        if (grid instanceof AmoebotGrid && AmoebotBitboard.supports((AmoebotGrid) grid)) {
+            return AmoebotBitboard.fromGrid((AmoebotGrid) grid);
+        }
+        return null;
+    }
+
     protected static boolean checkParticleConnection(ParticleGrid grid, Predicate<Particle> filter) {
+        AmoebotBitboard bitboard = getBitboard(grid);
+        if (bitboard != null) return bitboard.isOccupancyConnected();
+
         return checkConnected(grid, position -> {
             boolean a = grid.isPositionValid(position, null);
             boolean b = grid.isPositionOccupied(position);
@@ -118,6 +134,9 @@ public class RuleUtils {
     }
 
     protected static boolean checkParticleHoles(ParticleGrid grid, Predicate<Particle> filter) {
+        AmoebotBitboard bitboard = getBitboard(grid);
+        if (bitboard != null) return bitboard.isHoleFree();
+
         return checkConnected(grid, position -> {
             boolean a = grid.isPositionValid(position, null);
             boolean b = !grid.isPositionOccupied(position);
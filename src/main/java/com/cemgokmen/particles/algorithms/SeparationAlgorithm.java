@@ -22,7 +22,14 @@ import com.cemgokmen.particles.capabilities.*;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotKernels;
+import com.cemgokmen.particles.models.amoebot.soa.ArrayActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays;
+import com.cemgokmen.particles.models.amoebot.soa.MultispinActivatable;
+import com.cemgokmen.particles.models.amoebot.soa.MultispinEngine;
+import com.cemgokmen.particles.models.amoebot.soa.MultispinKernels;
 import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import com.cemgokmen.particles.util.PowerTable;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
 import javafx.beans.property.BooleanProperty;
@@ -31,9 +38,12 @@ import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 
 import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
-public class SeparationAlgorithm extends ParticleAlgorithm {
+public class SeparationAlgorithm extends ParticleAlgorithm implements ArrayActivatable, MultispinActivatable {
     public static final List<Class<? extends ParticleCapability>> requiredCapabilities = ImmutableList.of(
             MovementCapable.class, NeighborDetectionCapable.class, UniformRandomDirectionCapable.class, SwapMovementCapable.class);
 
@@ -47,12 +57,17 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
     protected final BooleanProperty nonSwapsAllowed = new SimpleBooleanProperty();
     protected final DoubleProperty lambda = new SimpleDoubleProperty();
 
+    private volatile Parameters parameters;
+
     public SeparationAlgorithm(double lambda, double alpha, boolean swapsAllowed, boolean nonSwapsAllowed) {
         this.setLambda(lambda);
         this.setAlpha(alpha);
 
         this.setSwapsAllowed(swapsAllowed);
         this.setNonSwapsAllowed(nonSwapsAllowed);
+
+        this.watchParameters(this.lambda, this.alpha, this.swapsAllowed, this.nonSwapsAllowed);
+        this.publishParameters();
     }
 
     public SeparationAlgorithm() {
@@ -110,6 +125,7 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
     @Override
     public void onParticleActivation(Particle p) {
         AmoebotParticle particle = (AmoebotParticle) p;
+        Parameters parameters = this.parameters;
 
         // Pick a random direction
         ParticleGrid.Direction randomDirection = particle.getUniformRandomDirection();
@@ -117,7 +133,7 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
         //System.out.println("Time for move validation");
 
         // Run move validation
-        if (!RuleUtils.isMoveValidCompressionMove(particle, randomDirection, this.isSwapsAllowed(), this.isNonSwapsAllowed())) {
+        if (!RuleUtils.isMoveValidCompressionMove(particle, randomDirection, parameters.swapsAllowed, parameters.nonSwapsAllowed)) {
             //System.out.println("Invalid move, returning");
             return;
         }
@@ -133,10 +149,22 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
         }
 
         // Now make the move
-        if (this.isSwapsAllowed())
-            particle.swapMove(randomDirection);
+        if (parameters.swapsAllowed)
+            particle.trySwapMove(randomDirection);
         else
-            particle.move(randomDirection);
+            particle.tryMove(randomDirection);
+    }
+
+    @Override
+    public void onArrayActivation(AmoebotStateArrays state, int i, Random random) {
+        Parameters parameters = this.parameters;
+        AmoebotKernels.separation(state, i, parameters.lambdaPowers, parameters.alphaPowers, parameters.swapsAllowed, parameters.nonSwapsAllowed, random);
+    }
+
+    @Override
+    public void onMultispinActivation(MultispinEngine engine, int site, SplittableRandom random) {
+        Parameters parameters = this.parameters;
+        MultispinKernels.separation(engine, site, parameters.lambdaPowers, parameters.alphaPowers, parameters.swapsAllowed, parameters.nonSwapsAllowed, random);
     }
 
     @Override
@@ -144,6 +172,11 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
         return requiredCapabilities;
     }
 
+    @Override
+    public ToDoubleFunction<ParticleGrid> getSteadyStateObservable() {
+        return Observables::heterogeneousEdges;
+    }
+
     @Override
     public boolean isGridValid(ParticleGrid grid) {
         return RuleUtils.checkParticleConnection(grid, particle -> true) && RuleUtils.checkParticleHoles(grid, particle -> true);
@@ -165,6 +198,7 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
     }
 
     public double getMoveProbability(AmoebotParticle p, ParticleGrid.Direction inDirection) {
+        Parameters parameters = this.parameters;
         ClassNumberPredicate filter = new ClassNumberPredicate(p);
 
         Particle nbr = p.getNeighborInDirection(inDirection, 0, null);
@@ -177,8 +211,8 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
             int futureNeighbors = p.getAdjacentPositionNeighborParticles(inDirection, false, particle -> particle
                     != p).size();
 
-            return Math.pow(this.getAlpha(), futureHomogeneousNeighbors - currentHomogeneousNeighbors) * // Separation
-                    Math.pow(this.getLambda(), futureNeighbors - currentNeighbors); // Compression
+            return parameters.alphaPowers.get(futureHomogeneousNeighbors - currentHomogeneousNeighbors) * // Separation
+                    parameters.lambdaPowers.get(futureNeighbors - currentNeighbors); // Compression
         } else {
             // This is a swap move
             ClassNumberPredicate nbrFilter = new ClassNumberPredicate(nbr);
@@ -191,8 +225,30 @@ public class SeparationAlgorithm extends ParticleAlgorithm {
             int nbrFutureHomogeneousNeighbors = p.getNeighborParticles(false, nbrFilter).size();
             nbrFutureHomogeneousNeighbors += (nbrFilter.test(p)) ? 1 : 0; // Consider p too since we swap with it
 
-            return Math.pow(this.getAlpha(), futureHomogeneousNeighbors - currentHomogeneousNeighbors) * // For this particle
-                    Math.pow(this.getAlpha(), nbrFutureHomogeneousNeighbors - nbrCurrentHomogeneousNeighbors); // For the swapped particle
+            return parameters.alphaPowers.get(futureHomogeneousNeighbors - currentHomogeneousNeighbors) * // For this particle
+                    parameters.alphaPowers.get(nbrFutureHomogeneousNeighbors - nbrCurrentHomogeneousNeighbors); // For the swapped particle
+        }
+    }
+
+    @Override
+    protected void compileParameters() {
+        this.parameters = new Parameters(this.getLambda(), this.getAlpha(), this.isSwapsAllowed(), this.isNonSwapsAllowed());
+    }
+
+    /**
+     * The parameters as of the last activation batch boundary.
+     */
+    private static final class Parameters {
+        private final PowerTable lambdaPowers;
+        private final PowerTable alphaPowers;
+        private final boolean swapsAllowed;
+        private final boolean nonSwapsAllowed;
+
+        private Parameters(double lambda, double alpha, boolean swapsAllowed, boolean nonSwapsAllowed) {
+            this.lambdaPowers = new PowerTable(lambda);
+            this.alphaPowers = new PowerTable(alpha);
+            this.swapsAllowed = swapsAllowed;
+            this.nonSwapsAllowed = nonSwapsAllowed;
         }
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.capabilities;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Capability sets as bitsets. Each known capability gets a bit, and the set of capabilities a particle class
+ * implements is computed once per class, so that checking whether a particle can run an algorithm is a mask test
+ * instead of a round of isInstance calls.
+ */
+public final class Capabilities {
+    public static final List<Class<? extends ParticleCapability>> KNOWN = ImmutableList.of(
+            MovementCapable.class,
+            SwapMovementCapable.class,
+            NeighborDetectionCapable.class,
+            DirectedNeighborDetectionCapable.class,
+            SpinCapable.class,
+            UniformRandomDirectionCapable.class,
+            WrappedNormalRandomDirectionCapable.class);
+
+    /**
+     * The mask of a capability that is not in KNOWN. Masks containing it can not be answered from the bitsets.
+     */
+    public static final long UNKNOWN = 1L << 63;
+
+    private static final ClassValue<Long> CLASS_MASKS = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long mask = 0;
+            for (int i = 0; i < KNOWN.size(); i++) {
+                if (KNOWN.get(i).isAssignableFrom(type)) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        }
+    };
+
+    private Capabilities() {
+    }
+
+    public static long getMask(Class<? extends ParticleCapability> capability) {
+        int index = KNOWN.indexOf(capability);
+        return index == -1 ? UNKNOWN : 1L << index;
+    }
+
+    public static long getMask(List<Class<? extends ParticleCapability>> capabilities) {
+        long mask = 0;
+        for (Class<? extends ParticleCapability> capability : capabilities) {
+            mask |= getMask(capability);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the capabilities implemented by the given class.
+     */
+    public static long getClassMask(Class<?> type) {
+        return CLASS_MASKS.get(type);
+    }
+
+    public static boolean hasAll(Class<?> type, long required) {
+        return (getClassMask(type) & required) == required;
+    }
+}
@@ -22,5 +22,10 @@ import com.cemgokmen.particles.models.ParticleGrid;
 
 public interface MovementCapable extends ParticleCapability {
     void move(ParticleGrid.Direction d);
+
+    /**
+     * Same as move, but returns a {@link com.cemgokmen.particles.models.MoveStatus} code instead of throwing.
+     */
+    int tryMove(ParticleGrid.Direction d);
     boolean isDirectionWithinBounds(ParticleGrid.Direction d);
 }
@@ -22,4 +22,9 @@ import com.cemgokmen.particles.models.ParticleGrid;
 
 public interface SwapMovementCapable extends ParticleCapability {
     void swapMove(ParticleGrid.Direction d);
+
+    /**
+     * Same as swapMove, but returns a {@link com.cemgokmen.particles.models.MoveStatus} code instead of throwing.
+     */
+    int trySwapMove(ParticleGrid.Direction d);
 }
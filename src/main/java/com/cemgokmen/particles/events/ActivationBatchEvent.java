@@ -0,0 +1,48 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.cemgokmen.particles.ActivationBatch")
+@Label("Activation Batch")
+@Description("A chunk of particle activations run by ParticleGrid.runActivations")
+public class ActivationBatchEvent extends ParticleGridEvent {
+    @Label("Activations")
+    public int activations;
+
+    @Label("Moves Made")
+    public int moves;
+
+    @Label("Accept Rate")
+    @Description("Fraction of the activations in this batch that resulted in a move")
+    public double acceptRate;
+
+    @Label("Activations Before")
+    public long activationsBefore;
+
+    public void setCounts(int activations, int moves, long activationsBefore) {
+        this.activations = activations;
+        this.moves = moves;
+        this.acceptRate = activations > 0 ? (double) moves / activations : 0;
+        this.activationsBefore = activationsBefore;
+    }
+}
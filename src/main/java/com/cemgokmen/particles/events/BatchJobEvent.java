@@ -0,0 +1,46 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.cemgokmen.particles.BatchJob")
+@Label("Batch Job")
+@Description("A job run by the headless job server, from acquiring its memory budget to its last stopping point")
+public class BatchJobEvent extends ParticleGridEvent {
+    @Label("Job")
+    public String jobName;
+
+    @Label("Memory Budget")
+    @DataAmount
+    public long memoryBudget;
+
+    @Label("Stopping Points")
+    public int stoppingPoints;
+
+    @Label("Activations Run")
+    public long activationsRun;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,38 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.cemgokmen.particles.FrameRender")
+@Label("Frame Render")
+@Description("Drawing a grid onto a raster image, a PDF or a PDF page")
+public class FrameRenderEvent extends ParticleGridEvent {
+    @Label("Format")
+    public String format;
+
+    @Label("Size")
+    @Description("Size of the drawing surface in pixels or points")
+    public int size;
+
+    @Label("Activations Run")
+    public long activationsRun;
+}
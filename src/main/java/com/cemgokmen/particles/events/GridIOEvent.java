@@ -0,0 +1,41 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.cemgokmen.particles.GridIO")
+@Label("Grid I/O")
+@Description("Loading a grid from a system file or writing a checkpoint of one")
+public class GridIOEvent extends ParticleGridEvent {
+    public static final String LOAD = "load";
+    public static final String CHECKPOINT = "checkpoint";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Particle Type")
+    public String particleType;
+
+    public GridIOEvent(String operation) {
+        this.operation = operation;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.events;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.ParticleGrid;
+import javafx.beans.value.ObservableValue;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ParticleEvents {
+    private static final String PROPERTY_SUFFIX = "Property";
+
+    // PropertyUtils binds wrappers to every property it touches, which is fine for the UI but would leak listeners
+    // if we went through it for every event. We only need the values, so cache the property getters per class.
+    private static final ClassValue<List<Method>> PROPERTY_GETTERS = new ClassValue<List<Method>>() {
+        @Override
+        protected List<Method> computeValue(Class<?> type) {
+            List<Method> getters = new ArrayList<>();
+            for (Method m : type.getMethods()) {
+                if (m.getName().endsWith(PROPERTY_SUFFIX) && m.getParameterCount() == 0 &&
+                        !Modifier.isStatic(m.getModifiers()) &&
+                        ObservableValue.class.isAssignableFrom(m.getReturnType())) {
+                    getters.add(m);
+                }
+            }
+            getters.sort(Comparator.comparing(Method::getName));
+            return getters;
+        }
+    };
+
+    public static String describeAlgorithms(ParticleGrid grid) {
+        return grid.getRunningAlgorithms()
+                .map(algorithm -> algorithm.getClass().getSimpleName())
+                .collect(Collectors.joining(", "));
+    }
+
+    public static String describeAlgorithmParameters(ParticleGrid grid) {
+        return grid.getRunningAlgorithms()
+                .map(ParticleEvents::describeParameters)
+                .collect(Collectors.joining("; "));
+    }
+
+    public static String describeParameters(ParticleAlgorithm algorithm) {
+        StringBuilder sb = new StringBuilder();
+        for (Method getter : PROPERTY_GETTERS.get(algorithm.getClass())) {
+            String name = getter.getName();
+            name = name.substring(0, name.length() - PROPERTY_SUFFIX.length());
+
+            Object value;
+            try {
+                value = ((ObservableValue<?>) getter.invoke(algorithm)).getValue();
+            } catch (Exception e) {
+                continue;
+            }
+
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(name).append('=').append(value);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.events;
+
+import com.cemgokmen.particles.models.ParticleGrid;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class for the flight recorder events emitted by the simulator. Every event carries the grid it was recorded
+ * on and the algorithms running there, so that a recording can be sliced by system and parameters.
+ *
+ * The descriptive fields are only filled in once we know the event is going to be committed, so an event that is
+ * disabled or below its threshold costs a couple of timestamps.
+ */
+@Category("Particles")
+@StackTrace(false)
+public abstract class ParticleGridEvent extends Event {
+    @Label("Grid Type")
+    protected String gridType;
+
+    @Label("Particle Count")
+    protected int particleCount;
+
+    @Label("Algorithms")
+    protected String algorithms;
+
+    @Label("Algorithm Parameters")
+    protected String algorithmParameters;
+
+    public void setGrid(ParticleGrid grid) {
+        if (grid == null) return;
+
+        this.gridType = grid.getClass().getSimpleName();
+        this.particleCount = grid.getParticleCount();
+        this.algorithms = ParticleEvents.describeAlgorithms(grid);
+        this.algorithmParameters = ParticleEvents.describeAlgorithmParameters(grid);
+    }
+}
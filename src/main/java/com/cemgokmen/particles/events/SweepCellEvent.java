@@ -0,0 +1,43 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.cemgokmen.particles.SweepCell")
+@Label("Sweep Cell")
+@Description("A single property value of a parameter sweep, from grid creation to its last stopping point")
+public class SweepCellEvent extends ParticleGridEvent {
+    @Label("Property")
+    public String propertyName;
+
+    @Label("Value")
+    public String propertyValue;
+
+    @Label("Stopping Points")
+    public int stoppingPoints;
+
+    @Label("Activations Run")
+    public long activationsRun;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
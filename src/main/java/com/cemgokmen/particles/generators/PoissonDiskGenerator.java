@@ -0,0 +1,508 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.generators;
+
+import com.cemgokmen.particles.models.continuous.ContinuousParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+import com.cemgokmen.particles.models.continuous.boundary.ContinuousParticleGridBoundary;
+import com.cemgokmen.particles.util.Utils;
+import org.la4j.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Places continuous particles without overlaps using Bridson's Poisson-disk sampling, instead of throwing darts at
+ * random positions until one is free. Points are grown outwards from the ones already placed, looking only at
+ * nearby points through a grid of cells, so placing N particles takes expected O(N) time.
+ *
+ * When there is room to spare, a full Poisson-disk set is sampled at the spacing that gives a little more than N
+ * points, and N of them are picked at random, which spreads the particles over the whole boundary. Close to the
+ * packing limit the particles are instead placed one by one at their own radii. Past what that reaches,
+ * {@link #addJammedParticles} places shrunken particles and then inflates them back while pushing overlaps apart.
+ */
+public class PoissonDiskGenerator {
+    public static final int CANDIDATES_PER_POINT = 30;
+
+    // A maximal Poisson-disk set with spacing d holds about 0.7 / d^2 points per unit area, aim a little lower
+    private static final double SPACING_DENSITY = 0.6;
+    private static final int SEED_ATTEMPTS = 10000;
+
+    private static final double INFLATION_RATE = 1.01;
+    private static final int RELAXATION_ITERATIONS = 20000;
+    private static final double OVERLAP_TOLERANCE = 1e-2;
+
+    /**
+     * Adds the given particles to a continuous grid at non-overlapping positions, throwing if they do not fit.
+     */
+    public static void addParticles(ContinuousParticleGrid grid, List<ContinuousParticle> particles) throws Exception {
+        addParticles(grid, particles, Utils.getRandom());
+    }
+
+    public static void addParticles(ContinuousParticleGrid grid, List<ContinuousParticle> particles, Random random) throws Exception {
+        Placement placement = new Placement(grid, particles, 1);
+
+        double spacing = Math.sqrt(SPACING_DENSITY * grid.getBoundary().getArea() / particles.size());
+        if (spacing >= 2 * placement.maxRadius) {
+            placement.sampleSpread(spacing, false, random);
+        } else if (!placement.sampleAtRadii(random)) {
+            throw new RuntimeException("Could only place " + placement.placed + " of " + particles.size() +
+                    " particles without overlaps, try jammed placement.");
+        }
+
+        placement.addTo(grid);
+    }
+
+    /**
+     * Adds the given particles at densities that plain sampling does not reach: they are spread out at a fraction of
+     * their radii, then inflated in small steps, pushing overlapping pairs apart after each, until they are back at
+     * full size, leaving overlaps of at most a percent of the radii. Throws if the overlaps cannot be worked out within a
+     * fixed number of iterations.
+     */
+    public static void addJammedParticles(ContinuousParticleGrid grid, List<ContinuousParticle> particles) throws Exception {
+        addJammedParticles(grid, particles, Utils.getRandom());
+    }
+
+    public static void addJammedParticles(ContinuousParticleGrid grid, List<ContinuousParticle> particles, Random random) throws Exception {
+        double area = 0;
+        for (ContinuousParticle p : particles) {
+            area += Math.PI * p.getRadius() * p.getRadius();
+        }
+        double fraction = area / grid.getBoundary().getArea();
+
+        // Shrink the particles until they can be spread over the whole boundary, so that inflating them only takes
+        // local adjustments rather than pushing a dense cluster outwards
+        Placement placement = new Placement(grid, particles, 1);
+        double spacing = Math.sqrt(SPACING_DENSITY * grid.getBoundary().getArea() / particles.size());
+        double scale = Math.min(1, spacing / (2 * placement.maxRadius));
+        placement.setScale(scale);
+        placement.sampleSpread(spacing, true, random);
+        scale = placement.scale;
+
+        int iterations = 0;
+        while (true) {
+            boolean relaxed = false;
+            for (; iterations < RELAXATION_ITERATIONS && !relaxed; iterations++) {
+                relaxed = placement.relax();
+            }
+            if (!relaxed) {
+                throw new RuntimeException("Could not work out the overlaps at " + scale + " of the full radii, " +
+                        "the packing fraction of " + fraction + " is too high.");
+            }
+            if (scale == 1) break;
+
+            scale = Math.min(1, scale * INFLATION_RATE);
+            placement.setScale(scale);
+        }
+
+        placement.addTo(grid);
+    }
+
+    /**
+     * Points being placed, with a grid of cells of at least the largest distance two points need to keep, so that
+     * the points that could be too close to a position are all in the 3x3 cells around it.
+     */
+    private static class Placement {
+        private final ContinuousParticleGridBoundary boundary;
+        private final List<ContinuousParticle> particles;
+        private final double minX, minY, maxX, maxY;
+        private final double maxRadius;
+
+        // The particles already on the grid come first and never move
+        private final int fixed;
+        private final int capacity;
+        private double[] x, y, radius;
+        private double[] fullRadius;
+        private int count = 0;
+        private int placed = 0;
+
+        private double scale;
+        private double cellSize;
+        private int columns, rows;
+        private int[] cellHead;
+        private int[] next;
+
+        private Placement(ContinuousParticleGrid grid, List<ContinuousParticle> particles, double scale) {
+            this.boundary = grid.getBoundary();
+            this.particles = particles;
+
+            List<Vector> zoomArea = this.boundary.getZoomAreaVertices();
+            this.minX = zoomArea.stream().mapToDouble(v -> v.get(0)).min().getAsDouble();
+            this.minY = zoomArea.stream().mapToDouble(v -> v.get(1)).min().getAsDouble();
+            this.maxX = zoomArea.stream().mapToDouble(v -> v.get(0)).max().getAsDouble();
+            this.maxY = zoomArea.stream().mapToDouble(v -> v.get(1)).max().getAsDouble();
+
+            this.fixed = grid.getParticleCount();
+            this.capacity = this.fixed + particles.size();
+            this.x = new double[this.capacity];
+            this.y = new double[this.capacity];
+            this.radius = new double[this.capacity];
+            this.fullRadius = new double[this.capacity];
+            this.next = new int[this.capacity];
+
+            double maxRadius = 0;
+            for (ContinuousParticle p : particles) {
+                maxRadius = Math.max(maxRadius, p.getRadius());
+            }
+            this.maxRadius = maxRadius;
+
+            grid.getAllParticles().forEach(p -> {
+                Vector position = grid.getParticlePosition(p);
+                double r = ((ContinuousParticle) p).getRadius();
+                this.fullRadius[this.count] = r;
+                this.radius[this.count] = r;
+                this.x[this.count] = position.get(0);
+                this.y[this.count] = position.get(1);
+                this.count++;
+            });
+
+            this.scale = scale;
+            this.setCellSize(2 * this.getLargestRadius());
+        }
+
+        private double getLargestRadius() {
+            double largest = this.maxRadius * this.scale;
+            for (int i = 0; i < this.fixed; i++) {
+                largest = Math.max(largest, this.radius[i]);
+            }
+            return largest;
+        }
+
+        private void setCellSize(double cellSize) {
+            this.cellSize = cellSize;
+            this.columns = Math.max(1, (int) Math.ceil((this.maxX - this.minX) / cellSize));
+            this.rows = Math.max(1, (int) Math.ceil((this.maxY - this.minY) / cellSize));
+            this.cellHead = new int[this.columns * this.rows];
+            this.rebuildCells();
+        }
+
+        private void rebuildCells() {
+            Arrays.fill(this.cellHead, -1);
+            for (int i = 0; i < this.count; i++) {
+                int cell = this.getCell(this.x[i], this.y[i]);
+                this.next[i] = this.cellHead[cell];
+                this.cellHead[cell] = i;
+            }
+        }
+
+        private int getColumn(double x) {
+            return Math.min(this.columns - 1, Math.max(0, (int) ((x - this.minX) / this.cellSize)));
+        }
+
+        private int getRow(double y) {
+            return Math.min(this.rows - 1, Math.max(0, (int) ((y - this.minY) / this.cellSize)));
+        }
+
+        private int getCell(double x, double y) {
+            return this.getRow(y) * this.columns + this.getColumn(x);
+        }
+
+        private int add(double x, double y, double fullRadius) {
+            int i = this.count++;
+            this.x[i] = x;
+            this.y[i] = y;
+            this.fullRadius[i] = fullRadius;
+            this.radius[i] = fullRadius * this.scale;
+
+            int cell = this.getCell(x, y);
+            this.next[i] = this.cellHead[cell];
+            this.cellHead[cell] = i;
+            return i;
+        }
+
+        /**
+         * Checks whether a point of the given radius would be at least spacing, or the sum of the radii if that is
+         * larger, away from every point.
+         */
+        private boolean isFree(double x, double y, double radius, double spacing) {
+            int column = this.getColumn(x);
+            int row = this.getRow(y);
+            for (int r = Math.max(0, row - 1); r <= Math.min(this.rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(this.columns - 1, column + 1); c++) {
+                    for (int j = this.cellHead[r * this.columns + c]; j != -1; j = this.next[j]) {
+                        double dx = this.x[j] - x;
+                        double dy = this.y[j] - y;
+                        double limit = Math.max(spacing, radius + this.radius[j]);
+                        if (dx * dx + dy * dy < limit * limit) return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean isAcceptable(double x, double y, double radius, double spacing) {
+            return this.boundary.isPointInBoundary(x, y, radius) && this.isFree(x, y, radius, spacing);
+        }
+
+        /**
+         * Finds a free position for a point of the given radius by throwing darts at the zoom area, to start from.
+         */
+        private boolean seed(double radius, double spacing, Random random, List<Integer> active, double fullRadius) {
+            for (int attempt = 0; attempt < SEED_ATTEMPTS; attempt++) {
+                double x = this.minX + random.nextDouble() * (this.maxX - this.minX);
+                double y = this.minY + random.nextDouble() * (this.maxY - this.minY);
+                if (!this.isAcceptable(x, y, radius, spacing)) continue;
+
+                active.add(this.add(x, y, fullRadius));
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Tries candidates around an active point for a new point of the given radius, adding the first that fits.
+         */
+        private int grow(int around, double radius, double spacing, Random random) {
+            double distance = Math.max(spacing, radius + this.radius[around]);
+            for (int k = 0; k < CANDIDATES_PER_POINT; k++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double d = distance * (1 + random.nextDouble());
+                double x = this.x[around] + d * Math.cos(angle);
+                double y = this.y[around] - d * Math.sin(angle);
+                if (this.isAcceptable(x, y, radius, spacing)) return this.add(x, y, radius / this.scale);
+            }
+            return -1;
+        }
+
+        /**
+         * Samples a maximal set of points at least spacing apart, which is at least twice the largest radius, and
+         * assigns the particles to a random subset of them. The spacing shrinks if the set comes out too small, and
+         * so do the particles if we are allowed to shrink them to fit.
+         */
+        private void sampleSpread(double spacing, boolean shrinkToFit, Random random) {
+            while (true) {
+                double largest = this.maxRadius * this.scale;
+                this.count = this.fixed;
+                this.setCellSize(Math.max(spacing, 2 * this.getLargestRadius()));
+
+                // The points are sampled for the largest particle, the particles get their radii once they are picked
+                List<Integer> active = new ArrayList<>();
+                if (this.seed(largest, spacing, random, active, this.maxRadius)) {
+                    while (!active.isEmpty()) {
+                        if (this.count == this.x.length) this.ensureCapacity(2 * this.count);
+
+                        int k = random.nextInt(active.size());
+                        int added = this.grow(active.get(k), largest, spacing, random);
+                        if (added == -1) {
+                            Collections.swap(active, k, active.size() - 1);
+                            active.remove(active.size() - 1);
+                        } else {
+                            active.add(added);
+                        }
+                    }
+                }
+                if (this.count - this.fixed >= this.particles.size()) break;
+
+                spacing *= 0.9;
+                if (shrinkToFit) {
+                    this.setScale(Math.min(this.scale, spacing / (2 * this.maxRadius)));
+                } else if (spacing < 2 * largest) {
+                    // Not room enough to spread out, pack at the radii instead
+                    this.count = this.fixed;
+                    this.setCellSize(2 * this.getLargestRadius());
+                    if (!this.sampleAtRadii(random)) {
+                        throw new RuntimeException("Could only place " + this.placed + " of " + this.particles.size() +
+                                " particles without overlaps, try jammed placement.");
+                    }
+                    return;
+                }
+            }
+
+            // Keep a random subset of the sampled points, one per particle
+            int sampled = this.count - this.fixed;
+            for (int i = 0; i < this.particles.size(); i++) {
+                int j = i + random.nextInt(sampled - i);
+                swap(this.x, this.fixed + i, this.fixed + j);
+                swap(this.y, this.fixed + i, this.fixed + j);
+                this.fullRadius[this.fixed + i] = this.particles.get(i).getRadius();
+                this.radius[this.fixed + i] = this.fullRadius[this.fixed + i] * this.scale;
+            }
+            this.count = this.capacity;
+            this.placed = this.particles.size();
+            this.rebuildCells();
+        }
+
+        private void ensureCapacity(int capacity) {
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.fullRadius = Arrays.copyOf(this.fullRadius, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+
+        private static void swap(double[] a, int i, int j) {
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+
+        /**
+         * Places the particles one at a time at their own (scaled) radii, each grown from a random active point, and
+         * reports whether all of them fit.
+         */
+        private boolean sampleAtRadii(Random random) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < this.particles.size(); i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, random);
+
+            // Grow from the particles already there, if any
+            List<Integer> active = new ArrayList<>();
+            for (int i = 0; i < this.fixed; i++) {
+                active.add(i);
+            }
+
+            for (int n = 0; n < order.size(); n++) {
+                double fullRadius = this.particles.get(order.get(n)).getRadius();
+                double radius = fullRadius * this.scale;
+
+                int added = -1;
+                while (added == -1 && !active.isEmpty()) {
+                    int k = random.nextInt(active.size());
+                    added = this.grow(active.get(k), radius, 0, random);
+                    if (added == -1) {
+                        Collections.swap(active, k, active.size() - 1);
+                        active.remove(active.size() - 1);
+                    }
+                }
+                if (added == -1) {
+                    // Nothing left to grow from, which is also how we start on an empty grid
+                    if (!this.seed(radius, 0, random, active, fullRadius)) return false;
+                } else {
+                    active.add(added);
+                }
+
+                this.placed++;
+            }
+
+            // Points were added in shuffled order, put them back in the order of the particles
+            double[] xs = new double[order.size()];
+            double[] ys = new double[order.size()];
+            for (int n = 0; n < order.size(); n++) {
+                xs[order.get(n)] = this.x[this.fixed + n];
+                ys[order.get(n)] = this.y[this.fixed + n];
+            }
+            for (int i = 0; i < order.size(); i++) {
+                this.x[this.fixed + i] = xs[i];
+                this.y[this.fixed + i] = ys[i];
+                this.fullRadius[this.fixed + i] = this.particles.get(i).getRadius();
+                this.radius[this.fixed + i] = this.fullRadius[this.fixed + i] * this.scale;
+            }
+            this.rebuildCells();
+            return true;
+        }
+
+        private void setScale(double scale) {
+            this.scale = scale;
+            for (int i = this.fixed; i < this.count; i++) {
+                this.radius[i] = this.fullRadius[i] * scale;
+            }
+            this.setCellSize(2 * this.getLargestRadius());
+        }
+
+        /**
+         * Moves every overlapping pair apart by half of the overlap each, or all of it for the new point if the other
+         * is fixed, one pair at a time so that pushes from several sides do not add up and overshoot. Moves that would
+         * leave the boundary are skipped. Reports whether the overlaps were already within tolerance.
+         */
+        private boolean relax() {
+            boolean relaxed = true;
+
+            for (int i = this.fixed; i < this.count; i++) {
+                // Inflating can leave points near the wall poking out of it, from where no move passes the boundary
+                // check, so walk those inwards first
+                if (!this.boundary.isPointInBoundary(this.x[i], this.y[i], this.radius[i])) {
+                    this.moveTowardsCenter(i, this.radius[i] * OVERLAP_TOLERANCE);
+                    relaxed = false;
+                }
+
+                int column = this.getColumn(this.x[i]);
+                int row = this.getRow(this.y[i]);
+                for (int r = Math.max(0, row - 1); r <= Math.min(this.rows - 1, row + 1); r++) {
+                    for (int c = Math.max(0, column - 1); c <= Math.min(this.columns - 1, column + 1); c++) {
+                        for (int j = this.cellHead[r * this.columns + c]; j != -1; j = this.next[j]) {
+                            // Pairs of new points are handled once, from the lower index
+                            if (j == i || (j >= this.fixed && j < i)) continue;
+
+                            double ex = this.x[i] - this.x[j];
+                            double ey = this.y[i] - this.y[j];
+                            double distance = Math.sqrt(ex * ex + ey * ey);
+                            double limit = this.radius[i] + this.radius[j];
+                            if (distance >= limit) continue;
+                            if (distance < limit * (1 - OVERLAP_TOLERANCE)) relaxed = false;
+
+                            // Points on top of each other get pushed along an arbitrary axis
+                            if (distance == 0) {
+                                ex = 1;
+                                distance = 1;
+                            }
+                            double push = (limit - distance) / (j < this.fixed ? 1 : 2) / distance;
+                            this.moveWithinBoundary(i, ex * push, ey * push);
+                            if (j >= this.fixed) this.moveWithinBoundary(j, -ex * push, -ey * push);
+                        }
+                    }
+                }
+            }
+
+            // The points have only moved by a fraction of their radii, rebuilding once per pass is enough
+            this.rebuildCells();
+            return relaxed;
+        }
+
+        private void moveWithinBoundary(int i, double dx, double dy) {
+            double nx = this.x[i] + dx;
+            double ny = this.y[i] + dy;
+            if (!this.boundary.isPointInBoundary(nx, ny, this.radius[i])) {
+                // Two points against a curved wall can only separate along it, so slide inwards by as much again
+                double cx = (this.minX + this.maxX) / 2 - this.x[i];
+                double cy = (this.minY + this.maxY) / 2 - this.y[i];
+                double toCenter = Math.sqrt(cx * cx + cy * cy);
+                if (toCenter == 0) return;
+
+                double length = Math.sqrt(dx * dx + dy * dy);
+                nx += cx / toCenter * length;
+                ny += cy / toCenter * length;
+                if (!this.boundary.isPointInBoundary(nx, ny, this.radius[i])) return;
+            }
+
+            this.x[i] = nx;
+            this.y[i] = ny;
+        }
+
+        private void moveTowardsCenter(int i, double length) {
+            double cx = (this.minX + this.maxX) / 2 - this.x[i];
+            double cy = (this.minY + this.maxY) / 2 - this.y[i];
+            double toCenter = Math.sqrt(cx * cx + cy * cy);
+            if (toCenter <= length) return;
+
+            this.x[i] += cx / toCenter * length;
+            this.y[i] += cy / toCenter * length;
+        }
+
+        private void addTo(ContinuousParticleGrid grid) throws Exception {
+            for (int i = 0; i < this.particles.size(); i++) {
+                grid.addParticle(this.particles.get(i), Utils.getVector(this.x[this.fixed + i], this.y[this.fixed + i]));
+            }
+        }
+    }
+}
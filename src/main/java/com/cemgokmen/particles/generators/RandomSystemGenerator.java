@@ -77,7 +77,7 @@ public class RandomSystemGenerator {
 
         // Make the supplier randomizer
         RandomSelector<Supplier<Particle>> randomSupplier = RandomSelector.weighted(suppliers.keySet(), suppliers::get);
-        addParticles(grid, Stream.generate(() -> randomSupplier.next(Utils.random).get()), null, count);
+        addParticles(grid, Stream.generate(() -> randomSupplier.next(Utils.getRandom()).get()), null, count);
     }
 
     public static void addUniformWeightedParticles(ParticleGrid grid, List<Supplier<Particle>> suppliers, int count) {
@@ -19,6 +19,8 @@
 package com.cemgokmen.particles.graphics;
 
 import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.events.FrameEncodeEvent;
+import com.cemgokmen.particles.events.FrameRenderEvent;
 import com.cemgokmen.particles.util.PropertyUtils;
 import com.cemgokmen.particles.util.Utils;
 import com.cemgokmen.particles.models.Particle;
@@ -124,10 +126,20 @@ public class GridGraphics {
         PDFGraphics2D graphics = page.getGraphics2D();
         //g2.setRenderingHint(PDFHints.KEY_DRAW_STRING_TYPE, PDFHints.VALUE_DRAW_STRING_TYPE_VECTOR);
 
+        FrameRenderEvent renderEvent = new FrameRenderEvent();
+        renderEvent.begin();
+
         //drawGridInfoOntoGraphics(grid, graphics, PAGE_SIZE);
         drawGridOntoGraphics(grid, graphics, PAGE_SIZE);
 
+        commitRenderEvent(renderEvent, grid, "pdf", PAGE_SIZE);
+
+        FrameEncodeEvent encodeEvent = new FrameEncodeEvent();
+        encodeEvent.begin();
+
         pdfDoc.writeToFile(file);
+
+        commitEncodeEvent(encodeEvent, "pdf", file, 1);
     }
 
     public static MultipagePDFHandler createMultipagePDF(File file) throws FileNotFoundException {
@@ -136,8 +148,13 @@ public class GridGraphics {
 
     public static void drawGridOntoMultipagePDF(ParticleGrid grid, MultipagePDFHandler multipagePDFHandler) throws IOException {
         multipagePDFHandler.runOnNewPage(grid.getActivationsRun() + "", graphics -> {
+            FrameRenderEvent renderEvent = new FrameRenderEvent();
+            renderEvent.begin();
+
             //drawGridInfoOntoGraphics(grid, graphics, PAGE_SIZE);
             drawGridOntoGraphics(grid, graphics, multipagePDFHandler.getSize());
+
+            commitRenderEvent(renderEvent, grid, "pdf-page", multipagePDFHandler.getSize());
         });
     }
 
@@ -145,13 +162,44 @@ public class GridGraphics {
         Dimension dimensions = getGridImageDimensions(grid);
         int pixels = Math.max(dimensions.width, dimensions.height);
 
+        FrameRenderEvent renderEvent = new FrameRenderEvent();
+        renderEvent.begin();
+
         BufferedImage img = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
         Graphics2D imgGraphics = (Graphics2D) img.getGraphics();
 
         drawGridInfoOntoGraphics(grid, imgGraphics, pixels);
         drawGridOntoGraphics(grid, imgGraphics, pixels);
 
+        commitRenderEvent(renderEvent, grid, format, pixels);
+
+        FrameEncodeEvent encodeEvent = new FrameEncodeEvent();
+        encodeEvent.begin();
+
         ImageIO.write(img, format, file);
+
+        commitEncodeEvent(encodeEvent, format, file, 1);
+    }
+
+    private static void commitRenderEvent(FrameRenderEvent event, ParticleGrid grid, String format, int size) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setGrid(grid);
+            event.format = format;
+            event.size = size;
+            event.activationsRun = grid.getActivationsRun();
+            event.commit();
+        }
+    }
+
+    static void commitEncodeEvent(FrameEncodeEvent event, String format, File file, int pages) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = format;
+            event.file = file.getPath();
+            event.pages = pages;
+            event.commit();
+        }
     }
 
     public static void drawGridInfoOntoGraphics(ParticleGrid grid, Graphics2D graphics, double size) {
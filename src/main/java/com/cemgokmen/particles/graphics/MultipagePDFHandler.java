@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.graphics;
 
+import com.cemgokmen.particles.events.FrameEncodeEvent;
 import com.orsonpdf.PDFDocument;
 import com.orsonpdf.PDFGraphics2D;
 import com.orsonpdf.Page;
@@ -33,6 +34,7 @@ public class MultipagePDFHandler implements Closeable {
     private final PDFDocument document;
     private final File file;
     private final int size;
+    private int pages = 0;
 
     private boolean closed = false;
 
@@ -55,10 +57,16 @@ public class MultipagePDFHandler implements Closeable {
         //g2.setRenderingHint(PDFHints.KEY_DRAW_STRING_TYPE, PDFHints.VALUE_DRAW_STRING_TYPE_VECTOR);
 
         consumer.accept(graphics);
+        this.pages++;
     }
 
     @Override
     public void close() throws IOException {
+        FrameEncodeEvent event = new FrameEncodeEvent();
+        event.begin();
+
         this.document.writeToFile(this.file);
+
+        GridGraphics.commitEncodeEvent(event, "pdf", this.file, this.pages);
     }
 }
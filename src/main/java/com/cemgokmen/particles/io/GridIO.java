@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.io;
 
+import com.cemgokmen.particles.events.GridIOEvent;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.*;
@@ -57,6 +58,23 @@ public class GridIO {
         return importParticlesFromInputStream(new FileInputStream(file), gridClass, particleClass);
     }
 
+    /**
+     * Builds an empty grid from the same parameter line the grid files start with, e.g. the radius of a hexagonal grid.
+     */
+    public static ParticleGrid createEmptyGrid(Class<? extends ParticleGrid> gridClass, String parameters) throws InvalidGridClassException {
+        if (gridClass == null) {
+            throw new GridIO.InvalidGridClassException();
+        }
+
+        if (!GridLoaders.GRID_LOADER_MAP.containsKey(gridClass)) {
+            throw new InvalidGridClassException(gridClass);
+        }
+
+        try (Scanner input = new Scanner(parameters)) {
+            return GridLoaders.GRID_LOADER_MAP.get(gridClass).apply(input);
+        }
+    }
+
     public static ParticleGrid importParticlesFromInputStream(InputStream in, Class<? extends ParticleGrid> gridClass, Class<? extends Particle> particleClass) throws InvalidParticleClassException, InvalidGridClassException {
         if (particleClass == null) {
             throw new GridIO.InvalidParticleClassException();
@@ -66,6 +84,9 @@ public class GridIO {
             throw new GridIO.InvalidGridClassException();
         }
 
+        GridIOEvent event = new GridIOEvent(GridIOEvent.LOAD);
+        event.begin();
+
         Scanner input = new Scanner(in);
 
         ParticleGrid grid;
@@ -98,6 +119,13 @@ public class GridIO {
 
         input.close();
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.setGrid(grid);
+            event.particleType = particleClass.getSimpleName();
+            event.commit();
+        }
+
         return grid;
     }
 
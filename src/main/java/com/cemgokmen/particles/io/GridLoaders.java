@@ -35,6 +35,7 @@ public class GridLoaders {
                     .put(ToroidalAmoebotGrid.class, GridLoaders::loadToroidalAmoebotGrid)
                     .put(LinearAmoebotGrid.class, GridLoaders::loadLinearAmoebotGrid)
                     .put(CircularAmoebotGrid.class, GridLoaders::loadCircularAmoebotGrid)
+                    .put(InfiniteAmoebotGrid.class, GridLoaders::loadInfiniteAmoebotGrid)
                     .put(ContinuousParticleGrid.class, GridLoaders::loadContinuousGrid)
                     .build();
 
@@ -69,6 +70,11 @@ public class GridLoaders {
         return new CircularAmoebotGrid(halfLength);
     }
 
+    static ParticleGrid loadInfiniteAmoebotGrid(Scanner input) {
+        // No parameters, the rest of the line is ignored
+        return new InfiniteAmoebotGrid();
+    }
+
     static ParticleGrid loadContinuousGrid(Scanner input) {
         double boundaryRadius = input.nextDouble();
 
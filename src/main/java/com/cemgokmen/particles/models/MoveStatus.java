@@ -0,0 +1,60 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models;
+
+/**
+ * Result codes for the non-throwing move API ({@code ParticleGrid.tryMoveParticle}, {@code MovementCapable.tryMove}
+ * and friends). Failed moves are routine in crowded systems, so they are reported as plain ints rather than by
+ * building an exception and its stack trace.
+ */
+public final class MoveStatus {
+    public static final int OK = 0;
+    public static final int OUT_OF_BOUNDS = 1;
+    public static final int OCCUPIED = 2;
+    public static final int TYPE_MISMATCH = 3;
+    public static final int IMMOVABLE = 4;
+    public static final int NOT_ON_GRID = 5;
+
+    private MoveStatus() {
+    }
+
+    public static boolean isOk(int status) {
+        return status == OK;
+    }
+
+    public static String describe(int status) {
+        switch (status) {
+            case OK:
+                return "OK";
+            case OUT_OF_BOUNDS:
+                return "Position is out of bounds.";
+            case OCCUPIED:
+                return "Position is occupied.";
+            case TYPE_MISMATCH:
+                return "Swap between different types.";
+            case IMMOVABLE:
+                return "Particle cannot move.";
+            case NOT_ON_GRID:
+                return "The provided particle is not on the grid.";
+            default:
+                return "Unknown move status " + status;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.models;
 
+import com.cemgokmen.particles.algorithms.ActivationHandler;
 import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
 import com.google.common.collect.ImmutableList;
 import org.la4j.Vector;
@@ -28,6 +29,8 @@ import java.util.function.Function;
 public abstract class Particle {
     protected ParticleGrid grid;
     protected ParticleAlgorithm algorithm;
+    private ActivationHandler activationHandler;
+    private int id = -1;
 
     public void setGrid(ParticleGrid grid) {
         this.grid = grid;
@@ -35,6 +38,18 @@ public abstract class Particle {
 
     public ParticleGrid getGrid() { return this.grid; }
 
+    /**
+     * Returns the dense index the grid assigned to this particle when it was added, or -1 if it is not on a grid.
+     * Ids are recycled after removal, so they are only meaningful while the particle is on its grid.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     public ParticleAlgorithm getAlgorithm() {
         return this.algorithm;
     }
@@ -48,11 +63,24 @@ public abstract class Particle {
             throw new RuntimeException("This particle is not allowed to run this algorithm.");
         }
         this.algorithm = algorithm;
+        this.activationHandler = algorithm != null ? algorithm.getActivationHandler(this.getClass()) : null;
+
+        if (this.grid != null) {
+            this.grid.notifyParticleChanged(this);
+        }
+    }
+
+    /**
+     * Returns a particle in the same state that is not on any grid, for forking grids. The algorithm is not copied.
+     */
+    public Particle copy() {
+        throw new RuntimeException(this.getClass().getSimpleName() + " cannot be copied.");
     }
 
     public void activate() {
-        if (this.algorithm != null) {
-            this.algorithm.onParticleActivation(this);
+        ActivationHandler handler = this.activationHandler;
+        if (handler != null) {
+            handler.activate(this);
         }
     }
 
@@ -18,12 +18,18 @@
 
 package com.cemgokmen.particles.models;
 
+import com.cemgokmen.particles.aggregates.AggregateRegistry;
+import com.cemgokmen.particles.aggregates.CountAggregate;
+import com.cemgokmen.particles.aggregates.PositionSumAggregate;
 import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
 import com.cemgokmen.particles.algorithms.RuleUtils;
 import com.cemgokmen.particles.capabilities.ParticleCapability;
+import com.cemgokmen.particles.events.ActivationBatchEvent;
 import com.cemgokmen.particles.graphics.GridGraphics;
+import com.cemgokmen.particles.storage.MappedParticleStorage;
 import com.cemgokmen.particles.storage.ParticleStorage;
 import com.cemgokmen.particles.util.RandomSelector;
+import com.cemgokmen.particles.util.TimingWheel;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.*;
 import org.la4j.Vector;
@@ -38,8 +44,20 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public abstract class ParticleGrid {
+    public static final int ACTIVATION_BATCH_SIZE = 10000;
+
     private int activationsRun = 0;
     private int movesMade = 0;
+    private TimingWheel<Runnable> scheduler = null;
+
+    private int particleIdCapacity = 0;
+    private int[] freeParticleIds = new int[16];
+    private int freeParticleIdCount = 0;
+
+    private final AggregateRegistry aggregates = new AggregateRegistry(this);
+    private final PositionSumAggregate positionSums = this.aggregates.register(PositionSumAggregate.class, new PositionSumAggregate());
+    private final CountAggregate<Class<? extends Particle>> classCounts = this.aggregates.register(Particle.class, new CountAggregate<>(Particle::getClass));
+    private final CountAggregate<ParticleAlgorithm> algorithmCounts = this.aggregates.register(ParticleAlgorithm.class, new CountAggregate<>(Particle::getAlgorithm));
 
     public static class DataPoint {
         public Vector position;
@@ -51,15 +69,29 @@ public abstract class ParticleGrid {
 
     public static class Direction {
         private final Vector vector;
+        private final int ordinal;
 
         public Direction(Vector p) {
+            this(p, -1);
+        }
+
+        public Direction(Vector p, int ordinal) {
             this.vector = p;
+            this.ordinal = ordinal;
         }
 
         public Vector getVector() {
             return this.vector.copy();
         }
 
+        /**
+         * Returns the index of this direction in its compass, or -1 for directions that are not part of a discrete
+         * compass.
+         */
+        public int getOrdinal() {
+            return this.ordinal;
+        }
+
         @Override
         public String toString() {
             return this.vector.toString();
@@ -72,6 +104,36 @@ public abstract class ParticleGrid {
         abstract public Direction shiftDirectionCounterclockwise(Direction d, double times);
 
         abstract public double getAngleBetweenDirections(Direction a, Direction b);
+
+        /**
+         * Whether the compass has a finite set of directions. The ordinal methods below only work on those that do.
+         */
+        public boolean hasDiscreteDirections() {
+            return true;
+        }
+
+        /**
+         * Returns (cos(angle between a and b) + 1) / 2, which is how the alignment algorithms weigh a pair of
+         * directions. Discrete compasses look it up by ordinal, others work it out from the angle.
+         */
+        public double getNormalizedDotProduct(Direction a, Direction b) {
+            if (this.hasDiscreteDirections()) return this.getNormalizedDotProduct(a.getOrdinal(), b.getOrdinal());
+            return (Math.cos(this.getAngleBetweenDirections(a, b)) + 1) / 2;
+        }
+
+        // Ordinal arithmetic, for compasses with a finite set of directions
+        abstract public int getDirectionCount();
+
+        abstract public Direction getDirection(int ordinal);
+
+        abstract public int shiftOrdinalCounterclockwise(int ordinal, int times);
+
+        abstract public double getAngleBetweenOrdinals(int a, int b);
+
+        /**
+         * The normalized dot product of two directions, by ordinal.
+         */
+        abstract public double getNormalizedDotProduct(int a, int b);
     }
 
     abstract protected ParticleStorage getStorage();
@@ -88,47 +150,257 @@ public abstract class ParticleGrid {
 
     abstract public List<Vector> getBoundaryVertices();
 
+    /**
+     * Returns an empty grid of the same shape, for forking. Grids that can be forked override this.
+     */
+    protected ParticleGrid createEmptyCopy() {
+        throw new RuntimeException(this.getClass().getSimpleName() + " cannot be forked.");
+    }
+
+    /**
+     * Returns an independent copy of this grid: the same particles in the same state and positions, running the same
+     * algorithm objects, with the same counters and history. Structure that never changes, such as the topology of
+     * an amoebot grid, is shared rather than copied.
+     */
+    public ParticleGrid fork() {
+        ParticleGrid fork = this.createEmptyCopy();
+        // Set the clock first, particles schedule their timers against it as they are added
+        fork.activationsRun = this.activationsRun;
+        fork.movesMade = this.movesMade;
+        fork.history = Lists.newArrayList(this.history);
+
+        Iterator<Particle> it = this.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            Particle copy = p.copy();
+            if (fork.tryAddParticle(copy, this.getParticlePosition(p)) != MoveStatus.OK) {
+                throw new RuntimeException("Could not place a forked particle at " + this.getParticlePosition(p));
+            }
+
+            fork.onParticleForked(this, p, copy);
+            copy.setAlgorithm(p.getAlgorithm());
+        }
+
+        return fork;
+    }
+
+    /**
+     * Writes the grid's storage back to disk if it is backed by files. Other storage has nothing to write.
+     */
+    public void checkpoint() {
+        if (this.getStorage() instanceof MappedParticleStorage) {
+            ((MappedParticleStorage) this.getStorage()).checkpoint(this);
+        }
+    }
+
+    /**
+     * Releases the files behind the grid's storage, after which the grid cannot be used. Other storage has nothing
+     * to release.
+     */
+    public void closeStorage() {
+        if (this.getStorage() instanceof MappedParticleStorage) {
+            ((MappedParticleStorage) this.getStorage()).close();
+        }
+    }
+
+    /**
+     * Called on a fork once the copy of a particle is on it, for subclasses that attach state to particles.
+     */
+    protected void onParticleForked(ParticleGrid source, Particle original, Particle copy) {
+    }
+
     public boolean isParticleOnGrid(Particle p) {
         return this.getStorage().containsParticle(p);
     }
 
     public void addParticle(Particle p, Vector position) throws Exception {
-        if (!this.isPositionValid(position, p)) {
+        int status = this.tryAddParticle(p, position);
+        if (status == MoveStatus.OUT_OF_BOUNDS) {
             throw new Exception("Invalid add - position " + position + " out of bounds.");
+        } else if (status == MoveStatus.OCCUPIED) {
+            throw new Exception("Invalid add - there already is a particle at position " + position);
+        }
+    }
+
+    /**
+     * Same as addParticle, but reports failure through a {@link MoveStatus} code instead of throwing.
+     */
+    public int tryAddParticle(Particle p, Vector position) {
+        if (!this.isPositionValid(position, p)) {
+            return MoveStatus.OUT_OF_BOUNDS;
         }
 
         if (this.isPositionOccupied(position)) {
-            throw new Exception("Invalid add - there already is a particle at position " + position);
+            return MoveStatus.OCCUPIED;
         }
         this.getStorage().addParticle(p, position);
         p.setGrid(this);
+        p.setId(this.acquireParticleId());
 
         if (this.chosenParticle == null) {
             this.chosenParticle = p;
         }
+
+        this.onParticleAdded(p, position);
+        return MoveStatus.OK;
     }
 
     public void removeParticle(Particle p) throws Exception {
-        if (!this.isParticleOnGrid(p)) {
+        if (this.tryRemoveParticle(p) == MoveStatus.NOT_ON_GRID) {
             throw new Exception("Invalid remove - the provided particle is not on the grid.");
         }
+    }
+
+    public int tryRemoveParticle(Particle p) {
+        if (!this.isParticleOnGrid(p)) {
+            return MoveStatus.NOT_ON_GRID;
+        }
+        Vector position = this.getParticlePosition(p);
         this.getStorage().removeParticle(p);
+        this.onParticleRemoved(p, position);
+
         p.setGrid(null);
+        this.releaseParticleId(p.getId());
+        p.setId(-1);
+        return MoveStatus.OK;
+    }
+
+    /**
+     * Called once a particle is on the grid and has its id. Subclasses that attach state to particles should
+     * initialize it here before calling super, so that the aggregates see it.
+     */
+    protected void onParticleAdded(Particle p, Vector position) {
+        this.aggregates.onParticleAdded(p);
+    }
+
+    protected void onParticleRemoved(Particle p, Vector position) {
+        this.aggregates.onParticleRemoved(p);
+    }
+
+    protected void onParticleMoved(Particle p, Vector from, Vector to) {
+        this.aggregates.onParticleMoved(p);
+    }
+
+    /**
+     * Lets the aggregates know that the state of a particle on this grid has changed.
+     */
+    public void notifyParticleChanged(Particle p) {
+        this.aggregates.onParticleChanged(p);
+    }
+
+    public AggregateRegistry getAggregates() {
+        return this.aggregates;
+    }
+
+    /**
+     * Returns the timers of this grid, keyed on the number of activations run. Due timers run right after the
+     * activation that brings the clock to their deadline, whichever particle was activated.
+     */
+    public TimingWheel<Runnable> getScheduler() {
+        if (this.scheduler == null) this.scheduler = new TimingWheel<>(this.activationsRun);
+        return this.scheduler;
+    }
+
+    private int acquireParticleId() {
+        if (this.freeParticleIdCount > 0) {
+            return this.freeParticleIds[--this.freeParticleIdCount];
+        }
+        return this.particleIdCapacity++;
+    }
+
+    private void releaseParticleId(int id) {
+        if (this.freeParticleIdCount == this.freeParticleIds.length) {
+            this.freeParticleIds = Arrays.copyOf(this.freeParticleIds, 2 * this.freeParticleIds.length);
+        }
+        this.freeParticleIds[this.freeParticleIdCount++] = id;
+    }
+
+    /**
+     * Returns an upper bound on the ids of the particles on this grid, for sizing arrays indexed by particle id.
+     */
+    public int getParticleIdCapacity() {
+        return this.particleIdCapacity;
     }
 
     public void moveParticle(Particle p, Vector v) throws Exception {
-        if (!this.isPositionValid(v, p)) {
+        int status = this.tryMoveParticle(p, v);
+        if (status == MoveStatus.NOT_ON_GRID) {
+            throw new Exception("Invalid move - the provided particle is not on the grid.");
+        } else if (status == MoveStatus.OUT_OF_BOUNDS) {
             throw new Exception("Invalid move - position " + v + " out of bounds.");
+        } else if (status == MoveStatus.OCCUPIED) {
+            throw new Exception("Cannot move to occupied position " + v);
+        }
+    }
+
+    /**
+     * Same as moveParticle, but reports failure through a {@link MoveStatus} code instead of throwing. Subclasses
+     * that restrict moves should override this rather than moveParticle.
+     */
+    public int tryMoveParticle(Particle p, Vector v) {
+        if (!this.isParticleOnGrid(p)) {
+            return MoveStatus.NOT_ON_GRID;
+        }
+
+        if (!this.isPositionValid(v, p)) {
+            return MoveStatus.OUT_OF_BOUNDS;
         }
 
         if (this.isPositionOccupied(v)) {
-            throw new Exception("Cannot move to occupied position " + v);
+            return MoveStatus.OCCUPIED;
         }
 
-        this.removeParticle(p);
-        this.addParticle(p, v);
+        // Move in the storage directly: the particle stays on the grid, so it keeps its id and any state that
+        // subclasses attach to it in addParticle / removeParticle.
+        Vector from = this.getParticlePosition(p);
+        this.getStorage().removeParticle(p);
+        this.getStorage().addParticle(p, v);
         this.movesMade++;
+        this.onParticleMoved(p, from, v);
+
+        this.recordHistory();
+        return MoveStatus.OK;
+    }
 
+    public void swapParticles(Particle a, Particle b) throws Exception {
+        int status = this.trySwapParticles(a, b);
+        if (status == MoveStatus.NOT_ON_GRID) {
+            throw new Exception("Invalid swap - the provided particles are not on the grid.");
+        } else if (status == MoveStatus.OUT_OF_BOUNDS) {
+            throw new Exception("Invalid swap - a particle cannot be placed at the other's position.");
+        }
+    }
+
+    /**
+     * Exchanges the positions of two particles on the grid in a single storage update. Counts as one move, and
+     * both particles are reported to the aggregates as moved.
+     */
+    public int trySwapParticles(Particle a, Particle b) {
+        if (!this.isParticleOnGrid(a) || !this.isParticleOnGrid(b)) {
+            return MoveStatus.NOT_ON_GRID;
+        }
+
+        Vector aPosition = this.getParticlePosition(a);
+        Vector bPosition = this.getParticlePosition(b);
+        if (!this.isPositionValid(bPosition, a) || !this.isPositionValid(aPosition, b)) {
+            return MoveStatus.OUT_OF_BOUNDS;
+        }
+
+        this.getStorage().swapParticles(a, b);
+        this.movesMade++;
+        this.onParticleMoved(a, aPosition, bPosition);
+        this.onParticleMoved(b, bPosition, aPosition);
+
+        // The occupied positions did not change, so neither did the largest component.
+        if (this.history.isEmpty()) {
+            this.recordHistory();
+        } else {
+            this.history.add(this.history.get(this.history.size() - 1));
+        }
+        return MoveStatus.OK;
+    }
+
+    private void recordHistory() {
         // Get the largest component
         Set<Particle> largestComponent = RuleUtils.getLargestComponent(this);
         Vector centroid = largestComponent.parallelStream().map(this::getParticlePosition)
@@ -180,6 +452,19 @@ public abstract class ParticleGrid {
         return (int) this.getAllParticles(filter).count();
     }
 
+    /**
+     * Counts the particles that are instances of the given class, without going over the particles.
+     */
+    public int getParticleCount(@Nonnull Class<? extends Particle> type) {
+        int count = 0;
+        for (Class<? extends Particle> klass : this.classCounts.getKeys()) {
+            if (type.isAssignableFrom(klass)) {
+                count += this.classCounts.getCount(klass);
+            }
+        }
+        return count;
+    }
+
     public Stream<Particle> getAllParticles() {
         return this.getStorage().getAllParticles();
     }
@@ -251,46 +536,67 @@ public abstract class ParticleGrid {
         List<Particle> particleList = this.getAllParticles().collect(Collectors.toCollection(ArrayList::new));
         RandomSelector<Particle> selector = RandomSelector.uniform(particleList);
 
-        for (int i = 0; i < numActivations; i++) {
-            Particle p = null;
+        // Run in chunks so that a flight recording can line up the simulation with GC and rendering activity.
+        int remaining = numActivations;
+        while (remaining > 0) {
+            int batch = Math.min(remaining, ACTIVATION_BATCH_SIZE);
+
+            // Parameter edits take effect here, between batches
+            this.getRunningAlgorithms().forEach(ParticleAlgorithm::publishParameters);
+
+            ActivationBatchEvent event = new ActivationBatchEvent();
+            event.begin();
+            int activationsBefore = this.activationsRun;
+            int movesBefore = this.movesMade;
+
+            for (int i = 0; i < batch; i++) {
+                Particle p = null;
+
+                while (p == null) {
+                    p = selector.next(Utils.getRandom());
+                    if (!this.isParticleOnGrid(p)) p = null;
+                }
 
-            while (p == null) {
-                p = selector.next(Utils.random);
-                if (!this.isParticleOnGrid(p)) p = null;
+                p.activate();
+                this.activationsRun++;
+                if (this.scheduler != null) this.scheduler.advanceTo(this.activationsRun, Runnable::run);
             }
 
-            p.activate();
-            this.activationsRun++;
+            event.end();
+            if (event.shouldCommit()) {
+                event.setGrid(this);
+                event.setCounts(batch, this.movesMade - movesBefore, activationsBefore);
+                event.commit();
+            }
+
+            remaining -= batch;
         }
     }
 
     public List<Class<? extends ParticleAlgorithm>> getCompatibleAlgorithms() {
+        // Every algorithm that allows all particle classes on our grid is compatible.
+        Set<Class<? extends Particle>> particleClasses = this.classCounts.getKeys();
         return ParticleAlgorithm.IMPLEMENTATIONS.stream()
-                .filter(impl -> {
-                    try {
-                        // Every algorithm that allows all particles on our grid is compatible.
-                        ParticleAlgorithm instance = Utils.getZeroParameterPublicConstructor(impl).newInstance();
-                        return ParticleGrid.this.getAllParticles().allMatch(instance::isParticleAllowed);
-                    } catch (Exception e) {
-                        return false;
-                    }
-                })
+                .filter(impl -> ParticleAlgorithm.isCompatible(impl, particleClasses))
                 .collect(Collectors.toList());
     }
 
     public Stream<ParticleAlgorithm> getRunningAlgorithms() {
-        Set<ParticleAlgorithm> runningAlgorithms = new HashSet<>();
-
-        return this.getAllParticles().map(Particle::getAlgorithm).filter(Objects::nonNull).distinct();
+        return this.algorithmCounts.getKeys().stream();
     }
 
     public abstract Vector getUnitPixelCoordinates(Vector in);
 
+    /**
+     * Returns a coordinate of the particle's position on the unwrapped plane. Grids that wrap around override this
+     * to account for the number of times the particle crossed the border.
+     */
+    public double getLeveledParticleCoordinate(Particle p, int axis) {
+        return this.getParticlePosition(p).get(axis);
+    }
+
     public Vector getCenterOfMass() {
-        return this.getAllParticles()
-                .map(this::getParticlePosition)
-                .reduce(Vector.zero(2), Vector::add)
-                .divide(this.getParticleCount());
+        return this.positionSums.getMean();
     }
 
     public int getActivationsRun() {
@@ -26,65 +26,145 @@ import org.la4j.Matrix;
 import org.la4j.Vector;
 import org.la4j.matrix.dense.Basic2DMatrix;
 
-import java.util.HashMap;
 import java.util.stream.Stream;
 
 public abstract class AmoebotGrid extends ParticleGrid {
     public static class AmoebotCompass extends Compass {
-        private static final Direction SE = new Direction(Utils.getVector(1, 0));
-        private static final Direction NE = new Direction(Utils.getVector(1, -1));
-        private static final Direction N = new Direction(Utils.getVector(0, -1));
-        private static final Direction NW = new Direction(Utils.getVector(-1, 0));
-        private static final Direction SW = new Direction(Utils.getVector(-1, 1));
-        private static final Direction S = new Direction(Utils.getVector(0, 1));
-
-        private static final Direction[] directions = {N, NW, SW, S, SE, NE};
-        private final HashMap<Direction, Integer> directionOrder;
+        private static final Direction N = new Direction(Utils.getVector(0, -1), 0);
+        private static final Direction NW = new Direction(Utils.getVector(-1, 0), 1);
+        private static final Direction SW = new Direction(Utils.getVector(-1, 1), 2);
+        private static final Direction S = new Direction(Utils.getVector(0, 1), 3);
+        private static final Direction SE = new Direction(Utils.getVector(1, 0), 4);
+        private static final Direction NE = new Direction(Utils.getVector(1, -1), 5);
+
+        private static final ImmutableList<Direction> DIRECTIONS = ImmutableList.of(N, NW, SW, S, SE, NE);
+
+        // All direction arithmetic is done by table lookup on ordinals. Directions are ordered counterclockwise and
+        // the ordinal of a direction is its index in the list.
+        private final ImmutableList<Direction> directions;
+        private final double anglePerStep;
+        private final int[][] rotations;
+        private final int[][] minorArcLengths;
+        private final double[][] angles;
+        private final double[][] normalizedDotProducts;
 
         public AmoebotCompass() {
-            this.directionOrder = new HashMap<>();
-            for (int i = 0; i < directions.length; i++) {
-                this.directionOrder.put(directions[i], i);
+            this(DIRECTIONS, Math.PI / 3);
+        }
+
+        protected AmoebotCompass(ImmutableList<Direction> directions, double anglePerStep) {
+            int n = directions.size();
+            for (int i = 0; i < n; i++) {
+                if (directions.get(i).getOrdinal() != i) {
+                    throw new RuntimeException("Direction ordinals should match their position in the compass.");
+                }
+            }
+
+            this.directions = directions;
+            this.anglePerStep = anglePerStep;
+            this.rotations = new int[n][n];
+            this.minorArcLengths = new int[n][n];
+            this.angles = new double[n][n];
+            this.normalizedDotProducts = new double[n][n];
+
+            for (int a = 0; a < n; a++) {
+                for (int b = 0; b < n; b++) {
+                    this.rotations[a][b] = (a + b) % n;
+
+                    int diff = Math.abs(a - b);
+                    if (diff > n / 2) {
+                        diff = n - diff;
+                    }
+
+                    this.minorArcLengths[a][b] = diff;
+                    this.angles[a][b] = this.getAngleFromMinorArcLength(diff);
+                    this.normalizedDotProducts[a][b] = (Math.cos(this.angles[a][b]) + 1) / 2.0;
+                }
             }
         }
 
         @Override
         public ImmutableList<Direction> getDirections() {
-            return ImmutableList.copyOf(directions);
+            return this.directions;
+        }
+
+        @Override
+        public int getDirectionCount() {
+            return this.directions.size();
+        }
+
+        @Override
+        public Direction getDirection(int ordinal) {
+            return this.directions.get(ordinal);
+        }
+
+        @Override
+        public int shiftOrdinalCounterclockwise(int ordinal, int times) {
+            return this.rotations[ordinal][Math.floorMod(times, this.rotations.length)];
         }
 
         @Override
         public Direction shiftDirectionCounterclockwise(Direction d, double times) {
-            int index = this.directionOrder.get(d);
-            return directions[Math.floorMod(index + (int) times, directions.length)];
+            return this.directions.get(this.shiftOrdinalCounterclockwise(d.getOrdinal(), (int) times));
         }
 
         public int getMinorArcLength(Direction a, Direction b) {
-            int diff = Math.abs(this.directionOrder.get(a) - this.directionOrder.get(b));
-            if (diff > directions.length / 2) {
-                diff = directions.length - diff;
-            }
-
-            return diff;
+            return this.minorArcLengths[a.getOrdinal()][b.getOrdinal()];
         }
 
         public double getAngleFromMinorArcLength(int minorArcLength) {
-            return minorArcLength * Math.PI / 3;
+            return minorArcLength * this.anglePerStep;
+        }
+
+        @Override
+        public double getAngleBetweenOrdinals(int a, int b) {
+            return this.angles[a][b];
         }
 
         @Override
         public double getAngleBetweenDirections(Direction a, Direction b) {
-            return this.getAngleFromMinorArcLength(this.getMinorArcLength(a, b));
+            return this.angles[a.getOrdinal()][b.getOrdinal()];
+        }
+
+        @Override
+        public double getNormalizedDotProduct(int a, int b) {
+            return this.normalizedDotProducts[a][b];
         }
     }
 
     private final AmoebotCompass compass = new AmoebotCompass();
+    private AmoebotTopology topology;
 
     @Override
     public Compass getCompass() {
         return this.compass;
     } // TODO: Delegate this! Compass should be assigned to particles
 
+    /**
+     * Returns the precomputed adjacency of this grid's sites, building it on first use.
+     */
+    public AmoebotTopology getTopology() {
+        if (this.topology == null) {
+            this.topology = new AmoebotTopology(this.getValidPositions().filter(p -> this.isPositionValid(p, null)), this.getCompass().getDirections(), null);
+        }
+        return this.topology;
+    }
+
+    /**
+     * Whether whole-grid structures over the bounding box should be avoided, e.g. because the valid positions are
+     * spread over an area much larger than the particles need, or the sites are deliberately kept off the heap.
+     */
+    public boolean isSparse() {
+        return false;
+    }
+
+    @Override
+    public ParticleGrid fork() {
+        AmoebotGrid fork = (AmoebotGrid) super.fork();
+        if (fork.topology == null) fork.topology = this.topology;
+        return fork;
+    }
+
     @Override
     public boolean isParticleValid(Particle p) {
         return p instanceof AmoebotParticle;
@@ -107,7 +187,7 @@ public abstract class AmoebotGrid extends ParticleGrid {
     @Override
     public Vector getRandomPosition(Particle particle) {
         int cnt = (int) this.getValidPositions().count();
-        long idx = Utils.random.nextInt(cnt - 1);
+        long idx = Utils.getRandom().nextInt(cnt - 1);
         return this.getValidPositions().skip(idx).findFirst().get();
     }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import com.cemgokmen.particles.capabilities.NeighborDetectionCapable;
 import com.cemgokmen.particles.capabilities.UniformRandomDirectionCapable;
 import com.cemgokmen.particles.capabilities.SwapMovementCapable;
 import com.cemgokmen.particles.util.Utils;
+import com.cemgokmen.particles.models.MoveStatus;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import org.la4j.Vector;
@@ -34,6 +35,14 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class AmoebotParticle extends Particle implements UniformRandomDirectionCapable, MovementCapable, SwapMovementCapable, NeighborDetectionCapable {
+    @Override
+    public Particle copy() {
+        // Subclasses with state of their own have to copy it themselves
+        if (this.getClass() != AmoebotParticle.class) return super.copy();
+
+        return new AmoebotParticle();
+    }
+
     public List<Particle> getNeighborParticles(boolean includeNulls, Predicate<Particle> filter) {
         if (filter == null) {
             return this.grid.getParticleNeighbors(this, includeNulls);
@@ -79,57 +88,50 @@ public class AmoebotParticle extends Particle implements UniformRandomDirectionC
     }
 
     public ParticleGrid.Direction getUniformRandomDirection() {
-        List<ParticleGrid.Direction> directions = this.grid.getCompass().getDirections();
-        return directions.get(Utils.randomInt(directions.size()));
+        ParticleGrid.Compass compass = this.grid.getCompass();
+        return compass.getDirection(Utils.randomInt(compass.getDirectionCount()));
     }
 
     public void move(ParticleGrid.Direction inDirection) {
+        int status = this.tryMove(inDirection);
+        if (status != MoveStatus.OK) {
+            throw new InvalidMoveException(MoveStatus.describe(status));
+        }
+    }
+
+    public int tryMove(ParticleGrid.Direction inDirection) {
         Vector current = this.grid.getParticlePosition(this);
         Vector target = this.grid.getPositionInDirection(current, inDirection);
 
         //System.out.printf("Moving particle of color %d from %s to %s\n", ((SeparableAmoebotParticle)this).getClassNumber(), current, target);
 
-        Particle atTarget = this.grid.getParticleAtPosition(target);
-        try {
-            if (atTarget == null) {
-                // Make the move
-                this.grid.moveParticle(this, target);
-            } else {
-                throw new InvalidMoveException("Position is occupied.");
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
-        }
+        return this.grid.tryMoveParticle(this, target);
     }
 
     public void swapMove(ParticleGrid.Direction inDirection) {
+        int status = this.trySwapMove(inDirection);
+        if (status != MoveStatus.OK) {
+            throw new InvalidMoveException(MoveStatus.describe(status));
+        }
+    }
+
+    public int trySwapMove(ParticleGrid.Direction inDirection) {
         Vector current = this.grid.getParticlePosition(this);
         Vector target = this.grid.getPositionInDirection(current, inDirection);
 
         //System.out.printf("Moving particle of color %d from %s to %s\n", ((SeparableAmoebotParticle)this).getClassNumber(), current, target);
 
         Particle atTarget = this.grid.getParticleAtPosition(target);
-        try {
-            if (atTarget == null) {
-                // Make the move
-                this.grid.moveParticle(this, target);
-            } else {
-                if (!this.getClass().equals(atTarget.getClass())) {
-                    throw new InvalidMoveException("swap between different types");
-                }
-
-                // Remove the occupying particle
-                this.grid.removeParticle(atTarget);
-
-                // Move there
-                this.grid.moveParticle(this, target);
-
-                // Add occupying particle
-                this.grid.addParticle(atTarget, current);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
+        if (atTarget == null) {
+            // Make the move
+            return this.grid.tryMoveParticle(this, target);
         }
+
+        if (!this.getClass().equals(atTarget.getClass())) {
+            return MoveStatus.TYPE_MISMATCH;
+        }
+
+        return this.grid.trySwapParticles(this, atTarget);
     }
 
     public boolean isDirectionWithinBounds(ParticleGrid.Direction d) {
@@ -0,0 +1,280 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.amoebot;
+
+import com.cemgokmen.particles.models.ParticleGrid.Direction;
+import com.cemgokmen.particles.util.SpaceFillingCurves;
+import com.google.common.collect.ImmutableList;
+import org.la4j.Vector;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Precomputed adjacency of a finite amoebot lattice. Sites are numbered densely in the order the grid lists its
+ * valid positions, and for every site and direction we store the neighboring site (or -1 if the step leaves the
+ * grid) together with the number of times the step wraps around each axis.
+ *
+ * Wrapping is described by a half-length per axis: coordinates along a wrapped axis live in [-h, h] and are taken
+ * modulo 2h + 1. Pass null to build the adjacency of a grid without wraparound.
+ *
+ * The listing order of most grids is row by row, so a site's neighbors above and below are a whole row away. For
+ * large array-backed systems, {@link #withSiteOrder} renumbers the sites along a space-filling curve instead.
+ */
+public class AmoebotTopology {
+    public static final int DIMENSIONS = 2;
+
+    public enum SiteOrder {
+        LISTED, MORTON, HILBERT
+    }
+
+    private final ImmutableList<Direction> directions;
+    private final int directionCount;
+    private final int[] directionDx;
+    private final int[] directionDy;
+
+    private final int[] periods;
+    private final int[] wrapHalfLengths;
+
+    private final int minX, minY, width, height;
+    private final int[] boxToSite;
+
+    private final int siteCount;
+    private final int[] siteX;
+    private final int[] siteY;
+    private final Vector[] sitePositions;
+
+    private final int[] neighbors;
+    private final byte[] levelDeltas;
+
+    public AmoebotTopology(Stream<Vector> validPositions, List<Direction> directions, int[] wrapHalfLengths) {
+        if (wrapHalfLengths != null && wrapHalfLengths.length != DIMENSIONS) {
+            throw new RuntimeException("Wrap half-lengths should be given for both axes.");
+        }
+
+        this.directions = ImmutableList.copyOf(directions);
+        this.directionCount = this.directions.size();
+        this.directionDx = new int[this.directionCount];
+        this.directionDy = new int[this.directionCount];
+        for (int d = 0; d < this.directionCount; d++) {
+            Vector v = this.directions.get(d).getVector();
+            this.directionDx[d] = (int) v.get(0);
+            this.directionDy[d] = (int) v.get(1);
+        }
+
+        this.periods = new int[DIMENSIONS];
+        this.wrapHalfLengths = wrapHalfLengths == null ? null : wrapHalfLengths.clone();
+        if (wrapHalfLengths != null) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                this.periods[i] = wrapHalfLengths[i] > 0 ? 2 * wrapHalfLengths[i] + 1 : 0;
+            }
+        }
+
+        // Collect the sites and their bounding box
+        int[] xs = new int[64];
+        int[] ys = new int[64];
+        int count = 0;
+        int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+
+        Iterator<Vector> it = validPositions.iterator();
+        while (it.hasNext()) {
+            Vector v = it.next();
+            if (count == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * count);
+                ys = Arrays.copyOf(ys, 2 * count);
+            }
+
+            int x = (int) v.get(0);
+            int y = (int) v.get(1);
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+
+            loX = Math.min(loX, x);
+            loY = Math.min(loY, y);
+            hiX = Math.max(hiX, x);
+            hiY = Math.max(hiY, y);
+        }
+
+        if (count == 0) {
+            throw new RuntimeException("A topology needs at least one site.");
+        }
+
+        this.minX = loX;
+        this.minY = loY;
+        this.width = hiX - loX + 1;
+        this.height = hiY - loY + 1;
+        this.boxToSite = new int[this.width * this.height];
+        Arrays.fill(this.boxToSite, -1);
+
+        this.siteX = new int[count];
+        this.siteY = new int[count];
+        this.sitePositions = new Vector[count];
+
+        int sites = 0;
+        for (int i = 0; i < count; i++) {
+            int box = (ys[i] - this.minY) * this.width + (xs[i] - this.minX);
+            if (this.boxToSite[box] != -1) continue; // Some grids list a position twice
+
+            this.boxToSite[box] = sites;
+            this.siteX[sites] = xs[i];
+            this.siteY[sites] = ys[i];
+            this.sitePositions[sites] = Vector.fromArray(new double[]{xs[i], ys[i]});
+            sites++;
+        }
+        this.siteCount = sites;
+
+        // Now the adjacency
+        this.neighbors = new int[this.siteCount * this.directionCount];
+        this.levelDeltas = new byte[this.siteCount * this.directionCount * DIMENSIONS];
+
+        for (int site = 0; site < this.siteCount; site++) {
+            for (int d = 0; d < this.directionCount; d++) {
+                int entry = site * this.directionCount + d;
+
+                int expectedX = this.siteX[site] + this.directionDx[d];
+                int expectedY = this.siteY[site] + this.directionDy[d];
+                int x = this.wrap(expectedX, 0);
+                int y = this.wrap(expectedY, 1);
+
+                this.neighbors[entry] = this.getSiteIndex(x, y);
+
+                // A wrap from the upper edge to the lower edge takes us up a level, and vice versa.
+                this.levelDeltas[entry * DIMENSIONS] = (byte) Integer.signum(expectedX - x);
+                this.levelDeltas[entry * DIMENSIONS + 1] = (byte) Integer.signum(expectedY - y);
+            }
+        }
+    }
+
+    /**
+     * Returns a topology over the same sites, numbered in the given order. Positions, adjacency and wrapping are
+     * unchanged, only the site indices differ.
+     */
+    public AmoebotTopology withSiteOrder(SiteOrder order) {
+        if (order == SiteOrder.LISTED) return this;
+
+        int curveOrder = SpaceFillingCurves.orderFor(Math.max(this.width, this.height));
+        long[] keys = new long[this.siteCount];
+        Integer[] sites = new Integer[this.siteCount];
+        for (int site = 0; site < this.siteCount; site++) {
+            int x = this.siteX[site] - this.minX;
+            int y = this.siteY[site] - this.minY;
+            keys[site] = order == SiteOrder.MORTON ? SpaceFillingCurves.morton(x, y) : SpaceFillingCurves.hilbert(curveOrder, x, y);
+            sites[site] = site;
+        }
+
+        Arrays.sort(sites, (a, b) -> Long.compare(keys[a], keys[b]));
+        return new AmoebotTopology(Arrays.stream(sites).map(site -> this.sitePositions[site]), this.directions, this.wrapHalfLengths);
+    }
+
+    private int wrap(int coordinate, int axis) {
+        int period = this.periods[axis];
+        if (period == 0) return coordinate;
+
+        int half = period / 2;
+        return Math.floorMod(coordinate + half, period) - half;
+    }
+
+    public ImmutableList<Direction> getDirections() {
+        return this.directions;
+    }
+
+    public int getDirectionCount() {
+        return this.directionCount;
+    }
+
+    public int getDirectionIndex(Direction d) {
+        int ordinal = d.getOrdinal();
+        if (ordinal >= 0 && ordinal < this.directionCount && this.directions.get(ordinal) == d) return ordinal;
+
+        for (int i = 0; i < this.directionCount; i++) {
+            if (this.directions.get(i) == d) return i;
+        }
+        return -1;
+    }
+
+    public int getSiteCount() {
+        return this.siteCount;
+    }
+
+    public int getSiteIndex(int x, int y) {
+        int bx = x - this.minX;
+        int by = y - this.minY;
+        if (bx < 0 || by < 0 || bx >= this.width || by >= this.height) return -1;
+
+        return this.boxToSite[by * this.width + bx];
+    }
+
+    public int getSiteIndex(Vector v) {
+        if (v == null || v.length() != DIMENSIONS) return -1;
+
+        double x = v.get(0);
+        double y = v.get(1);
+        if (x != Math.rint(x) || y != Math.rint(y)) return -1;
+
+        return this.getSiteIndex((int) x, (int) y);
+    }
+
+    public int getSiteX(int site) {
+        return this.siteX[site];
+    }
+
+    public int getSiteY(int site) {
+        return this.siteY[site];
+    }
+
+    public int getSiteCoordinate(int site, int axis) {
+        return axis == 0 ? this.siteX[site] : this.siteY[site];
+    }
+
+    /**
+     * Returns the position of a site. This is a fresh copy, since callers hand positions on to code that may modify
+     * them or use them as map keys.
+     */
+    public Vector getSitePosition(int site) {
+        return this.sitePositions[site].copy();
+    }
+
+    public int getNeighborSite(int site, int direction) {
+        return this.neighbors[site * this.directionCount + direction];
+    }
+
+    public int getLevelDelta(int site, int direction, int axis) {
+        return this.levelDeltas[(site * this.directionCount + direction) * DIMENSIONS + axis];
+    }
+
+    /**
+     * Returns the direction that takes the first site to the second, or -1 if they are not adjacent.
+     */
+    public int getDirectionBetween(int fromSite, int toSite) {
+        if (fromSite < 0 || toSite < 0) return -1;
+
+        int base = fromSite * this.directionCount;
+        for (int d = 0; d < this.directionCount; d++) {
+            if (this.neighbors[base + d] == toSite) return d;
+        }
+        return -1;
+    }
+
+    public int getPeriod(int axis) {
+        return this.periods[axis];
+    }
+}
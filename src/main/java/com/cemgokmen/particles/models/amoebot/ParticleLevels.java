@@ -0,0 +1,89 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.amoebot;
+
+import com.cemgokmen.particles.models.Particle;
+import org.la4j.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Tracks how many times each particle on a wrapped grid has crossed the border along each axis, so that we can
+ * recover its position on the unwrapped plane. Levels are kept in a flat array indexed by particle id.
+ */
+public class ParticleLevels {
+    private final AmoebotTopology topology;
+    private int[] levels = new int[0];
+
+    public ParticleLevels(AmoebotTopology topology) {
+        this.topology = topology;
+    }
+
+    private void ensureCapacity(int id) {
+        int needed = (id + 1) * AmoebotTopology.DIMENSIONS;
+        if (needed > this.levels.length) {
+            this.levels = Arrays.copyOf(this.levels, Math.max(needed, 2 * this.levels.length));
+        }
+    }
+
+    public void reset(Particle p) {
+        int id = p.getId();
+        this.ensureCapacity(id);
+        for (int i = 0; i < AmoebotTopology.DIMENSIONS; i++) {
+            this.levels[id * AmoebotTopology.DIMENSIONS + i] = 0;
+        }
+    }
+
+    /**
+     * Gives a particle the levels another particle has in another set of levels, e.g. when forking a grid.
+     */
+    public void copy(ParticleLevels from, Particle original, Particle p) {
+        int id = p.getId();
+        this.ensureCapacity(id);
+        for (int i = 0; i < AmoebotTopology.DIMENSIONS; i++) {
+            this.levels[id * AmoebotTopology.DIMENSIONS + i] = from.getLevel(original, i);
+        }
+    }
+
+    public void recordMove(Particle p, int fromSite, int direction) {
+        int id = p.getId();
+        for (int i = 0; i < AmoebotTopology.DIMENSIONS; i++) {
+            this.levels[id * AmoebotTopology.DIMENSIONS + i] += this.topology.getLevelDelta(fromSite, direction, i);
+        }
+    }
+
+    public int getLevel(Particle p, int axis) {
+        return this.levels[p.getId() * AmoebotTopology.DIMENSIONS + axis];
+    }
+
+    public Vector getLevel(Particle p) {
+        return Vector.fromArray(new double[]{this.getLevel(p, 0), this.getLevel(p, 1)});
+    }
+
+    public double getLeveledCoordinate(Particle p, Vector position, int axis) {
+        return position.get(axis) + this.getLevel(p, axis) * this.topology.getPeriod(axis);
+    }
+
+    public Vector getLeveledPosition(Particle p, Vector position) {
+        return Vector.fromArray(new double[]{
+                this.getLeveledCoordinate(p, position, 0),
+                this.getLeveledCoordinate(p, position, 1)
+        });
+    }
+}
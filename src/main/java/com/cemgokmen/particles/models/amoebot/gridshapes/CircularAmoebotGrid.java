@@ -18,112 +18,124 @@
 
 package com.cemgokmen.particles.models.amoebot.gridshapes;
 
-import com.cemgokmen.particles.graphics.GridGraphics;
 import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.ParticleLevels;
 import com.cemgokmen.particles.util.VectorWrapper;
-import com.google.common.collect.Maps;
 import org.la4j.Vector;
 
-import java.util.Map;
-
 public class CircularAmoebotGrid extends LinearAmoebotGrid {
-    private Map<Particle, Vector> levels = Maps.newHashMap();
-    private Vector wrapVector;
+    private final Vector wrapVector;
+    private final AmoebotTopology topology;
+    private final ParticleLevels levels;
 
     public CircularAmoebotGrid(int halfLength) {
         super(halfLength);
         this.wrapVector = Vector.fromArray(new double[]{1, halfLength});
+        this.topology = new AmoebotTopology(this.getValidPositions(), this.getCompass().getDirections(), new int[]{1, halfLength});
+        this.levels = new ParticleLevels(this.topology);
+    }
+
+    private CircularAmoebotGrid(CircularAmoebotGrid template) {
+        super(template.getHalfLength());
+
+        // Forks share the topology
+        this.wrapVector = template.wrapVector;
+        this.topology = template.topology;
+        this.levels = new ParticleLevels(this.topology);
+    }
+
+    @Override
+    protected ParticleGrid createEmptyCopy() {
+        return new CircularAmoebotGrid(this);
+    }
+
+    @Override
+    protected void onParticleForked(ParticleGrid source, Particle original, Particle copy) {
+        this.levels.copy(((CircularAmoebotGrid) source).levels, original, copy);
     }
 
     @Override
     public Vector getPositionInDirection(Vector p, Direction d) {
+        // Look the neighbor up in the precomputed table when we can
+        int site = this.topology.getSiteIndex(p);
+        int direction = this.topology.getDirectionIndex(d);
+        int neighbor = (site != -1 && direction != -1) ? this.topology.getNeighborSite(site, direction) : -1;
+        if (neighbor != -1) {
+            return this.topology.getSitePosition(neighbor);
+        }
+
         Vector newPos = super.getPositionInDirection(p, d);
 
         return VectorWrapper.wrapVector(newPos, this.wrapVector);
     }
 
     @Override
-    public void addParticle(Particle p, Vector position) throws Exception {
-        super.addParticle(p, position);
+    protected void onParticleAdded(Particle p, Vector position) {
+        this.levels.reset(p);
 
-        this.levels.put(p, Vector.zero(2));
+        super.onParticleAdded(p, position);
     }
 
     @Override
-    public void removeParticle(Particle p) throws Exception {
-        super.removeParticle(p);
+    public int tryMoveParticle(Particle p, Vector v) {
+        // Let the grid report particles that are not here and positions that are not on the grid
+        int fromSite = this.topology.getSiteIndex(this.getParticlePosition(p));
+        int toSite = this.topology.getSiteIndex(v);
+        if (fromSite == -1 || toSite == -1) return super.tryMoveParticle(p, v);
+
+        // Find the direction that takes us to the new position
+        int direction = this.topology.getDirectionBetween(fromSite, toSite);
 
-        this.levels.remove(p);
+        if (direction == -1) throw new RuntimeException("Jump move!");
+
+        // Execute the move
+        return super.tryMoveParticle(p, v);
     }
 
     @Override
-    public void moveParticle(Particle p, Vector v) throws Exception {
-        Vector initialPosition = this.getParticlePosition(p);
-        Direction d = null;
+    public int trySwapParticles(Particle a, Particle b) {
+        int aSite = this.topology.getSiteIndex(this.getParticlePosition(a));
+        int bSite = this.topology.getSiteIndex(this.getParticlePosition(b));
+        if (aSite == -1 || bSite == -1) return super.trySwapParticles(a, b);
 
-        // Find the direction that takes us to the new position
-        for (Direction d2: this.getCompass().getDirections()) {
-            if (this.getPositionInDirection(initialPosition, d2).equals(v)) {
-                d = d2;
-                break;
-            }
-        }
+        // Levels are tracked one step at a time, so only neighbors can swap
+        if (this.topology.getDirectionBetween(aSite, bSite) == -1) throw new RuntimeException("Jump move!");
 
-        if (d == null) throw new RuntimeException("Jump move!");
+        return super.trySwapParticles(a, b);
+    }
 
-        // Find the non-wrapped position
-        Vector expectedPosition = initialPosition.add(d.getVector());
+    @Override
+    protected void onParticleMoved(Particle p, Vector from, Vector to) {
+        // Worry about the levels before the aggregates see the move
+        int fromSite = this.topology.getSiteIndex(from);
+        this.levels.recordMove(p, fromSite, this.topology.getDirectionBetween(fromSite, this.topology.getSiteIndex(to)));
 
-        // Execute the move
-        super.moveParticle(p, v);
-
-        // Now worry about the levels
-        if (!v.equals(initialPosition)) {
-            // A move has been made.
-            if (!expectedPosition.equals(v)) {
-                //System.out.println("A particle crossed a border");
-                // There was a wraparound. Run level calculation.
-                Vector particleLevel = this.levels.get(p);
-                for (int i = 0; i < v.length(); i++) {
-                    int actual = (int) v.get(i);
-                    int expected = (int) expectedPosition.get(i);
-
-                    int level = (int) particleLevel.get(i);
-
-                    if (actual > expected) {
-                        //System.out.printf("From dim %d low to high, down one level\n", i);
-                        // This is a warp from lower edge to upper edge, so went down a level
-                        level--;
-                    } else if (actual < expected) {
-                        //System.out.printf("From dim %d high to low, up one level\n", i);
-                        // This is a warp from an upper edge to a lower edge, so went up a level
-                        level++;
-                    }
-
-                    particleLevel.set(i, level);
-                }
-            }
-        }
+        super.onParticleMoved(p, from, to);
+    }
+
+    @Override
+    public AmoebotTopology getTopology() {
+        return this.topology;
     }
 
     public Vector getParticleLevel(Particle p) {
-        return this.levels.get(p);
+        return this.levels.getLevel(p);
+    }
+
+    public int getParticleLevel(Particle p, int axis) {
+        return this.levels.getLevel(p, axis);
     }
 
     public Vector getLeveledParticlePosition(Particle p) {
         // This is useful for CoM calculation
-        Vector position = this.getParticlePosition(p);
-        Vector level = this.getParticleLevel(p);
-
-        return VectorWrapper.unwrapVector(position, this.wrapVector, level);
+        return this.levels.getLeveledPosition(p, this.getParticlePosition(p));
     }
 
     @Override
-    public Vector getCenterOfMass() {
-        return this.getAllParticles()
-                .map(this::getLeveledParticlePosition)
-                .reduce(Vector.zero(2), Vector::add)
-                .divide(this.getParticleCount());
+    public double getLeveledParticleCoordinate(Particle p, int axis) {
+        return this.levels.getLeveledCoordinate(p, this.getParticlePosition(p), axis);
     }
 
     @Override
@@ -19,13 +19,16 @@
 package com.cemgokmen.particles.models.amoebot.gridshapes;
 
 import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.storage.BiMapParticleStorage;
+import com.cemgokmen.particles.storage.MappedParticleStorage;
 import com.cemgokmen.particles.storage.ParticleStorage;
 import com.cemgokmen.particles.util.Utils;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.google.common.collect.Lists;
 import org.la4j.Vector;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -43,11 +46,36 @@ public class HexagonalAmoebotGrid extends AmoebotGrid {
         this.storage = new BiMapParticleStorage(3 * this.radius * this.radius); //new TableParticleStorage(this.getBoundaryVertices());
     }
 
+    /**
+     * Creates a grid whose sites are kept off the heap, for radii where a map of positions would strain the
+     * collector. The arrays are mapped from files in the given directory, or held in direct buffers if it is null.
+     * Copies and forks of the grid go back to on-heap storage. The grid counts as sparse, so that observables and
+     * engines do not build whole-lattice structures on the heap for it.
+     */
+    public HexagonalAmoebotGrid(int radius, Path storageDirectory) {
+        if (radius < 0) {
+            throw new RuntimeException("Radius should be a non-negative integer.");
+        }
+        this.radius = radius;
+
+        this.storage = new MappedParticleStorage(this.getBoundaryVertices(), storageDirectory);
+    }
+
+    @Override
+    protected ParticleGrid createEmptyCopy() {
+        return new HexagonalAmoebotGrid(this.radius);
+    }
+
     @Override
     protected ParticleStorage getStorage() {
         return this.storage;
     }
 
+    @Override
+    public boolean isSparse() {
+        return this.storage instanceof MappedParticleStorage;
+    }
+
     @Override
     public boolean isPositionValid(Vector p, Particle forParticle) {
         if (p.length() != 2) {
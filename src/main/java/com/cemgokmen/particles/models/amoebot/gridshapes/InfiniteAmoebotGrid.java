@@ -0,0 +1,144 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.gridshapes;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.storage.ChunkedParticleStorage;
+import com.cemgokmen.particles.storage.ParticleStorage;
+import com.cemgokmen.particles.util.LongHashMap;
+import com.cemgokmen.particles.util.Utils;
+import com.google.common.collect.Lists;
+import org.la4j.Vector;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An amoebot grid without walls, for systems that spread out, e.g. compression with lambda below 1. Particles are
+ * kept in chunks that exist only where there are particles, so memory and drawing follow the particle count. The
+ * valid positions and the topology we list are those of the chunks in use at the time plus a margin of one chunk
+ * around them, so that the empty space just outside the system is there for moves and hole checks.
+ *
+ * Since the topology is only a snapshot of that area, the array-backed engines, which would stop at its edge, refuse
+ * this grid; run it on particle objects instead.
+ */
+public class InfiniteAmoebotGrid extends AmoebotGrid {
+    private final ChunkedParticleStorage storage = new ChunkedParticleStorage();
+
+    private AmoebotTopology topology = null;
+    private int topologyVersion;
+
+    @Override
+    protected ParticleGrid createEmptyCopy() {
+        return new InfiniteAmoebotGrid();
+    }
+
+    @Override
+    protected ParticleStorage getStorage() {
+        return this.storage;
+    }
+
+    @Override
+    public boolean isPositionValid(Vector p, Particle forParticle) {
+        return p.length() == 2;
+    }
+
+    @Override
+    public Stream<Vector> getValidPositions() {
+        if (this.storage.getChunkCount() == 0) return ChunkedParticleStorage.getChunkPositions(0, 0);
+
+        LongHashMap<int[]> listed = new LongHashMap<>();
+        this.storage.getChunks().forEach(chunk -> {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int chunkX = chunk.getChunkX() + dx;
+                    int chunkY = chunk.getChunkY() + dy;
+                    listed.put(ChunkedParticleStorage.getKey(chunkX, chunkY), new int[]{chunkX, chunkY});
+                }
+            }
+        });
+        return listed.values().flatMap(c -> ChunkedParticleStorage.getChunkPositions(c[0], c[1]));
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public List<Vector> getBoundaryVertices() {
+        // The bounding box of the listed chunks, or a small box around the origin
+        int minX = 0, minY = 0, maxX = ChunkedParticleStorage.CHUNK_SIZE - 1, maxY = ChunkedParticleStorage.CHUNK_SIZE - 1;
+        List<ChunkedParticleStorage.Chunk> chunks = this.storage.getChunks().collect(Collectors.toList());
+        if (!chunks.isEmpty()) {
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (ChunkedParticleStorage.Chunk chunk : chunks) {
+                minX = Math.min(minX, chunk.getMinX());
+                minY = Math.min(minY, chunk.getMinY());
+                maxX = Math.max(maxX, chunk.getMinX() + ChunkedParticleStorage.CHUNK_SIZE - 1);
+                maxY = Math.max(maxY, chunk.getMinY() + ChunkedParticleStorage.CHUNK_SIZE - 1);
+            }
+            minX -= ChunkedParticleStorage.CHUNK_SIZE;
+            minY -= ChunkedParticleStorage.CHUNK_SIZE;
+            maxX += ChunkedParticleStorage.CHUNK_SIZE;
+            maxY += ChunkedParticleStorage.CHUNK_SIZE;
+        }
+
+        return Lists.newArrayList(
+                Utils.getVector(maxX + 1, maxY + 1),
+                Utils.getVector(maxX + 1, minY - 1),
+                Utils.getVector(minX - 1, minY - 1),
+                Utils.getVector(minX - 1, maxY + 1)
+        );
+    }
+
+    @Override
+    public AmoebotTopology getTopology() {
+        if (this.topology == null || this.topologyVersion != this.storage.getLayoutVersion()) {
+            this.topology = new AmoebotTopology(this.getValidPositions(), this.getCompass().getDirections(), null);
+            this.topologyVersion = this.storage.getLayoutVersion();
+        }
+        return this.topology;
+    }
+
+    @Override
+    public Vector getRandomPosition(Particle particle) {
+        // Stay near the particles that are already here
+        List<ChunkedParticleStorage.Chunk> chunks = this.storage.getChunks().collect(Collectors.toList());
+        int minX = 0, minY = 0;
+        if (!chunks.isEmpty()) {
+            ChunkedParticleStorage.Chunk chunk = chunks.get(Utils.getRandom().nextInt(chunks.size()));
+            minX = chunk.getMinX();
+            minY = chunk.getMinY();
+        }
+
+        return Utils.getVector(minX + Utils.getRandom().nextInt(ChunkedParticleStorage.CHUNK_SIZE),
+                minY + Utils.getRandom().nextInt(ChunkedParticleStorage.CHUNK_SIZE));
+    }
+
+    public int getChunkCount() {
+        return this.storage.getChunkCount();
+    }
+}
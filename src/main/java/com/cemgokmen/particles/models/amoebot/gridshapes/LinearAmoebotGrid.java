@@ -19,6 +19,7 @@
 package com.cemgokmen.particles.models.amoebot.gridshapes;
 
 import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.cemgokmen.particles.storage.BiMapParticleStorage;
 import com.cemgokmen.particles.storage.ParticleStorage;
@@ -33,38 +34,13 @@ import java.util.stream.Stream;
 
 public class LinearAmoebotGrid extends AmoebotGrid {
     public static class LinearAmoebotCompass extends AmoebotCompass {
-        private static final Direction N = new Direction(Utils.getVector(0, -1));
-        private static final Direction S = new Direction(Utils.getVector(0, 1));
+        private static final Direction N = new Direction(Utils.getVector(0, -1), 0);
+        private static final Direction S = new Direction(Utils.getVector(0, 1), 1);
 
-        private static final Direction[] directions = {N, S};
+        private static final ImmutableList<Direction> DIRECTIONS = ImmutableList.of(N, S);
 
-        @Override
-        public ImmutableList<Direction> getDirections() {
-            return ImmutableList.copyOf(directions);
-        }
-
-        @Override
-        public Direction shiftDirectionCounterclockwise(Direction d, double times) {
-            if (times % 2 == 0) {
-                return d == N ? N : S;
-            } else {
-                return d == N ? S : N;
-            }
-        }
-
-        @Override
-        public int getMinorArcLength(Direction a, Direction b) {
-            return a == b ? 0 : 1;
-        }
-
-        @Override
-        public double getAngleFromMinorArcLength(int minorArcLength) {
-            return minorArcLength == 0 ? 0 : Math.PI / 2;
-        }
-
-        @Override
-        public double getAngleBetweenDirections(Direction a, Direction b) {
-            return this.getAngleFromMinorArcLength(this.getMinorArcLength(a, b));
+        public LinearAmoebotCompass() {
+            super(DIRECTIONS, Math.PI / 2);
         }
     }
 
@@ -87,6 +63,11 @@ public class LinearAmoebotGrid extends AmoebotGrid {
         this.storage = new BiMapParticleStorage(2 * this.halfLength);
     }
 
+    @Override
+    protected ParticleGrid createEmptyCopy() {
+        return new LinearAmoebotGrid(this.halfLength);
+    }
+
     @Override
     protected ParticleStorage getStorage() {
         return this.storage;
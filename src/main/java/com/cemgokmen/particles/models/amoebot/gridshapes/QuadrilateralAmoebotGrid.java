@@ -19,6 +19,7 @@
 package com.cemgokmen.particles.models.amoebot.gridshapes;
 
 import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.storage.BiMapParticleStorage;
 import com.cemgokmen.particles.storage.ParticleStorage;
 import com.cemgokmen.particles.util.Utils;
@@ -43,6 +44,11 @@ public class QuadrilateralAmoebotGrid extends AmoebotGrid {
         this.storage = new BiMapParticleStorage(this.sideHalfLength * this.sideHalfLength); //new TableParticleStorage(this.getBoundaryVertices());
     }
 
+    @Override
+    protected ParticleGrid createEmptyCopy() {
+        return new QuadrilateralAmoebotGrid(this.sideHalfLength);
+    }
+
     @Override
     protected ParticleStorage getStorage() {
         return this.storage;
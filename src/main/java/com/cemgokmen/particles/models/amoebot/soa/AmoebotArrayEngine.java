@@ -0,0 +1,344 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.FoodAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.ForagingAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+import org.la4j.Vector;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Runs an amoebot system on {@link AmoebotStateArrays} instead of particle objects. This is meant for large headless
+ * runs: a system can be imported from a grid, run through its algorithm's array fast path, and turned back into
+ * particle objects only when something needs to look at it, e.g. to render a frame.
+ *
+ * By default every activation picks a particle uniformly at random, which is what the algorithms are analyzed for.
+ * For large systems where a sweep is statistically acceptable, {@link ActivationOrder#SWEEP} instead activates every
+ * particle once per sweep, going through shuffled blocks of consecutive indices. Together with a topology numbered
+ * along a space-filling curve and periodic {@link AmoebotStateArrays#sortBySite} (see {@link #setResortInterval}),
+ * consecutive activations then mostly touch memory that is already in cache.
+ */
+public class AmoebotArrayEngine {
+    public static final int SWEEP_BLOCK_SIZE = 256;
+
+    public enum ActivationOrder {
+        UNIFORM, SWEEP
+    }
+
+    private final AmoebotStateArrays state;
+    private final ParticleAlgorithm algorithm;
+    private final ArrayActivatable kernel;
+    private final boolean greyscale;
+    private Random random = Utils.getRandom();
+    private long activationsRun = 0;
+
+    private ActivationOrder activationOrder = ActivationOrder.UNIFORM;
+    private long resortInterval = 0;
+    private long lastResort = 0;
+    private int[] sweep = new int[0];
+    private int sweepLength = 0;
+    private int sweepPosition = 0;
+
+    public AmoebotArrayEngine(AmoebotStateArrays state, ParticleAlgorithm algorithm, boolean greyscale) {
+        if (!(algorithm instanceof ArrayActivatable) || !((ArrayActivatable) algorithm).supportsArrayActivation()) {
+            throw new RuntimeException(algorithm.getClass().getSimpleName() + " does not support array-backed systems.");
+        }
+
+        if (state.getDirectionCount() != 6) {
+            throw new RuntimeException("Array-backed systems need the hexagonal compass.");
+        }
+
+        this.state = state;
+        this.algorithm = algorithm;
+        this.kernel = (ArrayActivatable) algorithm;
+        this.greyscale = greyscale;
+    }
+
+    /**
+     * Copies the particles on a grid into arrays. All particles should be running the same algorithm.
+     */
+    public static AmoebotArrayEngine fromGrid(AmoebotGrid grid) {
+        return fromGrid(grid, AmoebotTopology.SiteOrder.LISTED);
+    }
+
+    /**
+     * Copies the particles on a grid into arrays over a topology with the given site numbering, with the particles
+     * numbered in site order. The topology is a fixed snapshot of the grid's lattice, so sparse grids, whose lattice
+     * only covers the space around the particles at the time, are rejected.
+     */
+    public static AmoebotArrayEngine fromGrid(AmoebotGrid grid, AmoebotTopology.SiteOrder siteOrder) {
+        if (grid.isSparse()) {
+            throw new RuntimeException("Array-backed systems need a bounded lattice, " + grid.getClass().getSimpleName() +
+                    " only covers the space around its particles.");
+        }
+
+        List<ParticleAlgorithm> algorithms = grid.getRunningAlgorithms().collect(Collectors.toList());
+        if (algorithms.size() != 1) {
+            throw new RuntimeException("Array-backed systems need exactly one running algorithm, found " + algorithms.size());
+        }
+
+        AmoebotTopology topology = grid.getTopology().withSiteOrder(siteOrder);
+        AmoebotStateArrays state = new AmoebotStateArrays(topology, grid.getParticleCount());
+        state.setTime(grid.getActivationsRun());
+        boolean greyscale = false;
+
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            int site = topology.getSiteIndex(grid.getParticlePosition(p));
+            int i;
+
+            if (p.getClass() == SeparableAmoebotParticle.class) {
+                SeparableAmoebotParticle particle = (SeparableAmoebotParticle) p;
+                i = state.add(site, AmoebotStateArrays.KIND_SEPARABLE, particle.getClassNumber(), 0);
+                greyscale = particle.isGreyscale();
+            } else if (p.getClass() == DirectedAmoebotParticle.class) {
+                int direction = topology.getDirectionIndex(((DirectedAmoebotParticle) p).getDirection());
+                i = state.add(site, AmoebotStateArrays.KIND_DIRECTED, 0, direction);
+            } else if (p.getClass() == ForagingAmoebotParticle.class) {
+                ForagingAmoebotParticle particle = (ForagingAmoebotParticle) p;
+                i = state.add(site, AmoebotStateArrays.KIND_FORAGING, 0, 0);
+                Integer token = particle.peekFoodToken();
+                state.setFeedingState(i, particle.getFedAt(), particle.getFedUntil(), particle.getTimesFed(),
+                        particle.getLongestWait(), token == null ? AmoebotStateArrays.NONE : token);
+                greyscale = particle.isGreyscale();
+            } else if (p.getClass() == FoodAmoebotParticle.class) {
+                Long expiresAt = ((FoodAmoebotParticle) p).getExpiresAt();
+                i = state.add(site, AmoebotStateArrays.KIND_FOOD, 0, 0);
+                if (expiresAt != null) state.setExpiresAt(i, expiresAt);
+            } else if (p.getClass() == AmoebotParticle.class) {
+                i = state.add(site, AmoebotStateArrays.KIND_AMOEBOT, 0, 0);
+            } else {
+                throw new RuntimeException("Array-backed systems do not support " + p.getClass().getSimpleName());
+            }
+
+            // Carry over the levels of wrapped grids
+            for (int axis = 0; axis < AmoebotTopology.DIMENSIONS; axis++) {
+                int period = topology.getPeriod(axis);
+                if (period == 0) continue;
+
+                double offset = grid.getLeveledParticleCoordinate(p, axis) - topology.getSiteCoordinate(site, axis);
+                state.setLevel(i, axis, (int) Math.round(offset / period));
+            }
+        }
+
+        if (siteOrder != AmoebotTopology.SiteOrder.LISTED) state.sortBySite();
+        return new AmoebotArrayEngine(state, algorithms.get(0), greyscale);
+    }
+
+    /**
+     * Adds particle objects matching the current state to the given grid, which should be empty and have the same
+     * shape as the one this system lives on. Wraparound levels are not carried over, and timestamps are moved onto
+     * the activation clock of the grid.
+     */
+    public <G extends AmoebotGrid> G materialize(G grid) throws Exception {
+        AmoebotTopology topology = this.state.getTopology();
+        long offset = grid.getActivationsRun() - this.state.getTime();
+
+        for (int i = 0; i < this.state.getCount(); i++) {
+            AmoebotParticle p;
+
+            switch (this.state.getKind(i)) {
+                case AmoebotStateArrays.KIND_SEPARABLE:
+                    p = new SeparableAmoebotParticle(this.state.getClassNumber(i), this.greyscale);
+                    break;
+                case AmoebotStateArrays.KIND_DIRECTED:
+                    p = new DirectedAmoebotParticle(grid.getCompass(), topology.getDirections().get(this.state.getDirection(i)), this.greyscale);
+                    break;
+                case AmoebotStateArrays.KIND_FORAGING:
+                    ForagingAmoebotParticle foraging = new ForagingAmoebotParticle(this.greyscale);
+                    int token = this.state.getFoodToken(i);
+                    foraging.setFeedingState(shift(this.state.getFedAt(i), offset), shift(this.state.getFedUntil(i), offset),
+                            this.state.getTimesFed(i), this.state.getLongestWait(i), token == AmoebotStateArrays.NONE ? null : token);
+                    p = foraging;
+                    break;
+                case AmoebotStateArrays.KIND_FOOD:
+                    FoodAmoebotParticle food = new FoodAmoebotParticle();
+                    long expiresAt = this.state.getExpiresAt(i);
+                    food.setExpiresAt(expiresAt == AmoebotStateArrays.NONE ? null : expiresAt + offset);
+                    p = food;
+                    break;
+                default:
+                    p = new AmoebotParticle();
+            }
+
+            grid.addParticle(p, topology.getSitePosition(this.state.getSite(i)));
+            p.setAlgorithm(this.algorithm);
+        }
+
+        return grid;
+    }
+
+    private static long shift(long timestamp, long offset) {
+        // Leave the "never" sentinels alone
+        return timestamp == Long.MIN_VALUE ? timestamp : timestamp + offset;
+    }
+
+    /**
+     * Returns an engine that continues from the current state independently of this one, sharing the algorithm.
+     * The state is forked copy-on-write, so this is cheap until the two start to diverge.
+     */
+    public AmoebotArrayEngine fork(Random random) {
+        AmoebotArrayEngine fork = new AmoebotArrayEngine(this.state.fork(), this.algorithm, this.greyscale);
+        fork.random = random;
+        fork.activationsRun = this.activationsRun;
+        fork.activationOrder = this.activationOrder;
+        fork.resortInterval = this.resortInterval;
+        fork.lastResort = this.lastResort;
+        return fork;
+    }
+
+    public void runActivations(int numActivations) {
+        for (int n = 0; n < numActivations; n++) {
+            int count = this.state.getCount();
+            if (count == 0) return;
+
+            // Same batch boundaries as ParticleGrid.runActivations for parameter edits
+            if (n % ParticleGrid.ACTIVATION_BATCH_SIZE == 0) this.algorithm.publishParameters();
+
+            int i = this.activationOrder == ActivationOrder.SWEEP ? this.nextInSweep() : this.nextUniform(count);
+            this.kernel.onArrayActivation(this.state, i, this.random);
+            this.activationsRun++;
+            this.state.tick();
+        }
+    }
+
+    private int nextUniform(int count) {
+        if (this.resortInterval > 0 && this.activationsRun - this.lastResort >= this.resortInterval) this.resort();
+        return this.random.nextInt(count);
+    }
+
+    private int nextInSweep() {
+        while (true) {
+            if (this.sweepPosition == this.sweepLength) this.startSweep();
+
+            // Particles removed during the sweep leave indices past the end behind
+            int i = this.sweep[this.sweepPosition++];
+            if (i < this.state.getCount()) return i;
+        }
+    }
+
+    private void startSweep() {
+        // Only resort between sweeps, since a sweep is a list of indices
+        if (this.resortInterval > 0 && this.activationsRun - this.lastResort >= this.resortInterval) this.resort();
+
+        int count = this.state.getCount();
+        if (this.sweep.length < count) this.sweep = new int[count];
+
+        int blocks = (count + SWEEP_BLOCK_SIZE - 1) / SWEEP_BLOCK_SIZE;
+        int[] blockOrder = new int[blocks];
+        for (int b = 0; b < blocks; b++) blockOrder[b] = b;
+        shuffle(blockOrder, 0, blocks, this.random);
+
+        int n = 0;
+        for (int b : blockOrder) {
+            int start = n;
+            for (int i = b * SWEEP_BLOCK_SIZE; i < Math.min((b + 1) * SWEEP_BLOCK_SIZE, count); i++) this.sweep[n++] = i;
+            shuffle(this.sweep, start, n, this.random);
+        }
+
+        this.sweepLength = n;
+        this.sweepPosition = 0;
+    }
+
+    private void resort() {
+        this.state.sortBySite();
+        this.lastResort = this.activationsRun;
+    }
+
+    private static void shuffle(int[] values, int from, int to, Random random) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+    }
+
+    public ActivationOrder getActivationOrder() {
+        return this.activationOrder;
+    }
+
+    public void setActivationOrder(ActivationOrder activationOrder) {
+        this.activationOrder = activationOrder;
+        this.sweepLength = 0;
+        this.sweepPosition = 0;
+    }
+
+    public long getResortInterval() {
+        return this.resortInterval;
+    }
+
+    /**
+     * Renumbers the particles in site order every so many activations, 0 for never. Particles drift away from their
+     * neighbors in the arrays as they move, so this keeps the layout local. Uniform activation is unaffected by the
+     * numbering; sweeps pick up the new numbering at their next start.
+     */
+    public void setResortInterval(long resortInterval) {
+        this.resortInterval = resortInterval;
+    }
+
+    public boolean isGreyscale() {
+        return this.greyscale;
+    }
+
+    public AmoebotStateArrays getState() {
+        return this.state;
+    }
+
+    public ParticleAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    public long getActivationsRun() {
+        return this.activationsRun;
+    }
+
+    public int getMovesMade() {
+        return this.state.getMovesMade();
+    }
+
+    public Vector getCenterOfMass() {
+        double x = 0, y = 0;
+        for (int i = 0; i < this.state.getCount(); i++) {
+            x += this.state.getLeveledCoordinate(i, 0);
+            y += this.state.getLeveledCoordinate(i, 1);
+        }
+
+        int count = this.state.getCount();
+        return Vector.fromArray(new double[]{x / count, y / count});
+    }
+}
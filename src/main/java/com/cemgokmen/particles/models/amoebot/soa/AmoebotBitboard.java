@@ -0,0 +1,498 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import org.la4j.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Occupancy of an amoebot lattice as bitboards: one bit per site of the bounding box, stored row by row in axial
+ * coordinates as {@code long[]} words, with a separate board per class of separable particles. Whole-grid questions
+ * (edge counts, neighbor counts, boundaries, connectivity) are then answered by shifting rows against each other and
+ * counting bits, 64 sites at a time, instead of by looking up neighbors of boxed particles.
+ *
+ * An axis that wraps around must be exactly one period long, which is the case for the toroidal grid. Every board
+ * handed out is restricted to the valid sites, and the bits past the end of each row are kept clear.
+ */
+public class AmoebotBitboard {
+    private final AmoebotTopology topology;
+    private final int minX, minY, width, height;
+    private final int wordsPerRow;
+    private final boolean wrapX, wrapY;
+    private final int[] directionDx;
+    private final int[] directionDy;
+
+    private final long[] valid;
+    private final long[] occupied;
+    private final List<long[]> classes = new ArrayList<>();
+
+    public AmoebotBitboard(AmoebotTopology topology) {
+        if (!supports(topology)) {
+            throw new RuntimeException("Bitboards need the six amoebot directions.");
+        }
+        this.topology = topology;
+
+        int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+        for (int site = 0; site < topology.getSiteCount(); site++) {
+            loX = Math.min(loX, topology.getSiteX(site));
+            loY = Math.min(loY, topology.getSiteY(site));
+            hiX = Math.max(hiX, topology.getSiteX(site));
+            hiY = Math.max(hiY, topology.getSiteY(site));
+        }
+        this.minX = loX;
+        this.minY = loY;
+        this.width = hiX - loX + 1;
+        this.height = hiY - loY + 1;
+        this.wordsPerRow = (this.width + 63) >>> 6;
+
+        this.wrapX = topology.getPeriod(0) > 0;
+        this.wrapY = topology.getPeriod(1) > 0;
+        if ((this.wrapX && topology.getPeriod(0) != this.width) || (this.wrapY && topology.getPeriod(1) != this.height)) {
+            throw new RuntimeException("Bitboards need wrapped axes to span exactly one period.");
+        }
+
+        this.directionDx = new int[topology.getDirectionCount()];
+        this.directionDy = new int[topology.getDirectionCount()];
+        for (int d = 0; d < topology.getDirectionCount(); d++) {
+            Vector v = topology.getDirections().get(d).getVector();
+            this.directionDx[d] = (int) v.get(0);
+            this.directionDy[d] = (int) v.get(1);
+        }
+
+        this.valid = this.newBoard();
+        for (int site = 0; site < topology.getSiteCount(); site++) {
+            this.setSite(this.valid, site);
+        }
+        this.occupied = this.newBoard();
+    }
+
+    public static boolean supports(AmoebotTopology topology) {
+        return topology.getDirectionCount() == 6;
+    }
+
+    /**
+     * Checks whether whole-grid questions about this grid should go through bitboards. Sparse grids are left out,
+     * since their bounding box can be far larger than the area their particles cover.
+     */
+    public static boolean supports(AmoebotGrid grid) {
+        return !grid.isSparse() && supports(grid.getTopology());
+    }
+
+    public static AmoebotBitboard fromGrid(AmoebotGrid grid) {
+        AmoebotBitboard bitboard = new AmoebotBitboard(grid.getTopology());
+
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            Vector position = grid.getParticlePosition(p);
+            int x = (int) position.get(0);
+            int y = (int) position.get(1);
+
+            bitboard.set(bitboard.occupied, x, y);
+            if (p instanceof SeparableAmoebotParticle) {
+                bitboard.set(bitboard.getOrCreateClass(((SeparableAmoebotParticle) p).getClassNumber()), x, y);
+            }
+        }
+        return bitboard;
+    }
+
+    public static AmoebotBitboard fromState(AmoebotStateArrays state) {
+        AmoebotBitboard bitboard = new AmoebotBitboard(state.getTopology());
+
+        for (int i = 0; i < state.getCount(); i++) {
+            int site = state.getSite(i);
+            bitboard.setSite(bitboard.occupied, site);
+            if (state.getKind(i) == AmoebotStateArrays.KIND_SEPARABLE) {
+                bitboard.setSite(bitboard.getOrCreateClass(state.getClassNumber(i)), site);
+            }
+        }
+        return bitboard;
+    }
+
+    private long[] getOrCreateClass(int classNumber) {
+        while (this.classes.size() <= classNumber) this.classes.add(this.newBoard());
+        return this.classes.get(classNumber);
+    }
+
+    public AmoebotTopology getTopology() {
+        return this.topology;
+    }
+
+    public long[] newBoard() {
+        return new long[this.height * this.wordsPerRow];
+    }
+
+    public long[] getValid() {
+        return this.valid;
+    }
+
+    public long[] getOccupied() {
+        return this.occupied;
+    }
+
+    public int getClassCount() {
+        return this.classes.size();
+    }
+
+    public long[] getClassMask(int classNumber) {
+        return classNumber < this.classes.size() ? this.classes.get(classNumber) : this.newBoard();
+    }
+
+    /**
+     * The valid sites that are not occupied.
+     */
+    public long[] getEmpty() {
+        long[] empty = this.newBoard();
+        for (int w = 0; w < empty.length; w++) empty[w] = this.valid[w] & ~this.occupied[w];
+        return empty;
+    }
+
+    public void set(long[] board, int x, int y) {
+        int row = y - this.minY;
+        int column = x - this.minX;
+        board[row * this.wordsPerRow + (column >>> 6)] |= 1L << column;
+    }
+
+    public void clear(long[] board, int x, int y) {
+        int row = y - this.minY;
+        int column = x - this.minX;
+        board[row * this.wordsPerRow + (column >>> 6)] &= ~(1L << column);
+    }
+
+    public boolean get(long[] board, int x, int y) {
+        int row = y - this.minY;
+        int column = x - this.minX;
+        return (board[row * this.wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    private void setSite(long[] board, int site) {
+        this.set(board, this.topology.getSiteX(site), this.topology.getSiteY(site));
+    }
+
+    public static int count(long[] board) {
+        int count = 0;
+        for (long word : board) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * The row a step of dy away from the given one, or -1 if that leaves the grid.
+     */
+    private int getRow(int row, int dy) {
+        int target = row + dy;
+        if (target >= 0 && target < this.height) return target;
+        return this.wrapY ? Math.floorMod(target, this.height) : -1;
+    }
+
+    /**
+     * Word w of the given row, shifted so that each bit holds the bit dx columns further along. dx is -1, 0 or 1.
+     */
+    private long getShiftedWord(long[] board, int row, int w, int dx) {
+        if (row == -1) return 0;
+        int offset = row * this.wordsPerRow;
+        long word = board[offset + w];
+        if (dx == 0) return word;
+
+        int last = this.width - 1;
+        if (dx > 0) {
+            word >>>= 1;
+            if (w + 1 < this.wordsPerRow) word |= board[offset + w + 1] << 63;
+            if (this.wrapX && w == last >>> 6) word |= (board[offset] & 1) << last;
+        } else {
+            word <<= 1;
+            if (w > 0) word |= board[offset + w - 1] >>> 63;
+            if (this.wrapX && w == 0) word |= (board[offset + (last >>> 6)] >>> last) & 1;
+            if (w == last >>> 6) word &= this.getRowEndMask();
+        }
+        return word;
+    }
+
+    private long getRowEndMask() {
+        int bits = this.width & 63;
+        return bits == 0 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * The board of sites whose neighbor in the given direction is set in the given board.
+     */
+    public long[] shift(long[] board, int direction) {
+        long[] shifted = this.newBoard();
+        int dx = this.directionDx[direction];
+        int dy = this.directionDy[direction];
+        for (int row = 0; row < this.height; row++) {
+            int source = this.getRow(row, dy);
+            for (int w = 0; w < this.wordsPerRow; w++) {
+                int i = row * this.wordsPerRow + w;
+                shifted[i] = this.getShiftedWord(board, source, w, dx) & this.valid[i];
+            }
+        }
+        return shifted;
+    }
+
+    /**
+     * Counts the pairs of neighboring sites with one end in a and the other in b, in the given direction.
+     */
+    private int countAdjacent(long[] a, long[] b, int direction) {
+        int count = 0;
+        int dx = this.directionDx[direction];
+        int dy = this.directionDy[direction];
+        for (int row = 0; row < this.height; row++) {
+            int source = this.getRow(row, dy);
+            if (source == -1) continue;
+            for (int w = 0; w < this.wordsPerRow; w++) {
+                count += Long.bitCount(a[row * this.wordsPerRow + w] & this.getShiftedWord(b, source, w, dx));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the lattice edges between sites of the given board.
+     */
+    public int countEdges(long[] board) {
+        // Every edge is seen once from the three directions that point forward
+        int count = 0;
+        for (int d = 0; d < this.directionDx.length; d++) {
+            if (this.directionDy[d] > 0 || (this.directionDy[d] == 0 && this.directionDx[d] > 0)) {
+                count += this.countAdjacent(board, board, d);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Same as {@code Observables.edges}.
+     */
+    public int countEdges() {
+        return this.countEdges(this.occupied);
+    }
+
+    /**
+     * Same as {@code Observables.heterogeneousEdges}: the edges between separable particles, minus those within
+     * each class.
+     */
+    public int countHeterogeneousEdges() {
+        long[] separable = this.newBoard();
+        int homogeneous = 0;
+        for (long[] mask : this.classes) {
+            for (int w = 0; w < separable.length; w++) separable[w] |= mask[w];
+            homogeneous += this.countEdges(mask);
+        }
+        return this.countEdges(separable) - homogeneous;
+    }
+
+    /**
+     * For every site, the number of its neighbors set in the given board, bit-sliced: bit i of the count is in plane
+     * i. Neighbors are added with a carry-save adder, so the whole field costs a few word operations per 64 sites.
+     */
+    public long[][] countNeighbors(long[] board) {
+        long[] ones = this.newBoard();
+        long[] twos = this.newBoard();
+        long[] fours = this.newBoard();
+
+        for (int d = 0; d < this.directionDx.length; d++) {
+            int dx = this.directionDx[d];
+            int dy = this.directionDy[d];
+            for (int row = 0; row < this.height; row++) {
+                int source = this.getRow(row, dy);
+                for (int w = 0; w < this.wordsPerRow; w++) {
+                    int i = row * this.wordsPerRow + w;
+                    long bit = this.getShiftedWord(board, source, w, dx) & this.valid[i];
+
+                    long carry = ones[i] & bit;
+                    ones[i] ^= bit;
+                    long carry2 = twos[i] & carry;
+                    twos[i] ^= carry;
+                    fours[i] |= carry2;
+                }
+            }
+        }
+
+        return new long[][]{ones, twos, fours};
+    }
+
+    /**
+     * The sites of the given neighbor count field with exactly the given count.
+     */
+    public long[] selectCount(long[][] planes, int count) {
+        long[] selected = this.newBoard();
+        for (int i = 0; i < selected.length; i++) {
+            long word = this.valid[i];
+            for (int bit = 0; bit < planes.length; bit++) {
+                word &= ((count >>> bit) & 1) != 0 ? planes[bit][i] : ~planes[bit][i];
+            }
+            selected[i] = word;
+        }
+        return selected;
+    }
+
+    /**
+     * The sites of the given board with at least one neighbor outside of it, counting steps off the grid.
+     */
+    public long[] getBoundary(long[] board) {
+        long[] interior = Arrays.copyOf(board, board.length);
+        for (int d = 0; d < this.directionDx.length; d++) {
+            int dx = this.directionDx[d];
+            int dy = this.directionDy[d];
+            for (int row = 0; row < this.height; row++) {
+                int source = this.getRow(row, dy);
+                for (int w = 0; w < this.wordsPerRow; w++) {
+                    interior[row * this.wordsPerRow + w] &= this.getShiftedWord(board, source, w, dx);
+                }
+            }
+        }
+
+        long[] boundary = this.newBoard();
+        for (int i = 0; i < boundary.length; i++) boundary[i] = board[i] & ~interior[i];
+        return boundary;
+    }
+
+    /**
+     * The sites of the region reachable from the seed without leaving the region.
+     *
+     * We sweep the rows down and then up, pulling in sites next to what the previous row reached, and fill along each
+     * row in one go by letting a carry run through the region's bits. Most regions settle after a couple of sweeps.
+     */
+    public long[] floodFill(long[] region, long[] seed) {
+        long[] reached = this.newBoard();
+        for (int i = 0; i < reached.length; i++) reached[i] = seed[i] & region[i];
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int row = 0; row < this.height; row++) changed |= this.relaxRow(reached, region, row, -1);
+            for (int row = this.height - 1; row >= 0; row--) changed |= this.relaxRow(reached, region, row, 1);
+        }
+        return reached;
+    }
+
+    private boolean relaxRow(long[] reached, long[] region, int row, int dy) {
+        int offset = row * this.wordsPerRow;
+        int source = this.getRow(row, dy);
+        boolean changed = false;
+
+        if (source != -1) {
+            for (int d = 0; d < this.directionDx.length; d++) {
+                if (this.directionDy[d] != dy) continue;
+                for (int w = 0; w < this.wordsPerRow; w++) {
+                    long pulled = this.getShiftedWord(reached, source, w, this.directionDx[d]) & region[offset + w] & ~reached[offset + w];
+                    if (pulled != 0) {
+                        reached[offset + w] |= pulled;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return this.fillRow(reached, region, offset) || changed;
+    }
+
+    /**
+     * Extends what is reached in a row to the whole runs of the region that contain it, in both directions.
+     */
+    private boolean fillRow(long[] reached, long[] region, int offset) {
+        boolean changed = false;
+        boolean again = true;
+        while (again) {
+            again = false;
+
+            // Towards higher columns, a carry added at a reached bit runs up to the end of its run
+            long carry = 0;
+            for (int w = 0; w < this.wordsPerRow; w++) {
+                long m = region[offset + w];
+                long s = (reached[offset + w] | carry) & m;
+                long filled = (((m + s) ^ m) & m) | s;
+                carry = filled >>> 63;
+                if (filled != reached[offset + w]) {
+                    reached[offset + w] = filled;
+                    changed = true;
+                }
+            }
+
+            // Towards lower columns, the same on bit-reversed words
+            carry = 0;
+            for (int w = this.wordsPerRow - 1; w >= 0; w--) {
+                long m = Long.reverse(region[offset + w]);
+                long s = (Long.reverse(reached[offset + w]) | carry) & m;
+                long filled = Long.reverse((((m + s) ^ m) & m) | s);
+                carry = filled & 1;
+                if (filled != reached[offset + w]) {
+                    reached[offset + w] = filled;
+                    changed = true;
+                }
+            }
+
+            // Runs can go around a wrapped row
+            if (this.wrapX) {
+                int last = this.width - 1;
+                int lastWord = offset + (last >>> 6);
+                boolean first = (reached[offset] & 1) != 0;
+                boolean end = ((reached[lastWord] >>> last) & 1) != 0;
+                if (first && !end && ((region[lastWord] >>> last) & 1) != 0) {
+                    reached[lastWord] |= 1L << last;
+                    again = changed = true;
+                } else if (end && !first && (region[offset] & 1) != 0) {
+                    reached[offset] |= 1;
+                    again = changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Whether the sites of the given board form a single connected component. An empty board is connected.
+     */
+    public boolean isConnected(long[] board) {
+        int total = count(board);
+        if (total == 0) return true;
+
+        long[] seed = this.newBoard();
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != 0) {
+                seed[i] = Long.lowestOneBit(board[i]);
+                break;
+            }
+        }
+        return count(this.floodFill(board, seed)) == total;
+    }
+
+    /**
+     * Same as {@code RuleUtils.checkParticleConnection}.
+     */
+    public boolean isOccupancyConnected() {
+        return this.isConnected(this.occupied);
+    }
+
+    /**
+     * Same as {@code RuleUtils.checkParticleHoles}: whether the empty sites form a single component.
+     */
+    public boolean isHoleFree() {
+        return this.isConnected(this.getEmpty());
+    }
+}
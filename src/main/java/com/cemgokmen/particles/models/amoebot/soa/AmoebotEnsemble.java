@@ -0,0 +1,127 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.util.RunningStatistics;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A set of independent replicas of the same amoebot system, e.g. for error bars. The lattice topology is built once
+ * and shared, and the replicas are forks of the prototype, so each one only holds the parts of the occupancy and
+ * particle arrays it has changed, plus its own random stream.
+ *
+ * Replicas also share the algorithm: the array fast paths only read its published parameter snapshot.
+ */
+public class AmoebotEnsemble {
+    private final AmoebotTopology topology;
+    private final ParticleAlgorithm algorithm;
+    private final ImmutableList<AmoebotArrayEngine> replicas;
+
+    public AmoebotEnsemble(AmoebotArrayEngine prototype, int replicaCount, long seed) {
+        if (replicaCount < 1) {
+            throw new RuntimeException("An ensemble needs at least one replica.");
+        }
+
+        this.topology = prototype.getState().getTopology();
+        this.algorithm = prototype.getAlgorithm();
+
+        // Split the streams up front so that each replica's run only depends on the seed and its index.
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ImmutableList.Builder<AmoebotArrayEngine> builder = ImmutableList.builder();
+        for (int k = 0; k < replicaCount; k++) {
+            builder.add(prototype.fork(new Random(seeds.nextLong())));
+        }
+        this.replicas = builder.build();
+    }
+
+    /**
+     * Builds an ensemble whose replicas all start from the current state of the grid.
+     */
+    public static AmoebotEnsemble fromGrid(AmoebotGrid grid, int replicaCount, long seed) {
+        return new AmoebotEnsemble(AmoebotArrayEngine.fromGrid(grid), replicaCount, seed);
+    }
+
+    public AmoebotTopology getTopology() {
+        return this.topology;
+    }
+
+    public ParticleAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public int getReplicaCount() {
+        return this.replicas.size();
+    }
+
+    public AmoebotArrayEngine getReplica(int k) {
+        return this.replicas.get(k);
+    }
+
+    public List<AmoebotArrayEngine> getReplicas() {
+        return this.replicas;
+    }
+
+    /**
+     * Runs the given number of activations on every replica, one task per replica, and waits for all of them.
+     */
+    public void runActivations(int numActivations, ExecutorService executor) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(this.replicas.size());
+        for (AmoebotArrayEngine replica : this.replicas) {
+            futures.add(executor.submit(() -> replica.runActivations(numActivations)));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Replica failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    public void runActivations(int numActivations) {
+        for (AmoebotArrayEngine replica : this.replicas) {
+            replica.runActivations(numActivations);
+        }
+    }
+
+    /**
+     * Evaluates a metric on every replica and returns its spread across the ensemble.
+     */
+    public RunningStatistics measure(ToDoubleFunction<AmoebotArrayEngine> metric) {
+        RunningStatistics statistics = new RunningStatistics();
+        for (AmoebotArrayEngine replica : this.replicas) {
+            statistics.add(metric.applyAsDouble(replica));
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.LinearAmoebotGrid;
+import com.cemgokmen.particles.util.DirectionSamplers;
+import com.cemgokmen.particles.util.PowerTable;
+
+import java.util.Random;
+
+import static com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays.NONE;
+
+/**
+ * Array versions of the activation rules in the algorithms package. Each kernel follows its object counterpart step
+ * by step, including the order in which it draws random numbers, so the two paths can be compared run for run.
+ */
+public class AmoebotKernels {
+    private static final double SPIN_PROBABILITY = 0.1;
+
+    private static final ParticleGrid.Compass COMPASS = new AmoebotGrid.AmoebotCompass();
+    private static final ParticleGrid.Compass LINEAR_COMPASS = new LinearAmoebotGrid.LinearAmoebotCompass();
+
+    private static boolean isOccupied(AmoebotStateArrays s, int site, int direction, int kind) {
+        int j = s.getOccupantInDirection(site, direction);
+        return j != NONE && (kind == NONE || s.getKind(j) == kind);
+    }
+
+    /**
+     * Same as {@code RuleUtils.isMoveValidCompressionMove}. If kind is not NONE, only particles of that kind count
+     * as neighbors for the connectivity properties.
+     */
+    public static boolean isMoveValidCompressionMove(AmoebotStateArrays s, int i, int d, boolean swapsAllowed, boolean nonswapsAllowed, int kind) {
+        int site = s.getSite(i);
+        int target = s.getNeighborSite(site, d);
+        if (target == NONE) {
+            return false;
+        }
+
+        boolean isOccupied = s.getOccupant(target) != NONE;
+        if (isOccupied && swapsAllowed) return true;
+
+        if (isOccupied || !nonswapsAllowed) {
+            return false;
+        }
+
+        boolean cond1 = s.countNeighbors(site, NONE, kind) < 5;
+        boolean cond2 = checkProperty1(s, site, target, d, kind);
+        boolean cond3 = checkProperty2(s, i, site, target, d, kind);
+
+        return cond1 && (cond2 || cond3);
+    }
+
+    private static boolean checkProperty1(AmoebotStateArrays s, int site, int target, int d, int kind) {
+        if (!isOccupied(s, site, s.shift(d, 5), kind) && !isOccupied(s, site, s.shift(d, 1), kind)) {
+            return false;
+        }
+
+        int changes1 = 0;
+        int changes2 = 0;
+
+        boolean previous1 = isOccupied(s, site, s.shift(d, 1), kind);
+        boolean previous2 = isOccupied(s, target, s.shift(d, 4), kind);
+        for (int n = 1; n < 5; n++) {
+            boolean current1 = isOccupied(s, site, s.shift(d, n + 1), kind);
+            boolean current2 = isOccupied(s, target, s.shift(d, n + 4), kind);
+
+            if (current1 != previous1) changes1++;
+            if (current2 != previous2) changes2++;
+
+            previous1 = current1;
+            previous2 = current2;
+        }
+
+        return changes1 < 3 && changes2 < 3;
+    }
+
+    private static boolean checkProperty2(AmoebotStateArrays s, int i, int site, int target, int d, int kind) {
+        if (isOccupied(s, site, s.shift(d, 5), kind) || isOccupied(s, site, s.shift(d, 1), kind)) {
+            return false;
+        }
+
+        // The object version counts the moving particle among the target's neighbors too.
+        if (s.countNeighbors(target, NONE, kind) <= 1) {
+            return false;
+        }
+
+        if (isOccupied(s, site, s.shift(d, 2), kind) &&
+                !isOccupied(s, site, s.shift(d, 3), kind) &&
+                isOccupied(s, site, s.shift(d, 4), kind)) {
+            return false;
+        }
+
+        return !isOccupied(s, target, s.shift(d, 1), kind) ||
+                isOccupied(s, target, d, kind) ||
+                !isOccupied(s, target, s.shift(d, 5), kind);
+    }
+
+    /**
+     * Same as {@code CompressionAlgorithm.onParticleActivation}.
+     */
+    public static void compression(AmoebotStateArrays s, int i, PowerTable lambdaPowers, Random random) {
+        int d = random.nextInt(s.getDirectionCount());
+
+        if (!isMoveValidCompressionMove(s, i, d, false, true, NONE)) {
+            return;
+        }
+
+        int site = s.getSite(i);
+        int currentNeighbors = s.countNeighbors(site, i, NONE);
+        int futureNeighbors = s.countNeighbors(s.getNeighborSite(site, d), i, NONE);
+        double moveProbability = lambdaPowers.get(futureNeighbors - currentNeighbors);
+
+        if (random.nextDouble() > moveProbability) {
+            return;
+        }
+
+        s.move(i, d);
+    }
+
+    /**
+     * Same as {@code SeparationAlgorithm.onParticleActivation}. Swaps between particles of different kinds are
+     * skipped, where the object version throws.
+     */
+    public static void separation(AmoebotStateArrays s, int i, PowerTable lambdaPowers, PowerTable alphaPowers, boolean swapsAllowed, boolean nonSwapsAllowed, Random random) {
+        int d = random.nextInt(s.getDirectionCount());
+
+        if (!isMoveValidCompressionMove(s, i, d, swapsAllowed, nonSwapsAllowed, NONE)) {
+            return;
+        }
+
+        int site = s.getSite(i);
+        int target = s.getNeighborSite(site, d);
+        int nbr = s.getOccupant(target);
+        int classNumber = s.getClassNumber(i);
+
+        double moveProbability;
+        if (nbr == NONE) {
+            // This is a regular move
+            int currentHomogeneousNeighbors = s.countClassNeighbors(site, i, classNumber);
+            int futureHomogeneousNeighbors = s.countClassNeighbors(target, i, classNumber);
+            int currentNeighbors = s.countNeighbors(site, i, NONE);
+            int futureNeighbors = s.countNeighbors(target, i, NONE);
+
+            moveProbability = alphaPowers.get(futureHomogeneousNeighbors - currentHomogeneousNeighbors) *
+                    lambdaPowers.get(futureNeighbors - currentNeighbors);
+        } else {
+            // This is a swap move
+            int nbrClassNumber = s.getClassNumber(nbr);
+            boolean sameClass = nbrClassNumber == classNumber;
+
+            int currentHomogeneousNeighbors = s.countClassNeighbors(site, i, classNumber);
+            int futureHomogeneousNeighbors = s.countClassNeighbors(target, i, classNumber) + (sameClass ? 1 : 0);
+            int nbrCurrentHomogeneousNeighbors = s.countClassNeighbors(target, nbr, nbrClassNumber);
+            int nbrFutureHomogeneousNeighbors = s.countClassNeighbors(site, nbr, nbrClassNumber) + (sameClass ? 1 : 0);
+
+            moveProbability = alphaPowers.get(futureHomogeneousNeighbors - currentHomogeneousNeighbors) *
+                    alphaPowers.get(nbrFutureHomogeneousNeighbors - nbrCurrentHomogeneousNeighbors);
+        }
+
+        if (random.nextDouble() > moveProbability) {
+            return;
+        }
+
+        if (swapsAllowed) {
+            if (nbr == NONE || s.getKind(nbr) == s.getKind(i)) s.swap(i, d);
+        } else {
+            s.move(i, d);
+        }
+    }
+
+    private static double getDotProductSum(AmoebotStateArrays s, int site, int exclude, int withDirection) {
+        double sum = 0;
+        for (int d = 0; d < s.getDirectionCount(); d++) {
+            int j = s.getOccupantInDirection(site, d);
+            if (j != NONE && j != exclude) sum += COMPASS.getNormalizedDotProduct(withDirection, s.getDirection(j));
+        }
+        return sum;
+    }
+
+    /**
+     * Same as {@code AlignmentAlgorithm.onParticleActivation} on directed particles.
+     */
+    public static void alignment(AmoebotStateArrays s, int i, double rotationBias, PowerTable translationBiasPowers, double forwardBias, Random random) {
+        int site = s.getSite(i);
+        int currentDirection = s.getDirection(i);
+
+        if (random.nextDouble() <= SPIN_PROBABILITY) {
+            int d = random.nextInt(s.getDirectionCount());
+
+            double exponent = getDotProductSum(s, site, i, d) - getDotProductSum(s, site, i, currentDirection);
+            if (random.nextDouble() > Math.pow(rotationBias, exponent)) {
+                return;
+            }
+
+            s.setDirection(i, d);
+        } else {
+            int d = s.shift(currentDirection, DirectionSamplers.sampleWrappedNormalOffset(random, s.getDirectionCount(), forwardBias));
+
+            int target = s.getNeighborSite(site, d);
+            if (target == NONE) {
+                return;
+            }
+
+            int currentNeighbors = s.countNeighbors(site, i, NONE);
+            int futureNeighbors = s.countNeighbors(target, i, NONE);
+            double translationBiasTerm = translationBiasPowers.get(futureNeighbors - currentNeighbors);
+
+            double rotationBiasExponent = getDotProductSum(s, target, i, currentDirection) - getDotProductSum(s, site, i, currentDirection);
+            double rotationBiasTerm = Math.pow(rotationBias, rotationBiasExponent);
+
+            if (random.nextDouble() > translationBiasTerm * rotationBiasTerm) {
+                return;
+            }
+
+            s.move(i, d);
+        }
+    }
+
+    /**
+     * Sums the dot products of the given direction with those of the particles next to the given site, skipping the
+     * given site.
+     */
+    private static double getDotProductSum(LinearBitsetEngine e, int site, int exclude, int withDirection) {
+        double sum = 0;
+        for (int d = 0; d < 2; d++) {
+            int neighbor = e.getNeighborSite(site, d);
+            if (neighbor != NONE && neighbor != exclude && e.isOccupied(neighbor)) {
+                sum += LINEAR_COMPASS.getNormalizedDotProduct(withDirection, e.getDirectionAt(neighbor));
+            }
+        }
+        return sum;
+    }
+
+    private static int countNeighbors(LinearBitsetEngine e, int site, int exclude) {
+        int count = 0;
+        for (int d = 0; d < 2; d++) {
+            int neighbor = e.getNeighborSite(site, d);
+            if (neighbor != NONE && neighbor != exclude && e.isOccupied(neighbor)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Same as {@link #alignment}, on a line or circle.
+     */
+    public static void alignment(LinearBitsetEngine e, int i, double rotationBias, PowerTable translationBiasPowers, double forwardBias, Random random) {
+        int site = e.getSite(i);
+        int currentDirection = e.getDirection(i);
+
+        if (random.nextDouble() <= SPIN_PROBABILITY) {
+            int d = random.nextInt(2);
+
+            double exponent = getDotProductSum(e, site, NONE, d) - getDotProductSum(e, site, NONE, currentDirection);
+            if (random.nextDouble() > Math.pow(rotationBias, exponent)) {
+                return;
+            }
+
+            e.setDirection(i, d);
+        } else {
+            int d = (currentDirection + DirectionSamplers.sampleWrappedNormalOffset(random, 2, forwardBias)) & 1;
+
+            int target = e.getNeighborSite(site, d);
+            if (target == NONE) {
+                return;
+            }
+
+            double translationBiasTerm = translationBiasPowers.get(countNeighbors(e, target, site) - countNeighbors(e, site, NONE));
+
+            double rotationBiasExponent = getDotProductSum(e, target, site, currentDirection) - getDotProductSum(e, site, NONE, currentDirection);
+            double rotationBiasTerm = Math.pow(rotationBias, rotationBiasExponent);
+
+            if (random.nextDouble() > translationBiasTerm * rotationBiasTerm) {
+                return;
+            }
+
+            if (!e.isOccupied(target)) e.move(i, d);
+        }
+    }
+
+    /**
+     * Same as {@code ForagingAlgorithm.onParticleActivation}. Lifetimes are converted to activations of the whole
+     * system, and food is removed by {@link AmoebotStateArrays#tick} once it expires.
+     */
+    public static void foraging(AmoebotStateArrays s, int i, PowerTable fedLambdaPowers, PowerTable hungryLambdaPowers, int foodLifetime, int foodTokenLifetime, int particleMaximumFedActivations, Random random) {
+        int site = s.getSite(i);
+        long fedActivations = (long) particleMaximumFedActivations * s.getCount();
+
+        if (s.getKind(i) == AmoebotStateArrays.KIND_FOOD) {
+            for (int d = 0; d < s.getDirectionCount(); d++) {
+                int j = s.getOccupantInDirection(site, d);
+                if (j != NONE && s.getKind(j) == AmoebotStateArrays.KIND_FORAGING) {
+                    s.giveFoodToken(j, foodTokenLifetime, fedActivations);
+                }
+            }
+
+            s.startLifetime(i, (long) foodLifetime * s.getCount());
+        } else if (s.getKind(i) == AmoebotStateArrays.KIND_FORAGING) {
+            // Do the feeding first
+            int token = s.takeFoodToken(i);
+            if (token != NONE) {
+                // Pass it on
+                --token;
+                if (token > 0) {
+                    int j = s.getOccupantInDirection(site, random.nextInt(s.getDirectionCount()));
+                    if (j != NONE && s.getKind(j) == AmoebotStateArrays.KIND_FORAGING) {
+                        s.giveFoodToken(j, token, fedActivations);
+                    }
+                }
+            }
+
+            int d = random.nextInt(s.getDirectionCount());
+
+            // Do not swap with food particles
+            if (isOccupied(s, site, d, AmoebotStateArrays.KIND_FOOD)) {
+                return;
+            }
+
+            if (!isMoveValidCompressionMove(s, i, d, false, true, AmoebotStateArrays.KIND_FORAGING)) {
+                return;
+            }
+
+            int currentNeighbors = s.countNeighbors(site, i, NONE);
+            int futureNeighbors = s.countNeighbors(s.getNeighborSite(site, d), i, NONE);
+            PowerTable biasPowers = s.isFed(i) ? fedLambdaPowers : hungryLambdaPowers;
+
+            if (random.nextDouble() > biasPowers.get(futureNeighbors - currentNeighbors)) {
+                return;
+            }
+
+            s.move(i, d);
+        }
+    }
+}
@@ -0,0 +1,666 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.util.TimingWheel;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays state of an amoebot system. Particle i is described by the i-th entry of a handful of primitive
+ * arrays instead of a heap object, and the lattice is the site numbering of an {@link AmoebotTopology}, so a
+ * neighbor test is two array reads.
+ *
+ * Particle indices are dense: removing a particle moves the last particle into its slot.
+ *
+ * A system can be forked into independent copies that share their arrays copy-on-write. The occupancy array is split
+ * into pages so that a branch only copies the parts of the lattice it has touched, while the particle arrays, which
+ * are small next to it, are copied whole on the first write.
+ */
+public class AmoebotStateArrays {
+    public static final byte KIND_AMOEBOT = 0;
+    public static final byte KIND_SEPARABLE = 1;
+    public static final byte KIND_DIRECTED = 2;
+    public static final byte KIND_FORAGING = 3;
+    public static final byte KIND_FOOD = 4;
+
+    public static final int NONE = -1;
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Ownership bits of the particle arrays. An array we don't own may be shared with a fork and is copied before
+    // the first write.
+    private static final int OWN_SITE = 1;
+    private static final int OWN_KIND = 1 << 1;
+    private static final int OWN_DIRECTION = 1 << 2;
+    private static final int OWN_CLASS_NUMBER = 1 << 3;
+    private static final int OWN_LEVELS = 1 << 4;
+    private static final int OWN_FORAGING = 1 << 5;
+    private static final int OWN_ALL = (1 << 6) - 1;
+
+    private final AmoebotTopology topology;
+    private final int directionCount;
+    private final int siteCount;
+    private final int[][] occupant;
+    private final boolean[] ownedPages;
+    private final boolean wrapped;
+
+    private int owned = OWN_ALL;
+    private int count = 0;
+    private int[] site;
+    private byte[] kind;
+    private byte[] direction;
+    private byte[] classNumber;
+    private int[] levels;
+
+    // Foraging state, only allocated once a foraging or food particle is added. Like the particle objects, we keep
+    // timestamps on the activation clock and work the counters out from them.
+    private long[] fedAt;
+    private long[] fedUntil;
+    private long[] longestWait;
+    private int[] timesFed;
+    private int[] foodToken;
+    private long[] expiresAt;
+
+    // Food never moves, so its expiry timers are keyed by site. Forks build their own from the expiry times.
+    private long time = 0;
+    private TimingWheel<Integer> expiries;
+
+    private int movesMade = 0;
+
+    public AmoebotStateArrays(AmoebotTopology topology, int initialCapacity) {
+        this.topology = topology;
+        this.directionCount = topology.getDirectionCount();
+        this.siteCount = topology.getSiteCount();
+        this.wrapped = topology.getPeriod(0) != 0 || topology.getPeriod(1) != 0;
+
+        int pages = (this.siteCount + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        this.occupant = new int[pages][];
+        this.ownedPages = new boolean[pages];
+        for (int page = 0; page < pages; page++) {
+            this.occupant[page] = new int[Math.min(PAGE_SIZE, this.siteCount - (page << PAGE_SHIFT))];
+            Arrays.fill(this.occupant[page], NONE);
+            this.ownedPages[page] = true;
+        }
+
+        int capacity = Math.max(initialCapacity, 1);
+        this.site = new int[capacity];
+        this.kind = new byte[capacity];
+        this.direction = new byte[capacity];
+        this.classNumber = new byte[capacity];
+        if (this.wrapped) this.levels = new int[capacity * AmoebotTopology.DIMENSIONS];
+    }
+
+    private AmoebotStateArrays(AmoebotStateArrays other) {
+        this.topology = other.topology;
+        this.directionCount = other.directionCount;
+        this.siteCount = other.siteCount;
+        this.wrapped = other.wrapped;
+        this.occupant = other.occupant.clone();
+        this.ownedPages = new boolean[this.occupant.length];
+
+        this.owned = 0;
+        this.count = other.count;
+        this.site = other.site;
+        this.kind = other.kind;
+        this.direction = other.direction;
+        this.classNumber = other.classNumber;
+        this.levels = other.levels;
+
+        this.fedAt = other.fedAt;
+        this.fedUntil = other.fedUntil;
+        this.longestWait = other.longestWait;
+        this.timesFed = other.timesFed;
+        this.foodToken = other.foodToken;
+        this.expiresAt = other.expiresAt;
+        this.time = other.time;
+
+        this.movesMade = other.movesMade;
+    }
+
+    /**
+     * Returns an independent copy of this system. Nothing is copied up front: both systems share every array until
+     * one of them writes to it.
+     */
+    public AmoebotStateArrays fork() {
+        // We are no longer the only one looking at our arrays either
+        this.owned = 0;
+        Arrays.fill(this.ownedPages, false);
+
+        return new AmoebotStateArrays(this);
+    }
+
+    /**
+     * Returns a view that writes straight through to this system's arrays, for workers that each hold a different
+     * part of the lattice, see {@link OptimisticAmoebotRunner}. A view only counts its own moves, and only moving
+     * through it is safe: adding, removing, sorting and ticking are not.
+     */
+    AmoebotStateArrays share() {
+        // Take our arrays back from any forks first, since the view is going to write to them in place
+        for (int page = 0; page < this.occupant.length; page++) {
+            if (!this.ownedPages[page]) {
+                this.occupant[page] = this.occupant[page].clone();
+                this.ownedPages[page] = true;
+            }
+        }
+        this.sites();
+        this.kinds();
+        this.directions();
+        this.classNumbers();
+        this.levels();
+        this.ownForagingState();
+
+        AmoebotStateArrays view = new AmoebotStateArrays(this);
+        view.owned = OWN_ALL;
+        Arrays.fill(view.ownedPages, true);
+        view.movesMade = 0;
+        return view;
+    }
+
+    void addMovesMade(int moves) {
+        this.movesMade += moves;
+    }
+
+    public AmoebotTopology getTopology() {
+        return this.topology;
+    }
+
+    public int getDirectionCount() {
+        return this.directionCount;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public int getMovesMade() {
+        return this.movesMade;
+    }
+
+    // Copy-on-write accessors, to be used for every write
+    private void setOccupant(int site, int i) {
+        int page = site >>> PAGE_SHIFT;
+        if (!this.ownedPages[page]) {
+            this.occupant[page] = this.occupant[page].clone();
+            this.ownedPages[page] = true;
+        }
+        this.occupant[page][site & PAGE_MASK] = i;
+    }
+
+    private int[] sites() {
+        if ((this.owned & OWN_SITE) == 0) {
+            this.site = this.site.clone();
+            this.owned |= OWN_SITE;
+        }
+        return this.site;
+    }
+
+    private byte[] kinds() {
+        if ((this.owned & OWN_KIND) == 0) {
+            this.kind = this.kind.clone();
+            this.owned |= OWN_KIND;
+        }
+        return this.kind;
+    }
+
+    private byte[] directions() {
+        if ((this.owned & OWN_DIRECTION) == 0) {
+            this.direction = this.direction.clone();
+            this.owned |= OWN_DIRECTION;
+        }
+        return this.direction;
+    }
+
+    private byte[] classNumbers() {
+        if ((this.owned & OWN_CLASS_NUMBER) == 0) {
+            this.classNumber = this.classNumber.clone();
+            this.owned |= OWN_CLASS_NUMBER;
+        }
+        return this.classNumber;
+    }
+
+    private int[] levels() {
+        if ((this.owned & OWN_LEVELS) == 0 && this.levels != null) {
+            this.levels = this.levels.clone();
+            this.owned |= OWN_LEVELS;
+        }
+        return this.levels;
+    }
+
+    private void ownForagingState() {
+        if ((this.owned & OWN_FORAGING) != 0 || this.foodToken == null) return;
+
+        this.fedAt = this.fedAt.clone();
+        this.fedUntil = this.fedUntil.clone();
+        this.longestWait = this.longestWait.clone();
+        this.timesFed = this.timesFed.clone();
+        this.foodToken = this.foodToken.clone();
+        this.expiresAt = this.expiresAt.clone();
+        this.owned |= OWN_FORAGING;
+    }
+
+    private TimingWheel<Integer> expiries() {
+        if (this.expiries == null) {
+            this.expiries = new TimingWheel<>(this.time);
+            for (int i = 0; i < this.count; i++) {
+                if (this.kind[i] == KIND_FOOD && this.expiresAt[i] != NONE) this.expiries.schedule(this.site[i], this.expiresAt[i]);
+            }
+        }
+        return this.expiries;
+    }
+
+    private void grow() {
+        // Growing copies everything, so we own the results
+        int capacity = 2 * this.site.length;
+        this.site = Arrays.copyOf(this.site, capacity);
+        this.kind = Arrays.copyOf(this.kind, capacity);
+        this.direction = Arrays.copyOf(this.direction, capacity);
+        this.classNumber = Arrays.copyOf(this.classNumber, capacity);
+        if (this.levels != null) this.levels = Arrays.copyOf(this.levels, capacity * AmoebotTopology.DIMENSIONS);
+        if (this.foodToken != null) {
+            this.fedAt = Arrays.copyOf(this.fedAt, capacity);
+            this.fedUntil = Arrays.copyOf(this.fedUntil, capacity);
+            this.longestWait = Arrays.copyOf(this.longestWait, capacity);
+            this.timesFed = Arrays.copyOf(this.timesFed, capacity);
+            this.foodToken = Arrays.copyOf(this.foodToken, capacity);
+            this.expiresAt = Arrays.copyOf(this.expiresAt, capacity);
+        }
+        this.owned = OWN_ALL;
+    }
+
+    private void allocateForagingState() {
+        int capacity = this.site.length;
+        this.fedAt = new long[capacity];
+        this.fedUntil = new long[capacity];
+        this.longestWait = new long[capacity];
+        this.timesFed = new int[capacity];
+        this.foodToken = new int[capacity];
+        this.expiresAt = new long[capacity];
+        this.owned |= OWN_FORAGING;
+    }
+
+    public boolean hasForagingState() {
+        return this.foodToken != null;
+    }
+
+    /**
+     * Adds a particle at the given site and returns its index.
+     */
+    public int add(int site, byte kind, int classNumber, int direction) {
+        if (site < 0 || site >= this.siteCount) {
+            throw new RuntimeException("Invalid add - site " + site + " out of bounds.");
+        }
+
+        if (this.getOccupant(site) != NONE) {
+            throw new RuntimeException("Invalid add - there already is a particle at site " + site);
+        }
+
+        if (this.count == this.site.length) this.grow();
+        if ((kind == KIND_FORAGING || kind == KIND_FOOD) && this.foodToken == null) this.allocateForagingState();
+
+        int i = this.count++;
+        this.sites()[i] = site;
+        this.kinds()[i] = kind;
+        this.classNumbers()[i] = (byte) classNumber;
+        this.directions()[i] = (byte) direction;
+        this.setOccupant(site, i);
+
+        if (this.levels != null) {
+            int[] levels = this.levels();
+            levels[i * AmoebotTopology.DIMENSIONS] = 0;
+            levels[i * AmoebotTopology.DIMENSIONS + 1] = 0;
+        }
+
+        if (this.foodToken != null) {
+            this.ownForagingState();
+            this.fedAt[i] = this.time;
+            this.fedUntil[i] = NEVER;
+            this.longestWait[i] = 0;
+            this.timesFed[i] = 0;
+            this.foodToken[i] = NONE;
+            this.expiresAt[i] = NONE;
+        }
+
+        return i;
+    }
+
+    /**
+     * Removes particle i. The last particle takes over index i.
+     */
+    public void remove(int i) {
+        this.setOccupant(this.site[i], NONE);
+
+        int last = --this.count;
+        if (i == last) return;
+
+        this.sites()[i] = this.site[last];
+        this.kinds()[i] = this.kind[last];
+        this.directions()[i] = this.direction[last];
+        this.classNumbers()[i] = this.classNumber[last];
+        if (this.levels != null) {
+            int[] levels = this.levels();
+            levels[i * AmoebotTopology.DIMENSIONS] = levels[last * AmoebotTopology.DIMENSIONS];
+            levels[i * AmoebotTopology.DIMENSIONS + 1] = levels[last * AmoebotTopology.DIMENSIONS + 1];
+        }
+        if (this.foodToken != null) {
+            this.ownForagingState();
+            this.fedAt[i] = this.fedAt[last];
+            this.fedUntil[i] = this.fedUntil[last];
+            this.longestWait[i] = this.longestWait[last];
+            this.timesFed[i] = this.timesFed[last];
+            this.foodToken[i] = this.foodToken[last];
+            this.expiresAt[i] = this.expiresAt[last];
+        }
+
+        this.setOccupant(this.site[i], i);
+    }
+
+    /**
+     * Renumbers the particles in site order, so that particles close together in the lattice (as far as the
+     * topology's site numbering goes) are also close together in the particle arrays. Particle indices change.
+     */
+    public void sortBySite() {
+        long[] keys = new long[this.count];
+        for (int i = 0; i < this.count; i++) keys[i] = ((long) this.site[i] << 32) | i;
+        Arrays.sort(keys);
+
+        int[] order = new int[this.count];
+        for (int k = 0; k < this.count; k++) order[k] = (int) keys[k];
+
+        // Permuting gives us fresh arrays, so we own all of them afterwards
+        this.site = permute(this.site, order);
+        this.kind = permute(this.kind, order);
+        this.direction = permute(this.direction, order);
+        this.classNumber = permute(this.classNumber, order);
+        if (this.levels != null) {
+            int[] levels = new int[this.levels.length];
+            for (int k = 0; k < this.count; k++) {
+                levels[k * AmoebotTopology.DIMENSIONS] = this.levels[order[k] * AmoebotTopology.DIMENSIONS];
+                levels[k * AmoebotTopology.DIMENSIONS + 1] = this.levels[order[k] * AmoebotTopology.DIMENSIONS + 1];
+            }
+            this.levels = levels;
+        }
+        if (this.foodToken != null) {
+            this.fedAt = permute(this.fedAt, order);
+            this.fedUntil = permute(this.fedUntil, order);
+            this.longestWait = permute(this.longestWait, order);
+            this.timesFed = permute(this.timesFed, order);
+            this.foodToken = permute(this.foodToken, order);
+            this.expiresAt = permute(this.expiresAt, order);
+        }
+        this.owned = OWN_ALL;
+
+        for (int k = 0; k < this.count; k++) this.setOccupant(this.site[k], k);
+    }
+
+    private static int[] permute(int[] values, int[] order) {
+        int[] result = new int[values.length];
+        for (int k = 0; k < order.length; k++) result[k] = values[order[k]];
+        return result;
+    }
+
+    private static long[] permute(long[] values, int[] order) {
+        long[] result = new long[values.length];
+        for (int k = 0; k < order.length; k++) result[k] = values[order[k]];
+        return result;
+    }
+
+    private static byte[] permute(byte[] values, int[] order) {
+        byte[] result = new byte[values.length];
+        for (int k = 0; k < order.length; k++) result[k] = values[order[k]];
+        return result;
+    }
+
+    private void addLevels(int i, int fromSite, int direction) {
+        if (this.levels == null) return;
+
+        int dx = this.topology.getLevelDelta(fromSite, direction, 0);
+        int dy = this.topology.getLevelDelta(fromSite, direction, 1);
+        if (dx == 0 && dy == 0) return;
+
+        int[] levels = this.levels();
+        levels[i * AmoebotTopology.DIMENSIONS] += dx;
+        levels[i * AmoebotTopology.DIMENSIONS + 1] += dy;
+    }
+
+    /**
+     * Moves particle i one step in the given direction. Returns false if the target is out of bounds or occupied.
+     */
+    public boolean move(int i, int direction) {
+        int from = this.site[i];
+        int to = this.topology.getNeighborSite(from, direction);
+        if (to == NONE || this.getOccupant(to) != NONE) return false;
+
+        this.setOccupant(from, NONE);
+        this.setOccupant(to, i);
+        this.sites()[i] = to;
+        this.addLevels(i, from, direction);
+        this.movesMade++;
+
+        return true;
+    }
+
+    /**
+     * Swaps particle i with the particle in the given direction, or moves it there if the site is free. Returns false
+     * if the target is out of bounds.
+     */
+    public boolean swap(int i, int direction) {
+        int from = this.site[i];
+        int to = this.topology.getNeighborSite(from, direction);
+        if (to == NONE) return false;
+
+        int j = this.getOccupant(to);
+        if (j == NONE) return this.move(i, direction);
+
+        this.setOccupant(from, j);
+        this.setOccupant(to, i);
+        int[] sites = this.sites();
+        sites[i] = to;
+        sites[j] = from;
+        this.addLevels(i, from, direction);
+        this.addLevels(j, to, this.topology.getDirectionBetween(to, from));
+        this.movesMade++;
+
+        return true;
+    }
+
+    // Lattice queries
+    public int shift(int direction, int times) {
+        return Math.floorMod(direction + times, this.directionCount);
+    }
+
+    public int getNeighborSite(int site, int direction) {
+        return this.topology.getNeighborSite(site, direction);
+    }
+
+    public int getOccupant(int site) {
+        return site == NONE ? NONE : this.occupant[site >>> PAGE_SHIFT][site & PAGE_MASK];
+    }
+
+    public int getOccupantInDirection(int site, int direction) {
+        return this.getOccupant(this.topology.getNeighborSite(site, direction));
+    }
+
+    /**
+     * Counts the occupied neighbors of a site, skipping the given particle and, if kind is not NONE, particles of
+     * other kinds.
+     */
+    public int countNeighbors(int site, int exclude, int kind) {
+        int n = 0;
+        for (int d = 0; d < this.directionCount; d++) {
+            int j = this.getOccupantInDirection(site, d);
+            if (j != NONE && j != exclude && (kind == NONE || this.kind[j] == kind)) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Counts the neighbors of a site that have the given class number, skipping the given particle.
+     */
+    public int countClassNeighbors(int site, int exclude, int classNumber) {
+        int n = 0;
+        for (int d = 0; d < this.directionCount; d++) {
+            int j = this.getOccupantInDirection(site, d);
+            if (j != NONE && j != exclude && this.classNumber[j] == classNumber) n++;
+        }
+        return n;
+    }
+
+    // Per-particle state
+    public int getSite(int i) {
+        return this.site[i];
+    }
+
+    public byte getKind(int i) {
+        return this.kind[i];
+    }
+
+    public int getDirection(int i) {
+        return this.direction[i];
+    }
+
+    public void setDirection(int i, int direction) {
+        this.directions()[i] = (byte) direction;
+    }
+
+    public int getClassNumber(int i) {
+        return this.classNumber[i];
+    }
+
+    public int getLevel(int i, int axis) {
+        return this.levels == null ? 0 : this.levels[i * AmoebotTopology.DIMENSIONS + axis];
+    }
+
+    public void setLevel(int i, int axis, int level) {
+        if (this.levels != null) this.levels()[i * AmoebotTopology.DIMENSIONS + axis] = level;
+    }
+
+    public double getLeveledCoordinate(int i, int axis) {
+        return this.topology.getSiteCoordinate(this.site[i], axis) + this.getLevel(i, axis) * this.topology.getPeriod(axis);
+    }
+
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * Sets the activation clock, e.g. to that of the grid the system was copied from. Timestamps are not shifted.
+     */
+    public void setTime(long time) {
+        this.time = time;
+        this.expiries = null;
+    }
+
+    /**
+     * Advances the activation clock by one and removes the food that runs out, so indices may change.
+     */
+    public void tick() {
+        this.time++;
+        if (this.foodToken != null) this.expiries().advanceTo(this.time, this::expire);
+    }
+
+    private void expire(int site) {
+        // The timer may be stale, so check that the food is still there and still due
+        int i = this.getOccupant(site);
+        if (i != NONE && this.kind[i] == KIND_FOOD && this.expiresAt[i] != NONE && this.expiresAt[i] <= this.time) {
+            this.remove(i);
+        }
+    }
+
+    public long getFedAt(int i) {
+        return this.fedAt[i];
+    }
+
+    public long getFedUntil(int i) {
+        return this.fedUntil[i];
+    }
+
+    public long getFedActivations(int i) {
+        return Math.max(this.fedUntil[i] - this.time, 0);
+    }
+
+    public int getTimesFed(int i) {
+        return this.timesFed[i];
+    }
+
+    public long getLongestWait(int i) {
+        return Math.max(this.longestWait[i], this.fedAt[i] == NEVER ? 0 : this.time - this.fedAt[i]);
+    }
+
+    public int getFoodToken(int i) {
+        return this.foodToken[i];
+    }
+
+    public long getExpiresAt(int i) {
+        return this.expiresAt[i];
+    }
+
+    public void setFeedingState(int i, long fedAt, long fedUntil, int timesFed, long longestWait, int foodToken) {
+        this.ownForagingState();
+        this.fedAt[i] = fedAt;
+        this.fedUntil[i] = fedUntil;
+        this.timesFed[i] = timesFed;
+        this.longestWait[i] = longestWait;
+        this.foodToken[i] = foodToken;
+    }
+
+    public void setExpiresAt(int i, long expiresAt) {
+        this.ownForagingState();
+        this.expiresAt[i] = expiresAt;
+        if (expiresAt != NONE) this.expiries().schedule(this.site[i], expiresAt);
+    }
+
+    /**
+     * Same as {@code FoodAmoebotParticle.startLifetime}.
+     */
+    public void startLifetime(int i, long activations) {
+        if (this.expiresAt[i] == NONE) this.setExpiresAt(i, this.time + activations);
+    }
+
+    /**
+     * Same as {@code ForagingAmoebotParticle.giveFoodToken}.
+     */
+    public void giveFoodToken(int i, int token, long fedActivations) {
+        this.ownForagingState();
+        this.foodToken[i] = token;
+        this.longestWait[i] = this.getLongestWait(i);
+        this.fedAt[i] = this.time;
+        this.fedUntil[i] = this.time + fedActivations;
+        this.timesFed[i]++;
+    }
+
+    /**
+     * Returns the food token of particle i and clears it, or returns NONE if it has none.
+     */
+    public int takeFoodToken(int i) {
+        this.ownForagingState();
+        int token = this.foodToken[i];
+        this.foodToken[i] = NONE;
+        return token;
+    }
+
+    public boolean isFed(int i) {
+        return this.time < this.fedUntil[i];
+    }
+}
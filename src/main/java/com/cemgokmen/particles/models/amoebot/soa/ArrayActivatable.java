@@ -0,0 +1,39 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import java.util.Random;
+
+/**
+ * Implemented by algorithms that can run on an array-backed amoebot system, see {@link AmoebotArrayEngine}.
+ */
+public interface ArrayActivatable {
+    /**
+     * Activates particle i of an array-backed amoebot system.
+     */
+    void onArrayActivation(AmoebotStateArrays state, int i, Random random);
+
+    /**
+     * Whether the current settings can run on arrays, for algorithms that only have a fast path for some of them.
+     */
+    default boolean supportsArrayActivation() {
+        return true;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.CircularAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.LinearAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a system of directed particles on a {@link LinearAmoebotGrid} or {@link CircularAmoebotGrid} with one bit per
+ * site. The sites of the line are numbered from the bottom, so the two compass directions are a step down or up the
+ * index, and on the circle the index simply wraps around. Occupancy and facing (a set bit faces south) are kept in
+ * bitsets, so neighbor tests and moves are single bit operations, and whole-system metrics such as the number of
+ * clusters are popcount scans.
+ *
+ * Like {@link AmoebotArrayEngine}, we also keep the site of each particle so that one can be activated uniformly at
+ * random, and how many times it went around the circle, for its center of mass.
+ */
+public class LinearBitsetEngine {
+    public static final int NORTH = 0;
+    public static final int SOUTH = 1;
+    public static final int NONE = -1;
+
+    private final int halfLength;
+    private final int length;
+    private final boolean circular;
+    private final long[] occupied;
+    private final long[] south;
+
+    private int count = 0;
+    private int[] site;
+    private int[] level;
+
+    private final ParticleAlgorithm algorithm;
+    private final BitsetActivatable kernel;
+    private Random random = Utils.getRandom();
+    private long activationsRun = 0;
+    private int movesMade = 0;
+
+    public LinearBitsetEngine(int halfLength, boolean circular, int initialCapacity, ParticleAlgorithm algorithm) {
+        if (!(algorithm instanceof BitsetActivatable)) {
+            throw new RuntimeException(algorithm.getClass().getSimpleName() + " does not support bitset systems.");
+        }
+
+        this.halfLength = halfLength;
+        this.length = 2 * halfLength + 1;
+        this.circular = circular;
+        this.occupied = new long[(this.length + 63) >>> 6];
+        this.south = new long[this.occupied.length];
+
+        int capacity = Math.max(initialCapacity, 1);
+        this.site = new int[capacity];
+        this.level = new int[capacity];
+
+        this.algorithm = algorithm;
+        this.kernel = (BitsetActivatable) algorithm;
+    }
+
+    /**
+     * Copies the directed particles on a line or circle into bitsets. All particles should be running the same
+     * algorithm.
+     */
+    public static LinearBitsetEngine fromGrid(LinearAmoebotGrid grid) {
+        List<ParticleAlgorithm> algorithms = grid.getRunningAlgorithms().collect(Collectors.toList());
+        if (algorithms.size() != 1) {
+            throw new RuntimeException("Bitset systems need exactly one running algorithm, found " + algorithms.size());
+        }
+
+        boolean circular = grid instanceof CircularAmoebotGrid;
+        LinearBitsetEngine engine = new LinearBitsetEngine(grid.getHalfLength(), circular, grid.getParticleCount(), algorithms.get(0));
+
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            if (p.getClass() != DirectedAmoebotParticle.class) {
+                throw new RuntimeException("Bitset systems do not support " + p.getClass().getSimpleName());
+            }
+
+            DirectedAmoebotParticle particle = (DirectedAmoebotParticle) p;
+            int y = (int) grid.getParticlePosition(p).get(1);
+            int i = engine.add(engine.getSiteOf(y), particle.getDirection().getOrdinal());
+
+            // Carry over the number of times the particle went around
+            if (circular) engine.level[i] = ((CircularAmoebotGrid) grid).getParticleLevel(p, 1);
+        }
+
+        return engine;
+    }
+
+    /**
+     * Adds particle objects matching the current state to the given grid, which should be empty and of the same
+     * size. The number of times particles went around the circle is not carried over.
+     */
+    public <G extends LinearAmoebotGrid> G materialize(G grid) throws Exception {
+        List<ParticleGrid.Direction> directions = grid.getCompass().getDirections();
+        for (int i = 0; i < this.count; i++) {
+            DirectedAmoebotParticle p = new DirectedAmoebotParticle(grid.getCompass(), directions.get(this.getDirection(i)), false);
+            grid.addParticle(p, Utils.getVector(0, this.getY(this.site[i])));
+            p.setAlgorithm(this.algorithm);
+        }
+        return grid;
+    }
+
+    public int getSiteOf(int y) {
+        return y + this.halfLength;
+    }
+
+    public int getY(int site) {
+        return site - this.halfLength;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public boolean isCircular() {
+        return this.circular;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public int add(int site, int direction) {
+        if (site < 0 || site >= this.length) {
+            throw new RuntimeException("Invalid add - site " + site + " out of bounds.");
+        }
+        if (this.isOccupied(site)) {
+            throw new RuntimeException("Invalid add - there already is a particle at site " + site);
+        }
+
+        if (this.count == this.site.length) {
+            this.site = Arrays.copyOf(this.site, 2 * this.count);
+            this.level = Arrays.copyOf(this.level, 2 * this.count);
+        }
+
+        int i = this.count++;
+        this.site[i] = site;
+        this.level[i] = 0;
+        this.occupied[site >>> 6] |= 1L << site;
+        this.setDirectionAt(site, direction);
+        return i;
+    }
+
+    public boolean isOccupied(int site) {
+        return (this.occupied[site >>> 6] & (1L << site)) != 0;
+    }
+
+    public int getDirectionAt(int site) {
+        return (int) (this.south[site >>> 6] >>> site) & 1;
+    }
+
+    private void setDirectionAt(int site, int direction) {
+        if (direction == SOUTH) {
+            this.south[site >>> 6] |= 1L << site;
+        } else {
+            this.south[site >>> 6] &= ~(1L << site);
+        }
+    }
+
+    public int getSite(int i) {
+        return this.site[i];
+    }
+
+    public int getDirection(int i) {
+        return this.getDirectionAt(this.site[i]);
+    }
+
+    public void setDirection(int i, int direction) {
+        this.setDirectionAt(this.site[i], direction);
+    }
+
+    /**
+     * Returns the site a step in the given direction from the given site, or NONE if that leaves the line.
+     */
+    public int getNeighborSite(int site, int direction) {
+        int target = direction == SOUTH ? site + 1 : site - 1;
+        if (target < 0) return this.circular ? this.length - 1 : NONE;
+        if (target >= this.length) return this.circular ? 0 : NONE;
+        return target;
+    }
+
+    /**
+     * Moves particle i a step in the given direction. The target site should be free.
+     */
+    public void move(int i, int direction) {
+        int from = this.site[i];
+        int to = this.getNeighborSite(from, direction);
+        int facing = this.getDirectionAt(from);
+
+        this.occupied[from >>> 6] ^= 1L << from;
+        this.occupied[to >>> 6] ^= 1L << to;
+        this.setDirectionAt(to, facing);
+        this.site[i] = to;
+
+        // Going off one end of the circle takes us around once more
+        if (direction == SOUTH && to < from) this.level[i]++;
+        if (direction == NORTH && to > from) this.level[i]--;
+        this.movesMade++;
+    }
+
+    public void runActivations(int numActivations) {
+        for (int n = 0; n < numActivations; n++) {
+            if (this.count == 0) return;
+
+            // Same batch boundaries as ParticleGrid.runActivations for parameter edits
+            if (n % ParticleGrid.ACTIVATION_BATCH_SIZE == 0) this.algorithm.publishParameters();
+
+            this.kernel.onBitsetActivation(this, this.random.nextInt(this.count), this.random);
+            this.activationsRun++;
+        }
+    }
+
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    public ParticleAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public long getActivationsRun() {
+        return this.activationsRun;
+    }
+
+    public int getMovesMade() {
+        return this.movesMade;
+    }
+
+    public double getCenterOfMass() {
+        double sum = 0;
+        for (int i = 0; i < this.count; i++) sum += this.getY(this.site[i]) + (double) this.level[i] * this.length;
+        return sum / this.count;
+    }
+
+    /**
+     * The absolute difference between the numbers of particles facing either way, over the particle count.
+     */
+    public double getPolarization() {
+        int facingSouth = 0;
+        for (int w = 0; w < this.occupied.length; w++) facingSouth += Long.bitCount(this.occupied[w] & this.south[w]);
+        return Math.abs(2 * facingSouth - this.count) / (double) this.count;
+    }
+
+    /**
+     * The number of maximal runs of occupied sites, i.e. the number of clusters.
+     */
+    public int getRunCount() {
+        if (this.count == this.length) return 1;
+
+        int runs = 0;
+        for (int w = 0; w < this.occupied.length; w++) {
+            // A run starts at an occupied site whose predecessor is free
+            long previous = this.occupied[w] << 1;
+            if (w > 0) {
+                previous |= this.occupied[w - 1] >>> 63;
+            } else if (this.circular && this.isOccupied(this.length - 1)) {
+                previous |= 1;
+            }
+            runs += Long.bitCount(this.occupied[w] & ~previous);
+        }
+        return runs;
+    }
+
+    /**
+     * Returns the number of runs of occupied sites of each length, indexed by length.
+     */
+    public int[] getRunLengthHistogram() {
+        int[] histogram = new int[this.count + 1];
+        if (this.count == 0) return histogram;
+        if (this.count == this.length) {
+            histogram[this.count] = 1;
+            return histogram;
+        }
+
+        // On the circle, start at a free site so that no run is cut in two
+        int start = this.circular ? this.nextFree(0) : 0;
+        int position = start;
+        int scanned = 0;
+        while (scanned < this.length) {
+            int runStart = this.nextOccupied(position);
+            int toRunStart = this.distance(position, runStart);
+            if (runStart == NONE || scanned + toRunStart >= this.length) break;
+
+            int runEnd = this.nextFree(runStart);
+            int runLength = runEnd == NONE ? this.length - runStart : this.distance(runStart, runEnd);
+            histogram[runLength]++;
+
+            scanned += toRunStart + runLength;
+            if (runEnd == NONE) break;
+            position = runEnd;
+        }
+        return histogram;
+    }
+
+    private int distance(int from, int to) {
+        return to >= from ? to - from : to + this.length - from;
+    }
+
+    private int nextOccupied(int from) {
+        return this.nextBit(from, false);
+    }
+
+    private int nextFree(int from) {
+        return this.nextBit(from, true);
+    }
+
+    /**
+     * The first site at or after the given one (wrapping around on the circle) that is occupied, or free if asked
+     * for, or NONE.
+     */
+    private int nextBit(int from, boolean free) {
+        int found = this.scan(from, this.length, free);
+        if (found == NONE && this.circular) found = this.scan(0, from, free);
+        return found;
+    }
+
+    private int scan(int from, int to, boolean free) {
+        for (int w = from >>> 6; (w << 6) < to; w++) {
+            long word = free ? ~this.occupied[w] : this.occupied[w];
+            if (w == from >>> 6) word &= -1L << from;
+            if (word != 0) {
+                int s = (w << 6) + Long.numberOfTrailingZeros(word);
+                return s < to ? s : NONE;
+            }
+        }
+        return NONE;
+    }
+}
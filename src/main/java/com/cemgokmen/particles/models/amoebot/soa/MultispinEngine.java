@@ -0,0 +1,353 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Runs 64 independent replicas of a small amoebot system at once, one per bit: every site holds a {@code long} whose
+ * bit r says whether replica r has a particle there, and separable particles get one such word per class and site.
+ * The algorithm's multispin kernel then checks move validity and acceptance for all replicas with bitwise operations,
+ * drawing separate random bits for each replica.
+ *
+ * The replicas can't each pick their own particle, so a step activates the same site in all of them, and replicas
+ * without a particle there do nothing. The site is picked uniformly among those occupied in some replica, so within
+ * each replica every particle is equally likely to go, and the chain is the usual one slowed down by a factor of
+ * particles / candidate sites (see {@link #getActivationsPerReplica}). Directions and acceptance are drawn
+ * separately for every replica.
+ */
+public class MultispinEngine {
+    public static final int REPLICAS = Long.SIZE;
+
+    private static final int COUNTER_PLANES = 32;
+
+    private final AmoebotTopology topology;
+    private final int siteCount;
+    private final int directionCount;
+    private final int[] neighbors;
+    private final int particleCount;
+
+    private final long[] occupied;
+    private final long[][] classes;
+
+    // The sites occupied in at least one replica, in no particular order
+    private final int[] candidates;
+    private final int[] candidateIndex;
+    private int candidateCount = 0;
+
+    private final ParticleAlgorithm algorithm;
+    private final MultispinActivatable kernel;
+    private SplittableRandom random = new SplittableRandom(Utils.getRandom().nextLong());
+    private long stepsRun = 0;
+    private long movesMade = 0;
+    private double activationsPerReplica = 0;
+
+    // Scratch space for the kernels, so that a step does not allocate
+    final long[] directionBits = new long[3];
+    final long[] before = new long[4];
+    final long[] after = new long[4];
+    final long[] neighborsBefore = new long[4];
+    final long[] neighborsAfter = new long[4];
+    final long[] byDelta = new long[2 * MultispinKernels.MAX_DELTA + 1];
+    final long[] byNeighborDelta = new long[2 * MultispinKernels.MAX_DELTA + 1];
+    final long[] afterEquals = new long[MultispinKernels.MAX_DELTA + 1];
+
+    public MultispinEngine(AmoebotTopology topology, int classCount, int particleCount, ParticleAlgorithm algorithm) {
+        if (!(algorithm instanceof MultispinActivatable)) {
+            throw new RuntimeException(algorithm.getClass().getSimpleName() + " does not support multispin systems.");
+        }
+
+        if (topology.getDirectionCount() != 6) {
+            throw new RuntimeException("Multispin systems need the hexagonal compass.");
+        }
+
+        this.topology = topology;
+        this.siteCount = topology.getSiteCount();
+        this.directionCount = topology.getDirectionCount();
+        this.neighbors = new int[this.siteCount * this.directionCount];
+        for (int site = 0; site < this.siteCount; site++) {
+            for (int d = 0; d < this.directionCount; d++) {
+                this.neighbors[site * this.directionCount + d] = topology.getNeighborSite(site, d);
+            }
+        }
+        this.particleCount = particleCount;
+
+        this.occupied = new long[this.siteCount];
+        this.classes = classCount == 0 ? null : new long[classCount][this.siteCount];
+        this.candidates = new int[this.siteCount];
+        this.candidateIndex = new int[this.siteCount];
+        Arrays.fill(this.candidateIndex, AmoebotStateArrays.NONE);
+        this.algorithm = algorithm;
+        this.kernel = (MultispinActivatable) algorithm;
+    }
+
+    /**
+     * Starts all replicas from the current state of the grid, which should hold plain or separable amoebot particles
+     * running the same algorithm. Sparse grids are rejected, as for {@link AmoebotArrayEngine#fromGrid}.
+     */
+    public static MultispinEngine fromGrid(AmoebotGrid grid) {
+        if (grid.isSparse()) {
+            throw new RuntimeException("Multispin systems need a bounded lattice, " + grid.getClass().getSimpleName() +
+                    " only covers the space around its particles.");
+        }
+
+        List<ParticleAlgorithm> algorithms = grid.getRunningAlgorithms().collect(Collectors.toList());
+        if (algorithms.size() != 1) {
+            throw new RuntimeException("Multispin systems need exactly one running algorithm, found " + algorithms.size());
+        }
+
+        int classCount = 0;
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            if (p.getClass() == SeparableAmoebotParticle.class) {
+                classCount = Math.max(classCount, ((SeparableAmoebotParticle) p).getClassNumber() + 1);
+            } else if (p.getClass() != AmoebotParticle.class) {
+                throw new RuntimeException("Multispin systems do not support " + p.getClass().getSimpleName());
+            }
+        }
+
+        AmoebotTopology topology = grid.getTopology();
+        MultispinEngine engine = new MultispinEngine(topology, classCount, grid.getParticleCount(), algorithms.get(0));
+
+        it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            Particle p = it.next();
+            int site = topology.getSiteIndex(grid.getParticlePosition(p));
+            engine.occupied[site] = -1L;
+            engine.addCandidate(site);
+            if (p instanceof SeparableAmoebotParticle) {
+                engine.classes[((SeparableAmoebotParticle) p).getClassNumber()][site] = -1L;
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Copies one replica into arrays, e.g. to run it further on its own or to look at it.
+     */
+    public AmoebotStateArrays toState(int replica) {
+        AmoebotStateArrays state = new AmoebotStateArrays(this.topology, this.particleCount);
+        long bit = 1L << replica;
+        for (int site = 0; site < this.siteCount; site++) {
+            if ((this.occupied[site] & bit) == 0) continue;
+
+            int classNumber = this.getClassNumber(site, replica);
+            if (classNumber == AmoebotStateArrays.NONE) {
+                state.add(site, AmoebotStateArrays.KIND_AMOEBOT, 0, 0);
+            } else {
+                state.add(site, AmoebotStateArrays.KIND_SEPARABLE, classNumber, 0);
+            }
+        }
+        return state;
+    }
+
+    public AmoebotTopology getTopology() {
+        return this.topology;
+    }
+
+    public ParticleAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public int getParticleCount() {
+        return this.particleCount;
+    }
+
+    public int getClassCount() {
+        return this.classes == null ? 0 : this.classes.length;
+    }
+
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+    }
+
+    public long getStepsRun() {
+        return this.stepsRun;
+    }
+
+    /**
+     * The number of moves made, summed over the replicas.
+     */
+    public long getMovesMade() {
+        return this.movesMade;
+    }
+
+    /**
+     * The expected number of particle activations each replica has seen, on the time scale of the other engines.
+     */
+    public double getActivationsPerReplica() {
+        return this.activationsPerReplica;
+    }
+
+    private void addCandidate(int site) {
+        if (this.candidateIndex[site] != AmoebotStateArrays.NONE) return;
+        this.candidateIndex[site] = this.candidateCount;
+        this.candidates[this.candidateCount++] = site;
+    }
+
+    private void removeCandidate(int site) {
+        int index = this.candidateIndex[site];
+        int last = this.candidates[--this.candidateCount];
+        this.candidates[index] = last;
+        this.candidateIndex[last] = index;
+        this.candidateIndex[site] = AmoebotStateArrays.NONE;
+    }
+
+    public int getNeighborSite(int site, int direction) {
+        return this.neighbors[site * this.directionCount + direction];
+    }
+
+    /**
+     * The replicas with a particle at the given site, or none for a step off the grid.
+     */
+    public long getOccupied(int site) {
+        return site == AmoebotStateArrays.NONE ? 0 : this.occupied[site];
+    }
+
+    /**
+     * The replicas with a particle of the same class at both sites.
+     */
+    public long getSameClass(int a, int b) {
+        if (this.classes == null || a == AmoebotStateArrays.NONE || b == AmoebotStateArrays.NONE) return 0;
+
+        long same = 0;
+        for (long[] mask : this.classes) same |= mask[a] & mask[b];
+        return same;
+    }
+
+    public int getClassNumber(int site, int replica) {
+        if (this.classes == null) return AmoebotStateArrays.NONE;
+        for (int c = 0; c < this.classes.length; c++) {
+            if (((this.classes[c][site] >>> replica) & 1) != 0) return c;
+        }
+        return AmoebotStateArrays.NONE;
+    }
+
+    /**
+     * Moves the particles at a site to an empty neighboring site, in the given replicas.
+     */
+    public void move(int from, int to, long replicas) {
+        if (replicas == 0) return;
+
+        this.occupied[from] &= ~replicas;
+        this.occupied[to] |= replicas;
+        if (this.occupied[from] == 0) this.removeCandidate(from);
+        this.addCandidate(to);
+        if (this.classes != null) {
+            for (long[] mask : this.classes) {
+                mask[to] |= mask[from] & replicas;
+                mask[from] &= ~replicas;
+            }
+        }
+        this.movesMade += Long.bitCount(replicas);
+    }
+
+    /**
+     * Swaps the particles at two neighboring sites, which should both be occupied, in the given replicas.
+     */
+    public void swap(int a, int b, long replicas) {
+        if (replicas == 0) return;
+
+        if (this.classes != null) {
+            for (long[] mask : this.classes) {
+                long differs = (mask[a] ^ mask[b]) & replicas;
+                mask[a] ^= differs;
+                mask[b] ^= differs;
+            }
+        }
+        this.movesMade += Long.bitCount(replicas);
+    }
+
+    public void runSteps(int numSteps) {
+        for (int n = 0; n < numSteps; n++) {
+            // Same batch boundaries as ParticleGrid.runActivations for parameter edits
+            if (n % ParticleGrid.ACTIVATION_BATCH_SIZE == 0) this.algorithm.publishParameters();
+
+            if (this.candidateCount == 0) return;
+            this.activationsPerReplica += (double) this.particleCount / this.candidateCount;
+
+            int site = this.candidates[this.random.nextInt(this.candidateCount)];
+            this.kernel.onMultispinActivation(this, site, this.random);
+            this.stepsRun++;
+        }
+    }
+
+    /**
+     * Counts the edges between particles in every replica, or only those between particles of different classes.
+     */
+    private int[] countPairs(boolean heterogeneousOnly) {
+        // Per-replica counters, bit-sliced so that every edge is one carry-save addition
+        long[] counters = new long[COUNTER_PLANES];
+        for (int site = 0; site < this.siteCount; site++) {
+            if (this.occupied[site] == 0) continue;
+
+            // Half of the directions see every edge once
+            for (int d = 0; d < this.directionCount / 2; d++) {
+                int neighbor = this.getNeighborSite(site, d);
+                long pairs = this.occupied[site] & this.getOccupied(neighbor);
+                if (heterogeneousOnly) pairs &= ~this.getSameClass(site, neighbor);
+                MultispinKernels.add(counters, pairs);
+            }
+        }
+
+        int[] counts = new int[REPLICAS];
+        for (int r = 0; r < REPLICAS; r++) {
+            for (int k = 0; k < COUNTER_PLANES; k++) counts[r] |= (int) ((counters[k] >>> r) & 1) << k;
+        }
+        return counts;
+    }
+
+    /**
+     * The number of edges between neighboring particles in every replica.
+     */
+    public int[] countEdges() {
+        return this.countPairs(false);
+    }
+
+    /**
+     * The number of edges between particles of different classes in every replica.
+     */
+    public int[] countHeterogeneousEdges() {
+        if (this.classes == null) return new int[REPLICAS];
+        return this.countPairs(true);
+    }
+
+    /**
+     * The perimeter of every replica, as in {@code Observables.perimeter}.
+     */
+    public double[] getPerimeters() {
+        int[] edges = this.countEdges();
+        return Arrays.stream(edges).mapToDouble(e -> 3 * this.particleCount - e - 3).toArray();
+    }
+}
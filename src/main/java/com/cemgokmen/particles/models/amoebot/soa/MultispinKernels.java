@@ -0,0 +1,262 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.util.PowerTable;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Bitwise versions of the compression and separation rules for {@link MultispinEngine}, where bit r of every word
+ * belongs to replica r. Neighbor counts are kept bit-sliced (plane k holds bit k of every replica's count), and a
+ * move is accepted in a replica with the probability the object version would use, by comparing fresh random bits
+ * against the binary expansion of that probability.
+ */
+public class MultispinKernels {
+    /**
+     * Bounds the change in neighbor counts: a swap can change both particles' homogeneous neighbors by six.
+     */
+    static final int MAX_DELTA = 12;
+
+    /**
+     * Adds a one-bit number to each replica's bit-sliced counter.
+     */
+    static void add(long[] planes, long bits) {
+        long carry = bits;
+        for (int k = 0; k < planes.length && carry != 0; k++) {
+            long next = planes[k] & carry;
+            planes[k] ^= carry;
+            carry = next;
+        }
+    }
+
+    /**
+     * The replicas whose bit-sliced counter holds the given value.
+     */
+    static long equal(long[] planes, int value) {
+        long mask = -1L;
+        for (int k = 0; k < planes.length; k++) {
+            mask &= ((value >>> k) & 1) != 0 ? planes[k] : ~planes[k];
+        }
+        return (value >>> planes.length) == 0 ? mask : 0;
+    }
+
+    /**
+     * Picks a subset of the given replicas, each one independently with probability p. Every round of random bits
+     * settles each remaining replica with probability one half, so this takes a handful of random words.
+     */
+    static long bernoulli(double p, long replicas, SplittableRandom random) {
+        if (p >= 1) return replicas;
+        if (p <= 0 || replicas == 0) return 0;
+
+        long accepted = 0;
+        long undecided = replicas;
+        double fraction = p;
+        for (int bit = 0; bit < 53 && undecided != 0; bit++) {
+            fraction *= 2;
+            long u = random.nextLong();
+            if (fraction >= 1) {
+                // A zero here puts the replica's uniform below p
+                fraction -= 1;
+                accepted |= undecided & ~u;
+                undecided &= u;
+            } else {
+                undecided &= ~u;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Gives every replica its own uniformly random direction, as three bit planes. Values of 6 and 7 are redrawn.
+     */
+    private static void pickDirections(long[] bits, SplittableRandom random) {
+        bits[0] = random.nextLong();
+        bits[1] = random.nextLong();
+        bits[2] = random.nextLong();
+
+        long redraw = bits[1] & bits[2];
+        while (redraw != 0) {
+            for (int k = 0; k < 3; k++) bits[k] = (bits[k] & ~redraw) | (random.nextLong() & redraw);
+            redraw = bits[1] & bits[2];
+        }
+    }
+
+    private static long atLeastThreeChanges(long a, long b, long c, long d, long e) {
+        long x1 = a ^ b, x2 = b ^ c, x3 = c ^ d, x4 = d ^ e;
+        return (x1 & x2 & (x3 | x4)) | (x3 & x4 & (x1 | x2));
+    }
+
+    /**
+     * Same as {@code RuleUtils.isMoveValidCompressionMove} for a move into an empty site, for every replica at once.
+     */
+    static long getValidMoves(MultispinEngine e, int site, int target, int d) {
+        long a1 = e.getOccupied(e.getNeighborSite(site, (d + 1) % 6));
+        long a2 = e.getOccupied(e.getNeighborSite(site, (d + 2) % 6));
+        long a3 = e.getOccupied(e.getNeighborSite(site, (d + 3) % 6));
+        long a4 = e.getOccupied(e.getNeighborSite(site, (d + 4) % 6));
+        long a5 = e.getOccupied(e.getNeighborSite(site, (d + 5) % 6));
+        long b0 = e.getOccupied(e.getNeighborSite(target, d));
+        long b1 = e.getOccupied(e.getNeighborSite(target, (d + 1) % 6));
+        long b2 = e.getOccupied(e.getNeighborSite(target, (d + 2) % 6));
+        long b4 = e.getOccupied(e.getNeighborSite(target, (d + 4) % 6));
+        long b5 = e.getOccupied(e.getNeighborSite(target, (d + 5) % 6));
+
+        long fewerThanFive = ~(a1 & a2 & a3 & a4 & a5);
+        long property1 = (a5 | a1) & ~atLeastThreeChanges(a1, a2, a3, a4, a5) & ~atLeastThreeChanges(b4, b5, b0, b1, b2);
+        long property2 = ~a5 & ~a1 & (b0 | b1 | b2 | b4 | b5) & ~(a2 & ~a3 & a4) & (~b1 | b0 | ~b5);
+        return fewerThanFive & (property1 | property2);
+    }
+
+    /**
+     * Counts, in each replica, the particles next to a site, leaving out one direction. If sameAs is not NONE, only
+     * particles of the same class as the one at sameAs count.
+     */
+    private static void countNeighbors(MultispinEngine e, long[] planes, int site, int skip, int sameAs) {
+        Arrays.fill(planes, 0);
+        for (int d = 0; d < 6; d++) {
+            if (d == skip) continue;
+            int neighbor = e.getNeighborSite(site, d);
+            add(planes, sameAs == AmoebotStateArrays.NONE ? e.getOccupied(neighbor) : e.getSameClass(sameAs, neighbor));
+        }
+    }
+
+    /**
+     * Sorts the given replicas by the difference of two bit-sliced counts, at most max each, into byDelta indexed
+     * from -MAX_DELTA.
+     */
+    private static void groupByDelta(MultispinEngine e, long[] byDelta, long[] before, long[] after, int max, long replicas) {
+        Arrays.fill(byDelta, 0);
+        long[] afterEquals = e.afterEquals;
+        for (int a = 0; a <= max; a++) afterEquals[a] = equal(after, a) & replicas;
+
+        for (int b = 0; b <= max; b++) {
+            long withBefore = equal(before, b) & replicas;
+            if (withBefore == 0) continue;
+
+            for (int a = 0; a <= max; a++) {
+                long both = withBefore & afterEquals[a];
+                if (both != 0) byDelta[a - b + MAX_DELTA] |= both;
+            }
+        }
+    }
+
+    /**
+     * Same as {@code CompressionAlgorithm.onParticleActivation}, for the particles at the given site in every
+     * replica.
+     */
+    public static void compression(MultispinEngine e, int site, PowerTable lambdaPowers, SplittableRandom random) {
+        pickDirections(e.directionBits, random);
+
+        for (int d = 0; d < 6; d++) {
+            int target = e.getNeighborSite(site, d);
+            if (target == AmoebotStateArrays.NONE) continue;
+
+            long replicas = e.getOccupied(site) & equal(e.directionBits, d) & ~e.getOccupied(target);
+            if (replicas == 0) continue;
+            replicas &= getValidMoves(e, site, target, d);
+            if (replicas == 0) continue;
+
+            countNeighbors(e, e.before, site, d, AmoebotStateArrays.NONE);
+            countNeighbors(e, e.after, target, (d + 3) % 6, AmoebotStateArrays.NONE);
+            groupByDelta(e, e.byDelta, e.before, e.after, 5, replicas);
+
+            long accepted = 0;
+            for (int delta = -MAX_DELTA; delta <= MAX_DELTA; delta++) {
+                long group = e.byDelta[delta + MAX_DELTA];
+                if (group != 0) accepted |= bernoulli(lambdaPowers.get(delta), group, random);
+            }
+
+            e.move(site, target, accepted);
+        }
+    }
+
+    /**
+     * Same as {@code SeparationAlgorithm.onParticleActivation}, for the particles at the given site in every
+     * replica.
+     */
+    public static void separation(MultispinEngine e, int site, PowerTable lambdaPowers, PowerTable alphaPowers, boolean swapsAllowed, boolean nonSwapsAllowed, SplittableRandom random) {
+        pickDirections(e.directionBits, random);
+
+        for (int d = 0; d < 6; d++) {
+            int target = e.getNeighborSite(site, d);
+            if (target == AmoebotStateArrays.NONE) continue;
+
+            long replicas = e.getOccupied(site) & equal(e.directionBits, d);
+            if (replicas == 0) continue;
+
+            long targetOccupied = e.getOccupied(target);
+            long moves = nonSwapsAllowed ? replicas & ~targetOccupied : 0;
+            if (moves != 0) moves &= getValidMoves(e, site, target, d);
+            long swaps = swapsAllowed ? replicas & targetOccupied : 0;
+
+            if (moves != 0) {
+                countNeighbors(e, e.before, site, d, site);
+                countNeighbors(e, e.after, target, (d + 3) % 6, site);
+                groupByDelta(e, e.byDelta, e.before, e.after, 5, moves);
+                countNeighbors(e, e.neighborsBefore, site, d, AmoebotStateArrays.NONE);
+                countNeighbors(e, e.neighborsAfter, target, (d + 3) % 6, AmoebotStateArrays.NONE);
+                groupByDelta(e, e.byNeighborDelta, e.neighborsBefore, e.neighborsAfter, 5, moves);
+
+                long accepted = 0;
+                for (int homogeneous = -MAX_DELTA; homogeneous <= MAX_DELTA; homogeneous++) {
+                    long byHomogeneous = e.byDelta[homogeneous + MAX_DELTA];
+                    if (byHomogeneous == 0) continue;
+
+                    for (int all = -MAX_DELTA; all <= MAX_DELTA; all++) {
+                        long group = byHomogeneous & e.byNeighborDelta[all + MAX_DELTA];
+                        if (group != 0) accepted |= bernoulli(alphaPowers.get(homogeneous) * lambdaPowers.get(all), group, random);
+                    }
+                }
+
+                e.move(site, target, accepted);
+            }
+
+            if (swaps != 0) {
+                // Homogeneous neighbors of both particles, before and after they trade places
+                long sameClass = e.getSameClass(site, target);
+                Arrays.fill(e.before, 0);
+                Arrays.fill(e.after, 0);
+                for (int k = 0; k < 6; k++) {
+                    int siteNeighbor = e.getNeighborSite(site, k);
+                    int targetNeighbor = e.getNeighborSite(target, k);
+
+                    add(e.before, e.getSameClass(site, siteNeighbor));
+                    add(e.before, e.getSameClass(target, targetNeighbor));
+                    if (k != (d + 3) % 6) add(e.after, e.getSameClass(site, targetNeighbor));
+                    if (k != d) add(e.after, e.getSameClass(target, siteNeighbor));
+                }
+                add(e.after, sameClass);
+                add(e.after, sameClass);
+
+                groupByDelta(e, e.byDelta, e.before, e.after, MAX_DELTA, swaps);
+
+                long accepted = 0;
+                for (int delta = -MAX_DELTA; delta <= MAX_DELTA; delta++) {
+                    long group = e.byDelta[delta + MAX_DELTA];
+                    if (group != 0) accepted |= bernoulli(alphaPowers.get(delta), group, random);
+                }
+
+                e.swap(site, target, accepted);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays.NONE;
+
+/**
+ * Runs activations of one array-backed amoebot system on several threads at once, without splitting the lattice up
+ * front. Each worker picks particles uniformly at random and claims the sites within two steps of the particle by
+ * compare-and-set on a shared claim array before activating it: that covers every site a move can target and every
+ * site the rules read around the particle and its target. If any site is held by another worker, the claim is
+ * dropped and the worker tries another particle. The algorithm's array fast path runs unchanged on a view of the
+ * state that writes through to the shared arrays.
+ *
+ * Activations that touch disjoint regions commute, so this samples the same dynamics as a sequential run, but not
+ * in a reproducible order. Conflicts grow with the number of workers and the density of the system; see
+ * {@link #getConflictRate}. Like the rest of the array path, parameters are published once per call.
+ *
+ * Systems with foraging state are not supported, since food comes and goes on a shared clock.
+ */
+public class OptimisticAmoebotRunner {
+    private static final int FREE = 0;
+
+    // A particle's site, its neighbors and theirs
+    private static final int REGION_SIZE = 1 + 6 + 6 * 6;
+
+    private final AmoebotStateArrays state;
+    private final ParticleAlgorithm algorithm;
+    private final ArrayActivatable kernel;
+    private final AmoebotTopology topology;
+    private final AtomicIntegerArray claims;
+
+    private long activationsRun = 0;
+    private long conflicts = 0;
+
+    public OptimisticAmoebotRunner(AmoebotArrayEngine engine) {
+        if (engine.getState().hasForagingState()) {
+            throw new RuntimeException("Optimistic parallel runs do not support foraging systems.");
+        }
+
+        this.state = engine.getState();
+        this.algorithm = engine.getAlgorithm();
+        this.kernel = (ArrayActivatable) this.algorithm;
+        this.topology = this.state.getTopology();
+        this.claims = new AtomicIntegerArray(this.topology.getSiteCount());
+    }
+
+    /**
+     * Runs the given number of activations split over the given number of workers, one task each, and waits for all
+     * of them. Nothing else may touch the state in the meantime.
+     */
+    public void runActivations(int numActivations, int workerCount, long seed, ExecutorService executor) throws InterruptedException {
+        if (workerCount < 1) {
+            throw new RuntimeException("A parallel run needs at least one worker.");
+        }
+        if (this.state.getCount() == 0) return;
+
+        this.algorithm.publishParameters();
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Worker> workers = new ArrayList<>(workerCount);
+        for (int k = 0; k < workerCount; k++) {
+            int quota = numActivations / workerCount + (k < numActivations % workerCount ? 1 : 0);
+            workers.add(new Worker(k + 1, quota, new Random(seeds.nextLong())));
+        }
+
+        List<Future<?>> futures = new ArrayList<>(workerCount);
+        for (Worker worker : workers) {
+            futures.add(executor.submit(worker));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Worker failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        // The workers are done, so their counters can be read without further synchronization
+        for (Worker worker : workers) {
+            this.activationsRun += worker.activations;
+            this.conflicts += worker.conflicts;
+            this.state.addMovesMade(worker.view.getMovesMade());
+        }
+        this.state.setTime(this.state.getTime() + numActivations);
+    }
+
+    public AmoebotStateArrays getState() {
+        return this.state;
+    }
+
+    public ParticleAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public long getActivationsRun() {
+        return this.activationsRun;
+    }
+
+    /**
+     * Returns how many times a worker had to give up on a particle because part of its region was claimed, or the
+     * particle had moved away by the time the claim went through.
+     */
+    public long getConflicts() {
+        return this.conflicts;
+    }
+
+    /**
+     * Returns the fraction of attempted activations that ran into a conflict.
+     */
+    public double getConflictRate() {
+        long attempts = this.activationsRun + this.conflicts;
+        return attempts == 0 ? 0 : (double) this.conflicts / attempts;
+    }
+
+    private final class Worker implements Runnable {
+        private final int id;
+        private final int quota;
+        private final Random random;
+        private final AmoebotStateArrays view;
+
+        private final int[] claimed = new int[REGION_SIZE];
+        private int claimedCount = 0;
+
+        private long activations = 0;
+        private long conflicts = 0;
+
+        private Worker(int id, int quota, Random random) {
+            this.id = id;
+            this.quota = quota;
+            this.random = random;
+            this.view = OptimisticAmoebotRunner.this.state.share();
+        }
+
+        @Override
+        public void run() {
+            int count = this.view.getCount();
+            while (this.activations < this.quota) {
+                int i = this.random.nextInt(count);
+
+                // The site may be stale, in which case the particle is no longer there once we hold it
+                int site = this.view.getSite(i);
+                if (!this.claimRegion(site) || this.view.getOccupant(site) != i) {
+                    this.release();
+                    this.conflicts++;
+                    continue;
+                }
+
+                OptimisticAmoebotRunner.this.kernel.onArrayActivation(this.view, i, this.random);
+                this.release();
+                this.activations++;
+            }
+        }
+
+        private boolean claimRegion(int site) {
+            AmoebotTopology topology = OptimisticAmoebotRunner.this.topology;
+            if (!this.claim(site)) return false;
+
+            for (int d = 0; d < topology.getDirectionCount(); d++) {
+                int neighbor = topology.getNeighborSite(site, d);
+                if (neighbor == NONE) continue;
+                if (!this.claim(neighbor)) return false;
+
+                for (int e = 0; e < topology.getDirectionCount(); e++) {
+                    if (!this.claim(topology.getNeighborSite(neighbor, e))) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean claim(int site) {
+            if (site == NONE) return true;
+
+            // Regions overlap themselves, so check whether we already hold the site before paying for a CAS
+            AtomicIntegerArray claims = OptimisticAmoebotRunner.this.claims;
+            int owner = claims.get(site);
+            if (owner == this.id) return true;
+            if (owner != FREE || !claims.compareAndSet(site, FREE, this.id)) return false;
+
+            this.claimed[this.claimedCount++] = site;
+            return true;
+        }
+
+        private void release() {
+            // The volatile writes publish our changes to whoever claims these sites next
+            for (int k = 0; k < this.claimedCount; k++) {
+                OptimisticAmoebotRunner.this.claims.set(this.claimed[k], FREE);
+            }
+            this.claimedCount = 0;
+        }
+    }
+}
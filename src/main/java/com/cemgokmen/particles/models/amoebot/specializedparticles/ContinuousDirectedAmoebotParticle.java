@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.models.amoebot.specializedparticles;
 
+import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
@@ -42,6 +43,11 @@ public class ContinuousDirectedAmoebotParticle extends AmoebotParticle {
         if (chosenOne == null) chosenOne = this;
     }
 
+    @Override
+    public Particle copy() {
+        return new ContinuousDirectedAmoebotParticle(this.compass, this.direction, false);
+    }
+
     public double getDirection() {
         return this.direction;
     }
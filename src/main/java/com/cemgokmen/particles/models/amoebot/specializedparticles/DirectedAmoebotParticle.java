@@ -20,10 +20,12 @@ package com.cemgokmen.particles.models.amoebot.specializedparticles;
 
 import com.cemgokmen.particles.capabilities.WrappedNormalRandomDirectionCapable;
 import com.cemgokmen.particles.capabilities.SpinCapable;
+import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
 import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+import com.cemgokmen.particles.util.DirectionSamplers;
 import com.cemgokmen.particles.util.Utils;
 import org.la4j.Vector;
 
@@ -45,6 +47,11 @@ public class DirectedAmoebotParticle extends AmoebotParticle implements SpinCapa
         if (chosenOne == null) chosenOne = this;
     }
 
+    @Override
+    public Particle copy() {
+        return new DirectedAmoebotParticle(this.compass, this.direction, false);
+    }
+
     public ParticleGrid.Direction getDirection() {
         return this.direction;
     }
@@ -104,9 +111,8 @@ public class DirectedAmoebotParticle extends AmoebotParticle implements SpinCapa
 
     @Override
     public ParticleGrid.Direction getWrappedNormalRandomDirection(ParticleGrid.Direction mean, double standardDeviation) {
-        // Default range is -Pi to Pi. Let's switch that to our range of [-3, 3].
-        double sample = Utils.randomWrappedNorm(standardDeviation) * 3 / (Math.PI);
-        int steps = (int) Math.round(sample);
+        // Same distribution as rounding a wrapped normal angle to sixths of a turn, from a cached table.
+        int steps = DirectionSamplers.sampleWrappedNormalOffset(Utils.getRandom(), this.compass.getDirectionCount(), standardDeviation);
         return this.compass.shiftDirectionCounterclockwise(mean, steps);
     }
 
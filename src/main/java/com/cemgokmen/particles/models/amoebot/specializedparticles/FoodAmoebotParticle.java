@@ -18,31 +18,76 @@
 
 package com.cemgokmen.particles.models.amoebot.specializedparticles;
 
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.MoveStatus;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
-import com.cemgokmen.particles.models.amoebot.InvalidMoveException;
+import com.cemgokmen.particles.util.TimingWheel;
 
 import java.awt.*;
 
 public class FoodAmoebotParticle extends AmoebotParticle {
-    private Integer activationLifetime;
+    // The activation count on the grid's clock at which the food runs out, once it has started to
+    private Long expiresAt;
+    private TimingWheel.Timer<Runnable> expiry;
 
-    public void decrementLifetime(int maxLifetime) {
-        if (this.activationLifetime == null) this.activationLifetime = maxLifetime;
+    @Override
+    public Particle copy() {
+        FoodAmoebotParticle copy = new FoodAmoebotParticle();
+        copy.expiresAt = this.expiresAt;
+        return copy;
+    }
+
+    @Override
+    public void setGrid(ParticleGrid grid) {
+        if (this.expiry != null && this.grid != null) this.grid.getScheduler().cancel(this.expiry);
+        this.expiry = null;
 
-        this.activationLifetime--;
+        super.setGrid(grid);
+        this.scheduleExpiry();
+    }
+
+    public Long getExpiresAt() {
+        return this.expiresAt;
+    }
 
-        if (this.activationLifetime <= 0) {
-            System.out.println("Food expired");
-            try {
-                this.grid.removeParticle(this);
-            } catch (Exception ignored) {}
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+        this.scheduleExpiry();
+    }
+
+    /**
+     * Starts the countdown to expiry, unless it is already running.
+     */
+    public void startLifetime(long activations) {
+        if (this.expiresAt == null && this.grid != null) {
+            this.setExpiresAt(this.grid.getActivationsRun() + activations);
         }
     }
 
+    private void scheduleExpiry() {
+        if (this.grid == null) return;
+
+        TimingWheel<Runnable> scheduler = this.grid.getScheduler();
+        if (this.expiresAt == null) {
+            if (this.expiry != null) scheduler.cancel(this.expiry);
+        } else if (this.expiry == null) {
+            this.expiry = scheduler.schedule(this::expire, this.expiresAt);
+        } else {
+            scheduler.reschedule(this.expiry, this.expiresAt);
+        }
+    }
+
+    private void expire() {
+        System.out.println("Food expired");
+        try {
+            this.grid.removeParticle(this);
+        } catch (Exception ignored) {}
+    }
+
     @Override
-    public void move(ParticleGrid.Direction inDirection) {
-        throw new InvalidMoveException("Cannot move food particle");
+    public int tryMove(ParticleGrid.Direction inDirection) {
+        return MoveStatus.IMMOVABLE;
     }
 
     @Override
@@ -18,30 +18,69 @@
 
 package com.cemgokmen.particles.models.amoebot.specializedparticles;
 
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.util.TimingWheel;
 import org.la4j.Vector;
 
 import java.awt.*;
 import java.util.function.Function;
 
 public class ForagingAmoebotParticle extends AmoebotParticle {
-    private int maximumFedActivations;
-    private int fedActivations;
-    private final boolean greyscale;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    // Timestamps on the grid's activation clock, from which the counters are worked out when asked for
+    private long fedAt = NEVER;
+    private long fedUntil = NEVER;
+    private long longestWait = 0;
     private int timesFed;
-    private int lastFedActivationsAgo;
-    private int longestLastFedActivationsAgo;
+    private final boolean greyscale;
 
     private Integer foodToken;
+    private TimingWheel.Timer<Runnable> hungerTimer;
 
     public ForagingAmoebotParticle(boolean greyscale) {
-        this.maximumFedActivations = 1;
-        this.fedActivations = 0;
         this.timesFed = 0;
         this.greyscale = greyscale;
         this.foodToken = null;
-        this.lastFedActivationsAgo = 0;
-        this.longestLastFedActivationsAgo = 0;
+    }
+
+    @Override
+    public Particle copy() {
+        ForagingAmoebotParticle copy = new ForagingAmoebotParticle(this.greyscale);
+        copy.setFeedingState(this.fedAt, this.fedUntil, this.timesFed, this.longestWait, this.foodToken);
+        return copy;
+    }
+
+    @Override
+    public void setGrid(ParticleGrid grid) {
+        if (this.hungerTimer != null && this.grid != null) this.grid.getScheduler().cancel(this.hungerTimer);
+        this.hungerTimer = null;
+
+        super.setGrid(grid);
+
+        // The wait for the first feeding starts when the particle joins a grid
+        if (grid != null && this.fedAt == NEVER) this.fedAt = grid.getActivationsRun();
+        this.scheduleHunger();
+    }
+
+    private long now() {
+        return this.grid != null ? this.grid.getActivationsRun() : 0;
+    }
+
+    private void scheduleHunger() {
+        if (this.grid == null) return;
+
+        // Nothing changes when the particle gets hungry except how it is drawn and counted, so just let everyone know
+        TimingWheel<Runnable> scheduler = this.grid.getScheduler();
+        if (this.fedUntil <= this.now()) {
+            if (this.hungerTimer != null) scheduler.cancel(this.hungerTimer);
+        } else if (this.hungerTimer == null) {
+            this.hungerTimer = scheduler.schedule(this::notifyChanged, this.fedUntil);
+        } else {
+            scheduler.reschedule(this.hungerTimer, this.fedUntil);
+        }
     }
 
     public int getFoodToken() {
@@ -54,44 +93,80 @@ public class ForagingAmoebotParticle extends AmoebotParticle {
         return this.foodToken != null;
     }
 
-    public void giveFoodToken(int foodToken, int fedActivations) {
+    public Integer peekFoodToken() {
+        return this.foodToken;
+    }
+
+    public boolean isGreyscale() {
+        return this.greyscale;
+    }
+
+    public long getFedAt() {
+        return this.fedAt;
+    }
+
+    public long getFedUntil() {
+        return this.fedUntil;
+    }
+
+    /**
+     * Restores the feeding timestamps, e.g. when the particle is rebuilt from an array-backed system.
+     */
+    public void setFeedingState(long fedAt, long fedUntil, int timesFed, long longestWait, Integer foodToken) {
+        this.fedAt = fedAt;
+        this.fedUntil = fedUntil;
+        this.timesFed = timesFed;
+        this.longestWait = longestWait;
+        this.foodToken = foodToken;
+        this.scheduleHunger();
+        this.notifyChanged();
+    }
+
+    public void giveFoodToken(int foodToken, long fedActivations) {
         this.foodToken = foodToken;
         this.feed(fedActivations);
     }
 
-    public int getFedActivations() {
-        return this.fedActivations;
+    /**
+     * The number of activations the particle stays fed for, counted on the grid's activation clock.
+     */
+    public long getFedActivations() {
+        return Math.max(this.fedUntil - this.now(), 0);
     }
 
     public int getTimesFed() {
         return this.timesFed;
     }
 
-    public void feed(int fedActivations) {
-        this.maximumFedActivations = fedActivations;
-        this.fedActivations = fedActivations;
-        this.lastFedActivationsAgo = 0;
+    public void feed(long fedActivations) {
+        long now = this.now();
+        this.longestWait = this.getLongestWait();
+        this.fedAt = now;
+        this.fedUntil = now + fedActivations;
         this.timesFed++;
+        this.scheduleHunger();
+        this.notifyChanged();
     }
 
-    public void decrementFedActivations() {
-        this.fedActivations--;
-        if (this.fedActivations < 0) {
-            this.fedActivations = 0;
-        }
+    public boolean isFed() {
+        return this.now() < this.fedUntil;
     }
 
-    public boolean isFed() {
-        return this.fedActivations > 0;
+    public long getLastFedActivationsAgo() {
+        return this.fedAt == NEVER ? 0 : this.now() - this.fedAt;
     }
 
-    public int getLongestLastFedActivationsAgo() {
-        return this.longestLastFedActivationsAgo;
+    /**
+     * The longest the particle has gone between feedings, including the wait it is in now.
+     */
+    public long getLongestWait() {
+        return Math.max(this.longestWait, this.getLastFedActivationsAgo());
     }
 
-    public void incrementLastFedActivationsAgo() {
-        this.lastFedActivationsAgo++;
-        this.longestLastFedActivationsAgo = Math.max(this.longestLastFedActivationsAgo, this.lastFedActivationsAgo);
+    private void notifyChanged() {
+        if (this.grid != null) {
+            this.grid.notifyParticleChanged(this);
+        }
     }
 
     private static final float[][] BRIGHT_COLORS = new float[][]{
@@ -112,8 +187,9 @@ public class ForagingAmoebotParticle extends AmoebotParticle {
         Vector fromColorVector = Vector.fromArray(new double[]{fromColor[0], fromColor[1], fromColor[2]});
         Vector toColorVector = Vector.fromArray(new double[]{toColor[0], toColor[1], toColor[2]});
 
-        Vector finalColorVector = toColorVector.multiply(this.fedActivations).add(fromColorVector.multiply(
-                this.maximumFedActivations - this.fedActivations)).divide(this.maximumFedActivations);
+        // How much of the last feeding is left
+        double fed = this.isFed() ? (double) this.getFedActivations() / (this.fedUntil - this.fedAt) : 0;
+        Vector finalColorVector = toColorVector.multiply(fed).add(fromColorVector.multiply(1 - fed));
 
         return Color.getHSBColor((float) finalColorVector.get(0), (float) finalColorVector.get(1), (float) finalColorVector.get(2));
     }
@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.models.amoebot.specializedparticles;
 
+import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
 import org.la4j.Vector;
 
@@ -33,10 +34,19 @@ public class SeparableAmoebotParticle extends AmoebotParticle {
         this.greyscale = greyscale;
     }
 
+    @Override
+    public Particle copy() {
+        return new SeparableAmoebotParticle(this.classNumber, this.greyscale);
+    }
+
     public int getClassNumber() {
         return this.classNumber;
     }
 
+    public boolean isGreyscale() {
+        return this.greyscale;
+    }
+
     private static final Color[] BRIGHT_COLORS = new Color[]{
             new Color(230, 25, 75),
             new Color(60, 180, 75),
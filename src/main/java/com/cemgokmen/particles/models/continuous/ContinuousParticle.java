@@ -19,6 +19,7 @@
 package com.cemgokmen.particles.models.continuous;
 
 import com.cemgokmen.particles.capabilities.*;
+import com.cemgokmen.particles.models.MoveStatus;
 import com.cemgokmen.particles.models.Particle;
 import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.amoebot.InvalidMoveException;
@@ -66,6 +67,11 @@ public class ContinuousParticle extends Particle implements MovementCapable, Nei
         this(radius, new ContinuousParticleGrid.ContinuousDirection(degrees));
     }
 
+    @Override
+    public Particle copy() {
+        return new ContinuousParticle(this.radius, (ContinuousParticleGrid.ContinuousDirection) this.direction);
+    }
+
     public java.util.List<Particle> getNeighborParticles(boolean includeNulls, Predicate<Particle> filter) {
         ContinuousParticleGrid g = (ContinuousParticleGrid) this.grid;
         if (filter == null) {
@@ -96,22 +102,19 @@ public class ContinuousParticle extends Particle implements MovementCapable, Nei
     }
 
     public void move(ParticleGrid.Direction inDirection) {
+        int status = this.tryMove(inDirection);
+        if (status != MoveStatus.OK) {
+            throw new InvalidMoveException(MoveStatus.describe(status));
+        }
+    }
+
+    public int tryMove(ParticleGrid.Direction inDirection) {
         Vector current = this.grid.getParticlePosition(this);
         Vector target = this.grid.getPositionInDirection(current, inDirection);
 
         //System.out.printf("Moving particle of color %d from %s to %s\n", ((SeparableAmoebotParticle)this).getClassNumber(), current, target);
 
-        Particle atTarget = this.grid.getParticleAtPosition(target);
-        try {
-            if (atTarget == null) {
-                // Make the move
-                this.grid.moveParticle(this, target);
-            } else {
-                throw new InvalidMoveException("Position is occupied.");
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
-        }
+        return this.grid.tryMoveParticle(this, target);
     }
 
     public boolean isDirectionWithinBounds(ParticleGrid.Direction d) {
@@ -25,15 +25,17 @@ import com.cemgokmen.particles.models.ParticleGrid;
 import com.cemgokmen.particles.models.continuous.boundary.ContinuousParticleGridBoundary;
 import com.cemgokmen.particles.storage.BiMapParticleStorage;
 import com.cemgokmen.particles.storage.ParticleStorage;
+import com.cemgokmen.particles.util.LongHashMap;
 import com.cemgokmen.particles.util.Utils;
 import com.google.common.collect.ImmutableList;
 import org.la4j.Vector;
 
 import javax.annotation.Nonnull;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ContinuousParticleGrid extends ParticleGrid {
@@ -76,6 +78,36 @@ public class ContinuousParticleGrid extends ParticleGrid {
         public double getAngleBetweenDirections(Direction a, Direction b) {
             return Utils.getDifferenceBetweenAngles(((ContinuousDirection) a).getCCWAngleFromXAxis(), ((ContinuousDirection) b).getCCWAngleFromXAxis());
         }
+
+        @Override
+        public boolean hasDiscreteDirections() {
+            return false;
+        }
+
+        @Override
+        public int getDirectionCount() {
+            throw new UnsupportedOperationException("This grid does not have discretized directions.");
+        }
+
+        @Override
+        public Direction getDirection(int ordinal) {
+            throw new UnsupportedOperationException("This grid does not have discretized directions.");
+        }
+
+        @Override
+        public int shiftOrdinalCounterclockwise(int ordinal, int times) {
+            throw new UnsupportedOperationException("This grid does not have discretized directions.");
+        }
+
+        @Override
+        public double getAngleBetweenOrdinals(int a, int b) {
+            throw new UnsupportedOperationException("This grid does not have discretized directions.");
+        }
+
+        @Override
+        public double getNormalizedDotProduct(int a, int b) {
+            throw new UnsupportedOperationException("This grid does not have discretized directions.");
+        }
     }
 
     private final ContinuousCompass compass = new ContinuousCompass();
@@ -88,6 +120,14 @@ public class ContinuousParticleGrid extends ParticleGrid {
     private ContinuousParticleGridBoundary boundary;
     private final ParticleStorage storage;
 
+    // Particles bucketed by the cell their center is in, so that lookups around a position only go through the
+    // particles nearby instead of all of them. Cells are as wide as the largest particle, so that a neighborhood
+    // query probes a handful of cells whatever the radii are.
+    private static final double MIN_INDEX_CELL_SIZE = 1e-6;
+    private final LongHashMap<List<Particle>> index = new LongHashMap<>();
+    private double indexCellSize = MIN_INDEX_CELL_SIZE;
+    private double maxRadius = 0;
+
     public ContinuousParticleGrid(ContinuousParticleGridBoundary boundary) {
         this.boundary = boundary;
 
@@ -97,6 +137,15 @@ public class ContinuousParticleGrid extends ParticleGrid {
         this.storage = new BiMapParticleStorage(upperBound);
     }
 
+    @Override
+    protected ParticleGrid createEmptyCopy() {
+        return new ContinuousParticleGrid(this.boundary);
+    }
+
+    public ContinuousParticleGridBoundary getBoundary() {
+        return this.boundary;
+    }
+
     @Override
     protected ParticleStorage getStorage() {
         return this.storage;
@@ -153,13 +202,114 @@ public class ContinuousParticleGrid extends ParticleGrid {
         return in.copy();
     }
 
+    private int getIndexCell(double coordinate) {
+        return (int) Math.floor(coordinate / this.indexCellSize);
+    }
+
+    private static long getIndexKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private long getIndexKey(Vector position) {
+        return getIndexKey(this.getIndexCell(position.get(0)), this.getIndexCell(position.get(1)));
+    }
+
+    private void addToIndex(Particle p, Vector position) {
+        long key = this.getIndexKey(position);
+        List<Particle> cell = this.index.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(2);
+            this.index.put(key, cell);
+        }
+        cell.add(p);
+    }
+
+    private void removeFromIndex(Particle p, Vector position) {
+        long key = this.getIndexKey(position);
+        List<Particle> cell = this.index.get(key);
+        cell.remove(p);
+        if (cell.isEmpty()) this.index.remove(key);
+    }
+
+    /**
+     * Rebuckets every particle, which only happens when a larger particle than any before joins the grid.
+     */
+    private void rebuildIndex(double cellSize) {
+        this.indexCellSize = cellSize;
+        this.index.clear();
+        this.getAllParticles().forEach(that -> this.addToIndex(that, this.getParticlePosition(that)));
+    }
+
+    @Override
+    protected void onParticleAdded(Particle p, Vector position) {
+        this.maxRadius = Math.max(this.maxRadius, ((ContinuousParticle) p).getRadius());
+        if (2 * this.maxRadius > this.indexCellSize) {
+            this.rebuildIndex(2 * this.maxRadius);
+        } else {
+            this.addToIndex(p, position);
+        }
+        super.onParticleAdded(p, position);
+    }
+
+    @Override
+    protected void onParticleRemoved(Particle p, Vector position) {
+        this.removeFromIndex(p, position);
+        super.onParticleRemoved(p, position);
+    }
+
+    @Override
+    protected void onParticleMoved(Particle p, Vector from, Vector to) {
+        this.removeFromIndex(p, from);
+        this.addToIndex(p, to);
+        super.onParticleMoved(p, from, to);
+    }
+
+    /**
+     * Goes through the particles whose centers are less than the given distance from a position.
+     */
+    private void forEachParticleWithin(Vector position, double distance, Consumer<Particle> action) {
+        double x = position.get(0);
+        double y = position.get(1);
+        int loX = this.getIndexCell(x - distance), hiX = this.getIndexCell(x + distance);
+        int loY = this.getIndexCell(y - distance), hiY = this.getIndexCell(y + distance);
+
+        // Past a reach of many cells, going through the particles themselves is cheaper than probing empty cells
+        if ((hiX - loX + 1.0) * (hiY - loY + 1.0) > this.getParticleCount()) {
+            this.getAllParticles().forEach(that -> {
+                Vector thatPosition = this.getParticlePosition(that);
+                double dx = thatPosition.get(0) - x;
+                double dy = thatPosition.get(1) - y;
+                if (dx * dx + dy * dy < distance * distance) action.accept(that);
+            });
+            return;
+        }
+
+        for (int cellX = loX; cellX <= hiX; cellX++) {
+            for (int cellY = loY; cellY <= hiY; cellY++) {
+                List<Particle> cell = this.index.get(getIndexKey(cellX, cellY));
+                if (cell == null) continue;
+
+                for (Particle that : cell) {
+                    Vector thatPosition = this.getParticlePosition(that);
+                    double dx = thatPosition.get(0) - x;
+                    double dy = thatPosition.get(1) - y;
+                    if (dx * dx + dy * dy < distance * distance) action.accept(that);
+                }
+            }
+        }
+    }
+
     @Override
     public Particle getParticleAtPosition(Vector position) {
         // Get any particles that are occupying this exact coordinate
-        return this.getAllParticles().filter(that -> {
+        Particle[] found = new Particle[1];
+        this.forEachParticleWithin(position, this.maxRadius, that -> {
             Vector thatPosition = this.getParticlePosition(that);
-            return Utils.is2DVectorShorterThan(thatPosition.subtract(position), ((ContinuousParticle) that).getRadius());
-        }).findAny().orElse(null);
+            if (found[0] == null && Utils.is2DVectorShorterThan(thatPosition.subtract(position), ((ContinuousParticle) that).getRadius())) {
+                found[0] = that;
+            }
+        });
+        return found[0];
     }
 
     @Override
@@ -239,10 +389,11 @@ public class ContinuousParticleGrid extends ParticleGrid {
 
     public List<Particle> getPositionNeighbors(Vector position, double distance, @Nonnull Predicate<Particle> filter) {
         // Note that the distance is between the centers
-        return this.getAllParticles().filter(that -> {
-            Vector thatPosition = this.getParticlePosition(that);
-            return Utils.is2DVectorShorterThan(thatPosition.subtract(position), distance);
-        }).filter(filter).collect(Collectors.toList());
+        List<Particle> neighbors = new ArrayList<>();
+        this.forEachParticleWithin(position, distance, that -> {
+            if (filter.test(that)) neighbors.add(that);
+        });
+        return neighbors;
     }
 
     @Override
@@ -40,6 +40,12 @@ public class CircularBoundary implements ContinuousParticleGridBoundary {
         return Utils.is2DVectorShorterThan(v, this.radius - radius);
     }
 
+    @Override
+    public boolean isPointInBoundary(double x, double y, double radius) {
+        double r = this.radius - radius;
+        return x * x + y * y < r * r;
+    }
+
     @Override
     public double getArea() {
         return Math.PI * this.radius * this.radius;
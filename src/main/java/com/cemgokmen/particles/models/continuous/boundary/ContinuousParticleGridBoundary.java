@@ -18,6 +18,7 @@
 
 package com.cemgokmen.particles.models.continuous.boundary;
 
+import com.cemgokmen.particles.util.Utils;
 import org.la4j.Vector;
 
 import java.awt.*;
@@ -25,6 +26,14 @@ import java.util.List;
 
 public interface ContinuousParticleGridBoundary {
     boolean isVectorInBoundary(Vector v, double radius);
+
+    /**
+     * Same as {@link #isVectorInBoundary} for a point given by its coordinates, which boundaries can override to
+     * avoid building a vector.
+     */
+    default boolean isPointInBoundary(double x, double y, double radius) {
+        return this.isVectorInBoundary(Utils.getVector(x, y), radius);
+    }
     double getArea();
     List<Vector> getZoomAreaVertices();
     Shape getShape();
@@ -0,0 +1,99 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.continuous.soa;
+
+import java.util.Arrays;
+
+/**
+ * Buckets points into square cells of a fixed size over a bounding box, so that every point within one cell size of
+ * a given point is found by looking at the 3x3 cells around it. Points are counting-sorted by cell, so the points of
+ * a cell are a contiguous run of {@link #getPoint} indices. Points outside the box are put in the nearest cell.
+ */
+public class ContinuousCellList {
+    private final double minX, minY;
+    private final double cellSize;
+    private final int columns, rows;
+
+    private final int[] cellStart;
+    private int[] points = new int[0];
+
+    public ContinuousCellList(double minX, double minY, double maxX, double maxY, double cellSize) {
+        if (cellSize <= 0) {
+            throw new RuntimeException("Cells should have a positive size.");
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+        this.cellStart = new int[this.columns * this.rows + 1];
+    }
+
+    public int getColumns() {
+        return this.columns;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public int getColumn(double x) {
+        return Math.min(this.columns - 1, Math.max(0, (int) ((x - this.minX) / this.cellSize)));
+    }
+
+    public int getRow(double y) {
+        return Math.min(this.rows - 1, Math.max(0, (int) ((y - this.minY) / this.cellSize)));
+    }
+
+    /**
+     * Sorts the first {@code count} points into their cells.
+     */
+    public void build(double[] x, double[] y, int count) {
+        if (this.points.length < count) this.points = new int[count];
+        Arrays.fill(this.cellStart, 0);
+
+        for (int i = 0; i < count; i++) {
+            this.cellStart[this.getRow(y[i]) * this.columns + this.getColumn(x[i]) + 1]++;
+        }
+        for (int c = 0; c < this.columns * this.rows; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+
+        // Fill each cell from its end, which leaves cellStart[c + 1] at the start of cell c
+        for (int i = count - 1; i >= 0; i--) {
+            int cell = this.getRow(y[i]) * this.columns + this.getColumn(x[i]);
+            this.points[--this.cellStart[cell + 1]] = i;
+        }
+        System.arraycopy(this.cellStart, 1, this.cellStart, 0, this.columns * this.rows);
+        this.cellStart[this.columns * this.rows] = count;
+    }
+
+    public int getCellStart(int column, int row) {
+        return this.cellStart[row * this.columns + column];
+    }
+
+    public int getCellEnd(int column, int row) {
+        return this.cellStart[row * this.columns + column + 1];
+    }
+
+    public int getPoint(int k) {
+        return this.points[k];
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.continuous.soa;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+import com.cemgokmen.particles.models.continuous.boundary.ContinuousParticleGridBoundary;
+import org.la4j.Vector;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Runs continuous self-propelled particles with synchronous (Vicsek-style) updates on arrays of positions and
+ * headings, instead of activating particle objects one at a time. Every step, each particle takes the mean heading
+ * of the particles within the interaction radius plus uniform noise, then tries to move {@code speed} along it. Moves
+ * that leave the boundary or end within a radius of another particle are undone, and undoing a move can in turn undo
+ * the moves around it, until no conflicts are left. The result does not depend on the order particles are looked at.
+ *
+ * Neighbors come from a {@link ContinuousCellList}, and each pass over the particles is independent per particle, so
+ * passes run on parallel streams. The noise is a hash of the seed, the step and the particle index rather than a
+ * shared generator, which makes parallel and sequential runs give the same result.
+ */
+public class ContinuousSwarmEngine {
+    private final ContinuousParticleGridBoundary boundary;
+    private final double radius;
+    private final double speed;
+    private final double interactionRadius;
+    private final double noise;
+
+    private int count = 0;
+    private double[] x, y, heading;
+    private double[] cos, sin;
+    private double[] nextX, nextY, nextHeading;
+    private double[] pointX, pointY;
+    private boolean[] stays, conflicts;
+    private int[] undone;
+
+    private final ContinuousCellList cells;
+    private boolean parallel = true;
+    private final long seed;
+    private long stepsRun = 0;
+    private long movesMade = 0;
+
+    /**
+     * @param radius the radius of every particle, within which no other particle's center may end up
+     * @param speed how far a particle tries to move each step
+     * @param interactionRadius the distance between centers within which particles align with each other
+     * @param noise the width of the uniform noise added to the mean heading, in radians
+     */
+    public ContinuousSwarmEngine(ContinuousParticleGridBoundary boundary, double radius, double speed,
+                                 double interactionRadius, double noise, long seed) {
+        this.boundary = boundary;
+        this.radius = radius;
+        this.speed = speed;
+        this.interactionRadius = interactionRadius;
+        this.noise = noise;
+        this.seed = seed;
+
+        List<Vector> zoomArea = boundary.getZoomAreaVertices();
+        this.cells = new ContinuousCellList(
+                zoomArea.stream().mapToDouble(v -> v.get(0)).min().getAsDouble(),
+                zoomArea.stream().mapToDouble(v -> v.get(1)).min().getAsDouble(),
+                zoomArea.stream().mapToDouble(v -> v.get(0)).max().getAsDouble(),
+                zoomArea.stream().mapToDouble(v -> v.get(1)).max().getAsDouble(),
+                Math.max(interactionRadius, radius));
+
+        this.allocate(16);
+    }
+
+    /**
+     * Copies the particles on a grid into arrays. All particles should have the same radius.
+     */
+    public static ContinuousSwarmEngine fromGrid(ContinuousParticleGrid grid, double speed, double interactionRadius,
+                                                 double noise, long seed) {
+        ContinuousSwarmEngine engine = null;
+
+        Iterator<Particle> it = grid.getAllParticles().iterator();
+        while (it.hasNext()) {
+            ContinuousParticle p = (ContinuousParticle) it.next();
+            if (engine == null) {
+                engine = new ContinuousSwarmEngine(grid.getBoundary(), p.getRadius(), speed, interactionRadius, noise, seed);
+            } else if (p.getRadius() != engine.radius) {
+                throw new RuntimeException("Swarm engines need all particles to have the same radius.");
+            }
+
+            Vector position = grid.getParticlePosition(p);
+            double angle = ((ContinuousParticleGrid.ContinuousDirection) p.getDirection()).getCCWAngleFromXAxis();
+            engine.add(position.get(0), position.get(1), angle);
+        }
+
+        if (engine == null) {
+            throw new RuntimeException("Swarm engines need at least one particle to take the radius from.");
+        }
+        return engine;
+    }
+
+    /**
+     * Adds particle objects matching the current state to the given grid, which should be empty and have the same
+     * boundary as the one this system lives in.
+     */
+    public ContinuousParticleGrid materialize(ContinuousParticleGrid grid, ParticleAlgorithm algorithm) throws Exception {
+        for (int i = 0; i < this.count; i++) {
+            ContinuousParticle p = new ContinuousParticle(this.radius, new ContinuousParticleGrid.ContinuousDirection(this.heading[i]));
+            grid.addParticle(p, Vector.fromArray(new double[]{this.x[i], this.y[i]}));
+            if (algorithm != null) p.setAlgorithm(algorithm);
+        }
+        return grid;
+    }
+
+    private void allocate(int capacity) {
+        this.x = this.x == null ? new double[capacity] : Arrays.copyOf(this.x, capacity);
+        this.y = this.y == null ? new double[capacity] : Arrays.copyOf(this.y, capacity);
+        this.heading = this.heading == null ? new double[capacity] : Arrays.copyOf(this.heading, capacity);
+        this.cos = new double[capacity];
+        this.sin = new double[capacity];
+        this.nextX = new double[capacity];
+        this.nextY = new double[capacity];
+        this.nextHeading = new double[capacity];
+        this.pointX = new double[2 * capacity];
+        this.pointY = new double[2 * capacity];
+        this.stays = new boolean[capacity];
+        this.conflicts = new boolean[capacity];
+        this.undone = new int[capacity];
+    }
+
+    public int add(double x, double y, double heading) {
+        if (this.count == this.x.length) this.allocate(2 * this.count);
+
+        int i = this.count++;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.heading[i] = heading;
+        return i;
+    }
+
+    private IntStream indices() {
+        IntStream indices = IntStream.range(0, this.count);
+        return this.parallel ? indices.parallel() : indices;
+    }
+
+    public void runSteps(int steps) {
+        for (int s = 0; s < steps; s++) {
+            this.step();
+        }
+    }
+
+    private void step() {
+        // Headings: the mean over the neighborhood, which includes the particle itself, plus noise
+        this.indices().forEach(i -> {
+            this.cos[i] = Math.cos(this.heading[i]);
+            this.sin[i] = Math.sin(this.heading[i]);
+        });
+        this.cells.build(this.x, this.y, this.count);
+        this.indices().forEach(this::updateHeading);
+
+        // Proposals, undone straight away if they leave the boundary. As on the grid, positive y points down.
+        this.indices().forEach(i -> {
+            double h = this.nextHeading[i];
+            double px = this.x[i] + this.speed * Math.cos(h);
+            double py = this.y[i] - this.speed * Math.sin(h);
+            this.stays[i] = !this.boundary.isPointInBoundary(px, py, this.radius);
+            this.nextX[i] = this.stays[i] ? this.x[i] : px;
+            this.nextY[i] = this.stays[i] ? this.y[i] : py;
+        });
+
+        // Undo moves that end up too close to another particle. The cells hold both the proposed and the current
+        // positions, the latter at index count + i, so that undone moves can be checked without rebuilding them.
+        System.arraycopy(this.nextX, 0, this.pointX, 0, this.count);
+        System.arraycopy(this.nextY, 0, this.pointY, 0, this.count);
+        System.arraycopy(this.x, 0, this.pointX, this.count, this.count);
+        System.arraycopy(this.y, 0, this.pointY, this.count, this.count);
+        this.cells.build(this.pointX, this.pointY, 2 * this.count);
+        this.indices().forEach(i -> this.conflicts[i] = !this.stays[i] && this.hasConflict(i));
+
+        // Undoing a move puts the particle back where it was, which may conflict with moves next to it in turn.
+        // Undone particles are back where they started, which was free of conflicts, so this ends, and the moves
+        // that remain do not depend on the order we go in.
+        int queued = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (!this.conflicts[i]) continue;
+
+            this.stays[i] = true;
+            this.undone[queued++] = i;
+        }
+        while (queued > 0) {
+            queued = this.undoConflictsWith(this.undone[--queued], queued);
+        }
+
+        for (int i = 0; i < this.count; i++) {
+            if (!this.stays[i]) continue;
+
+            this.nextX[i] = this.x[i];
+            this.nextY[i] = this.y[i];
+        }
+
+        for (int i = 0; i < this.count; i++) {
+            if (!this.stays[i]) this.movesMade++;
+        }
+
+        double[] swap = this.x;
+        this.x = this.nextX;
+        this.nextX = swap;
+        swap = this.y;
+        this.y = this.nextY;
+        this.nextY = swap;
+        swap = this.heading;
+        this.heading = this.nextHeading;
+        this.nextHeading = swap;
+        this.stepsRun++;
+    }
+
+    private void updateHeading(int i) {
+        double px = this.x[i];
+        double py = this.y[i];
+        double limit = this.interactionRadius * this.interactionRadius;
+        double sumCos = 0, sumSin = 0;
+
+        int column = this.cells.getColumn(px);
+        int row = this.cells.getRow(py);
+        for (int r = Math.max(0, row - 1); r <= Math.min(this.cells.getRows() - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(this.cells.getColumns() - 1, column + 1); c++) {
+                for (int k = this.cells.getCellStart(c, r), end = this.cells.getCellEnd(c, r); k < end; k++) {
+                    int j = this.cells.getPoint(k);
+                    double dx = this.x[j] - px;
+                    double dy = this.y[j] - py;
+                    if (dx * dx + dy * dy > limit) continue;
+
+                    sumCos += this.cos[j];
+                    sumSin += this.sin[j];
+                }
+            }
+        }
+
+        this.nextHeading[i] = Math.atan2(sumSin, sumCos) + this.noise * (this.uniform(i) - 0.5);
+    }
+
+    /**
+     * Checks whether a proposed move ends within a radius of another particle, which is at its own proposed position
+     * if it is moving and at its current one otherwise.
+     */
+    private boolean hasConflict(int i) {
+        double px = this.pointX[i];
+        double py = this.pointY[i];
+        double limit = this.radius * this.radius;
+
+        int column = this.cells.getColumn(px);
+        int row = this.cells.getRow(py);
+        for (int r = Math.max(0, row - 1); r <= Math.min(this.cells.getRows() - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(this.cells.getColumns() - 1, column + 1); c++) {
+                for (int k = this.cells.getCellStart(c, r), end = this.cells.getCellEnd(c, r); k < end; k++) {
+                    int point = this.cells.getPoint(k);
+                    int j = point < this.count ? point : point - this.count;
+                    if (j == i || this.stays[j] != (point >= this.count)) continue;
+
+                    double dx = this.pointX[point] - px;
+                    double dy = this.pointY[point] - py;
+                    if (dx * dx + dy * dy < limit) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Undoes the moves that end within a radius of where the given particle now stays, queueing them in turn.
+     */
+    private int undoConflictsWith(int j, int queued) {
+        double px = this.x[j];
+        double py = this.y[j];
+        double limit = this.radius * this.radius;
+
+        int column = this.cells.getColumn(px);
+        int row = this.cells.getRow(py);
+        for (int r = Math.max(0, row - 1); r <= Math.min(this.cells.getRows() - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(this.cells.getColumns() - 1, column + 1); c++) {
+                for (int k = this.cells.getCellStart(c, r), end = this.cells.getCellEnd(c, r); k < end; k++) {
+                    int i = this.cells.getPoint(k);
+                    if (i >= this.count || i == j || this.stays[i]) continue;
+
+                    double dx = this.pointX[i] - px;
+                    double dy = this.pointY[i] - py;
+                    if (dx * dx + dy * dy >= limit) continue;
+
+                    this.stays[i] = true;
+                    this.undone[queued++] = i;
+                }
+            }
+        }
+        return queued;
+    }
+
+    private double uniform(int i) {
+        // SplittableRandom's mixing function over the seed, step and particle
+        long z = this.seed + this.stepsRun * 0x9e3779b97f4a7c15L + (i + 1) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The Vicsek order parameter: the length of the mean heading vector, 1 when every particle heads the same way.
+     */
+    public double getPolarization() {
+        if (this.count == 0) return 0;
+
+        double sumCos = 0, sumSin = 0;
+        for (int i = 0; i < this.count; i++) {
+            sumCos += Math.cos(this.heading[i]);
+            sumSin += Math.sin(this.heading[i]);
+        }
+        return Math.hypot(sumCos, sumSin) / this.count;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public double getX(int i) {
+        return this.x[i];
+    }
+
+    public double getY(int i) {
+        return this.y[i];
+    }
+
+    public double getHeading(int i) {
+        return this.heading[i];
+    }
+
+    public double getRadius() {
+        return this.radius;
+    }
+
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public long getStepsRun() {
+        return this.stepsRun;
+    }
+
+    public long getMovesMade() {
+        return this.movesMade;
+    }
+}
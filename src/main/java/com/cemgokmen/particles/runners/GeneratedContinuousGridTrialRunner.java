@@ -49,7 +49,7 @@ public class GeneratedContinuousGridTrialRunner {
 
         AlignmentAlgorithm algorithm = new AlignmentAlgorithm(4, 1, 0.5);
 
-        Stream<Particle> randomlyDirectedParticles = Utils.random.doubles().mapToObj(d -> new ContinuousParticle(0.5, d * Math.PI * 2));
+        Stream<Particle> randomlyDirectedParticles = Utils.getRandom().doubles().mapToObj(d -> new ContinuousParticle(0.5, d * Math.PI * 2));
 
         ContinuousParticleGridBoundary smallerBoundary = new CircularBoundary(15);
         RandomSystemGenerator.addParticles(grid, randomlyDirectedParticles, v -> smallerBoundary.isVectorInBoundary(v, 0.5), 100);
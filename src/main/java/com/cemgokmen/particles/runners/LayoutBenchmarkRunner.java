@@ -0,0 +1,93 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.runners;
+
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotArrayEngine;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays;
+
+import java.util.Random;
+
+/**
+ * Compares activation throughput of a large array-backed compression system under the different memory layouts and
+ * activation orders. Each mode runs the same initial configuration.
+ *
+ * Usage: LayoutBenchmarkRunner [mode|all] [radius] [fill] [activations]. The modes are listed-uniform (the default
+ * layout), hilbert-uniform, listed-sweep, morton-sweep and hilbert-sweep. To compare cache miss rates, run one mode per JVM under
+ * a hardware profiler, e.g. {@code perf stat -e cache-references,cache-misses java ... LayoutBenchmarkRunner
+ * hilbert-sweep}.
+ */
+public class LayoutBenchmarkRunner {
+    private static final String[] MODES = {"listed-uniform", "hilbert-uniform", "listed-sweep", "morton-sweep", "hilbert-sweep"};
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "all";
+        int radius = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        double fill = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        long activations = args.length > 3 ? Long.parseLong(args[3]) : 20000000L;
+
+        AmoebotTopology topology = new HexagonalAmoebotGrid(radius).getTopology();
+        System.out.println(topology.getSiteCount() + " sites, fill " + fill + ", " + activations + " activations");
+
+        for (String m : MODES) {
+            if (mode.equals("all") || mode.equals(m)) run(topology, m, fill, activations);
+        }
+    }
+
+    private static void run(AmoebotTopology listed, String mode, double fill, long activations) {
+        String[] parts = mode.split("-");
+        AmoebotTopology topology = listed.withSiteOrder(AmoebotTopology.SiteOrder.valueOf(parts[0].toUpperCase()));
+        AmoebotArrayEngine.ActivationOrder order = AmoebotArrayEngine.ActivationOrder.valueOf(parts[1].toUpperCase());
+
+        // The same particles whatever the numbering
+        Random placement = new Random(SEED);
+        AmoebotStateArrays state = new AmoebotStateArrays(topology, (int) (listed.getSiteCount() * fill));
+        for (int site = 0; site < listed.getSiteCount(); site++) {
+            if (placement.nextDouble() < fill) {
+                state.add(topology.getSiteIndex(listed.getSiteX(site), listed.getSiteY(site)), AmoebotStateArrays.KIND_AMOEBOT, 0, 0);
+            }
+        }
+
+        AmoebotArrayEngine engine = new AmoebotArrayEngine(state, new CompressionAlgorithm(), false);
+        engine.setRandom(new Random(SEED));
+        engine.setActivationOrder(order);
+        if (topology != listed) {
+            state.sortBySite();
+            engine.setResortInterval(4L * state.getCount());
+        }
+
+        // Let the JIT settle before timing
+        engine.runActivations(Math.min(2000000, (int) (activations / 10)));
+
+        long start = System.nanoTime();
+        long remaining = activations;
+        while (remaining > 0) {
+            int batch = (int) Math.min(remaining, Integer.MAX_VALUE);
+            engine.runActivations(batch);
+            remaining -= batch;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%-16s %8.2f M activations/s, %d moves", mode, activations / seconds / 1e6, engine.getMovesMade()));
+    }
+}
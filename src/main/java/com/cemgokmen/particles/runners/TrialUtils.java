@@ -19,7 +19,9 @@
 package com.cemgokmen.particles.runners;
 
 import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.events.SweepCellEvent;
 import com.cemgokmen.particles.graphics.GridGraphics;
+import com.cemgokmen.particles.util.ConvergenceMonitor;
 import com.cemgokmen.particles.util.PropertyUtils;
 import com.cemgokmen.particles.util.Utils;
 import com.cemgokmen.particles.models.ParticleGrid;
@@ -32,10 +34,19 @@ import javafx.beans.property.Property;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class TrialUtils {
     public static Map<Number, File> runTrials(ParticleGrid grid, int[] stoppingPoints, Path targetPath, String imageExt) throws Exception {
+        return runTrials(grid, stoppingPoints, targetPath, imageExt, null);
+    }
+
+    /**
+     * Runs the grid through the stopping points, saving an image at each. With a monitor, the observable is sampled
+     * along the way and the run ends early, with a final image, as soon as the monitor reports convergence.
+     */
+    public static Map<Number, File> runTrials(ParticleGrid grid, int[] stoppingPoints, Path targetPath, String imageExt, ConvergenceMonitor monitor) throws Exception {
         LinkedList<Integer> stops = new LinkedList<Integer>(Ints.asList(stoppingPoints));
         Collections.sort(stops);
 
@@ -45,39 +56,81 @@ public class TrialUtils {
 
         while (!stops.isEmpty()) {
             int target = stops.remove();
-            int toRun = target - grid.getActivationsRun();
 
             System.out.printf("    Next target: %d\n", target);
-            grid.runActivations(toRun);
+            boolean converged = runUntil(grid, target, monitor);
             File image = targetPath.resolve(String.format("%09d.%s", grid.getActivationsRun(), imageExt)).toFile();
             GridGraphics.saveGridImage(grid, image);
             images.put(grid.getActivationsRun(), image);
+
+            if (converged) {
+                System.out.printf("    Converged at %d: %s\n\n", grid.getActivationsRun(), monitor);
+                break;
+            }
             System.out.printf("    Saved target: %d\n\n", target);
         }
 
         return images;
     }
 
+    private static boolean runUntil(ParticleGrid grid, int target, ConvergenceMonitor monitor) {
+        if (monitor == null) {
+            grid.runActivations(target - grid.getActivationsRun());
+            return false;
+        }
+
+        while (grid.getActivationsRun() < target) {
+            grid.runActivations(Math.min(monitor.getSampleInterval(), target - grid.getActivationsRun()));
+            monitor.sample(grid);
+            if (monitor.isConverged()) return true;
+        }
+        return false;
+    }
+
     public static Table<Number, Number, File> runPropertyValueTrials(Supplier<ParticleGrid> gridSupplier, Supplier<ParticleAlgorithm> algorithmSupplier, String propertyName, List<Number> propertyValues, int[] stoppingPoints, Path targetPath, String imageExt) throws Exception {
+        return runPropertyValueTrials(gridSupplier, algorithmSupplier, propertyName, propertyValues, stoppingPoints, targetPath, imageExt, null);
+    }
+
+    /**
+     * Same as above, but each cell gets its own monitor from the factory and stops once it has converged.
+     */
+    public static Table<Number, Number, File> runPropertyValueTrials(Supplier<ParticleGrid> gridSupplier, Supplier<ParticleAlgorithm> algorithmSupplier, String propertyName, List<Number> propertyValues, int[] stoppingPoints, Path targetPath, String imageExt, Function<ParticleAlgorithm, ConvergenceMonitor> monitorFactory) throws Exception {
         Table<Number, Number, File> images = HashBasedTable.create();
         propertyValues.parallelStream().forEach(y -> {
             System.out.printf("Next value: %s=%s\n", propertyName, y.toString());
+
+            SweepCellEvent event = new SweepCellEvent();
+            event.begin();
+            ParticleGrid grid = null;
+
             try {
                 ParticleAlgorithm algorithm = algorithmSupplier.get();
 
                 final Property property = PropertyUtils.getPropertyWithName(algorithm, algorithm.getClass(), propertyName);
                 property.setValue(y);
 
-                final ParticleGrid grid = gridSupplier.get();
+                grid = gridSupplier.get();
                 grid.assignAllParticlesAlgorithm(algorithm);
 
-                Map<Number, File> xImageMap = TrialUtils.runTrials(grid, stoppingPoints, targetPath.resolve(y + ""), imageExt);
+                ConvergenceMonitor monitor = monitorFactory != null ? monitorFactory.apply(algorithm) : null;
+                Map<Number, File> xImageMap = TrialUtils.runTrials(grid, stoppingPoints, targetPath.resolve(y + ""), imageExt, monitor);
                 xImageMap.forEach((x, image) -> images.put(y, x, image));
 
                 System.out.printf("Completed value: %s=%s\n\n", propertyName, y.toString());
+                event.succeeded = true;
             } catch (Exception e) {
                 e.printStackTrace();
             }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.setGrid(grid);
+                event.propertyName = propertyName;
+                event.propertyValue = y.toString();
+                event.stoppingPoints = stoppingPoints.length;
+                event.activationsRun = grid != null ? grid.getActivationsRun() : 0;
+                event.commit();
+            }
         });
 
         return images;
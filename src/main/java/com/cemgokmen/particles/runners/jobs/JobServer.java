@@ -0,0 +1,259 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.runners.jobs;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.events.BatchJobEvent;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.runners.TrialUtils;
+import com.cemgokmen.particles.util.Utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs job specs in a single long-lived JVM so that short trials don't each pay for startup and JIT warmup. Jobs run
+ * on a fixed pool of workers, and each has to reserve its memory estimate from a shared budget before it builds its
+ * grid, so a burst of large jobs queues up instead of running the heap out.
+ *
+ * Given a queue directory the server keeps polling it for .job files. A spec is claimed by moving it into running/,
+ * and ends up in done/ or failed/ once its job completes. Writers should create specs elsewhere and move them into the
+ * queue, so that a half-written file is never picked up.
+ *
+ * Usage: JobServer [--threads n] [--memory mb] [--queue dir] [--no-warmup] [spec.job ...]
+ */
+public class JobServer {
+    private static final long MB = 1L << 20;
+    private static final long POLL_INTERVAL = 1000;
+    private static final int WARMUP_ACTIVATIONS = 200000;
+
+    private static final String RUNNING = "running";
+    private static final String DONE = "done";
+    private static final String FAILED = "failed";
+
+    private final ExecutorService executor;
+    private final Semaphore memory;
+    private final int memoryPermits;
+
+    public JobServer(int threads, long memoryBudget) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.memoryPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / MB));
+        this.memory = new Semaphore(this.memoryPermits, true);
+    }
+
+    public CompletableFuture<Boolean> submit(JobSpec spec) {
+        return CompletableFuture.supplyAsync(() -> this.run(spec), this.executor);
+    }
+
+    /**
+     * Runs a job on the calling thread, blocking until its memory budget is available. Returns whether it succeeded.
+     */
+    public boolean run(JobSpec spec) {
+        BatchJobEvent event = new BatchJobEvent();
+        ParticleGrid grid = null;
+        int[] stops = null;
+
+        // A job larger than the whole budget still runs, just on its own.
+        int permits = (int) Math.max(1, Math.min(this.memoryPermits, (spec.getMemoryEstimate() + MB - 1) / MB));
+        this.memory.acquireUninterruptibly(permits);
+
+        event.begin();
+        try {
+            System.out.printf("Starting job %s\n", spec.getName());
+            Utils.setThreadRandom(spec.createRandom());
+
+            stops = spec.getStops();
+            ParticleAlgorithm algorithm = spec.createAlgorithm();
+            grid = spec.createGrid(algorithm);
+            grid.assignAllParticlesAlgorithm(algorithm);
+
+            TrialUtils.runTrials(grid, stops, spec.getOutputPath(), spec.getImageExtension(), spec.createConvergenceMonitor(algorithm));
+
+            System.out.printf("Completed job %s\n", spec.getName());
+            event.succeeded = true;
+        } catch (Exception e) {
+            System.err.printf("Job %s failed: %s\n", spec.getName(), e.getMessage());
+            e.printStackTrace();
+        } finally {
+            Utils.setThreadRandom(null);
+            this.memory.release(permits);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setGrid(grid);
+            event.jobName = spec.getName();
+            event.memoryBudget = permits * MB;
+            event.stoppingPoints = stops != null ? stops.length : 0;
+            event.activationsRun = grid != null ? grid.getActivationsRun() : 0;
+            event.commit();
+        }
+
+        return event.succeeded;
+    }
+
+    /**
+     * Runs a couple of small systems through the hot paths so the first real jobs start out compiled.
+     */
+    public void warmUp() {
+        List<Properties> systems = new ArrayList<>();
+
+        Properties alignment = new Properties();
+        alignment.setProperty("grid", "ToroidalAmoebotGrid");
+        alignment.setProperty("grid.size", "10");
+        alignment.setProperty("particle", "DirectedAmoebotParticle");
+        alignment.setProperty("particle.count", "50");
+        alignment.setProperty("algorithm", "AlignmentAlgorithm");
+        systems.add(alignment);
+
+        Properties separation = new Properties();
+        separation.setProperty("system", "AMOEBOT_100_2CLASS");
+        separation.setProperty("algorithm", "SeparationAlgorithm");
+        systems.add(separation);
+
+        Properties foraging = new Properties();
+        foraging.setProperty("system", "AMOEBOT_100_1FOOD");
+        foraging.setProperty("algorithm", "ForagingAlgorithm");
+        systems.add(foraging);
+
+        for (Properties properties : systems) {
+            JobSpec spec = new JobSpec("warmup", properties, Paths.get("."));
+            Utils.setThreadRandom(spec.createRandom());
+            try {
+                ParticleAlgorithm algorithm = spec.createAlgorithm();
+                ParticleGrid grid = spec.createGrid(algorithm);
+                grid.assignAllParticlesAlgorithm(algorithm);
+                grid.runActivations(WARMUP_ACTIVATIONS);
+            } catch (Exception e) {
+                System.err.printf("Warmup with %s failed: %s\n", properties.getProperty("algorithm"), e.getMessage());
+            } finally {
+                Utils.setThreadRandom(null);
+            }
+        }
+    }
+
+    /**
+     * Polls the queue directory forever, claiming and submitting every spec that shows up.
+     */
+    public void watch(Path queue) throws IOException, InterruptedException {
+        Path running = Files.createDirectories(queue.resolve(RUNNING));
+        Path done = Files.createDirectories(queue.resolve(DONE));
+        Path failed = Files.createDirectories(queue.resolve(FAILED));
+
+        // Anything still marked running was interrupted by a previous server, so give it another go.
+        for (Path path : listSpecs(running)) {
+            Files.move(path, queue.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        while (true) {
+            for (Path path : listSpecs(queue)) {
+                Path claimed = running.resolve(path.getFileName());
+                try {
+                    Files.move(path, claimed, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // Someone else got to it first.
+                    continue;
+                }
+
+                JobSpec spec;
+                try {
+                    spec = JobSpec.load(claimed, queue);
+                } catch (Exception e) {
+                    System.err.printf("Could not read job %s: %s\n", path.getFileName(), e.getMessage());
+                    moveQuietly(claimed, failed);
+                    continue;
+                }
+
+                this.submit(spec).thenAccept(succeeded -> moveQuietly(claimed, succeeded ? done : failed));
+            }
+
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    public void shutdown() throws InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private static List<Path> listSpecs(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(JobSpec.EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void moveQuietly(Path path, Path directory) {
+        try {
+            Files.move(path, directory.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.printf("Could not move %s to %s: %s\n", path, directory, e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long memoryBudget = Runtime.getRuntime().maxMemory() / 4 * 3;
+        Path queue = null;
+        boolean warmUp = true;
+        List<Path> specs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--memory":
+                    memoryBudget = Long.parseLong(args[++i]) * MB;
+                    break;
+                case "--queue":
+                    queue = Paths.get(args[++i]);
+                    break;
+                case "--no-warmup":
+                    warmUp = false;
+                    break;
+                default:
+                    specs.add(Paths.get(args[i]));
+            }
+        }
+
+        JobServer server = new JobServer(threads, memoryBudget);
+        if (warmUp) server.warmUp();
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (Path path : specs) {
+            futures.add(server.submit(JobSpec.load(path)));
+        }
+
+        if (queue != null) {
+            server.watch(queue);
+        } else {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            server.shutdown();
+        }
+    }
+}
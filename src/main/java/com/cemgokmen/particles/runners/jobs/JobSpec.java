@@ -0,0 +1,298 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.runners.jobs;
+
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.generators.RandomSystemGenerator;
+import com.cemgokmen.particles.io.GridIO;
+import com.cemgokmen.particles.io.SampleSystemMetadata;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.ContinuousDirectedAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticle;
+import com.cemgokmen.particles.util.ConvergenceMonitor;
+import com.cemgokmen.particles.util.PropertyUtils;
+import com.cemgokmen.particles.util.Utils;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.Property;
+import javafx.beans.property.StringProperty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A declarative description of a single trial, read from a properties file. The grid either comes from a sample
+ * system, from a particle file, or is generated:
+ *
+ * <pre>
+ * grid=ToroidalAmoebotGrid
+ * grid.size=15
+ * particle=DirectedAmoebotParticle
+ * particle.count=50
+ * algorithm=AlignmentAlgorithm
+ * algorithm.rotationBias=20
+ * stops=0:1000000:50000
+ * output=results/alignment
+ * output.format=png
+ * convergence.interval=1000
+ * seed=42
+ * </pre>
+ *
+ * Stops are either a comma separated list or a start:end:step range. With convergence.interval set, the algorithm's
+ * steady-state observable is sampled that often and the job ends once it has settled. Each job draws from its own
+ * generator, seeded from seed if given. Relative paths are resolved against the directory the spec was read from.
+ */
+public class JobSpec {
+    public static final String EXTENSION = ".job";
+
+    private static final String ALGORITHM_PREFIX = "algorithm.";
+    private static final String ALGORITHM_PACKAGE = ParticleAlgorithm.class.getPackage().getName() + ".";
+
+    // Rough per-particle footprint of a grid: the particle, its storage entries and the activation bookkeeping.
+    private static final long BYTES_PER_PARTICLE = 2048;
+    private static final long BASE_BYTES = 16L << 20;
+
+    private final String name;
+    private final Properties properties;
+    private final Path baseDirectory;
+
+    public JobSpec(String name, Properties properties, Path baseDirectory) {
+        this.name = name;
+        this.properties = properties;
+        this.baseDirectory = baseDirectory;
+    }
+
+    public static JobSpec load(Path path) throws IOException {
+        return load(path, path.toAbsolutePath().getParent());
+    }
+
+    public static JobSpec load(Path path, Path baseDirectory) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        String filename = path.getFileName().toString();
+        if (filename.endsWith(EXTENSION)) {
+            filename = filename.substring(0, filename.length() - EXTENSION.length());
+        }
+
+        return new JobSpec(properties.getProperty("name", filename), properties, baseDirectory);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Path getOutputPath() {
+        return this.resolve(this.properties.getProperty("output", "results")).resolve(this.name);
+    }
+
+    public String getImageExtension() {
+        return this.properties.getProperty("output.format", "png");
+    }
+
+    /**
+     * A generator for the job alone, so that jobs running side by side neither share nor contend on one. With a seed
+     * in the spec, the job can be rerun exactly.
+     */
+    public Random createRandom() {
+        String seed = this.properties.getProperty("seed");
+        return seed == null ? new Random() : new Random(Long.parseLong(seed.trim()));
+    }
+
+    public int[] getStops() {
+        String stops = this.getRequired("stops").trim();
+
+        String[] range = stops.split(":");
+        if (range.length == 3) {
+            int start = Integer.parseInt(range[0].trim());
+            int end = Integer.parseInt(range[1].trim());
+            int step = Integer.parseInt(range[2].trim());
+            if (step <= 0) throw new RuntimeException("Stop step must be positive in job " + this.name);
+            if (end < start) throw new RuntimeException("Stop range must not end before it starts in job " + this.name);
+
+            return IntStream.iterate(start, k -> k + step).limit((end - start) / step + 1).toArray();
+        }
+
+        return Arrays.stream(stops.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * The number of bytes this job is expected to hold onto while it runs. An explicit memory.mb wins; otherwise we
+     * go by the particle count, which is only known up front for generated grids.
+     */
+    public long getMemoryEstimate() {
+        String explicit = this.properties.getProperty("memory.mb");
+        if (explicit != null) {
+            return Long.parseLong(explicit.trim()) << 20;
+        }
+
+        int count = Integer.parseInt(this.properties.getProperty("particle.count", "1000").trim());
+        return BASE_BYTES + BYTES_PER_PARTICLE * count;
+    }
+
+    /**
+     * Returns a monitor on the algorithm's steady-state observable if the spec sets convergence.interval, so that the
+     * job can end before its last stop. convergence.ess sets the effective sample size to wait for.
+     */
+    public ConvergenceMonitor createConvergenceMonitor(ParticleAlgorithm algorithm) {
+        String interval = this.properties.getProperty("convergence.interval");
+        if (interval == null) return null;
+
+        ToDoubleFunction<ParticleGrid> observable = algorithm.getSteadyStateObservable();
+        if (observable == null) {
+            throw new RuntimeException(algorithm.getClass().getSimpleName() + " has no steady-state observable");
+        }
+
+        double effectiveSampleSize = Double.parseDouble(this.properties.getProperty("convergence.ess", "100").trim());
+        return new ConvergenceMonitor(observable, Integer.parseInt(interval.trim()), effectiveSampleSize);
+    }
+
+    public ParticleAlgorithm createAlgorithm() throws Exception {
+        String algorithmName = this.getRequired("algorithm");
+        Class<? extends ParticleAlgorithm> algorithmClass = findAlgorithmClass(algorithmName);
+
+        ParticleAlgorithm algorithm = Utils.getZeroParameterPublicConstructor(algorithmClass).newInstance();
+
+        for (String key : this.properties.stringPropertyNames()) {
+            if (!key.startsWith(ALGORITHM_PREFIX)) continue;
+
+            String propertyName = key.substring(ALGORITHM_PREFIX.length());
+            Property property = PropertyUtils.getPropertyWithName(algorithm, algorithmClass, propertyName);
+            if (property == null) {
+                throw new RuntimeException("Unknown property " + propertyName + " on " + algorithmClass.getSimpleName());
+            }
+
+            setPropertyValue(property, this.properties.getProperty(key).trim());
+        }
+
+        return algorithm;
+    }
+
+    public ParticleGrid createGrid(ParticleAlgorithm algorithm) throws Exception {
+        String system = this.properties.getProperty("system");
+        if (system != null) {
+            return GridIO.importSampleSystem(SampleSystemMetadata.valueOf(system.trim()));
+        }
+
+        Class<? extends ParticleGrid> gridClass = findClass(GridIO.ALLOWED_GRID_TYPES, this.getRequired("grid"));
+        Class<? extends Particle> particleClass = findClass(GridIO.ALLOWED_PARTICLE_TYPES, this.getRequired("particle"));
+
+        String file = this.properties.getProperty("file");
+        if (file != null) {
+            return GridIO.importParticlesFromFile(this.resolve(file).toFile(), gridClass, particleClass);
+        }
+
+        ParticleGrid grid = GridIO.createEmptyGrid(gridClass, this.getRequired("grid.size"));
+        int count = Integer.parseInt(this.getRequired("particle.count").trim());
+
+        Supplier<Particle> supplier = this.getParticleSupplier(grid, particleClass);
+        boolean validate = Boolean.parseBoolean(this.properties.getProperty("particle.validate", "true").trim());
+        RandomSystemGenerator.addSingleTypeParticles(grid, () -> {
+            // The generator uses the algorithm to validate each placement and clears it afterwards.
+            Particle p = supplier.get();
+            if (validate) p.setAlgorithm(algorithm);
+            return p;
+        }, count);
+
+        return grid;
+    }
+
+    private Supplier<Particle> getParticleSupplier(ParticleGrid grid, Class<? extends Particle> particleClass) {
+        if (particleClass == AmoebotParticle.class) {
+            return AmoebotParticle::new;
+        } else if (particleClass == SeparableAmoebotParticle.class) {
+            int classes = Integer.parseInt(this.properties.getProperty("particle.classes", "2").trim());
+            return () -> new SeparableAmoebotParticle(Utils.getRandom().nextInt(classes), false);
+        } else if (particleClass == DirectedAmoebotParticle.class) {
+            AmoebotGrid.Compass compass = ((AmoebotGrid) grid).getCompass();
+            return () -> new DirectedAmoebotParticle(compass, compass.getDirections().get(Utils.getRandom().nextInt(compass.getDirections().size())), false);
+        } else if (particleClass == ContinuousDirectedAmoebotParticle.class) {
+            AmoebotGrid.Compass compass = ((AmoebotGrid) grid).getCompass();
+            return () -> new ContinuousDirectedAmoebotParticle(compass, Utils.randomDouble() * Math.PI * 2, false);
+        } else if (particleClass == ContinuousParticle.class) {
+            double radius = Double.parseDouble(this.properties.getProperty("particle.radius", "0.5").trim());
+            return () -> new ContinuousParticle(radius, Utils.randomDouble() * Math.PI * 2);
+        }
+
+        throw new RuntimeException("Cannot generate particles of type " + particleClass.getSimpleName() + ", use a particle file instead");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends ParticleAlgorithm> findAlgorithmClass(String name) throws ClassNotFoundException {
+        for (Class<? extends ParticleAlgorithm> klass : ParticleAlgorithm.IMPLEMENTATIONS) {
+            if (klass.getSimpleName().equals(name)) return klass;
+        }
+
+        Class<?> klass = Class.forName(name.contains(".") ? name : ALGORITHM_PACKAGE + name);
+        if (!ParticleAlgorithm.class.isAssignableFrom(klass)) {
+            throw new RuntimeException(name + " is not a particle algorithm");
+        }
+        return (Class<? extends ParticleAlgorithm>) klass;
+    }
+
+    private static <T> Class<? extends T> findClass(List<Class<? extends T>> allowed, String name) {
+        String trimmed = name.trim();
+        for (Class<? extends T> klass : allowed) {
+            if (klass.getSimpleName().equals(trimmed) || klass.getName().equals(trimmed)) return klass;
+        }
+        throw new RuntimeException("Unknown type " + trimmed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setPropertyValue(Property property, String value) {
+        if (property instanceof BooleanProperty) {
+            property.setValue(Boolean.parseBoolean(value));
+        } else if (property instanceof StringProperty) {
+            property.setValue(value);
+        } else {
+            property.setValue(Double.parseDouble(value));
+        }
+    }
+
+    private String getRequired(String key) {
+        String value = this.properties.getProperty(key);
+        if (value == null) {
+            throw new RuntimeException("Job " + this.name + " is missing " + key);
+        }
+        return value;
+    }
+
+    private Path resolve(String path) {
+        return this.baseDirectory.resolve(path.trim());
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
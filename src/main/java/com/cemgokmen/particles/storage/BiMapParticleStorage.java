@@ -73,4 +73,14 @@ public class BiMapParticleStorage implements ParticleStorage {
     public void removeParticle(Particle p) {
         this.map.remove(this.getParticlePosition(p));
     }
+
+    @Override
+    public void swapParticles(Particle a, Particle b) {
+        Vector aPosition = this.getParticlePosition(a);
+        Vector bPosition = this.getParticlePosition(b);
+
+        // forcePut drops both b's old entry and a, leaving bPosition free for a.
+        this.map.forcePut(aPosition, b);
+        this.map.put(bPosition, a);
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.storage;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.util.LongHashMap;
+import com.cemgokmen.particles.util.Utils;
+import org.la4j.Vector;
+
+import java.util.HashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Storage for an unbounded lattice: the plane is cut into square chunks of {@link #CHUNK_SIZE} by CHUNK_SIZE
+ * positions, each a dense array of particles, kept in a map from chunk coordinates. A chunk is allocated when the
+ * first particle enters it and released when the last one leaves, so memory follows the particles rather than the
+ * area they are spread over.
+ */
+public class ChunkedParticleStorage implements ParticleStorage {
+    public static final int CHUNK_BITS = 4;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public static final class Chunk {
+        private int chunkX, chunkY;
+        private final Particle[] cells = new Particle[CHUNK_SIZE * CHUNK_SIZE];
+        private int count = 0;
+
+        private Chunk(int chunkX, int chunkY) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+        }
+
+        public int getChunkX() {
+            return this.chunkX;
+        }
+
+        public int getChunkY() {
+            return this.chunkY;
+        }
+
+        public int getMinX() {
+            return this.chunkX << CHUNK_BITS;
+        }
+
+        public int getMinY() {
+            return this.chunkY << CHUNK_BITS;
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+
+        public Stream<Vector> getPositions() {
+            return getChunkPositions(this.chunkX, this.chunkY);
+        }
+    }
+
+    private final LongHashMap<Chunk> chunks = new LongHashMap<>();
+    private final HashMap<Particle, Vector> particlePositions = new HashMap<>();
+
+    // A lone particle moving around its chunk would otherwise release and allocate it on every move
+    private Chunk spare = null;
+    private int layoutVersion = 0;
+
+    /**
+     * Lists the positions covered by the chunk at the given chunk coordinates, whether or not it is allocated.
+     */
+    public static Stream<Vector> getChunkPositions(int chunkX, int chunkY) {
+        int minX = chunkX << CHUNK_BITS;
+        int minY = chunkY << CHUNK_BITS;
+        return IntStream.range(0, CHUNK_SIZE * CHUNK_SIZE).mapToObj(cell ->
+                Utils.getVector(minX + (cell & CHUNK_MASK), minY + (cell >>> CHUNK_BITS)));
+    }
+
+    public static long getKey(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xffffffffL);
+    }
+
+    private static int getCell(int x, int y) {
+        return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+    }
+
+    private Chunk getChunk(Vector v) {
+        return this.chunks.get(getKey((int) v.get(0) >> CHUNK_BITS, (int) v.get(1) >> CHUNK_BITS));
+    }
+
+    private Chunk getOrCreateChunk(Vector v) {
+        int chunkX = (int) v.get(0) >> CHUNK_BITS;
+        int chunkY = (int) v.get(1) >> CHUNK_BITS;
+        long key = getKey(chunkX, chunkY);
+
+        Chunk chunk = this.chunks.get(key);
+        if (chunk == null) {
+            if (this.spare != null) {
+                chunk = this.spare;
+                chunk.chunkX = chunkX;
+                chunk.chunkY = chunkY;
+                this.spare = null;
+            } else {
+                chunk = new Chunk(chunkX, chunkY);
+            }
+            this.chunks.put(key, chunk);
+            this.layoutVersion++;
+        }
+        return chunk;
+    }
+
+    private void releaseIfEmpty(Chunk chunk) {
+        if (chunk.count > 0) return;
+
+        this.chunks.remove(getKey(chunk.chunkX, chunk.chunkY));
+        this.spare = chunk;
+        this.layoutVersion++;
+    }
+
+    /**
+     * The chunks that currently hold particles.
+     */
+    public Stream<Chunk> getChunks() {
+        return this.chunks.values();
+    }
+
+    public int getChunkCount() {
+        return this.chunks.size();
+    }
+
+    /**
+     * A counter that changes whenever a chunk is allocated or released, for caches of the occupied area.
+     */
+    public int getLayoutVersion() {
+        return this.layoutVersion;
+    }
+
+    @Override
+    public Stream<Particle> getAllParticles() {
+        return this.particlePositions.keySet().stream();
+    }
+
+    @Override
+    public int getParticleCount() {
+        return this.particlePositions.size();
+    }
+
+    @Override
+    public Vector getParticlePosition(Particle p) {
+        return this.particlePositions.get(p);
+    }
+
+    @Override
+    public Particle getParticleAtPosition(Vector v) {
+        Chunk chunk = this.getChunk(v);
+        return chunk == null ? null : chunk.cells[getCell((int) v.get(0), (int) v.get(1))];
+    }
+
+    @Override
+    public boolean containsParticle(Particle p) {
+        return this.particlePositions.containsKey(p);
+    }
+
+    @Override
+    public boolean isPositionOccupied(Vector v) {
+        return this.getParticleAtPosition(v) != null;
+    }
+
+    @Override
+    public void addParticle(Particle p, Vector v) {
+        Chunk chunk = this.getOrCreateChunk(v);
+        int cell = getCell((int) v.get(0), (int) v.get(1));
+        if (chunk.cells[cell] == null) chunk.count++;
+        chunk.cells[cell] = p;
+        this.particlePositions.put(p, v);
+    }
+
+    @Override
+    public void removeParticle(Particle p) {
+        Vector position = this.particlePositions.remove(p);
+        if (position == null) return;
+
+        Chunk chunk = this.getChunk(position);
+        chunk.cells[getCell((int) position.get(0), (int) position.get(1))] = null;
+        chunk.count--;
+        this.releaseIfEmpty(chunk);
+    }
+
+    @Override
+    public void swapParticles(Particle a, Particle b) {
+        Vector aPosition = this.particlePositions.get(a);
+        Vector bPosition = this.particlePositions.get(b);
+
+        this.getChunk(aPosition).cells[getCell((int) aPosition.get(0), (int) aPosition.get(1))] = b;
+        this.getChunk(bPosition).cells[getCell((int) bPosition.get(0), (int) bPosition.get(1))] = a;
+        this.particlePositions.put(a, bPosition);
+        this.particlePositions.put(b, aPosition);
+    }
+}
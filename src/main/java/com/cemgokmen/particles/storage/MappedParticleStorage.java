@@ -0,0 +1,237 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.storage;
+
+import com.cemgokmen.particles.events.GridIOEvent;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.util.Utils;
+import org.la4j.Vector;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Storage for very large lattices that keeps its per-site arrays off the heap: an occupancy bitset, the id of the
+ * particle at each site and a byte of free per-site state, plus the site of each particle id. They are either direct
+ * buffers or files mapped from a directory, in which case {@link #checkpoint(ParticleGrid)} writes the run to disk.
+ * Only the particle objects and their ids stay on the heap, so the collector never has to walk the lattice. The
+ * particles themselves are not written out, so a run always starts from an empty lattice and files left in the
+ * directory by an earlier run are truncated.
+ *
+ * Sites are numbered row by row over the bounding box of the given extremities, with a long index so that lattices
+ * past two billion sites work.
+ */
+public class MappedParticleStorage implements ParticleStorage, Closeable {
+    private final int minX, minY;
+    private final long width, height;
+
+    private final OffHeapArray occupancy;
+    private final OffHeapArray siteIds;
+    private final OffHeapArray siteStates;
+    private final OffHeapArray particleSites;
+
+    private final List<Particle> particles = new ArrayList<>();
+    private final HashMap<Particle, Integer> particleIds = new HashMap<>();
+
+    /**
+     * @param directory where to map the arrays from, or null to keep them in direct buffers
+     */
+    public MappedParticleStorage(List<Vector> extremities, Path directory) {
+        this(extremities, directory, OffHeapArray.DEFAULT_SEGMENT_BITS);
+    }
+
+    MappedParticleStorage(List<Vector> extremities, Path directory, int segmentBits) {
+        int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+        for (Vector v : extremities) {
+            loX = Math.min(loX, (int) v.get(0));
+            loY = Math.min(loY, (int) v.get(1));
+            hiX = Math.max(hiX, (int) v.get(0));
+            hiY = Math.max(hiY, (int) v.get(1));
+        }
+        if (extremities.isEmpty()) {
+            throw new RuntimeException("Storage needs the extremities of the grid.");
+        }
+
+        this.minX = loX;
+        this.minY = loY;
+        this.width = hiX - loX + 1L;
+        this.height = hiY - loY + 1L;
+        long sites = this.width * this.height;
+
+        this.occupancy = new OffHeapArray(8, resolve(directory, "occupancy.bin"), segmentBits, true);
+        this.siteIds = new OffHeapArray(4, resolve(directory, "ids.bin"), segmentBits, true);
+        this.siteStates = new OffHeapArray(1, resolve(directory, "states.bin"), segmentBits, true);
+        this.particleSites = new OffHeapArray(8, resolve(directory, "sites.bin"), segmentBits, true);
+
+        this.occupancy.ensureCapacity((sites + 63) >>> 6);
+        this.siteIds.ensureCapacity(sites);
+        this.siteStates.ensureCapacity(sites);
+    }
+
+    private static Path resolve(Path directory, String name) {
+        return directory == null ? null : directory.resolve(name);
+    }
+
+    public long getSiteCount() {
+        return this.width * this.height;
+    }
+
+    public long getSite(Vector v) {
+        long x = (long) v.get(0) - this.minX;
+        long y = (long) v.get(1) - this.minY;
+        if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+            throw new RuntimeException("Position " + v + " is outside the storage.");
+        }
+        return y * this.width + x;
+    }
+
+    private Vector getPosition(long site) {
+        return Utils.getVector(this.minX + site % this.width, this.minY + site / this.width);
+    }
+
+    public boolean isSiteOccupied(long site) {
+        return (this.occupancy.getLong(site >>> 6) & (1L << site)) != 0;
+    }
+
+    public byte getSiteState(long site) {
+        return this.siteStates.getByte(site);
+    }
+
+    public void setSiteState(long site, byte state) {
+        this.siteStates.putByte(site, state);
+    }
+
+    private void place(int id, long site) {
+        this.siteIds.putInt(site, id + 1);
+        this.occupancy.putLong(site >>> 6, this.occupancy.getLong(site >>> 6) | (1L << site));
+        this.particleSites.putLong(id, site);
+    }
+
+    private void clear(long site) {
+        this.siteIds.putInt(site, 0);
+        this.occupancy.putLong(site >>> 6, this.occupancy.getLong(site >>> 6) & ~(1L << site));
+    }
+
+    /**
+     * Writes the mapped arrays back to their files, recorded as a checkpoint of the given grid.
+     */
+    public void checkpoint(ParticleGrid grid) {
+        GridIOEvent event = new GridIOEvent(GridIOEvent.CHECKPOINT);
+        event.begin();
+
+        this.occupancy.force();
+        this.siteIds.force();
+        this.siteStates.force();
+        this.particleSites.force();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setGrid(grid);
+            event.commit();
+        }
+    }
+
+    /**
+     * Closes the mapped files. The storage cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        this.occupancy.close();
+        this.siteIds.close();
+        this.siteStates.close();
+        this.particleSites.close();
+    }
+
+    @Override
+    public Stream<Particle> getAllParticles() {
+        return this.particles.stream();
+    }
+
+    @Override
+    public int getParticleCount() {
+        return this.particles.size();
+    }
+
+    @Override
+    public Vector getParticlePosition(Particle p) {
+        Integer id = this.particleIds.get(p);
+        return id == null ? null : this.getPosition(this.particleSites.getLong(id));
+    }
+
+    @Override
+    public Particle getParticleAtPosition(Vector v) {
+        int id = this.siteIds.getInt(this.getSite(v));
+        return id == 0 ? null : this.particles.get(id - 1);
+    }
+
+    @Override
+    public boolean containsParticle(Particle p) {
+        return this.particleIds.containsKey(p);
+    }
+
+    @Override
+    public boolean isPositionOccupied(Vector v) {
+        return this.isSiteOccupied(this.getSite(v));
+    }
+
+    @Override
+    public void addParticle(Particle p, Vector v) {
+        long site = this.getSite(v);
+        if (this.isSiteOccupied(site)) this.removeParticle(this.getParticleAtPosition(v));
+
+        int id = this.particles.size();
+        this.particles.add(p);
+        this.particleIds.put(p, id);
+        this.particleSites.ensureCapacity(id + 1L);
+        this.place(id, site);
+    }
+
+    @Override
+    public void removeParticle(Particle p) {
+        Integer id = this.particleIds.remove(p);
+        if (id == null) return;
+
+        this.clear(this.particleSites.getLong(id));
+
+        // Keep the ids dense by giving the last particle the freed one
+        int last = this.particles.size() - 1;
+        Particle moved = this.particles.remove(last);
+        if (id != last) {
+            this.particles.set(id, moved);
+            this.particleIds.put(moved, id);
+            this.place(id, this.particleSites.getLong(last));
+        }
+    }
+
+    @Override
+    public void swapParticles(Particle a, Particle b) {
+        int aId = this.particleIds.get(a);
+        int bId = this.particleIds.get(b);
+        long aSite = this.particleSites.getLong(aId);
+        long bSite = this.particleSites.getLong(bId);
+
+        this.place(aId, bSite);
+        this.place(bId, aSite);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A zero-filled array of fixed-size elements outside the Java heap, either in direct buffers or mapped from a file.
+ * A single buffer cannot be larger than 2 GB, so the array is cut into segments of {@code 1 << segmentBits} bytes,
+ * and large arrays grow by adding segments, without copying what is already there. Elements never straddle two
+ * segments.
+ */
+public class OffHeapArray implements Closeable {
+    public static final int DEFAULT_SEGMENT_BITS = 30;
+
+    private final int segmentBits;
+    private final int elementShift;
+    private final long segmentMask;
+    private final FileChannel channel;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    OffHeapArray(int elementBytes, Path file, int segmentBits, boolean truncate) {
+        if (Integer.bitCount(elementBytes) != 1 || elementBytes > 8) {
+            throw new RuntimeException("Elements should be 1, 2, 4 or 8 bytes long.");
+        }
+        if (segmentBits < 3 || segmentBits > DEFAULT_SEGMENT_BITS) {
+            throw new RuntimeException("Segments should be between 8 bytes and 1 GB long.");
+        }
+
+        this.segmentBits = segmentBits;
+        this.elementShift = Integer.numberOfTrailingZeros(elementBytes);
+        this.segmentMask = (1L << segmentBits) - 1;
+
+        try {
+            this.channel = file == null ? null : truncate
+                    ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                    : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open " + file + " for mapping.", e);
+        }
+    }
+
+    /**
+     * Creates an array in direct buffers, which live outside the heap for as long as the array is reachable.
+     */
+    public static OffHeapArray allocateDirect(int elementBytes) {
+        return new OffHeapArray(elementBytes, null, DEFAULT_SEGMENT_BITS, false);
+    }
+
+    /**
+     * Creates an array mapped from the given file, which is created if needed and whose existing contents are kept.
+     */
+    public static OffHeapArray map(int elementBytes, Path file) {
+        return new OffHeapArray(elementBytes, file, DEFAULT_SEGMENT_BITS, false);
+    }
+
+    public long getCapacity() {
+        return this.getByteCapacity() >>> this.elementShift;
+    }
+
+    private long getByteCapacity() {
+        int last = this.segments.size() - 1;
+        return last < 0 ? 0 : ((long) last << this.segmentBits) + this.segments.get(last).capacity();
+    }
+
+    /**
+     * Makes sure that the elements below the given index can be accessed. Small arrays get a single segment that
+     * doubles as needed; past the segment size, further segments are added.
+     */
+    public void ensureCapacity(long elements) {
+        long bytes = elements << this.elementShift;
+        int segmentSize = 1 << this.segmentBits;
+
+        while (this.getByteCapacity() < bytes) {
+            int last = this.segments.size() - 1;
+            if (last >= 0 && this.segments.get(last).capacity() < segmentSize) {
+                int size = this.getSegmentSize(bytes - ((long) last << this.segmentBits));
+                this.segments.set(last, this.resizeSegment(last, this.segments.get(last), size));
+            } else {
+                int size = this.getSegmentSize(bytes - ((long) (last + 1) << this.segmentBits));
+                this.segments.add(this.createSegment(last + 1, size));
+            }
+        }
+    }
+
+    private int getSegmentSize(long bytes) {
+        if (bytes >= (1L << this.segmentBits)) return 1 << this.segmentBits;
+        return (int) Math.max(8, Long.highestOneBit(bytes - 1) << 1);
+    }
+
+    private ByteBuffer createSegment(int index, int size) {
+        if (this.channel == null) return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+
+        try {
+            return this.channel.map(FileChannel.MapMode.READ_WRITE, (long) index << this.segmentBits, size)
+                    .order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not map segment " + index + ".", e);
+        }
+    }
+
+    private ByteBuffer resizeSegment(int index, ByteBuffer segment, int size) {
+        ByteBuffer resized = this.createSegment(index, size);
+
+        // A mapping of the larger region already sees what was written through the old one
+        if (this.channel == null) {
+            ByteBuffer contents = segment.duplicate();
+            contents.clear();
+            resized.put(contents);
+            resized.clear();
+        }
+        return resized;
+    }
+
+    private ByteBuffer getSegment(long offset) {
+        return this.segments.get((int) (offset >>> this.segmentBits));
+    }
+
+    public byte getByte(long index) {
+        return this.getSegment(index).get((int) (index & this.segmentMask));
+    }
+
+    public void putByte(long index, byte value) {
+        this.getSegment(index).put((int) (index & this.segmentMask), value);
+    }
+
+    public int getInt(long index) {
+        long offset = index << 2;
+        return this.getSegment(offset).getInt((int) (offset & this.segmentMask));
+    }
+
+    public void putInt(long index, int value) {
+        long offset = index << 2;
+        this.getSegment(offset).putInt((int) (offset & this.segmentMask), value);
+    }
+
+    public long getLong(long index) {
+        long offset = index << 3;
+        return this.getSegment(offset).getLong((int) (offset & this.segmentMask));
+    }
+
+    public void putLong(long index, long value) {
+        long offset = index << 3;
+        this.getSegment(offset).putLong((int) (offset & this.segmentMask), value);
+    }
+
+    /**
+     * Writes mapped segments back to their file. Direct buffers have nowhere to go, so this does nothing for them.
+     */
+    public void force() {
+        if (this.channel == null) return;
+
+        for (ByteBuffer segment : this.segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+    }
+
+    /**
+     * Closes the file behind a mapped array. The array cannot be used afterwards; what was written through the
+     * mapping still reaches the file.
+     */
+    @Override
+    public void close() {
+        this.segments.clear();
+        if (this.channel == null) return;
+
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close the mapped file.", e);
+        }
+    }
+}
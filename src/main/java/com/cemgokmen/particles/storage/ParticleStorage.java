@@ -39,4 +39,9 @@ public interface ParticleStorage {
     void addParticle(Particle p, Vector v);
 
     void removeParticle(Particle p);
+
+    /**
+     * Exchanges the positions of two particles that are both in the storage.
+     */
+    void swapParticles(Particle a, Particle b);
 }
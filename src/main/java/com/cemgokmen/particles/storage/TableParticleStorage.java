@@ -126,6 +126,19 @@ public class TableParticleStorage implements ParticleStorage {
         this.particles.remove((int) transformed.get(1), (int) transformed.get(0));
     }
 
+    @Override
+    public void swapParticles(Particle a, Particle b) {
+        Vector aPosition = this.particlePositions.get(a);
+        Vector bPosition = this.particlePositions.get(b);
+        Vector aTransformed = this.transform(aPosition);
+        Vector bTransformed = this.transform(bPosition);
+
+        this.particles.put((int) aTransformed.get(1), (int) aTransformed.get(0), b);
+        this.particles.put((int) bTransformed.get(1), (int) bTransformed.get(0), a);
+        this.particlePositions.put(a, bPosition);
+        this.particlePositions.put(b, aPosition);
+    }
+
     private Vector transform(Vector in) {
         Vector v = in.copyOfLength(3);
         v.set(2, 1);
@@ -0,0 +1,119 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable alias table over the indices of a weight array, built once with Vose's algorithm in O(n) and sampled
+ * in O(1) with one bounded int and one double draw. Tables are safe to share between threads and to cache.
+ */
+public final class AliasTable implements ToIntFunction<Random> {
+    private final double[] probabilities;
+    private final int[] alias;
+    private final double[] distribution;
+
+    /**
+     * @param weights non-negative weights, at least one of which is positive. They do not need to be normalized.
+     */
+    public AliasTable(final double[] weights) {
+        final int size = weights.length;
+        if (size == 0) {
+            throw new IllegalArgumentException("Alias table needs at least one weight.");
+        }
+
+        double totalWeight = 0d;
+        for (double weight : weights) {
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("Alias table weights should be non-negative.");
+            }
+            totalWeight += weight;
+        }
+        if (!(totalWeight > 0)) {
+            throw new IllegalArgumentException("Alias table weights should not all be zero.");
+        }
+
+        this.distribution = new double[size];
+        final double[] probabilities = new double[size];
+        for (int i = 0; i < size; i++) {
+            this.distribution[i] = weights[i] / totalWeight;
+            probabilities[i] = this.distribution[i];
+        }
+
+        final double average = 1d / size;
+        final int[] small = new int[size];
+        int smallSize = 0;
+        final int[] large = new int[size];
+        int largeSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (probabilities[i] < average) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        final double[] pr = new double[size];
+        final int[] al = new int[size];
+        this.probabilities = pr;
+        this.alias = al;
+
+        while (largeSize != 0 && smallSize != 0) {
+            final int less = small[--smallSize];
+            final int more = large[--largeSize];
+            pr[less] = probabilities[less] * size;
+            al[less] = more;
+            probabilities[more] += probabilities[less] - average;
+            if (probabilities[more] < average) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        while (smallSize != 0) {
+            pr[small[--smallSize]] = 1d;
+        }
+        while (largeSize != 0) {
+            pr[large[--largeSize]] = 1d;
+        }
+    }
+
+    public int sample(final Random random) {
+        final int column = random.nextInt(this.probabilities.length);
+        return random.nextDouble() < this.probabilities[column]
+                ? column
+                : this.alias[column];
+    }
+
+    @Override
+    public int applyAsInt(final Random random) {
+        return this.sample(random);
+    }
+
+    public int size() {
+        return this.probabilities.length;
+    }
+
+    public double getProbability(int index) {
+        return this.distribution[index];
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import com.cemgokmen.particles.models.ParticleGrid;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Watches an observable of a running system and decides when the run has reached its steady state and gathered
+ * enough independent samples to stop.
+ *
+ * The initial transient is cut off with MSER-5: the truncation point minimizes the standard error of the remaining
+ * batch means, and a run whose best truncation point is in its second half has not settled yet. The integrated
+ * autocorrelation time of what remains is estimated with Sokal's self-consistent window, and the run is converged
+ * once the effective sample size (post-transient samples over that time) reaches the target.
+ */
+public class ConvergenceMonitor {
+    private static final int MSER_BATCH_SIZE = 5;
+    private static final double WINDOW_FACTOR = 5;
+    private static final int CHECK_INTERVAL = 50;
+    private static final int MINIMUM_SAMPLES = 100;
+
+    private final ToDoubleFunction<ParticleGrid> observable;
+    private final int sampleInterval;
+    private final double targetEffectiveSampleSize;
+
+    private double[] samples = new double[256];
+    private int count = 0;
+
+    private int truncationPoint = -1;
+    private double autocorrelationTime = Double.NaN;
+    private double effectiveSampleSize = 0;
+    private boolean converged = false;
+
+    public ConvergenceMonitor(ToDoubleFunction<ParticleGrid> observable, int sampleInterval, double targetEffectiveSampleSize) {
+        if (sampleInterval < 1) {
+            throw new RuntimeException("Sample interval must be positive.");
+        }
+
+        this.observable = observable;
+        this.sampleInterval = sampleInterval;
+        this.targetEffectiveSampleSize = targetEffectiveSampleSize;
+    }
+
+    /**
+     * The number of activations to run between two samples.
+     */
+    public int getSampleInterval() {
+        return this.sampleInterval;
+    }
+
+    public void sample(ParticleGrid grid) {
+        this.add(this.observable.applyAsDouble(grid));
+    }
+
+    public void add(double x) {
+        if (this.count == this.samples.length) this.samples = Arrays.copyOf(this.samples, 2 * this.count);
+        this.samples[this.count++] = x;
+
+        if (this.count % CHECK_INTERVAL == 0) this.check();
+    }
+
+    private void check() {
+        this.truncationPoint = truncationPoint(this.samples, this.count);
+        if (this.truncationPoint < 0) {
+            this.autocorrelationTime = Double.NaN;
+            this.effectiveSampleSize = 0;
+            return;
+        }
+
+        int remaining = this.count - this.truncationPoint;
+        this.autocorrelationTime = integratedAutocorrelationTime(this.samples, this.truncationPoint, this.count);
+        this.effectiveSampleSize = Double.isNaN(this.autocorrelationTime) ? 0 : remaining / this.autocorrelationTime;
+        this.converged = remaining >= MINIMUM_SAMPLES && this.effectiveSampleSize >= this.targetEffectiveSampleSize;
+    }
+
+    public boolean isConverged() {
+        return this.converged;
+    }
+
+    public int getSampleCount() {
+        return this.count;
+    }
+
+    /**
+     * The number of leading samples discarded as transient as of the last check, or -1 if the run has not settled.
+     */
+    public int getTruncationPoint() {
+        return this.truncationPoint;
+    }
+
+    /**
+     * The integrated autocorrelation time in samples, NaN if it could not be estimated yet.
+     */
+    public double getAutocorrelationTime() {
+        return this.autocorrelationTime;
+    }
+
+    public double getEffectiveSampleSize() {
+        return this.effectiveSampleSize;
+    }
+
+    /**
+     * The mean of the observable past the transient.
+     */
+    public double getMean() {
+        if (this.truncationPoint < 0) return Double.NaN;
+
+        double sum = 0;
+        for (int i = this.truncationPoint; i < this.count; i++) sum += this.samples[i];
+        return sum / (this.count - this.truncationPoint);
+    }
+
+    /**
+     * Returns the MSER-5 truncation point in samples, or -1 if it falls in the second half of the data.
+     */
+    static int truncationPoint(double[] x, int n) {
+        int m = n / MSER_BATCH_SIZE;
+        if (m < 2) return -1;
+
+        double[] batches = new double[m];
+        for (int j = 0; j < m; j++) {
+            double sum = 0;
+            for (int k = 0; k < MSER_BATCH_SIZE; k++) sum += x[j * MSER_BATCH_SIZE + k];
+            batches[j] = sum / MSER_BATCH_SIZE;
+        }
+
+        // Walk backwards with running sums so that every candidate costs O(1)
+        double sum = 0, sumOfSquares = 0;
+        int best = -1;
+        double bestStatistic = Double.POSITIVE_INFINITY;
+        for (int d = m - 1; d >= 0; d--) {
+            sum += batches[d];
+            sumOfSquares += batches[d] * batches[d];
+            if (d > m / 2) continue;
+
+            int remaining = m - d;
+            double squaredDeviations = sumOfSquares - sum * sum / remaining;
+            double statistic = squaredDeviations / ((double) remaining * remaining);
+            if (statistic <= bestStatistic) {
+                bestStatistic = statistic;
+                best = d;
+            }
+        }
+
+        return best >= m / 2 ? -1 : best * MSER_BATCH_SIZE;
+    }
+
+    /**
+     * Estimates the integrated autocorrelation time of x[from..to) as 1 + 2 * sum of the autocorrelations up to the
+     * smallest window M with M >= 5 * tau(M). Returns NaN if no window short enough exists, and 1 for a constant
+     * series.
+     */
+    static double integratedAutocorrelationTime(double[] x, int from, int to) {
+        int n = to - from;
+        double mean = 0;
+        for (int i = from; i < to; i++) mean += x[i];
+        mean /= n;
+
+        double c0 = 0;
+        for (int i = from; i < to; i++) c0 += (x[i] - mean) * (x[i] - mean);
+        if (c0 == 0) return 1;
+
+        double tau = 1;
+        for (int t = 1; t < n / 2; t++) {
+            double ct = 0;
+            for (int i = from; i + t < to; i++) ct += (x[i] - mean) * (x[i + t] - mean);
+            tau += 2 * ct / c0;
+
+            if (t >= WINDOW_FACTOR * tau) return Math.max(tau, 1);
+        }
+
+        return Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("samples=%d, transient=%d, tau=%.2f, ess=%.1f, mean=%.6g", this.count, this.truncationPoint,
+                this.autocorrelationTime, this.effectiveSampleSize, this.getMean());
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cached samplers for directional proposals over the ordinals of a discrete compass. The tables only depend on the
+ * number of directions and the spread, so they are built once and shared; drawing from them is O(1) and does not
+ * allocate.
+ *
+ * Offsets are returned as counterclockwise steps in [0, directionCount) from the mean direction.
+ */
+public final class DirectionSamplers {
+    // Wrapped normal proposals are rounded to sixths of a turn, whatever the compass, and then taken modulo its size
+    public static final int WRAPPED_NORMAL_STEPS = 6;
+
+    private static final ConcurrentMap<SamplerKey, AliasTable> WRAPPED_NORMAL_TABLES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<SamplerKey, AliasTable> VON_MISES_TABLES = new ConcurrentHashMap<>();
+
+    // Callers almost always ask for the same table over and over, so skip the map (and the key allocation) then.
+    private static volatile CachedTable lastWrappedNormal;
+
+    private DirectionSamplers() {
+    }
+
+    /**
+     * Draws the number of counterclockwise steps a wrapped normal proposal with the given standard deviation (in
+     * radians) lands on, when rounded to the nearest sixth of a turn and applied on a compass of
+     * {@code directionCount} directions.
+     */
+    public static int sampleWrappedNormalOffset(Random random, int directionCount, double standardDeviation) {
+        return getWrappedNormalTable(directionCount, standardDeviation).sample(random);
+    }
+
+    public static AliasTable getWrappedNormalTable(int directionCount, double standardDeviation) {
+        CachedTable last = lastWrappedNormal;
+        if (last != null && last.directionCount == directionCount && last.parameter == standardDeviation) {
+            return last.table;
+        }
+
+        AliasTable table = WRAPPED_NORMAL_TABLES.computeIfAbsent(new SamplerKey(directionCount, standardDeviation),
+                key -> new AliasTable(getWrappedNormalStepProbabilities(key.directionCount, key.parameter)));
+        lastWrappedNormal = new CachedTable(directionCount, standardDeviation, table);
+        return table;
+    }
+
+    public static AliasTable getVonMisesTable(int directionCount, double concentration) {
+        return VON_MISES_TABLES.computeIfAbsent(new SamplerKey(directionCount, concentration),
+                key -> new AliasTable(getVonMisesProbabilities(key.directionCount, key.parameter)));
+    }
+
+    /**
+     * The exact probability of each offset under {@code round(N(0, sigma) * n / 2pi) mod n}, which is what rounding a
+     * wrapped normal angle to the nearest compass direction amounts to.
+     */
+    public static double[] getWrappedNormalProbabilities(int directionCount, double standardDeviation) {
+        double[] probabilities = new double[directionCount];
+
+        double scale = standardDeviation * directionCount / (2 * Math.PI);
+        if (!(scale > 0)) {
+            probabilities[0] = 1;
+            return probabilities;
+        }
+
+        // Bins further than this many standard deviations out contribute nothing representable.
+        int windings = (int) Math.ceil((40 * scale + 1) / directionCount);
+        for (int offset = 0; offset < directionCount; offset++) {
+            double sum = 0;
+            for (int w = -windings; w <= windings; w++) {
+                double center = offset + w * directionCount;
+                sum += normalMass((center - 0.5) / scale, (center + 0.5) / scale);
+            }
+            probabilities[offset] = sum;
+        }
+        return probabilities;
+    }
+
+    /**
+     * The probability of each offset under {@code round(N(0, sigma) * 3 / pi) mod directionCount}, with the wrapped
+     * angle in [-pi, pi), so that a half turn is -3 and +3 steps equally often.
+     */
+    public static double[] getWrappedNormalStepProbabilities(int directionCount, double standardDeviation) {
+        double[] steps = getWrappedNormalProbabilities(WRAPPED_NORMAL_STEPS, standardDeviation);
+        double[] probabilities = new double[directionCount];
+
+        int half = WRAPPED_NORMAL_STEPS / 2;
+        for (int step = 1 - half; step < half; step++) {
+            probabilities[Math.floorMod(step, directionCount)] += steps[Math.floorMod(step, WRAPPED_NORMAL_STEPS)];
+        }
+        probabilities[Math.floorMod(half, directionCount)] += steps[half] / 2;
+        probabilities[Math.floorMod(-half, directionCount)] += steps[half] / 2;
+        return probabilities;
+    }
+
+    /**
+     * Probabilities proportional to {@code exp(kappa * cos(theta))}, theta being the angle of each evenly spaced
+     * offset from the mean.
+     */
+    public static double[] getVonMisesProbabilities(int directionCount, double concentration) {
+        return getVonMisesProbabilities(getEvenlySpacedAngles(directionCount), 0, concentration);
+    }
+
+    public static double[] getVonMisesProbabilities(double[] angles, double mean, double concentration) {
+        double[] weights = new double[angles.length];
+
+        // Subtract the largest exponent so that large concentrations do not overflow.
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < angles.length; i++) {
+            weights[i] = concentration * Math.cos(angles[i] - mean);
+            max = Math.max(max, weights[i]);
+        }
+        for (int i = 0; i < angles.length; i++) {
+            weights[i] = Math.exp(weights[i] - max);
+        }
+        return weights;
+    }
+
+    public static double[] getEvenlySpacedAngles(int directionCount) {
+        double[] angles = new double[directionCount];
+        for (int i = 0; i < directionCount; i++) {
+            angles[i] = 2 * Math.PI * i / directionCount;
+        }
+        return angles;
+    }
+
+    /**
+     * A von Mises sampler over a fixed set of direction angles whose mean is a continuous heading. Tables are built
+     * lazily for each of {@code headingBins} quantized headings and reused afterwards.
+     */
+    public static class HeadingSampler {
+        private final double[] angles;
+        private final double concentration;
+        private final AliasTable[] tables;
+
+        public HeadingSampler(double[] angles, double concentration, int headingBins) {
+            this.angles = angles.clone();
+            this.concentration = concentration;
+            this.tables = new AliasTable[headingBins];
+        }
+
+        public double getConcentration() {
+            return this.concentration;
+        }
+
+        /**
+         * @return the index into the angle array of the sampled direction.
+         */
+        public int sample(double heading, Random random) {
+            int bins = this.tables.length;
+            double turns = heading / (2 * Math.PI);
+            int bin = (int) Math.round((turns - Math.floor(turns)) * bins) % bins;
+
+            // Racing threads may both build the same table; either copy is fine.
+            AliasTable table = this.tables[bin];
+            if (table == null) {
+                double binHeading = 2 * Math.PI * bin / bins;
+                table = new AliasTable(getVonMisesProbabilities(this.angles, binHeading, this.concentration));
+                this.tables[bin] = table;
+            }
+            return table.sample(random);
+        }
+    }
+
+    /**
+     * Standard normal mass between a and b, evaluated on the lower tail so that far-out bins keep their precision.
+     */
+    private static double normalMass(double a, double b) {
+        if (a >= 0) {
+            return Math.max(normalCdf(-a) - normalCdf(-b), 0);
+        }
+        return Math.max(normalCdf(b) - normalCdf(a), 0);
+    }
+
+    /**
+     * Hart's double precision approximation of the standard normal CDF, as given by West (2005).
+     */
+    static double normalCdf(double x) {
+        double xAbs = Math.abs(x);
+        double c;
+        if (xAbs > 37) {
+            c = 0;
+        } else {
+            double e = Math.exp(-xAbs * xAbs / 2);
+            if (xAbs < 7.07106781186547) {
+                double b = 3.52624965998911E-02 * xAbs + 0.700383064443688;
+                b = b * xAbs + 6.37396220353165;
+                b = b * xAbs + 33.912866078383;
+                b = b * xAbs + 112.079291497871;
+                b = b * xAbs + 221.213596169931;
+                b = b * xAbs + 220.206867912376;
+                c = e * b;
+                b = 8.83883476483184E-02 * xAbs + 1.75566716318264;
+                b = b * xAbs + 16.064177579207;
+                b = b * xAbs + 86.7807322029461;
+                b = b * xAbs + 296.564248779674;
+                b = b * xAbs + 637.333633378831;
+                b = b * xAbs + 793.826512519948;
+                b = b * xAbs + 440.413735824752;
+                c = c / b;
+            } else {
+                double b = xAbs + 0.65;
+                b = xAbs + 4 / b;
+                b = xAbs + 3 / b;
+                b = xAbs + 2 / b;
+                b = xAbs + 1 / b;
+                c = e / b / 2.506628274631;
+            }
+        }
+        return x > 0 ? 1 - c : c;
+    }
+
+    private static final class SamplerKey {
+        private final int directionCount;
+        private final double parameter;
+
+        private SamplerKey(int directionCount, double parameter) {
+            this.directionCount = directionCount;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SamplerKey)) return false;
+            SamplerKey other = (SamplerKey) o;
+            return this.directionCount == other.directionCount &&
+                    Double.doubleToLongBits(this.parameter) == Double.doubleToLongBits(other.parameter);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.directionCount + Double.hashCode(this.parameter);
+        }
+    }
+
+    private static final class CachedTable {
+        private final int directionCount;
+        private final double parameter;
+        private final AliasTable table;
+
+        private CachedTable(int directionCount, double parameter, AliasTable table) {
+            this.directionCount = directionCount;
+            this.parameter = parameter;
+            this.table = table;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * A hash map from primitive longs to objects, with open addressing and linear probing, so that lookups neither box
+ * the key nor chase a node per entry. Removal shifts the following entries back instead of leaving tombstones.
+ * Null values are not allowed.
+ */
+public final class LongHashMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+
+    public LongHashMap() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    private static int hash(long key) {
+        // The finalizer of MurmurHash3, so that neighboring keys land far apart
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int find(long key) {
+        int slot = hash(key) & this.mask;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) return slot;
+            slot = (slot + 1) & this.mask;
+        }
+        return -1 - slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = this.find(key);
+        return slot >= 0 ? (V) this.values[slot] : null;
+    }
+
+    public boolean containsKey(long key) {
+        return this.find(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Objects.requireNonNull(value);
+
+        int slot = this.find(key);
+        if (slot >= 0) {
+            V previous = (V) this.values[slot];
+            this.values[slot] = value;
+            return previous;
+        }
+
+        slot = -1 - slot;
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size > this.values.length / 2) this.resize(2 * this.values.length);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = this.find(key);
+        if (slot < 0) return null;
+
+        V previous = (V) this.values[slot];
+        this.size--;
+
+        // Move back every following entry that would otherwise become unreachable
+        int hole = slot;
+        int next = (hole + 1) & this.mask;
+        while (this.values[next] != null) {
+            int home = hash(this.keys[next]) & this.mask;
+            if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.values[hole] = null;
+        return previous;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Stream<V> values() {
+        return Arrays.stream(this.values).filter(Objects::nonNull).map(value -> (V) value);
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = -1 - this.find(oldKeys[i]);
+            this.keys[slot] = oldKeys[i];
+            this.values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+/**
+ * Integer powers of a fixed base, precomputed for a window of exponents around zero. Move probabilities raise a bias
+ * to a change in neighbor counts, which on a lattice is a small integer, so a table replaces most Math.pow calls.
+ * Exponents outside the window fall back to Math.pow.
+ */
+public final class PowerTable {
+    /**
+     * Enough for the difference of two neighbor counts, plus a swapped neighbor, on any lattice we have.
+     */
+    public static final int DEFAULT_MAX_EXPONENT = 16;
+
+    private final double base;
+    private final int maxExponent;
+    private final double[] powers;
+
+    public PowerTable(double base) {
+        this(base, DEFAULT_MAX_EXPONENT);
+    }
+
+    public PowerTable(double base, int maxExponent) {
+        this.base = base;
+        this.maxExponent = maxExponent;
+        this.powers = new double[2 * maxExponent + 1];
+        for (int i = 0; i < this.powers.length; i++) {
+            this.powers[i] = Math.pow(base, i - maxExponent);
+        }
+    }
+
+    public double getBase() {
+        return this.base;
+    }
+
+    public double get(int exponent) {
+        int index = exponent + this.maxExponent;
+        if (index < 0 || index >= this.powers.length) {
+            return Math.pow(this.base, exponent);
+        }
+        return this.powers[index];
+    }
+}
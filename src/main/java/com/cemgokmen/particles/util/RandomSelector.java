@@ -105,17 +105,11 @@ public final class RandomSelector<T> {
         final int size = elements.size();
         final T[] elementArray = elements.toArray((T[]) new Object[size]);
 
-        double totalWeight = 0d;
-        final double[] discreteProbabilities = new double[size];
+        final double[] weights = new double[size];
         for (int i = 0; i < size; i++) {
-            final double weight = weighter.applyAsDouble(elementArray[i]);
-            discreteProbabilities[i] = weight;
-            totalWeight += weight;
+            weights[i] = weighter.applyAsDouble(elementArray[i]);
         }
-        for (int i = 0; i < size; i++) {
-            discreteProbabilities[i] /= totalWeight;
-        }
-        return new RandomSelector<>(elementArray, new RandomWeightedSelection(discreteProbabilities));
+        return new RandomSelector<>(elementArray, new AliasTable(weights));
     }
 
     private final T[] elements;
@@ -177,62 +171,4 @@ public final class RandomSelector<T> {
             return RandomSelector.this.next(this.random);
         }
     }
-
-    private static class RandomWeightedSelection implements ToIntFunction<Random> {
-        // Alias method implementation O(1)
-        // using Vose's algorithm to initialize O(n)
-
-        private final double[] probabilities;
-        private final int[] alias;
-
-        RandomWeightedSelection(final double[] probabilities) {
-            final int size = probabilities.length;
-
-            final double average = 1d / size;
-            final int[] small = new int[size];
-            int smallSize = 0;
-            final int[] large = new int[size];
-            int largeSize = 0;
-
-            for (int i = 0; i < size; i++) {
-                if (probabilities[i] < average) {
-                    small[smallSize++] = i;
-                } else {
-                    large[largeSize++] = i;
-                }
-            }
-
-            final double[] pr = new double[size];
-            final int[] al = new int[size];
-            this.probabilities = pr;
-            this.alias = al;
-
-            while (largeSize != 0 && smallSize != 0) {
-                final int less = small[--smallSize];
-                final int more = large[--largeSize];
-                pr[less] = probabilities[less] * size;
-                al[less] = more;
-                probabilities[more] += probabilities[less] - average;
-                if (probabilities[more] < average) {
-                    small[smallSize++] = more;
-                } else {
-                    large[largeSize++] = more;
-                }
-            }
-            while (smallSize != 0) {
-                pr[small[--smallSize]] = 1d;
-            }
-            while (largeSize != 0) {
-                pr[large[--largeSize]] = 1d;
-            }
-        }
-
-        @Override
-        public int applyAsInt(final Random random) {
-            final int column = random.nextInt(probabilities.length);
-            return random.nextDouble() < probabilities[column]
-                    ? column
-                    : alias[column];
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+/**
+ * Streaming mean and variance of a sequence of samples, using Welford's update so that long runs don't lose precision.
+ */
+public class RunningStatistics {
+    private long count = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double x) {
+        this.count++;
+        double delta = x - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (x - this.mean);
+
+        if (x < this.min) this.min = x;
+        if (x > this.max) this.max = x;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMean() {
+        return this.count > 0 ? this.mean : Double.NaN;
+    }
+
+    /**
+     * The unbiased sample variance.
+     */
+    public double getVariance() {
+        return this.count > 1 ? this.m2 / (this.count - 1) : Double.NaN;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(this.getVariance());
+    }
+
+    /**
+     * The standard error of the mean, assuming independent samples.
+     */
+    public double getStandardError() {
+        return Math.sqrt(this.getVariance() / this.count);
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.6g ± %.2g (n=%d)", this.getMean(), this.getStandardError(), this.count);
+    }
+}
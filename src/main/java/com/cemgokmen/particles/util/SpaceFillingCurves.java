@@ -0,0 +1,75 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+/**
+ * Positions along space-filling curves over the non-negative quadrant. Numbering lattice sites in curve order keeps
+ * most neighbors close together in memory: the Morton (Z-order) curve does this cheaply, and the Hilbert curve,
+ * which never jumps, does it a little better.
+ */
+public class SpaceFillingCurves {
+    /**
+     * Interleaves the bits of x and y, which should fit in 31 bits.
+     */
+    public static long morton(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(int value) {
+        long v = value & 0x7FFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Returns the distance of (x, y) along the Hilbert curve that fills the square of side 2^order.
+     */
+    public static long hilbert(int order, int x, int y) {
+        long d = 0;
+        for (long s = 1L << (order - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+
+            // Rotate the quadrant so that the curve inside it starts and ends where it should
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = (int) (s - 1 - x);
+                    y = (int) (s - 1 - y);
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * The smallest order whose square holds coordinates up to the given size.
+     */
+    public static int orderFor(int size) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1)));
+    }
+}
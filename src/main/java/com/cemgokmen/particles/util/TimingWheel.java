@@ -0,0 +1,207 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: timers are bucketed by deadline into four levels of 64 slots, each level 64 times
+ * coarser than the one below, and cascade down a level whenever the clock enters their bucket. Scheduling,
+ * rescheduling and cancelling are constant time, and so is advancing the clock by a tick, amortized. Deadlines more
+ * than 2^24 ticks out wait in an overflow list that is only looked at once per 2^24 ticks.
+ *
+ * Timers are due once the clock reaches their deadline. A deadline that has already passed fires on the next tick.
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long HORIZON_MASK = (1L << (SLOT_BITS * LEVELS)) - 1;
+    private static final int OVERFLOW = LEVELS;
+
+    private final Timer<T>[][] slots;
+    private Timer<T> overflow;
+    private long time;
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long startTime) {
+        this.slots = new Timer[LEVELS][SLOTS];
+        this.time = startTime;
+    }
+
+    public long getTime() {
+        return this.time;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public Timer<T> schedule(T item, long deadline) {
+        Timer<T> timer = new Timer<>(item);
+        this.reschedule(timer, deadline);
+        return timer;
+    }
+
+    /**
+     * Moves a timer to a new deadline, scheduling it again if it already fired or was cancelled.
+     */
+    public void reschedule(Timer<T> timer, long deadline) {
+        if (timer.wheel != null && timer.wheel != this) {
+            throw new RuntimeException("The timer is scheduled on another wheel.");
+        }
+        if (timer.wheel != null) {
+            this.unlink(timer);
+        } else {
+            timer.wheel = this;
+            this.size++;
+        }
+
+        timer.deadline = Math.max(deadline, this.time + 1);
+        this.place(timer);
+    }
+
+    public void cancel(Timer<T> timer) {
+        if (timer.wheel != this) return;
+
+        this.unlink(timer);
+        timer.wheel = null;
+        this.size--;
+    }
+
+    /**
+     * Moves the clock forward to the given time, handing every timer that comes due to the action in deadline order.
+     * The action may schedule and cancel timers.
+     */
+    public void advanceTo(long target, Consumer<? super T> action) {
+        while (this.time < target) {
+            if (this.size == 0) {
+                // Nothing to cascade or fire, so we can jump straight there
+                this.time = target;
+                return;
+            }
+
+            long now = ++this.time;
+
+            if ((now & HORIZON_MASK) == 0) {
+                Timer<T> timer = this.overflow;
+                this.overflow = null;
+                while (timer != null) {
+                    Timer<T> next = timer.next;
+                    this.place(timer);
+                    timer = next;
+                }
+            }
+
+            // Cascade from the top so that timers can fall through more than one level
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((now & ((1L << (SLOT_BITS * level)) - 1)) != 0) continue;
+
+                int slot = (int) (now >>> (SLOT_BITS * level)) & SLOT_MASK;
+                Timer<T> timer = this.slots[level][slot];
+                this.slots[level][slot] = null;
+                while (timer != null) {
+                    Timer<T> next = timer.next;
+                    this.place(timer);
+                    timer = next;
+                }
+            }
+
+            int slot = (int) now & SLOT_MASK;
+            Timer<T> timer;
+            while ((timer = this.slots[0][slot]) != null) {
+                this.cancel(timer);
+                action.accept(timer.item);
+            }
+        }
+    }
+
+    private void place(Timer<T> timer) {
+        long deadline = timer.deadline;
+
+        // The lowest level whose bucket of the current time also holds the deadline
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((deadline >>> shift) == (this.time >>> shift)) {
+                this.link(timer, level, (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+                return;
+            }
+        }
+
+        this.link(timer, OVERFLOW, 0);
+    }
+
+    private void link(Timer<T> timer, int level, int slot) {
+        Timer<T> head = level == OVERFLOW ? this.overflow : this.slots[level][slot];
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) head.prev = timer;
+
+        if (level == OVERFLOW) {
+            this.overflow = timer;
+        } else {
+            this.slots[level][slot] = timer;
+        }
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else if (timer.level == OVERFLOW) {
+            this.overflow = timer.next;
+        } else {
+            this.slots[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) timer.next.prev = timer.prev;
+
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    public static final class Timer<T> {
+        private final T item;
+        private long deadline;
+        private TimingWheel<T> wheel;
+        private int level;
+        private int slot;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(T item) {
+            this.item = item;
+        }
+
+        public T getItem() {
+            return this.item;
+        }
+
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        public boolean isScheduled() {
+            return this.wheel != null;
+        }
+    }
+}
@@ -26,6 +26,28 @@ import java.util.Random;
 public class Utils {
     public static final Random random = new Random(1337);
 
+    // Jobs that run side by side each draw from their own generator, set on the thread that runs them
+    private static final ThreadLocal<Random> threadRandom = new ThreadLocal<>();
+
+    /**
+     * The generator the calling thread draws from: its own if it was given one, the shared one otherwise.
+     */
+    public static Random getRandom() {
+        Random own = threadRandom.get();
+        return own != null ? own : random;
+    }
+
+    /**
+     * Gives the calling thread its own generator, or sends it back to the shared one when passed null.
+     */
+    public static void setThreadRandom(Random own) {
+        if (own == null) {
+            threadRandom.remove();
+        } else {
+            threadRandom.set(own);
+        }
+    }
+
     public static Vector getVector(int x, int y) {
         return Vector.fromArray(new double[]{x, y});
     }
@@ -50,16 +72,20 @@ public class Utils {
     }
 
     public static double randomDouble() {
-        return random.nextDouble();
+        return getRandom().nextDouble();
     }
 
     public static int randomInt(int bound) {
-        return random.nextInt(bound);
+        return getRandom().nextInt(bound);
     }
 
     public static double randomWrappedNorm(double sigma) {
+        return randomWrappedNorm(getRandom(), sigma);
+    }
+
+    public static double randomWrappedNorm(Random random, double sigma) {
         // Start in range [0, 2pi]
-        double rnorm = (random.nextGaussian() * sigma) + Math.PI;
+        double rnorm = (Ziggurat.nextGaussian(random) * sigma) + Math.PI;
         double angle = rnorm % (2 * Math.PI);
         if (angle < 0) angle += 2 * Math.PI;
 
@@ -50,7 +50,7 @@ public class VectorWrapper {
     }
 
     public static Vector unwrapVector(Vector v, int wrapAroundDistance, Vector levels) {
-        return wrapVector(v, Vector.constant(v.length(), wrapAroundDistance));
+        return unwrapVector(v, Vector.constant(v.length(), wrapAroundDistance), levels);
     }
 
     public static Vector unwrapVector(Vector v, Vector wrapAroundDistance, Vector levels) {
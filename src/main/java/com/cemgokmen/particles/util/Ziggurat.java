@@ -0,0 +1,97 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import java.util.Random;
+
+/**
+ * Marsaglia and Tsang's ziggurat method for standard normal variates. Almost every draw is a single {@code nextInt},
+ * a table lookup and a multiplication, which is a lot cheaper than the polar method behind
+ * {@link Random#nextGaussian()} and does not keep a cached second variate around.
+ */
+public final class Ziggurat {
+    private static final int LAYERS = 128;
+    private static final double R = 3.442619855899;
+    private static final double LAYER_AREA = 9.91256303526217e-3;
+    private static final double M1 = 2147483648.0;
+
+    private static final long[] K = new long[LAYERS];
+    private static final double[] W = new double[LAYERS];
+    private static final double[] F = new double[LAYERS];
+
+    static {
+        double dn = R;
+        double tn = dn;
+        double q = LAYER_AREA / Math.exp(-0.5 * dn * dn);
+
+        K[0] = (long) ((dn / q) * M1);
+        K[1] = 0;
+        W[0] = q / M1;
+        W[LAYERS - 1] = dn / M1;
+        F[0] = 1.0;
+        F[LAYERS - 1] = Math.exp(-0.5 * dn * dn);
+
+        for (int i = LAYERS - 2; i >= 1; i--) {
+            dn = Math.sqrt(-2.0 * Math.log(LAYER_AREA / dn + Math.exp(-0.5 * dn * dn)));
+            K[i + 1] = (long) ((dn / tn) * M1);
+            tn = dn;
+            F[i] = Math.exp(-0.5 * dn * dn);
+            W[i] = dn / M1;
+        }
+    }
+
+    private Ziggurat() {
+    }
+
+    public static double nextGaussian(Random random) {
+        int hz = random.nextInt();
+        int iz = hz & (LAYERS - 1);
+        if (Math.abs((long) hz) < K[iz]) {
+            return hz * W[iz];
+        }
+        return nextGaussianSlow(random, hz, iz);
+    }
+
+    private static double nextGaussianSlow(Random random, int hz, int iz) {
+        while (true) {
+            double x = hz * W[iz];
+
+            if (iz == 0) {
+                // Sample from the tail beyond R
+                double y;
+                do {
+                    x = -Math.log(1.0 - random.nextDouble()) / R;
+                    y = -Math.log(1.0 - random.nextDouble());
+                } while (y + y < x * x);
+                return hz > 0 ? R + x : -R - x;
+            }
+
+            if (F[iz] + random.nextDouble() * (F[iz - 1] - F[iz]) < Math.exp(-0.5 * x * x)) {
+                return x;
+            }
+
+            hz = random.nextInt();
+            iz = hz & (LAYERS - 1);
+            if (Math.abs((long) hz) < K[iz]) {
+                return hz * W[iz];
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.FoodAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.ForagingAmoebotParticle;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CountAggregateTest {
+    // Food is not counted, foragers are counted by whether they are fed
+    private static Boolean classify(Particle p) {
+        return p instanceof ForagingAmoebotParticle ? ((ForagingAmoebotParticle) p).isFed() : null;
+    }
+
+    @Test
+    public void countsMatchRecountingAcrossChanges() throws Exception {
+        Random random = new Random(5);
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(6);
+        List<Vector> positions = grid.getValidPositions().filter(v -> grid.isPositionValid(v, null)).collect(Collectors.toList());
+        Collections.shuffle(positions, random);
+        for (int k = 0; k < 60; k++) {
+            grid.addParticle(k < 10 ? new FoodAmoebotParticle() : new ForagingAmoebotParticle(false), positions.get(k));
+        }
+
+        CountAggregate<Boolean> counts = grid.getAggregates().register("fed", new CountAggregate<>(CountAggregateTest::classify));
+        List<ParticleGrid.Direction> directions = grid.getCompass().getDirections();
+
+        for (int step = 0; step < 3000; step++) {
+            List<Particle> particles = grid.getAllParticles().collect(Collectors.toList());
+            Particle p = particles.get(random.nextInt(particles.size()));
+            Vector target = grid.getPositionInDirection(grid.getParticlePosition(p), directions.get(random.nextInt(directions.size())));
+            int action = random.nextInt(10);
+
+            if (action == 0) {
+                grid.removeParticle(p);
+            } else if (action == 1) {
+                Vector empty = positions.get(random.nextInt(positions.size()));
+                if (!grid.isPositionOccupied(empty)) grid.addParticle(new ForagingAmoebotParticle(false), empty);
+            } else if (action == 2 && p instanceof ForagingAmoebotParticle) {
+                ((ForagingAmoebotParticle) p).feed(100);
+            } else if (action == 3 && p instanceof ForagingAmoebotParticle) {
+                // Starve it by moving its feeding into the past
+                ForagingAmoebotParticle forager = (ForagingAmoebotParticle) p;
+                forager.setFeedingState(forager.getFedAt(), Long.MIN_VALUE, forager.getTimesFed(), 0, null);
+            } else if (grid.isPositionValid(target, p)) {
+                if (!grid.isPositionOccupied(target)) {
+                    grid.moveParticle(p, target);
+                } else {
+                    grid.swapParticles(p, grid.getParticleAtPosition(target));
+                }
+            }
+
+            Map<Boolean, Long> expected = grid.getAllParticles().map(CountAggregateTest::classify).filter(Objects::nonNull)
+                    .collect(Collectors.groupingBy(key -> key, Collectors.counting()));
+            assertEquals(expected.keySet(), counts.getKeys());
+            for (Boolean key : new Boolean[]{true, false}) {
+                assertEquals((long) expected.getOrDefault(key, 0L), counts.getCount(key));
+            }
+        }
+    }
+}
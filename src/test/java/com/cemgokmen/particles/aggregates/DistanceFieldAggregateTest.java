@@ -0,0 +1,94 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.FoodAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.ForagingAmoebotParticle;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DistanceFieldAggregateTest {
+    private static Map<Particle, Integer> breadthFirst(ParticleGrid grid) {
+        Map<Particle, Integer> distances = new HashMap<>();
+        ArrayDeque<Particle> queue = new ArrayDeque<>();
+        grid.getAllParticles().filter(p -> p instanceof FoodAmoebotParticle).forEach(p -> {
+            distances.put(p, 0);
+            queue.add(p);
+        });
+
+        while (!queue.isEmpty()) {
+            Particle u = queue.poll();
+            for (Particle w : grid.getParticleNeighbors(u, false)) {
+                if (!distances.containsKey(w)) {
+                    distances.put(w, distances.get(u) + 1);
+                    queue.add(w);
+                }
+            }
+        }
+        return distances;
+    }
+
+    @Test
+    public void fieldMatchesBreadthFirstSearchAcrossChanges() throws Exception {
+        Random random = new Random(3);
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(6);
+        List<Vector> positions = grid.getValidPositions().filter(v -> grid.isPositionValid(v, null)).collect(Collectors.toList());
+        Collections.shuffle(positions, random);
+        for (int k = 0; k < 70; k++) {
+            grid.addParticle(k < 4 ? new FoodAmoebotParticle() : new ForagingAmoebotParticle(false), positions.get(k));
+        }
+
+        DistanceFieldAggregate field = grid.getAggregates().register("distances",
+                new DistanceFieldAggregate(p -> p instanceof FoodAmoebotParticle, p -> true));
+        List<ParticleGrid.Direction> directions = grid.getCompass().getDirections();
+
+        for (int step = 0; step < 3000; step++) {
+            List<Particle> particles = grid.getAllParticles().collect(Collectors.toList());
+            Particle p = particles.get(random.nextInt(particles.size()));
+            Vector target = grid.getPositionInDirection(grid.getParticlePosition(p), directions.get(random.nextInt(directions.size())));
+            int action = random.nextInt(20);
+
+            if (action == 0 && p instanceof FoodAmoebotParticle) {
+                grid.removeParticle(p);
+            } else if (action == 1) {
+                Vector empty = positions.get(random.nextInt(positions.size()));
+                if (!grid.isPositionOccupied(empty)) grid.addParticle(new FoodAmoebotParticle(), empty);
+            } else if (grid.isPositionValid(target, p)) {
+                if (!grid.isPositionOccupied(target)) {
+                    grid.moveParticle(p, target);
+                } else {
+                    grid.swapParticles(p, grid.getParticleAtPosition(target));
+                }
+            }
+
+            Map<Particle, Integer> expected = breadthFirst(grid);
+            grid.getAllParticles().forEach(q -> assertEquals(
+                    (int) expected.getOrDefault(q, DistanceFieldAggregate.UNREACHABLE), field.getDistance(q)));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.aggregates;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.ToroidalAmoebotGrid;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class PositionSumAggregateTest {
+    @Test
+    public void sumsMatchRecomputingAcrossChanges() throws Exception {
+        // A small torus, so that particles keep crossing the border and picking up levels
+        Random random = new Random(5);
+        ToroidalAmoebotGrid grid = new ToroidalAmoebotGrid(4);
+        List<Vector> positions = grid.getValidPositions().filter(v -> grid.isPositionValid(v, null)).collect(Collectors.toList());
+        Collections.shuffle(positions, random);
+        for (int k = 0; k < 30; k++) {
+            grid.addParticle(new AmoebotParticle(), positions.get(k));
+        }
+
+        PositionSumAggregate sums = grid.getAggregates().register("positions", new PositionSumAggregate());
+        List<ParticleGrid.Direction> directions = grid.getCompass().getDirections();
+
+        for (int step = 0; step < 3000; step++) {
+            List<Particle> particles = grid.getAllParticles().collect(Collectors.toList());
+            Particle p = particles.get(random.nextInt(particles.size()));
+            Vector target = grid.getPositionInDirection(grid.getParticlePosition(p), directions.get(random.nextInt(directions.size())));
+            int action = random.nextInt(10);
+
+            if (action == 0 && particles.size() > 1) {
+                grid.removeParticle(p);
+            } else if (action == 1) {
+                Vector empty = positions.get(random.nextInt(positions.size()));
+                if (!grid.isPositionOccupied(empty)) grid.addParticle(new AmoebotParticle(), empty);
+            } else if (!grid.isPositionOccupied(target)) {
+                grid.moveParticle(p, target);
+            } else if (grid.getParticleAtPosition(target) != p) {
+                grid.swapParticles(p, grid.getParticleAtPosition(target));
+            }
+
+            assertEquals(grid.getParticleCount(), sums.getCount());
+            for (int axis = 0; axis < 2; axis++) {
+                final int a = axis;
+                double expected = grid.getAllParticles().mapToDouble(q -> grid.getLeveledParticleCoordinate(q, a)).sum();
+                assertEquals(expected, sums.getSum(axis), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.algorithms;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+import com.cemgokmen.particles.models.continuous.boundary.CircularBoundary;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentAlgorithmTest {
+    @Test
+    public void runsOnContinuousParticles() throws Exception {
+        Utils.random.setSeed(4);
+        ContinuousParticleGrid grid = new ContinuousParticleGrid(new CircularBoundary(30));
+        List<Particle> particles = new ArrayList<>();
+        for (int x = -6; x <= 6; x++) {
+            for (int y = -6; y <= 6; y++) {
+                ContinuousParticle p = new ContinuousParticle(0.5, Utils.randomDouble() * Math.PI * 2);
+                grid.addParticle(p, Utils.getVector(1.5 * x, 1.5 * y));
+                particles.add(p);
+            }
+        }
+        grid.assignAllParticlesAlgorithm(new AlignmentAlgorithm(4, 1, 0.5));
+
+        grid.runActivations(1000);
+        assertEquals(particles.size(), grid.getParticleCount());
+        assertTrue(grid.getMovesMade() > 0);
+        double polarization = Observables.polarization(grid);
+        assertTrue(polarization >= 0 && polarization <= 1);
+    }
+
+    @Test
+    public void polarizationCountsContinuousHeadings() throws Exception {
+        ContinuousParticleGrid grid = new ContinuousParticleGrid(new CircularBoundary(10));
+        grid.addParticle(new ContinuousParticle(0.5, 0.3), Utils.getVector(0, 0));
+        grid.addParticle(new ContinuousParticle(0.5, 0.3), Utils.getVector(2, 0));
+        assertEquals(1, Observables.polarization(grid), 1e-9);
+
+        grid.addParticle(new ContinuousParticle(0.5, 0.3 + Math.PI), Utils.getVector(4, 0));
+        grid.addParticle(new ContinuousParticle(0.5, 0.3 + Math.PI), Utils.getVector(6, 0));
+        assertEquals(0, Observables.polarization(grid), 1e-9);
+    }
+}
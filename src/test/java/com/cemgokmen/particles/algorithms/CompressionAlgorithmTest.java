@@ -0,0 +1,74 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.algorithms;
+
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.QuadrilateralAmoebotGrid;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompressionAlgorithmTest {
+    private ParticleGrid grid;
+    private AmoebotParticle particle;
+    private ParticleGrid.Direction away;
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new QuadrilateralAmoebotGrid(5);
+
+        particle = new AmoebotParticle();
+        grid.addParticle(particle, Utils.getVector(0, 0));
+        grid.addParticle(new AmoebotParticle(), Utils.getVector(0, 1));
+
+        // N is (0, -1), which takes the particle away from its only neighbor.
+        away = grid.getCompass().getDirection(0);
+    }
+
+    @Test
+    public void parameterEditsWaitForPublish() {
+        CompressionAlgorithm algorithm = new CompressionAlgorithm(4.0);
+        assertEquals(0.25, algorithm.getMoveProbability(particle, away), 1e-12);
+
+        algorithm.setLambda(2.0);
+        assertEquals(2.0, algorithm.getLambda(), 0);
+        assertEquals(0.25, algorithm.getMoveProbability(particle, away), 1e-12);
+
+        algorithm.publishParameters();
+        assertEquals(0.5, algorithm.getMoveProbability(particle, away), 1e-12);
+    }
+
+    @Test
+    public void runActivationsPublishesEdits() {
+        CompressionAlgorithm algorithm = new CompressionAlgorithm(4.0);
+        grid.assignAllParticlesAlgorithm(algorithm);
+
+        algorithm.setLambda(2.0);
+        grid.runActivations(1);
+
+        // The activation may have moved the particle, so work out the expected change in neighbors from scratch.
+        int currentNeighbors = particle.getNeighborParticles(false, null).size();
+        int futureNeighbors = particle.getAdjacentPositionNeighborParticles(away, false, p -> p != particle).size();
+        assertEquals(Math.pow(2.0, futureNeighbors - currentNeighbors), algorithm.getMoveProbability(particle, away), 1e-12);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.algorithms;
+
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.FoodAmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.ForagingAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ForagingAlgorithmTest {
+    private static final int FED_ACTIVATIONS = 1000;
+
+    /**
+     * Runs a ring of foragers around one piece of food, long enough for every particle to be activated several times
+     * but well within the time a feeding lasts, and returns the foragers.
+     */
+    private static List<ForagingAmoebotParticle> run(boolean distanceAware) throws Exception {
+        Utils.random.setSeed(9);
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(4);
+        ForagingAlgorithm algorithm = new ForagingAlgorithm(4, 1, 100000, 3, FED_ACTIVATIONS);
+        algorithm.setDistanceAware(distanceAware);
+
+        FoodAmoebotParticle food = new FoodAmoebotParticle();
+        grid.addParticle(food, Utils.getVector(0, 0));
+        food.setAlgorithm(algorithm);
+
+        List<ForagingAmoebotParticle> foragers = new ArrayList<>();
+        grid.getCompass().getDirections().forEach(d -> {
+            ForagingAmoebotParticle forager = new ForagingAmoebotParticle(false);
+            try {
+                grid.addParticle(forager, d.getVector().copy());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            forager.setAlgorithm(algorithm);
+            foragers.add(forager);
+        });
+
+        grid.runActivations(20 * grid.getParticleCount());
+        return foragers;
+    }
+
+    @Test
+    public void distanceAwareFeedingCountsFeedingsNotActivations() throws Exception {
+        int tokenFeedings = 0;
+        for (ForagingAmoebotParticle forager : run(false)) {
+            tokenFeedings += forager.getTimesFed();
+        }
+
+        int awareFeedings = 0;
+        for (ForagingAmoebotParticle forager : run(true)) {
+            // The first feeding lasts the whole run, so there is nothing to top up
+            assertEquals(1, forager.getTimesFed());
+            assertTrue(forager.isFed());
+            awareFeedings += forager.getTimesFed();
+        }
+
+        // Tokens only arrive when the food is activated, so they cannot reach anyone less often than that
+        assertTrue(tokenFeedings >= awareFeedings);
+    }
+
+    @Test
+    public void longestWaitIsInParticleActivations() throws Exception {
+        Utils.random.setSeed(9);
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(4);
+        ForagingAlgorithm algorithm = new ForagingAlgorithm(4, 1, 100000, 3, FED_ACTIVATIONS);
+
+        // No food, so nobody is ever fed and the wait is the whole run
+        for (int x = -2; x <= 2; x++) {
+            ForagingAmoebotParticle forager = new ForagingAmoebotParticle(false);
+            grid.addParticle(forager, Utils.getVector(x, 0));
+            forager.setAlgorithm(algorithm);
+        }
+
+        grid.runActivations(30 * grid.getParticleCount());
+        assertEquals("30", algorithm.getInformation(grid).get("Longest un-fed wait so far"));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.generators;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+import com.cemgokmen.particles.models.continuous.boundary.CircularBoundary;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class PoissonDiskGeneratorTest {
+    private static List<ContinuousParticle> createParticles(int count) {
+        List<ContinuousParticle> particles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            particles.add(new ContinuousParticle(i % 2 == 0 ? 0.3 : 0.5, 0));
+        }
+        return particles;
+    }
+
+    // Returns the smallest distance between two particles over the sum of their radii
+    private static double getClosestApproach(ContinuousParticleGrid grid) {
+        List<Particle> particles = grid.getAllParticles().collect(Collectors.toList());
+        double closest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < particles.size(); i++) {
+            Vector a = grid.getParticlePosition(particles.get(i));
+            double ra = ((ContinuousParticle) particles.get(i)).getRadius();
+            for (int j = i + 1; j < particles.size(); j++) {
+                Vector b = grid.getParticlePosition(particles.get(j));
+                double rb = ((ContinuousParticle) particles.get(j)).getRadius();
+                closest = Math.min(closest, a.subtract(b).norm() / (ra + rb));
+            }
+        }
+        return closest;
+    }
+
+    @Test
+    public void placesMixedRadiiWithoutOverlaps() throws Exception {
+        ContinuousParticleGrid grid = new ContinuousParticleGrid(new CircularBoundary(15));
+        PoissonDiskGenerator.addParticles(grid, createParticles(600), new Random(5));
+
+        assertEquals(600, grid.getParticleCount());
+        assertTrue(getClosestApproach(grid) >= 1);
+        assertTrue(grid.getAllParticles().allMatch(p -> grid.isPositionValid(grid.getParticlePosition(p), p)));
+    }
+
+    @Test
+    public void jamsPastWhatSamplingReaches() throws Exception {
+        // 900 particles of these radii cover 0.68 of the disk
+        ContinuousParticleGrid grid = new ContinuousParticleGrid(new CircularBoundary(15));
+        PoissonDiskGenerator.addJammedParticles(grid, createParticles(900), new Random(5));
+
+        assertEquals(900, grid.getParticleCount());
+        assertTrue(getClosestApproach(grid) > 0.98);
+        assertTrue(grid.getAllParticles().allMatch(p -> grid.isPositionValid(grid.getParticlePosition(p), p)));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models;
+
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.InvalidMoveException;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.FoodAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Before;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import static org.junit.Assert.*;
+
+public class MoveStatusTest {
+    private HexagonalAmoebotGrid grid;
+    private AmoebotParticle particle;
+    private AmoebotParticle neighbor;
+    private ParticleGrid.Direction se;
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new HexagonalAmoebotGrid(2);
+        particle = new AmoebotParticle();
+        neighbor = new AmoebotParticle();
+        grid.addParticle(particle, Utils.getVector(1, 0));
+        grid.addParticle(neighbor, Utils.getVector(0, 0));
+
+        // SE is (1, 0)
+        se = grid.getCompass().getDirections().get(4);
+    }
+
+    private static void assertThrows(ThrowingRunnable runnable) {
+        try {
+            runnable.run();
+        } catch (Exception e) {
+            return;
+        }
+        fail("Expected an exception.");
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    @Test
+    public void gridMovesReportEachStatus() throws Exception {
+        Vector outside = Utils.getVector(3, 0);
+        Vector occupied = Utils.getVector(0, 0);
+        AmoebotParticle stranger = new AmoebotParticle();
+
+        assertEquals(MoveStatus.OUT_OF_BOUNDS, grid.tryMoveParticle(particle, outside));
+        assertEquals(MoveStatus.OCCUPIED, grid.tryMoveParticle(particle, occupied));
+        assertEquals(MoveStatus.NOT_ON_GRID, grid.tryMoveParticle(stranger, Utils.getVector(2, 0)));
+        assertEquals(Utils.getVector(1, 0), grid.getParticlePosition(particle));
+        assertEquals(0, grid.getMovesMade());
+
+        assertThrows(() -> grid.moveParticle(particle, outside));
+        assertThrows(() -> grid.moveParticle(particle, occupied));
+        assertThrows(() -> grid.moveParticle(stranger, Utils.getVector(2, 0)));
+
+        assertEquals(MoveStatus.OK, grid.tryMoveParticle(particle, Utils.getVector(2, 0)));
+        assertEquals(Utils.getVector(2, 0), grid.getParticlePosition(particle));
+        assertEquals(1, grid.getMovesMade());
+    }
+
+    @Test
+    public void gridAddsAndRemovesReportEachStatus() throws Exception {
+        AmoebotParticle stranger = new AmoebotParticle();
+
+        assertEquals(MoveStatus.OUT_OF_BOUNDS, grid.tryAddParticle(stranger, Utils.getVector(3, 0)));
+        assertEquals(MoveStatus.OCCUPIED, grid.tryAddParticle(stranger, Utils.getVector(0, 0)));
+        assertEquals(MoveStatus.NOT_ON_GRID, grid.tryRemoveParticle(stranger));
+        assertEquals(2, grid.getParticleCount());
+
+        assertThrows(() -> grid.addParticle(stranger, Utils.getVector(3, 0)));
+        assertThrows(() -> grid.addParticle(stranger, Utils.getVector(0, 0)));
+        assertThrows(() -> grid.removeParticle(stranger));
+
+        assertEquals(MoveStatus.OK, grid.tryAddParticle(stranger, Utils.getVector(-1, 0)));
+        assertEquals(MoveStatus.OK, grid.tryRemoveParticle(stranger));
+        assertEquals(2, grid.getParticleCount());
+    }
+
+    @Test
+    public void particleMovesReportEachStatus() throws Exception {
+        ParticleGrid.Direction nw = grid.getCompass().getDirections().get(1);
+        grid.moveParticle(particle, Utils.getVector(2, 0));
+
+        assertEquals(MoveStatus.OUT_OF_BOUNDS, particle.tryMove(se));
+        assertThrows(() -> particle.move(se));
+
+        FoodAmoebotParticle food = new FoodAmoebotParticle();
+        grid.addParticle(food, Utils.getVector(1, 0));
+        assertEquals(MoveStatus.OCCUPIED, particle.tryMove(nw));
+        assertEquals(MoveStatus.TYPE_MISMATCH, particle.trySwapMove(nw));
+        assertThrows(() -> particle.swapMove(nw));
+        assertEquals(MoveStatus.IMMOVABLE, food.tryMove(se));
+
+        grid.removeParticle(food);
+        assertEquals(MoveStatus.OK, particle.tryMove(nw));
+        assertEquals(MoveStatus.OK, neighbor.trySwapMove(se));
+        assertEquals(Utils.getVector(1, 0), grid.getParticlePosition(neighbor));
+        assertEquals(Utils.getVector(0, 0), grid.getParticlePosition(particle));
+
+        grid.moveParticle(particle, Utils.getVector(2, 0));
+
+        try {
+            particle.move(se);
+            fail("Expected an InvalidMoveException.");
+        } catch (InvalidMoveException e) {
+            assertEquals(MoveStatus.describe(MoveStatus.OUT_OF_BOUNDS), e.getMessage());
+        }
+    }
+}
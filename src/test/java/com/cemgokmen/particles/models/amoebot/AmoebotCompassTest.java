@@ -0,0 +1,81 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot;
+
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AmoebotCompassTest {
+    private static final double EPSILON = 1e-9;
+
+    private final HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(1);
+    private final AmoebotGrid.AmoebotCompass compass = (AmoebotGrid.AmoebotCompass) this.grid.getCompass();
+
+    private Vector toPixels(ParticleGrid.Direction d) {
+        return this.grid.getUnitPixelCoordinates(d.getVector());
+    }
+
+    @Test
+    public void tablesMatchVectorAngles() {
+        List<ParticleGrid.Direction> directions = this.compass.getDirections();
+        assertEquals(6, this.compass.getDirectionCount());
+
+        for (ParticleGrid.Direction a : directions) {
+            assertSame(a, this.compass.getDirection(a.getOrdinal()));
+
+            for (ParticleGrid.Direction b : directions) {
+                Vector u = this.toPixels(a);
+                Vector v = this.toPixels(b);
+                double cosine = Math.max(-1, Math.min(1, u.innerProduct(v) / (u.norm() * v.norm())));
+                double angle = Math.acos(cosine);
+
+                assertEquals(angle, this.compass.getAngleBetweenDirections(a, b), EPSILON);
+                assertEquals(angle, this.compass.getAngleBetweenOrdinals(a.getOrdinal(), b.getOrdinal()), EPSILON);
+                assertEquals(Math.round(angle / (Math.PI / 3)), this.compass.getMinorArcLength(a, b));
+                assertEquals((cosine + 1) / 2, this.compass.getNormalizedDotProduct(a.getOrdinal(), b.getOrdinal()), EPSILON);
+                assertEquals((cosine + 1) / 2, this.compass.getNormalizedDotProduct(a, b), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void shiftsMatchVectorRotations() {
+        for (ParticleGrid.Direction a : this.compass.getDirections()) {
+            for (int times = -7; times <= 7; times++) {
+                // Rotate counterclockwise as drawn, with y pointing down
+                double theta = times * Math.PI / 3;
+                Vector u = this.toPixels(a);
+                double x = u.get(0) * Math.cos(theta) + u.get(1) * Math.sin(theta);
+                double y = -u.get(0) * Math.sin(theta) + u.get(1) * Math.cos(theta);
+
+                ParticleGrid.Direction shifted = this.compass.getDirection(this.compass.shiftOrdinalCounterclockwise(a.getOrdinal(), times));
+                assertEquals(x, this.toPixels(shifted).get(0), EPSILON);
+                assertEquals(y, this.toPixels(shifted).get(1), EPSILON);
+                assertSame(shifted, this.compass.shiftDirectionCounterclockwise(a, times));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot;
+
+import com.cemgokmen.particles.models.amoebot.gridshapes.ToroidalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotStateArrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AmoebotTopologyTest {
+    @Test
+    public void curveOrderKeepsAdjacencyAndWrapping() {
+        AmoebotTopology listed = new ToroidalAmoebotGrid(5).getTopology();
+        AmoebotTopology hilbert = listed.withSiteOrder(AmoebotTopology.SiteOrder.HILBERT);
+        assertEquals(listed.getSiteCount(), hilbert.getSiteCount());
+
+        for (int site = 0; site < listed.getSiteCount(); site++) {
+            int other = hilbert.getSiteIndex(listed.getSitePosition(site));
+            for (int d = 0; d < listed.getDirectionCount(); d++) {
+                assertEquals(listed.getSitePosition(listed.getNeighborSite(site, d)), hilbert.getSitePosition(hilbert.getNeighborSite(other, d)));
+                assertEquals(listed.getLevelDelta(site, d, 0), hilbert.getLevelDelta(other, d, 0));
+                assertEquals(listed.getLevelDelta(site, d, 1), hilbert.getLevelDelta(other, d, 1));
+            }
+        }
+
+        // Sorting the particles follows the new numbering and keeps the occupancy consistent
+        AmoebotStateArrays state = new AmoebotStateArrays(hilbert, 4);
+        for (int site = hilbert.getSiteCount() - 1; site >= 0; site -= 3) {
+            state.add(site, AmoebotStateArrays.KIND_DIRECTED, 0, site % 6);
+        }
+        state.sortBySite();
+        for (int i = 0; i < state.getCount(); i++) {
+            if (i > 0) assertTrue(state.getSite(i - 1) < state.getSite(i));
+            assertEquals(i, state.getOccupant(state.getSite(i)));
+            assertEquals(state.getSite(i) % 6, state.getDirection(i));
+        }
+    }
+}
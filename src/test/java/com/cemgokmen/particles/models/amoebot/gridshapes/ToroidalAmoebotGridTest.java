@@ -0,0 +1,152 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.amoebot.gridshapes;
+
+import com.cemgokmen.particles.models.MoveStatus;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+import com.cemgokmen.particles.util.VectorWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import static org.junit.Assert.*;
+
+public class ToroidalAmoebotGridTest {
+    private static final int SIDE_HALF_LENGTH = 3;
+
+    private ToroidalAmoebotGrid grid;
+    private AmoebotParticle particle;
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new ToroidalAmoebotGrid(SIDE_HALF_LENGTH);
+        particle = new AmoebotParticle();
+        grid.addParticle(particle, Utils.getVector(SIDE_HALF_LENGTH, 0));
+    }
+
+    @Test
+    public void neighborTableMatchesWrapping() {
+        grid.getValidPositions().forEach(p -> {
+            for (ParticleGrid.Direction d : grid.getCompass().getDirections()) {
+                Vector expected = VectorWrapper.wrapVector(p.add(d.getVector()), SIDE_HALF_LENGTH);
+                assertEquals(expected, grid.getPositionInDirection(p, d));
+            }
+        });
+    }
+
+    @Test
+    public void neighborPositionsAreFreshCopies() {
+        ParticleGrid.Direction se = grid.getCompass().getDirections().get(4);
+        Vector start = Utils.getVector(0, 0);
+        Vector neighbor = grid.getPositionInDirection(start, se);
+        neighbor.set(0, 100);
+
+        assertEquals(Utils.getVector(1, 0), grid.getPositionInDirection(start, se));
+        assertEquals(Utils.getVector(1, 0), grid.getTopology().getSitePosition(grid.getTopology().getSiteIndex(Utils.getVector(1, 0))));
+    }
+
+    @Test
+    public void crossingBorderChangesLevel() throws Exception {
+        // SE is (1, 0), which takes us off the right edge and back in on the left.
+        ParticleGrid.Direction se = grid.getCompass().getDirections().get(4);
+        Vector target = grid.getPositionInDirection(grid.getParticlePosition(particle), se);
+        assertEquals(Utils.getVector(-SIDE_HALF_LENGTH, 0), target);
+
+        grid.moveParticle(particle, target);
+
+        assertEquals(1, grid.getParticleLevel(particle, 0));
+        assertEquals(0, grid.getParticleLevel(particle, 1));
+        assertEquals(Utils.getVector(SIDE_HALF_LENGTH + 1, 0), grid.getLeveledParticlePosition(particle));
+        assertEquals(Utils.getVector(SIDE_HALF_LENGTH + 1, 0), grid.getCenterOfMass());
+    }
+
+    @Test
+    public void levelsSurviveMultipleMoves() throws Exception {
+        ParticleGrid.Direction se = grid.getCompass().getDirections().get(4);
+        ParticleGrid.Direction nw = grid.getCompass().getDirections().get(1);
+
+        grid.moveParticle(particle, grid.getPositionInDirection(grid.getParticlePosition(particle), se));
+        grid.moveParticle(particle, grid.getPositionInDirection(grid.getParticlePosition(particle), se));
+        assertEquals(1, grid.getParticleLevel(particle, 0));
+
+        grid.moveParticle(particle, grid.getPositionInDirection(grid.getParticlePosition(particle), nw));
+        grid.moveParticle(particle, grid.getPositionInDirection(grid.getParticlePosition(particle), nw));
+        assertEquals(0, grid.getParticleLevel(particle, 0));
+        assertEquals(Utils.getVector(SIDE_HALF_LENGTH, 0), grid.getLeveledParticlePosition(particle));
+    }
+
+    @Test
+    public void tryMoveReportsOccupiedTarget() throws Exception {
+        ParticleGrid.Direction se = grid.getCompass().getDirections().get(4);
+        Vector start = grid.getParticlePosition(particle);
+        grid.addParticle(new AmoebotParticle(), grid.getPositionInDirection(start, se));
+
+        assertEquals(MoveStatus.OCCUPIED, particle.tryMove(se));
+        assertEquals(start, grid.getParticlePosition(particle));
+        assertEquals(0, grid.getParticleLevel(particle, 0));
+    }
+
+    @Test
+    public void swapAcrossBorderKeepsIdsAndLevels() throws Exception {
+        ParticleGrid.Direction se = grid.getCompass().getDirections().get(4);
+        Vector start = grid.getParticlePosition(particle);
+        Vector across = grid.getPositionInDirection(start, se);
+        AmoebotParticle other = new AmoebotParticle();
+        grid.addParticle(other, across);
+        int particleId = particle.getId();
+        int otherId = other.getId();
+
+        assertEquals(MoveStatus.OK, grid.trySwapParticles(particle, other));
+
+        assertEquals(across, grid.getParticlePosition(particle));
+        assertEquals(start, grid.getParticlePosition(other));
+        assertEquals(particleId, particle.getId());
+        assertEquals(otherId, other.getId());
+        assertEquals(1, grid.getParticleLevel(particle, 0));
+        assertEquals(-1, grid.getParticleLevel(other, 0));
+        assertEquals(1, grid.getMovesMade());
+    }
+
+    @Test
+    public void forkKeepsLevelsAndIsIndependent() throws Exception {
+        ParticleGrid.Direction se = grid.getCompass().getDirections().get(4);
+        grid.moveParticle(particle, grid.getPositionInDirection(grid.getParticlePosition(particle), se));
+
+        ToroidalAmoebotGrid fork = (ToroidalAmoebotGrid) grid.fork();
+        assertSame(grid.getTopology(), fork.getTopology());
+        assertEquals(grid.getMovesMade(), fork.getMovesMade());
+
+        AmoebotParticle copy = (AmoebotParticle) fork.getParticleAtPosition(Utils.getVector(-SIDE_HALF_LENGTH, 0));
+        assertNotNull(copy);
+        assertNotSame(particle, copy);
+        assertEquals(1, fork.getParticleLevel(copy, 0));
+
+        fork.moveParticle(copy, fork.getPositionInDirection(fork.getParticlePosition(copy), se));
+        assertEquals(Utils.getVector(-SIDE_HALF_LENGTH, 0), grid.getParticlePosition(particle));
+        assertEquals(Utils.getVector(SIDE_HALF_LENGTH + 1, 0), grid.getCenterOfMass());
+        assertEquals(Utils.getVector(SIDE_HALF_LENGTH + 2, 0), fork.getCenterOfMass());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void jumpMoveIsRejected() throws Exception {
+        grid.moveParticle(particle, Utils.getVector(0, 0));
+    }
+}
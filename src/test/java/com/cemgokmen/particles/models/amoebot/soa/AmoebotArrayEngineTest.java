@@ -0,0 +1,111 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.AlignmentAlgorithm;
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.ToroidalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.DirectedAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class AmoebotArrayEngineTest {
+    private static void populate(AmoebotGrid grid, ParticleAlgorithm algorithm, boolean directed, Random random) throws Exception {
+        List<Vector> positions = grid.getValidPositions().filter(v -> grid.isPositionValid(v, null)).collect(Collectors.toList());
+        Collections.shuffle(positions, random);
+        for (int k = 0; k < 40; k++) {
+            AmoebotParticle p = directed ?
+                    new DirectedAmoebotParticle(grid.getCompass(), grid.getCompass().getDirections().get(random.nextInt(6)), false) :
+                    new AmoebotParticle();
+            grid.addParticle(p, positions.get(k));
+            p.setAlgorithm(algorithm);
+        }
+    }
+
+    // Each occupied site with the particle's direction, if it has one
+    private static Map<Integer, Integer> describe(AmoebotGrid grid) {
+        AmoebotTopology topology = grid.getTopology();
+        Map<Integer, Integer> sites = new HashMap<>();
+        grid.getAllParticles().forEach(p -> sites.put(topology.getSiteIndex(grid.getParticlePosition(p)),
+                p instanceof DirectedAmoebotParticle ? topology.getDirectionIndex(((DirectedAmoebotParticle) p).getDirection()) : 0));
+        return sites;
+    }
+
+    private static Map<Integer, Integer> describe(AmoebotStateArrays state) {
+        Map<Integer, Integer> sites = new HashMap<>();
+        for (int i = 0; i < state.getCount(); i++) {
+            sites.put(state.getSite(i), state.getKind(i) == AmoebotStateArrays.KIND_DIRECTED ? state.getDirection(i) : 0);
+        }
+        return sites;
+    }
+
+    /**
+     * Activates the same particles with the same random streams on the grid and on the arrays, and checks that the
+     * two stay in the same state.
+     */
+    private static void assertRunsMatch(AmoebotGrid grid, int activations) {
+        Random random = new Random(11);
+        AmoebotArrayEngine engine = AmoebotArrayEngine.fromGrid(grid);
+        AmoebotStateArrays state = engine.getState();
+        ParticleAlgorithm algorithm = engine.getAlgorithm();
+        algorithm.publishParameters();
+
+        for (int step = 0; step < activations; step++) {
+            int i = random.nextInt(state.getCount());
+            Particle p = grid.getParticleAtPosition(state.getTopology().getSitePosition(state.getSite(i)));
+            long seed = random.nextLong();
+
+            Utils.random.setSeed(seed);
+            p.activate();
+            ((ArrayActivatable) algorithm).onArrayActivation(state, i, new Random(seed));
+
+            assertEquals(describe(grid), describe(state));
+        }
+
+        assertTrue(grid.getMovesMade() > 0);
+        assertEquals(grid.getMovesMade(), state.getMovesMade());
+    }
+
+    @Test
+    public void compressionMatchesObjectRuns() throws Exception {
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(6);
+        populate(grid, new CompressionAlgorithm(4.0), false, new Random(3));
+        assertRunsMatch(grid, 3000);
+    }
+
+    @Test
+    public void alignmentMatchesObjectRuns() throws Exception {
+        ToroidalAmoebotGrid grid = new ToroidalAmoebotGrid(6);
+        populate(grid, new AlignmentAlgorithm(), true, new Random(3));
+        assertRunsMatch(grid, 3000);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.models.amoebot.AmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.AmoebotTopology;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.gridshapes.ToroidalAmoebotGrid;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AmoebotBitboardTest {
+    private static int countNeighbors(AmoebotTopology topology, boolean[] set, int site) {
+        int count = 0;
+        for (int d = 0; d < topology.getDirectionCount(); d++) {
+            int neighbor = topology.getNeighborSite(site, d);
+            if (neighbor != -1 && set[neighbor]) count++;
+        }
+        return count;
+    }
+
+    private static boolean isConnected(AmoebotTopology topology, boolean[] set) {
+        int total = 0, start = -1;
+        for (int site = 0; site < set.length; site++) {
+            if (set[site]) {
+                total++;
+                start = site;
+            }
+        }
+        if (total == 0) return true;
+
+        boolean[] seen = new boolean[set.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        seen[start] = true;
+        int reached = 0;
+        while (!queue.isEmpty()) {
+            int site = queue.remove();
+            reached++;
+            for (int d = 0; d < topology.getDirectionCount(); d++) {
+                int neighbor = topology.getNeighborSite(site, d);
+                if (neighbor != -1 && set[neighbor] && !seen[neighbor]) {
+                    seen[neighbor] = true;
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return reached == total;
+    }
+
+    private static void checkAgainstTopology(AmoebotGrid grid, Random random) {
+        AmoebotTopology topology = grid.getTopology();
+        AmoebotBitboard bitboard = new AmoebotBitboard(topology);
+        long[] board = bitboard.newBoard();
+        long[] empty = bitboard.newBoard();
+        boolean[] occupied = new boolean[topology.getSiteCount()];
+        boolean[] free = new boolean[topology.getSiteCount()];
+
+        // Square the fill so that both sparse boards and dense, mostly connected ones come up
+        double fill = random.nextDouble();
+        for (int site = 0; site < occupied.length; site++) occupied[site] = random.nextDouble() < fill * fill;
+        for (int site = 0; site < occupied.length; site++) {
+            int x = topology.getSiteX(site), y = topology.getSiteY(site);
+            if (occupied[site]) {
+                bitboard.set(board, x, y);
+            } else {
+                free[site] = true;
+                bitboard.set(empty, x, y);
+            }
+        }
+
+        int degrees = 0;
+        long[][] planes = bitboard.countNeighbors(board);
+        long[] boundary = bitboard.getBoundary(board);
+        for (int site = 0; site < occupied.length; site++) {
+            int x = topology.getSiteX(site), y = topology.getSiteY(site);
+            int neighbors = countNeighbors(topology, occupied, site);
+            if (occupied[site]) degrees += neighbors;
+
+            assertTrue(bitboard.get(bitboard.selectCount(planes, neighbors), x, y));
+            assertEquals(occupied[site] && neighbors < 6, bitboard.get(boundary, x, y));
+        }
+
+        assertEquals(degrees / 2, bitboard.countEdges(board));
+        assertEquals(isConnected(topology, occupied), bitboard.isConnected(board));
+        assertEquals(isConnected(topology, free), bitboard.isConnected(empty));
+    }
+
+    @Test
+    public void kernelsMatchTopology() {
+        Random random = new Random(3);
+        for (int trial = 0; trial < 60; trial++) {
+            checkAgainstTopology(new HexagonalAmoebotGrid(1 + random.nextInt(40)), random);
+            checkAgainstTopology(new ToroidalAmoebotGrid(1 + random.nextInt(40)), random);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class AmoebotEnsembleTest {
+    private HexagonalAmoebotGrid grid;
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new HexagonalAmoebotGrid(8);
+
+        CompressionAlgorithm algorithm = new CompressionAlgorithm(4.0);
+        for (int x = -4; x <= 4; x++) {
+            AmoebotParticle p = new AmoebotParticle();
+            grid.addParticle(p, Utils.getVector(x, 0));
+            p.setAlgorithm(algorithm);
+        }
+    }
+
+    @Test
+    public void replicasShareTopologyButNotState() {
+        AmoebotEnsemble ensemble = AmoebotEnsemble.fromGrid(grid, 4, 1);
+
+        AmoebotStateArrays first = ensemble.getReplica(0).getState();
+        AmoebotStateArrays second = ensemble.getReplica(1).getState();
+        assertSame(first.getTopology(), second.getTopology());
+        assertNotSame(first, second);
+
+        ensemble.getReplica(0).runActivations(1000);
+        assertEquals(0, ensemble.getReplica(1).getActivationsRun());
+        assertEquals(0, second.getMovesMade());
+        assertEquals(9, second.getCount());
+    }
+
+    @Test
+    public void forksCopyOnlyWhatTheyChange() {
+        AmoebotStateArrays state = AmoebotArrayEngine.fromGrid(grid).getState();
+        AmoebotStateArrays fork = state.fork();
+
+        int i = 0;
+        int site = state.getSite(i);
+        int direction = -1;
+        for (int d = 0; d < state.getDirectionCount(); d++) {
+            int target = state.getNeighborSite(site, d);
+            if (target != AmoebotStateArrays.NONE && state.getOccupant(target) == AmoebotStateArrays.NONE) direction = d;
+        }
+        assertTrue(fork.move(i, direction));
+
+        assertEquals(site, state.getSite(i));
+        assertEquals(i, state.getOccupant(site));
+        assertEquals(AmoebotStateArrays.NONE, fork.getOccupant(site));
+        assertEquals(0, state.getMovesMade());
+        assertEquals(1, fork.getMovesMade());
+    }
+
+    @Test
+    public void parallelRunsMatchSequentialRuns() throws Exception {
+        AmoebotEnsemble sequential = AmoebotEnsemble.fromGrid(grid, 4, 7);
+        AmoebotEnsemble parallel = AmoebotEnsemble.fromGrid(grid, 4, 7);
+
+        sequential.runActivations(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            parallel.runActivations(5000, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int k = 0; k < 4; k++) {
+            assertEquals(sequential.getReplica(k).getMovesMade(), parallel.getReplica(k).getMovesMade());
+        }
+        assertEquals(sequential.measure(AmoebotArrayEngine::getMovesMade).getMean(),
+                parallel.measure(AmoebotArrayEngine::getMovesMade).getMean(), 0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.AlignmentAlgorithm;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LinearBitsetEngineTest {
+    private static int[] countRuns(LinearBitsetEngine engine) {
+        int length = engine.getLength();
+        int[] histogram = new int[engine.getCount() + 1];
+        if (engine.getCount() == length) {
+            histogram[length] = 1;
+            return histogram;
+        }
+
+        // Walk from a free site so runs across the seam of the circle are counted once
+        int start = 0;
+        while (engine.isCircular() && engine.isOccupied(start)) start++;
+
+        int run = 0;
+        for (int k = 0; k <= length; k++) {
+            int site = (start + k) % length;
+            boolean occupied = k < length && (engine.isCircular() || site >= start) && engine.isOccupied(site);
+            if (occupied) {
+                run++;
+            } else if (run > 0) {
+                histogram[run]++;
+                run = 0;
+            }
+        }
+        return histogram;
+    }
+
+    @Test
+    public void runsMatchNaiveScan() {
+        Random random = new Random(11);
+        for (boolean circular : new boolean[]{false, true}) {
+            for (int trial = 0; trial < 200; trial++) {
+                int halfLength = 1 + random.nextInt(100);
+                LinearBitsetEngine engine = new LinearBitsetEngine(halfLength, circular, 1, new AlignmentAlgorithm());
+
+                double fill = random.nextDouble();
+                for (int site = 0; site < engine.getLength(); site++) {
+                    if (random.nextDouble() < fill) engine.add(site, random.nextInt(2));
+                }
+
+                int[] expected = countRuns(engine);
+                int runs = 0;
+                for (int n : expected) runs += n;
+
+                assertArrayEquals(expected, engine.getRunLengthHistogram());
+                assertEquals(runs, engine.getRunCount());
+            }
+        }
+    }
+
+    @Test
+    public void movesWrapAroundTheCircle() {
+        LinearBitsetEngine engine = new LinearBitsetEngine(3, true, 1, new AlignmentAlgorithm());
+        int i = engine.add(engine.getSiteOf(3), LinearBitsetEngine.SOUTH);
+        engine.add(engine.getSiteOf(-2), LinearBitsetEngine.NORTH);
+
+        engine.move(i, LinearBitsetEngine.SOUTH);
+        assertEquals(engine.getSiteOf(-3), engine.getSite(i));
+        assertEquals(LinearBitsetEngine.SOUTH, engine.getDirection(i));
+        assertFalse(engine.isOccupied(engine.getSiteOf(3)));
+        assertEquals(1, engine.getRunLengthHistogram()[2]);
+        assertEquals(1, engine.getRunCount());
+        assertEquals((-2 + 4) / 2.0, engine.getCenterOfMass(), 1e-9);
+        assertEquals(0, engine.getPolarization(), 1e-9);
+
+        LinearBitsetEngine line = new LinearBitsetEngine(3, false, 1, new AlignmentAlgorithm());
+        assertEquals(LinearBitsetEngine.NONE, line.getNeighborSite(line.getSiteOf(3), LinearBitsetEngine.SOUTH));
+    }
+}
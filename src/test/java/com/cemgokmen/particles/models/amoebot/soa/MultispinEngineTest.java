@@ -0,0 +1,108 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.algorithms.SeparationAlgorithm;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.specializedparticles.SeparableAmoebotParticle;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class MultispinEngineTest {
+    private static HexagonalAmoebotGrid line(boolean separable) throws Exception {
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(8);
+        CompressionAlgorithm compression = new CompressionAlgorithm(4.0);
+        SeparationAlgorithm separation = new SeparationAlgorithm(4.0, 4.0, true, true);
+        for (int x = -6; x <= 6; x++) {
+            AmoebotParticle p = separable ? new SeparableAmoebotParticle(Math.floorMod(x, 3), false) : new AmoebotParticle();
+            grid.addParticle(p, Utils.getVector(x, 0));
+            p.setAlgorithm(separable ? separation : compression);
+        }
+        return grid;
+    }
+
+    @Test
+    public void validMovesMatchArrayKernel() throws Exception {
+        MultispinEngine engine = MultispinEngine.fromGrid(line(false));
+        engine.setRandom(new SplittableRandom(5));
+        engine.runSteps(20000);
+
+        AmoebotStateArrays[] replicas = new AmoebotStateArrays[MultispinEngine.REPLICAS];
+        for (int r = 0; r < replicas.length; r++) replicas[r] = engine.toState(r);
+
+        for (int site = 0; site < engine.getTopology().getSiteCount(); site++) {
+            for (int d = 0; d < 6; d++) {
+                int target = engine.getNeighborSite(site, d);
+                if (target == AmoebotStateArrays.NONE) continue;
+
+                long valid = MultispinKernels.getValidMoves(engine, site, target, d) & engine.getOccupied(site) & ~engine.getOccupied(target);
+                for (int r = 0; r < replicas.length; r++) {
+                    int i = replicas[r].getOccupant(site);
+                    boolean expected = i != AmoebotStateArrays.NONE && AmoebotKernels.isMoveValidCompressionMove(replicas[r], i, d, false, true, AmoebotStateArrays.NONE);
+                    assertEquals(expected, ((valid >>> r) & 1) != 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void replicasStayConnectedAndDiverge() throws Exception {
+        MultispinEngine engine = MultispinEngine.fromGrid(line(false));
+        engine.setRandom(new SplittableRandom(7));
+        engine.runSteps(50000);
+
+        int[] edges = engine.countEdges();
+        boolean diverged = false;
+        for (int r = 0; r < MultispinEngine.REPLICAS; r++) {
+            AmoebotStateArrays state = engine.toState(r);
+            AmoebotBitboard bitboard = AmoebotBitboard.fromState(state);
+
+            assertEquals(13, state.getCount());
+            assertTrue(bitboard.isOccupancyConnected());
+            assertTrue(bitboard.isHoleFree());
+            assertEquals(bitboard.countEdges(), edges[r]);
+            diverged |= edges[r] != edges[0];
+        }
+        assertTrue(diverged);
+    }
+
+    @Test
+    public void swapsKeepClassSizes() throws Exception {
+        MultispinEngine engine = MultispinEngine.fromGrid(line(true));
+        engine.setRandom(new SplittableRandom(9));
+        engine.runSteps(50000);
+
+        int[] heterogeneous = engine.countHeterogeneousEdges();
+        for (int r = 0; r < MultispinEngine.REPLICAS; r++) {
+            AmoebotStateArrays state = engine.toState(r);
+            int[] sizes = new int[3];
+            for (int i = 0; i < state.getCount(); i++) sizes[state.getClassNumber(i)]++;
+
+            assertArrayEquals(new int[]{5, 4, 4}, sizes);
+            assertEquals(AmoebotBitboard.fromState(state).countHeterogeneousEdges(), heterogeneous[r]);
+        }
+    }
+}
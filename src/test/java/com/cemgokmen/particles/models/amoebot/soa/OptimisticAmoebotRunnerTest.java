@@ -0,0 +1,95 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.models.amoebot.soa;
+
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class OptimisticAmoebotRunnerTest {
+    private HexagonalAmoebotGrid grid;
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new HexagonalAmoebotGrid(20);
+
+        // A few separate lines, so that workers mostly activate particles far from each other
+        CompressionAlgorithm algorithm = new CompressionAlgorithm(4.0);
+        for (int y = -12; y <= 12; y += 8) {
+            for (int x = -6; x <= 6; x++) {
+                AmoebotParticle p = new AmoebotParticle();
+                grid.addParticle(p, Utils.getVector(x, y));
+                p.setAlgorithm(algorithm);
+            }
+        }
+    }
+
+    @Test
+    public void parallelRunsKeepTheLatticeConsistent() throws Exception {
+        AmoebotArrayEngine engine = AmoebotArrayEngine.fromGrid(grid);
+        AmoebotStateArrays untouched = engine.getState().fork();
+        OptimisticAmoebotRunner runner = new OptimisticAmoebotRunner(engine);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            runner.runActivations(20000, 4, 3, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        AmoebotStateArrays state = engine.getState();
+        assertEquals(20000, runner.getActivationsRun());
+        assertEquals(20000, state.getTime());
+        assertTrue(state.getMovesMade() > 0);
+        assertEquals(52, state.getCount());
+        for (int i = 0; i < state.getCount(); i++) {
+            assertEquals(i, state.getOccupant(state.getSite(i)));
+        }
+
+        // Forks taken before the run keep their own arrays
+        assertEquals(0, untouched.getMovesMade());
+        for (int i = 0; i < untouched.getCount(); i++) {
+            assertEquals(i, untouched.getOccupant(untouched.getSite(i)));
+        }
+    }
+
+    @Test
+    public void singleWorkerNeverConflicts() throws Exception {
+        OptimisticAmoebotRunner runner = new OptimisticAmoebotRunner(AmoebotArrayEngine.fromGrid(grid));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            runner.runActivations(5000, 1, 3, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(0, runner.getConflicts());
+        assertEquals(0, runner.getConflictRate(), 0);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.continuous;
+
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.models.continuous.boundary.CircularBoundary;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ContinuousParticleGridTest {
+    // The particles within the distance of a position, found by going through all of them
+    private static Set<Particle> getNeighborsByScan(ContinuousParticleGrid grid, Vector position, double distance) {
+        return grid.getAllParticles()
+                .filter(p -> grid.getParticlePosition(p).subtract(position).norm() < distance)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void neighborsSurviveIndexGrowth() throws Exception {
+        ContinuousParticleGrid grid = new ContinuousParticleGrid(new CircularBoundary(60));
+        Random random = new Random(3);
+
+        // Tiny particles first, then ones a thousand times larger, which rebuckets the ones already there. Spots that
+        // are taken are skipped
+        for (double radius : new double[]{0.01, 10}) {
+            for (int i = 0; i < 200; i++) {
+                Vector position = Utils.getVector(random.nextDouble() * 80 - 40, random.nextDouble() * 80 - 40);
+                grid.tryAddParticle(new ContinuousParticle(radius, 0), position);
+            }
+        }
+        assertTrue(grid.getParticleCount() > 200);
+
+        for (double distance : new double[]{0.05, 3, 25, 200}) {
+            for (int i = 0; i < 20; i++) {
+                Vector position = Utils.getVector(random.nextDouble() * 80 - 40, random.nextDouble() * 80 - 40);
+                List<Particle> neighbors = grid.getPositionNeighbors(position, distance);
+                assertEquals(neighbors.size(), new HashSet<>(neighbors).size());
+                assertEquals(getNeighborsByScan(grid, position, distance), new HashSet<>(neighbors));
+            }
+        }
+    }
+
+    @Test
+    public void largeParticlesCoverFarPositions() throws Exception {
+        ContinuousParticleGrid grid = new ContinuousParticleGrid(new CircularBoundary(50));
+        ContinuousParticle big = new ContinuousParticle(8, 0);
+        grid.addParticle(big, Utils.getVector(0, 0));
+
+        assertSame(big, grid.getParticleAtPosition(Utils.getVector(5, 5)));
+        assertNull(grid.getParticleAtPosition(Utils.getVector(6, 6)));
+
+        grid.moveParticle(big, Utils.getVector(20, 0));
+        assertSame(big, grid.getParticleAtPosition(Utils.getVector(27, 0)));
+        assertNull(grid.getParticleAtPosition(Utils.getVector(5, 5)));
+    }
+
+    @Test
+    public void compassWeighsDirectionsByAngle() throws Exception {
+        ParticleGrid.Compass compass = new ContinuousParticleGrid(new CircularBoundary(5)).getCompass();
+        assertFalse(compass.hasDiscreteDirections());
+
+        for (double a = 0; a < 2 * Math.PI; a += 0.7) {
+            for (double b = 0; b < 2 * Math.PI; b += 0.9) {
+                ParticleGrid.Direction da = new ContinuousParticleGrid.ContinuousDirection(a);
+                ParticleGrid.Direction db = new ContinuousParticleGrid.ContinuousDirection(b);
+                assertEquals((Math.cos(a - b) + 1) / 2, compass.getNormalizedDotProduct(da, db), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.models.continuous.soa;
+
+import com.cemgokmen.particles.models.continuous.ContinuousParticle;
+import com.cemgokmen.particles.models.continuous.ContinuousParticleGrid;
+import com.cemgokmen.particles.models.continuous.boundary.CircularBoundary;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ContinuousSwarmEngineTest {
+    private static ContinuousSwarmEngine createSwarm(int count, double noise) {
+        Random random = new Random(3);
+        ContinuousSwarmEngine engine = new ContinuousSwarmEngine(new CircularBoundary(30), 0.5, 0.3, 3, noise, 11);
+        for (int i = 0; i < count; i++) {
+            // Spread over a grid of points, so that nobody starts too close to anybody else
+            engine.add(-20 + 1.5 * (i % 27), -20 + 1.5 * (i / 27), random.nextDouble() * 2 * Math.PI);
+        }
+        return engine;
+    }
+
+    @Test
+    public void parallelStepsMatchSequentialSteps() {
+        ContinuousSwarmEngine sequential = createSwarm(500, 0.5);
+        ContinuousSwarmEngine parallel = createSwarm(500, 0.5);
+        sequential.setParallel(false);
+
+        sequential.runSteps(200);
+        parallel.runSteps(200);
+
+        assertEquals(sequential.getMovesMade(), parallel.getMovesMade());
+        for (int i = 0; i < sequential.getCount(); i++) {
+            assertEquals(sequential.getX(i), parallel.getX(i), 0);
+            assertEquals(sequential.getHeading(i), parallel.getHeading(i), 0);
+        }
+    }
+
+    @Test
+    public void particlesStayApartAndInside() throws Exception {
+        ContinuousSwarmEngine engine = createSwarm(500, 0.1);
+        engine.runSteps(300);
+
+        assertTrue(engine.getMovesMade() > 0);
+        assertTrue(engine.getPolarization() > 0.2);
+
+        // The grid refuses particles outside the boundary or on top of one another
+        ContinuousParticleGrid grid = engine.materialize(new ContinuousParticleGrid(new CircularBoundary(30)), null);
+        assertEquals(500, grid.getParticleCount());
+
+        ContinuousSwarmEngine copy = ContinuousSwarmEngine.fromGrid(grid, 0.3, 3, 0.1, 11);
+        assertEquals(engine.getPolarization(), copy.getPolarization(), 1e-9);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.runners.jobs;
+
+import com.cemgokmen.particles.algorithms.AlignmentAlgorithm;
+import com.cemgokmen.particles.algorithms.ParticleAlgorithm;
+import com.cemgokmen.particles.capabilities.SpinCapable;
+import com.cemgokmen.particles.models.ParticleGrid;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class JobSpecTest {
+    private static JobSpec spec(String... entries) {
+        Properties properties = new Properties();
+        for (int i = 0; i < entries.length; i += 2) {
+            properties.setProperty(entries[i], entries[i + 1]);
+        }
+        return new JobSpec("test", properties, Paths.get("."));
+    }
+
+    @Test
+    public void stopsParseRangesAndLists() {
+        assertArrayEquals(new int[]{0, 500, 1000}, spec("stops", "0:1000:500").getStops());
+        assertArrayEquals(new int[]{100, 400, 700}, spec("stops", " 100 : 900 : 300 ").getStops());
+        assertArrayEquals(new int[]{7}, spec("stops", "7:7:1").getStops());
+        assertArrayEquals(new int[]{10, 20, 50}, spec("stops", "10, 20,50").getStops());
+    }
+
+    private static void assertStopsRejected(String stops, String message) {
+        try {
+            spec("stops", stops).getStops();
+            fail("Expected " + stops + " to be rejected.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    @Test
+    public void stopsRejectBadSteps() {
+        assertStopsRejected("0:1000:0", "Stop step must be positive");
+        assertStopsRejected("0:1000:-5", "Stop step must be positive");
+        assertStopsRejected("1000:0:100", "Stop range must not end before it starts");
+    }
+
+    @Test
+    public void missingKeysAreReported() throws Exception {
+        try {
+            spec().getStops();
+            fail("Expected a missing stops error.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("stops"));
+        }
+
+        try {
+            spec().createAlgorithm();
+            fail("Expected a missing algorithm error.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("algorithm"));
+        }
+    }
+
+    @Test
+    public void algorithmPropertiesAreApplied() throws Exception {
+        ParticleAlgorithm algorithm = spec("algorithm", "AlignmentAlgorithm", "algorithm.rotationBias", "20").createAlgorithm();
+        assertTrue(algorithm instanceof AlignmentAlgorithm);
+        assertEquals(20, ((AlignmentAlgorithm) algorithm).getRotationBias(), 0);
+    }
+
+    /**
+     * Runs an alignment job the way the server does, on its own generator, and lists where the particles ended up.
+     */
+    private static List<String> runSeeded(JobSpec spec) throws Exception {
+        Utils.setThreadRandom(spec.createRandom());
+        try {
+            ParticleAlgorithm algorithm = spec.createAlgorithm();
+            ParticleGrid grid = spec.createGrid(algorithm);
+            grid.assignAllParticlesAlgorithm(algorithm);
+            grid.runActivations(50000);
+            return grid.getAllParticles()
+                    .map(p -> grid.getParticlePosition(p) + " " + ((SpinCapable) p).getDirection().getOrdinal())
+                    .sorted()
+                    .collect(Collectors.toList());
+        } finally {
+            Utils.setThreadRandom(null);
+        }
+    }
+
+    @Test
+    public void seededJobsRepeatSideBySide() throws Exception {
+        JobSpec spec = spec("grid", "ToroidalAmoebotGrid", "grid.size", "10", "particle", "DirectedAmoebotParticle",
+                "particle.count", "50", "algorithm", "AlignmentAlgorithm", "seed", "42");
+        List<String> alone = runSeeded(spec);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<String>> first = executor.submit(() -> runSeeded(spec));
+            Future<List<String>> second = executor.submit(() -> runSeeded(spec));
+            assertEquals(alone, first.get());
+            assertEquals(alone, second.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        // Jobs leave the shared generator alone
+        long next = new Random(7).nextLong();
+        Utils.random.setSeed(7);
+        runSeeded(spec);
+        assertEquals(next, Utils.random.nextLong());
+    }
+}
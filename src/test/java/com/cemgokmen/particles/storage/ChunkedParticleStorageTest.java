@@ -0,0 +1,86 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.storage;
+
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.InfiniteAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotArrayEngine;
+import com.cemgokmen.particles.util.Utils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkedParticleStorageTest {
+    @Test
+    public void chunksComeAndGoWithParticles() {
+        ChunkedParticleStorage storage = new ChunkedParticleStorage();
+        Particle a = new AmoebotParticle();
+        Particle b = new AmoebotParticle();
+
+        storage.addParticle(a, Utils.getVector(-1, -1));
+        storage.addParticle(b, Utils.getVector(100000, -70000));
+        assertEquals(2, storage.getChunkCount());
+        assertSame(a, storage.getParticleAtPosition(Utils.getVector(-1, -1)));
+        assertNull(storage.getParticleAtPosition(Utils.getVector(15, 15)));
+
+        // Moves are a removal and an addition, which hands the emptied chunk straight back
+        storage.removeParticle(a);
+        storage.addParticle(a, Utils.getVector(0, 0));
+        assertEquals(2, storage.getChunkCount());
+        assertNull(storage.getParticleAtPosition(Utils.getVector(-1, -1)));
+        assertSame(a, storage.getParticleAtPosition(Utils.getVector(0, 0)));
+
+        storage.swapParticles(a, b);
+        assertSame(b, storage.getParticleAtPosition(Utils.getVector(0, 0)));
+        assertSame(a, storage.getParticleAtPosition(Utils.getVector(100000, -70000)));
+
+        storage.removeParticle(a);
+        assertEquals(1, storage.getChunkCount());
+        assertFalse(storage.isPositionOccupied(Utils.getVector(100000, -70000)));
+        assertEquals(1, storage.getParticleCount());
+    }
+
+    @Test
+    public void spreadingSystemOnlyUsesChunksItTouches() throws Exception {
+        InfiniteAmoebotGrid grid = new InfiniteAmoebotGrid();
+        CompressionAlgorithm algorithm = new CompressionAlgorithm(0.5);
+        for (int x = 0; x < 20; x++) {
+            AmoebotParticle p = new AmoebotParticle();
+            grid.addParticle(p, Utils.getVector(x, 0));
+            p.setAlgorithm(algorithm);
+        }
+
+        grid.runActivations(20000);
+        assertEquals(20, grid.getParticleCount());
+        assertTrue(grid.getChunkCount() <= 20);
+        grid.getAllParticles().forEach(p -> assertSame(p, grid.getParticleAtPosition(grid.getParticlePosition(p))));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void arrayEnginesRefuseUnboundedGrids() throws Exception {
+        InfiniteAmoebotGrid grid = new InfiniteAmoebotGrid();
+        AmoebotParticle p = new AmoebotParticle();
+        grid.addParticle(p, Utils.getVector(0, 0));
+        p.setAlgorithm(new CompressionAlgorithm(0.5));
+
+        AmoebotArrayEngine.fromGrid(grid);
+    }
+}
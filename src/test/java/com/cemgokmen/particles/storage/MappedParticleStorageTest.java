@@ -0,0 +1,139 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cemgokmen.particles.storage;
+
+import com.cemgokmen.particles.algorithms.CompressionAlgorithm;
+import com.cemgokmen.particles.algorithms.Observables;
+import com.cemgokmen.particles.models.Particle;
+import com.cemgokmen.particles.models.amoebot.AmoebotParticle;
+import com.cemgokmen.particles.models.amoebot.gridshapes.HexagonalAmoebotGrid;
+import com.cemgokmen.particles.models.amoebot.soa.AmoebotBitboard;
+import com.cemgokmen.particles.util.Utils;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.la4j.Vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedParticleStorageTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("particles");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+
+    @Test
+    public void segmentsHoldTheirContents() throws Exception {
+        // 64-byte segments, so the ids of a 20x20 box span many of them
+        MappedParticleStorage storage = new MappedParticleStorage(
+                Lists.newArrayList(Utils.getVector(-10, -10), Utils.getVector(9, 9)), directory, 6);
+        Particle a = new AmoebotParticle();
+        Particle b = new AmoebotParticle();
+        Particle c = new AmoebotParticle();
+
+        storage.addParticle(a, Utils.getVector(-10, -10));
+        storage.addParticle(b, Utils.getVector(9, 9));
+        storage.addParticle(c, Utils.getVector(0, 3));
+        storage.swapParticles(a, b);
+        storage.removeParticle(a);
+
+        assertEquals(2, storage.getParticleCount());
+        assertFalse(storage.isPositionOccupied(Utils.getVector(9, 9)));
+        assertSame(b, storage.getParticleAtPosition(Utils.getVector(-10, -10)));
+        assertSame(c, storage.getParticleAtPosition(Utils.getVector(0, 3)));
+        assertEquals(Utils.getVector(0, 3), storage.getParticlePosition(c));
+
+        // The checkpoint leaves the ids in the file, one past the particle's id, and c took over the id freed by a
+        storage.checkpoint(null);
+        ByteBuffer ids = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("ids.bin")))
+                .order(ByteOrder.nativeOrder());
+        assertEquals(1, ids.getInt(4 * (int) storage.getSite(Utils.getVector(0, 3))));
+        assertEquals(2, ids.getInt(4 * (int) storage.getSite(Utils.getVector(-10, -10))));
+        assertEquals(0, ids.getInt(4 * (int) storage.getSite(Utils.getVector(9, 9))));
+    }
+
+    @Test
+    public void reusedDirectoryStartsEmpty() throws Exception {
+        List<Vector> extremities = Lists.newArrayList(Utils.getVector(-10, -10), Utils.getVector(9, 9));
+        MappedParticleStorage first = new MappedParticleStorage(extremities, directory, 6);
+        for (int x = -10; x < 10; x++) first.addParticle(new AmoebotParticle(), Utils.getVector(x, 0));
+        first.checkpoint(null);
+        first.close();
+
+        MappedParticleStorage second = new MappedParticleStorage(extremities, directory, 6);
+        assertFalse(second.isPositionOccupied(Utils.getVector(5, 0)));
+        assertNull(second.getParticleAtPosition(Utils.getVector(5, 0)));
+
+        Particle p = new AmoebotParticle();
+        second.addParticle(p, Utils.getVector(-10, 0));
+        assertEquals(1, second.getParticleCount());
+        assertSame(p, second.getParticleAtPosition(Utils.getVector(-10, 0)));
+        assertFalse(second.isPositionOccupied(Utils.getVector(9, 0)));
+        second.close();
+    }
+
+    @Test
+    public void offHeapGridRuns() throws Exception {
+        HexagonalAmoebotGrid grid = new HexagonalAmoebotGrid(8, null);
+        CompressionAlgorithm algorithm = new CompressionAlgorithm(4.0);
+        for (int x = -4; x <= 4; x++) {
+            AmoebotParticle p = new AmoebotParticle();
+            grid.addParticle(p, Utils.getVector(x, 0));
+            p.setAlgorithm(algorithm);
+        }
+
+        grid.runActivations(5000);
+        assertEquals(9, grid.getParticleCount());
+        grid.getAllParticles().forEach(p -> assertSame(p, grid.getParticleAtPosition(grid.getParticlePosition(p))));
+        grid.checkpoint();
+    }
+
+    @Test
+    public void observablesStayOffTheLattice() throws Exception {
+        HexagonalAmoebotGrid mapped = new HexagonalAmoebotGrid(8, directory);
+        HexagonalAmoebotGrid heap = new HexagonalAmoebotGrid(8);
+        for (int x = -2; x <= 2; x++) {
+            for (int y = 0; y <= 1; y++) {
+                mapped.addParticle(new AmoebotParticle(), Utils.getVector(x, y));
+                heap.addParticle(new AmoebotParticle(), Utils.getVector(x, y));
+            }
+        }
+
+        assertTrue(mapped.isSparse());
+        assertFalse(AmoebotBitboard.supports(mapped));
+        assertEquals(Observables.edges(heap), Observables.edges(mapped), 0);
+        assertEquals(Observables.perimeter(heap), Observables.perimeter(mapped), 0);
+        mapped.closeStorage();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ConvergenceMonitorTest {
+    private static double[] autoregressive(int n, double phi, double start, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[n];
+        x[0] = start;
+        for (int i = 1; i < n; i++) x[i] = phi * x[i - 1] + random.nextGaussian();
+        return x;
+    }
+
+    @Test
+    public void autocorrelationTimeMatchesAutoregressiveProcess() {
+        // An AR(1) process with coefficient phi has tau = (1 + phi) / (1 - phi)
+        double phi = 0.8;
+        double[] x = autoregressive(200000, phi, 0, 1);
+        assertEquals((1 + phi) / (1 - phi), ConvergenceMonitor.integratedAutocorrelationTime(x, 0, x.length), 0.5);
+    }
+
+    @Test
+    public void transientIsTruncated() {
+        double[] x = autoregressive(5000, 0.5, 1000, 2);
+        int truncation = ConvergenceMonitor.truncationPoint(x, x.length);
+        assertTrue(truncation > 0 && truncation < 100);
+    }
+
+    @Test
+    public void trendingSeriesDoesNotConverge() {
+        ConvergenceMonitor monitor = new ConvergenceMonitor(g -> 0, 1, 10);
+        for (int i = 0; i < 2000; i++) monitor.add(i);
+        assertFalse(monitor.isConverged());
+        assertEquals(-1, monitor.getTruncationPoint());
+    }
+
+    @Test
+    public void stationarySeriesConverges() {
+        ConvergenceMonitor monitor = new ConvergenceMonitor(g -> 0, 1, 100);
+        for (double v : autoregressive(5000, 0.5, 0, 3)) monitor.add(v);
+        assertTrue(monitor.isConverged());
+        assertTrue(monitor.getEffectiveSampleSize() >= 100);
+        assertEquals(0, monitor.getMean(), 0.2);
+    }
+}
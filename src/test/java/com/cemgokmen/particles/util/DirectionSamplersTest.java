@@ -0,0 +1,104 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DirectionSamplersTest {
+
+    @Test
+    public void wrappedNormalTableMatchesRoundedWrappedNormal() {
+        int directionCount = 6;
+        double sigma = 1.3;
+        int samples = 200000;
+
+        double[] probabilities = DirectionSamplers.getWrappedNormalProbabilities(directionCount, sigma);
+        double total = 0;
+        for (int i = 0; i < directionCount; i++) {
+            total += probabilities[i];
+            assertEquals(probabilities[i], probabilities[(directionCount - i) % directionCount], 1e-12);
+        }
+        assertEquals(1.0, total, 1e-12);
+
+        // Compare against what rounding a wrapped normal angle used to give
+        Random random = new Random(42);
+        int[] counts = new int[directionCount];
+        for (int i = 0; i < samples; i++) {
+            double sample = Utils.randomWrappedNorm(random, sigma) * directionCount / (2 * Math.PI);
+            counts[Math.floorMod((int) Math.round(sample), directionCount)]++;
+        }
+        for (int i = 0; i < directionCount; i++) {
+            assertEquals(probabilities[i], counts[i] / (double) samples, 0.005);
+        }
+    }
+
+    @Test
+    public void linearStepsMatchSixthTurnRounding() {
+        double sigma = 1.1;
+        int samples = 200000;
+
+        // Proposals were rounded to sixths of a turn and then applied on the two-direction compass
+        Random random = new Random(7);
+        int flips = 0;
+        for (int i = 0; i < samples; i++) {
+            int steps = (int) Math.round(Utils.randomWrappedNorm(random, sigma) * 3 / Math.PI);
+            if (Math.floorMod(steps, 2) == 1) flips++;
+        }
+        double baseline = flips / (double) samples;
+
+        double[] probabilities = DirectionSamplers.getWrappedNormalStepProbabilities(2, sigma);
+        assertEquals(1.0, probabilities[0] + probabilities[1], 1e-12);
+        assertEquals(baseline, probabilities[1], 0.005);
+
+        int sampledFlips = 0;
+        for (int i = 0; i < samples; i++) {
+            sampledFlips += DirectionSamplers.sampleWrappedNormalOffset(random, 2, sigma);
+        }
+        assertEquals(baseline, sampledFlips / (double) samples, 0.005);
+
+        // On the hexagonal compass nothing is folded
+        assertArrayEquals(DirectionSamplers.getWrappedNormalProbabilities(6, sigma),
+                DirectionSamplers.getWrappedNormalStepProbabilities(6, sigma), 1e-12);
+    }
+
+    @Test
+    public void zigguratIsStandardNormal() {
+        Random random = new Random(1337);
+        int samples = 200000;
+
+        double sum = 0;
+        double sumSquares = 0;
+        int beyondTwo = 0;
+        for (int i = 0; i < samples; i++) {
+            double x = Ziggurat.nextGaussian(random);
+            sum += x;
+            sumSquares += x * x;
+            if (Math.abs(x) > 2) beyondTwo++;
+        }
+
+        assertEquals(0.0, sum / samples, 0.01);
+        assertEquals(1.0, sumSquares / samples, 0.02);
+        assertEquals(2 * DirectionSamplers.normalCdf(-2), beyondTwo / (double) samples, 0.003);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Particles, a self-organizing particle system simulator.
+ * Copyright (C) 2018  Cem Gokmen.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.cemgokmen.particles.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    @Test
+    public void timersFireAtTheirDeadline() {
+        // Start just short of the overflow horizon so that some deadlines have to wait there
+        long start = (1L << 24) - 1000;
+        TimingWheel<Long> wheel = new TimingWheel<>(start);
+        Random random = new Random(1);
+
+        List<TimingWheel.Timer<Long>> timers = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = start + 1 + (i % 2 == 0 ? random.nextInt(5000) : random.nextInt(1 << 25));
+            timers.add(wheel.schedule(deadline, deadline));
+        }
+
+        List<Long> late = new ArrayList<>();
+        int[] fired = {0};
+        while (wheel.size() > 0) {
+            wheel.advanceTo(wheel.getTime() + 1 + random.nextInt(100000), deadline -> {
+                fired[0]++;
+                if (deadline != wheel.getTime()) late.add(deadline);
+            });
+        }
+
+        assertEquals(timers.size(), fired[0]);
+        assertTrue(late.isEmpty());
+    }
+
+    @Test
+    public void cancelledAndRescheduledTimers() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        TimingWheel.Timer<String> cancelled = wheel.schedule("cancelled", 10);
+        TimingWheel.Timer<String> moved = wheel.schedule("moved", 10);
+        TimingWheel.Timer<String> overdue = wheel.schedule("overdue", -5);
+
+        wheel.cancel(cancelled);
+        wheel.reschedule(moved, 300);
+        assertEquals(1, overdue.getDeadline());
+
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(299, fired::add);
+        assertEquals(1, fired.size());
+        assertEquals("overdue", fired.get(0));
+
+        wheel.advanceTo(300, fired::add);
+        assertEquals("moved", fired.get(1));
+        assertFalse(cancelled.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+}